@@ -16,9 +16,12 @@ export const parseForm = async (request: ParseRequest): Promise<ParsingResult> =
 export type StreamEventName =
   | 'attemptStarted'
   | 'rawChunk'
+  | 'reasoning'
   | 'snapshot'
   | 'attemptFailed'
   | 'finalResult'
+  | 'busy'
+  | 'timeout'
   | 'error'
 
 export type StreamEventHandler = (eventName: StreamEventName, data: any) => void
@@ -8,6 +8,7 @@ export interface FieldResult {
   confidence: number
   reasoning: string
   alternatives?: any[]
+  omitted?: string[] | null
 }
 
 export interface ValidationError {
@@ -16,9 +17,22 @@ export interface ValidationError {
   type: string
 }
 
+export interface TokenUsage {
+  promptTokens: number
+  completionTokens: number
+  cachedTokens: number
+}
+
+export interface ParsingMetadata {
+  attempts: number
+  usage?: TokenUsage | null
+  repaired?: boolean
+}
+
 export interface ParsingResult {
   fields: Record<string, FieldResult>
   errors: ValidationError[]
+  metadata?: ParsingMetadata | null
 }
 
 export interface LeaveFormData {
@@ -1,8 +1,10 @@
 package com.fanyamin.web.config;
 
 import com.fanyamin.LazyFormInstructor;
+import com.fanyamin.instructor.llm.ConcurrencyLimitedLlmClient;
 import com.fanyamin.instructor.llm.LlmClient;
 import com.fanyamin.instructor.llm.LlmClientFactory;
+import com.fanyamin.instructor.resilience.AdaptiveConcurrencyLimiter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -11,7 +13,10 @@ public class LazyFormConfig {
 
     @Bean
     public LlmClient llmClient() {
-        return LlmClientFactory.createFromEnvironment();
+        // Adaptive concurrency limit in front of the provider; excess requests are rejected as "busy"
+        return new ConcurrencyLimitedLlmClient(
+                LlmClientFactory.createFromEnvironment(),
+                AdaptiveConcurrencyLimiter.builder().build());
     }
 
     @Bean
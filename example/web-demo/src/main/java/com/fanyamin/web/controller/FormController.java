@@ -1,18 +1,24 @@
 package com.fanyamin.web.controller;
 
 import com.fanyamin.LazyFormInstructor;
+import com.fanyamin.instructor.api.Deadline;
 import com.fanyamin.instructor.api.ParsingRequest;
 import com.fanyamin.instructor.api.ParsingResult;
 import com.fanyamin.instructor.schema.SchemaGenerator;
 import com.fanyamin.instructor.streaming.StreamingParseEvent;
 import com.fanyamin.web.dto.LeaveRequestForm;
 import com.fanyamin.web.dto.ParseRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Map;
 
@@ -21,6 +27,15 @@ import java.util.Map;
 @CrossOrigin(origins = "*", allowedHeaders = "*")
 public class FormController {
 
+    private static final String BUSY_RETRY_AFTER_SECONDS = "1";
+
+    /** Client-supplied time budget in milliseconds, e.g. {@code X-Request-Timeout: 15000}. */
+    private static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration MAX_REQUEST_TIMEOUT = Duration.ofSeconds(120);
+    /** Extra time the SSE connection stays open after the deadline so the final event can be delivered. */
+    private static final Duration SSE_GRACE = Duration.ofSeconds(2);
+
     private final LazyFormInstructor instructor;
     private final SchemaGenerator schemaGenerator;
 
@@ -30,9 +45,23 @@ public class FormController {
     }
 
     @PostMapping("/parse")
-    public ParsingResult parseForm(@RequestBody ParseRequest request) throws IOException {
-        ParsingRequest parsingRequest = buildParsingRequest(request);
-        return instructor.parse(parsingRequest);
+    public ResponseEntity<ParsingResult> parseForm(
+            @RequestBody ParseRequest request,
+            @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) Long timeoutMs) throws IOException {
+        ParsingRequest parsingRequest = buildParsingRequest(request, deadlineFor(timeoutMs));
+        ParsingResult result = instructor.parse(parsingRequest);
+        if (isBusy(result)) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, BUSY_RETRY_AFTER_SECONDS)
+                    .body(result);
+        }
+        if (hasErrorType(result, LazyFormInstructor.DEADLINE_ERROR_TYPE)) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(result);
+        }
+        if (hasErrorType(result, LazyFormInstructor.INPUT_TOO_LARGE_ERROR_TYPE)) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(result);
+        }
+        return ResponseEntity.ok(result);
     }
 
     /**
@@ -45,18 +74,23 @@ public class FormController {
      *   <li>snapshot</li>\n
      *   <li>attemptFailed</li>\n
      *   <li>finalResult</li>\n
+     *   <li>busy (LLM backend at capacity; terminal)</li>\n
+     *   <li>timeout (request deadline reached; terminal)</li>\n
      *   <li>error</li>\n
      * </ul>\n
      * </p>
      */
     @PostMapping(path = "/parse/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter parseFormStream(@RequestBody ParseRequest request) throws IOException {
-        ParsingRequest parsingRequest = buildParsingRequest(request);
+    public SseEmitter parseFormStream(
+            @RequestBody ParseRequest request,
+            @RequestHeader(value = REQUEST_TIMEOUT_HEADER, required = false) Long timeoutMs) throws IOException {
+        Deadline deadline = deadlineFor(timeoutMs);
+        ParsingRequest parsingRequest = buildParsingRequest(request, deadline);
 
-        // 0L = no timeout (browser will typically manage reconnect/timeout). You can set e.g. 60_000L if desired.
-        SseEmitter emitter = new SseEmitter(0L);
+        // Keep the connection open slightly past the deadline so the terminal "timeout" event still arrives
+        SseEmitter emitter = new SseEmitter(deadline.remaining().plus(SSE_GRACE).toMillis());
 
-        instructor.parseStreaming(parsingRequest).subscribe(
+        Disposable subscription = instructor.parseStreaming(parsingRequest).subscribe(
                 evt -> {
                     try {
                         emitter.send(SseEmitter.event()
@@ -69,6 +103,10 @@ public class FormController {
                 emitter::completeWithError,
                 emitter::complete
         );
+        // Stop the LLM call when the client goes away or the emitter gives up
+        emitter.onTimeout(subscription::dispose);
+        emitter.onCompletion(subscription::dispose);
+        emitter.onError(e -> subscription.dispose());
 
         return emitter;
     }
@@ -93,7 +131,7 @@ public class FormController {
         }
     }
 
-    private ParsingRequest buildParsingRequest(ParseRequest request) throws IOException {
+    private ParsingRequest buildParsingRequest(ParseRequest request, Deadline deadline) throws IOException {
         String schema;
 
         if ("leave".equals(request.getFormType())) {
@@ -116,14 +154,38 @@ public class FormController {
                 )
         );
 
-        return new ParsingRequest(schema, request.getUserInput(), context);
+        return new ParsingRequest(schema, request.getUserInput(), context, deadline);
+    }
+
+    private static Deadline deadlineFor(Long timeoutMs) {
+        if (timeoutMs == null || timeoutMs <= 0) {
+            return Deadline.in(DEFAULT_REQUEST_TIMEOUT);
+        }
+        Duration requested = Duration.ofMillis(timeoutMs);
+        return Deadline.in(requested.compareTo(MAX_REQUEST_TIMEOUT) > 0 ? MAX_REQUEST_TIMEOUT : requested);
+    }
+
+    private static boolean isBusy(ParsingResult result) {
+        return hasErrorType(result, LazyFormInstructor.BUSY_ERROR_TYPE);
+    }
+
+    private static boolean hasErrorType(ParsingResult result, String type) {
+        return result.errors() != null && result.errors().stream()
+                .anyMatch(e -> type.equals(e.type()));
     }
 
     private static String toEventName(StreamingParseEvent evt) {
+        if (evt instanceof StreamingParseEvent.FinalResult fr && isBusy(fr.result())) return "busy";
+        if (evt instanceof StreamingParseEvent.FinalResult fr
+                && hasErrorType(fr.result(), LazyFormInstructor.DEADLINE_ERROR_TYPE)) return "timeout";
         if (evt instanceof StreamingParseEvent.AttemptStarted) return "attemptStarted";
         if (evt instanceof StreamingParseEvent.RawChunk) return "rawChunk";
+        if (evt instanceof StreamingParseEvent.Reasoning) return "reasoning";
         if (evt instanceof StreamingParseEvent.Snapshot) return "snapshot";
         if (evt instanceof StreamingParseEvent.AttemptFailed) return "attemptFailed";
+        if (evt instanceof StreamingParseEvent.TierEscalated) return "tierEscalated";
+        if (evt instanceof StreamingParseEvent.RecordCompleted) return "recordCompleted";
+        if (evt instanceof StreamingParseEvent.RecordsFinished) return "recordsFinished";
         if (evt instanceof StreamingParseEvent.FinalResult) return "finalResult";
         if (evt instanceof StreamingParseEvent.Error) return "error";
         return "event";
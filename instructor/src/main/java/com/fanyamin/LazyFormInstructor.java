@@ -1,79 +1,840 @@
 package com.fanyamin;
 
+import com.fanyamin.instructor.api.Deadline;
+import com.fanyamin.instructor.api.FieldResult;
+import com.fanyamin.instructor.api.OutputProfile;
+import com.fanyamin.instructor.api.ParsingMetadata;
 import com.fanyamin.instructor.api.ParsingRequest;
 import com.fanyamin.instructor.api.ParsingResult;
+import com.fanyamin.instructor.api.RecordsResult;
+import com.fanyamin.instructor.api.TierStats;
+import com.fanyamin.instructor.api.TokenUsage;
 import com.fanyamin.instructor.api.ValidationError;
+import com.fanyamin.instructor.exception.DeadlineExceededException;
+import com.fanyamin.instructor.exception.IncompleteOutputException;
+import com.fanyamin.instructor.exception.LlmBusyException;
+import com.fanyamin.instructor.exception.PromptTooLargeException;
+import com.fanyamin.instructor.json.JsonArrayScanner;
+import com.fanyamin.instructor.json.JsonRepair;
+import com.fanyamin.instructor.llm.ChatCompletion;
+import com.fanyamin.instructor.llm.ChatDelta;
+import com.fanyamin.instructor.llm.ChatMessage;
+import com.fanyamin.instructor.llm.ChatOptions;
 import com.fanyamin.instructor.llm.LlmClient;
+import com.fanyamin.instructor.llm.ModelTier;
 import com.fanyamin.instructor.llm.PromptManager;
+import com.fanyamin.instructor.longinput.InputWindows;
+import com.fanyamin.instructor.longinput.WindowMerger;
+import com.fanyamin.instructor.prefill.PreExtractor;
+import com.fanyamin.instructor.resilience.TransportRetryPolicy;
+import com.fanyamin.instructor.schema.KeyAliases;
+import com.fanyamin.instructor.schema.ResponseBudget;
+import com.fanyamin.instructor.schema.ResponseEnvelopeSchema;
 import com.fanyamin.instructor.schema.SchemaValidator;
+import com.fanyamin.instructor.schema.SubSchema;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fanyamin.instructor.streaming.StreamingParseEvent;
+import com.fanyamin.instructor.template.ExtractionProgram;
+import com.fanyamin.instructor.template.TemplateLearner;
+import com.fanyamin.instructor.temporal.TemporalResolver;
+import com.fanyamin.instructor.tokenizer.TokenCounter;
+import com.fanyamin.instructor.tokenizer.TokenCounters;
+import com.fanyamin.instructor.tokenizer.TokenEncoding;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
-public class LazyFormInstructor {
+public class LazyFormInstructor implements AutoCloseable {
+
+    /**
+     * {@link ValidationError#type()} used when the LLM backend rejected the request because it is at capacity.
+     */
+    public static final String BUSY_ERROR_TYPE = "busy";
+
+    /**
+     * {@link ValidationError#type()} used when the request's deadline passed before a valid result was produced.
+     */
+    public static final String DEADLINE_ERROR_TYPE = "deadline_exceeded";
+
+    /**
+     * {@link ValidationError#type()} used when the input was rejected before any LLM call because it is too large.
+     */
+    public static final String INPUT_TOO_LARGE_ERROR_TYPE = "input_too_large";
+
+    /**
+     * {@link ValidationError#type()} of the escalation reason when a cascade tier answered a required field with
+     * less than {@link Builder#minConfidence(double)}.
+     */
+    public static final String LOW_CONFIDENCE_ERROR_TYPE = "low_confidence";
+
+    /**
+     * Name of the tier formed by the builder's own client, the last one of a cascade.
+     */
+    public static final String DEFAULT_TIER_NAME = "default";
+
+    /**
+     * Context key under which {@link Builder#temporalHints(boolean)} passes the resolved date expressions.
+     */
+    public static final String RESOLVED_DATES_CONTEXT_KEY = "resolved_dates";
+
+    /**
+     * Confidence of fields extracted by a learned template program ({@link Builder#templateInduction}). The
+     * program reproduced the LLM's answers on every sample, but a regex cannot tell when an input only looks
+     * like the template, so it is not reported as certain.
+     */
+    public static final double TEMPLATE_CONFIDENCE = 0.9;
+
+    /**
+     * Default of {@link Builder#maxParallelCalls(int)}.
+     */
+    public static final int DEFAULT_MAX_PARALLEL_CALLS = 4;
+
+    // Upper bound for the background call that asks for an extraction program
+    private static final Duration TEMPLATE_INDUCTION_TIMEOUT = Duration.ofSeconds(60);
+
+    private static final int SNAPSHOT_CHAR_THRESHOLD = 256;
+
+    private static final String RECORDS_KEY = "records";
+
+    // Safety net for a model that keeps answering "more": true
+    private static final int MAX_RECORD_CALLS = 20;
+
+    // A value this close to the winner's confidence makes a long-input field worth reconciling
+    private static final double LONG_INPUT_CONFLICT_MARGIN = 0.15;
+
+    // Results with these errors are final: a bigger model would be just as busy, late or overloaded
+    private static final Set<String> NON_ESCALATING_ERROR_TYPES =
+            Set.of(BUSY_ERROR_TYPE, DEADLINE_ERROR_TYPE, INPUT_TOO_LARGE_ERROR_TYPE);
 
     private final LlmClient llmClient;
+    private final List<Tier> tiers;
+    private final double minConfidence;
     private final PromptManager promptManager;
     private final SchemaValidator schemaValidator;
     private final ObjectMapper objectMapper;
-    private final int maxRetries;
+    private final TransportRetryPolicy transportRetryPolicy;
+    private final Duration minAttemptBudget;
+    private final boolean streamReasoning;
+    private final boolean aliasKeys;
+    private final boolean dynamicMaxTokens;
+    private final int maxInputTokens;
+    private final TokenCounter tokenCounter;
+    private final boolean targetedRetries;
+    private final int candidates;
+    private final List<List<String>> fieldGroups;
+    private final int fieldGroupSize;
+    private final int windowTokens;
+    private final int windowOverlapTokens;
+    private final int maxParallelCalls;
+    private final TemplateLearner templateLearner;
+    private final PreExtractor preExtractor;
+    private final boolean temporalHints;
+    private final AtomicLong repairedResponses = new AtomicLong();
+    private final AtomicLong retriesSavedByRepair = new AtomicLong();
+    private final AtomicLong targetedRetryCount = new AtomicLong();
+    // Template induction calls still running in the background; disposed by close()
+    private final Disposable.Composite backgroundTasks = Disposables.composite();
 
     public LazyFormInstructor(LlmClient llmClient) {
         this(llmClient, 3);
     }
 
+    /**
+     * @param maxRetries number of validation retries (re-asking the LLM after invalid output)
+     */
     public LazyFormInstructor(LlmClient llmClient, int maxRetries) {
-        this.llmClient = llmClient;
-        this.maxRetries = maxRetries;
+        this(builder(llmClient).maxRetries(maxRetries));
+    }
+
+    private LazyFormInstructor(Builder builder) {
+        this.llmClient = builder.llmClient;
+        List<Tier> tiers = new ArrayList<>();
+        for (ModelTier tier : builder.cascade) {
+            tiers.add(new Tier(tier.name(), tier.client(), tier.maxRetries()));
+        }
+        tiers.add(new Tier(DEFAULT_TIER_NAME, builder.llmClient, builder.maxRetries));
+        this.tiers = List.copyOf(tiers);
+        this.minConfidence = builder.minConfidence;
+        this.transportRetryPolicy = builder.transportRetryPolicy;
+        this.minAttemptBudget = builder.minAttemptBudget;
+        this.streamReasoning = builder.streamReasoning;
+        this.aliasKeys = builder.aliasKeys;
+        this.dynamicMaxTokens = builder.dynamicMaxTokens;
+        this.maxInputTokens = builder.maxInputTokens;
+        this.tokenCounter = builder.tokenCounter;
+        this.targetedRetries = builder.targetedRetries;
+        this.candidates = builder.candidates;
+        this.fieldGroups = builder.fieldGroups;
+        this.fieldGroupSize = builder.fieldGroupSize;
+        this.windowTokens = builder.windowTokens;
+        this.windowOverlapTokens = builder.windowOverlapTokens;
+        this.maxParallelCalls = builder.maxParallelCalls;
+        this.templateLearner = builder.templateLearner;
+        this.preExtractor = builder.preExtractor;
+        this.temporalHints = builder.temporalHints;
         this.promptManager = new PromptManager();
         this.schemaValidator = new SchemaValidator();
         this.objectMapper = new ObjectMapper();
     }
 
+    public static Builder builder(LlmClient llmClient) {
+        return new Builder(llmClient);
+    }
+
     public ParsingResult parse(ParsingRequest request) {
-        String prompt = promptManager.generateSystemPrompt(request);
-        String lastResponse = null;
-        List<ValidationError> validationErrors = new ArrayList<>();
+        ParsingResult oversized = checkInputSize(request);
+        if (oversized != null) {
+            return oversized;
+        }
+        ParsingRequest hinted = withTemporalHints(request);
+        if (templateLearner == null) {
+            return parseWithPrefill(hinted);
+        }
+        ParsingResult local = extractWithTemplate(hinted);
+        if (local != null) {
+            return local;
+        }
+        ParsingResult result = parseWithPrefill(hinted);
+        learnTemplate(hinted, result);
+        return result;
+    }
+
+    /**
+     * Fill what {@link Builder#preExtraction(PreExtractor)} can find locally, and ask the LLM only for the rest of
+     * the form (or not at all when the prefill is complete). If the merged form fails validation, the whole form
+     * is asked for, without prefilled values.
+     */
+    private ParsingResult parseWithPrefill(ParsingRequest request) {
+        if (preExtractor == null) {
+            return parseWithModels(request);
+        }
+        PreExtractor.Prefill prefill = preExtractor.extract(request);
+        if (prefill.fields().isEmpty()) {
+            return parseWithModels(request);
+        }
+        ParsingResult prefilled = markOmitted(new ParsingResult(prefill.fields(), List.of()),
+                request.effectiveOutputProfile());
+        if (prefill.complete()) {
+            return validate(request.schema(), prefilled).isEmpty()
+                    ? prefilled.withMetadata(new ParsingMetadata(0, null))
+                    : parseWithModels(request);
+        }
+        ParsingResult rest = parseWithModels(request.withSchema(SubSchema.forFields(request.schema(), prefill.remaining())));
+        if (rest.fields() == null || rest.metadata() == null) {
+            return rest;
+        }
+        ParsingResult merged = withPrefilled(prefilled, rest);
+        if (validate(request.schema(), merged).isEmpty()) {
+            return merged;
+        }
+        ParsingResult whole = parseWithModels(request);
+        ParsingMetadata metadata = whole.metadata();
+        return metadata == null ? whole : whole.withMetadata(new ParsingMetadata(
+                metadata.attempts() + rest.metadata().attempts(), addUsage(rest.metadata().usage(), metadata.usage()),
+                metadata.repaired(), metadata.tier()));
+    }
+
+    /**
+     * {@code rest} with the prefilled fields added in front; its errors and metadata are kept.
+     */
+    private static ParsingResult withPrefilled(ParsingResult prefilled, ParsingResult rest) {
+        Map<String, FieldResult> fields = new LinkedHashMap<>(prefilled.fields());
+        rest.fields().forEach(fields::putIfAbsent);
+        return new ParsingResult(fields, rest.errors(), rest.metadata());
+    }
+
+    private List<ValidationError> validate(String schema, ParsingResult result) {
+        try {
+            return schemaValidator.validate(schema, extractValuesJson(result));
+        } catch (JsonProcessingException e) {
+            return List.of(new ValidationError("root", "Validation error: " + e.getMessage(), "validation_error"));
+        }
+    }
+
+    /**
+     * The LLM path of {@link #parse(ParsingRequest)}: map-reduce for long inputs, otherwise the tiers in order.
+     */
+    private ParsingResult parseWithModels(ParsingRequest request) {
+        KeyAliases aliases = aliasesFor(request);
+        if (windowTokens > 0 && tokenCounter.count(request.userInput()) > windowTokens) {
+            return parseLongInput(request,
+                    InputWindows.split(request.userInput(), tokenCounter, windowTokens, windowOverlapTokens));
+        }
+        List<ChatMessage> baseMessages = promptManager.generateMessages(request, aliases);
+        int attempts = 0;
+        TokenUsage usage = null;
+        for (int index = 0; ; index++) {
+            Tier tier = tiers.get(index);
+            long started = System.nanoTime();
+            ParsingResult result = parseWith(tier, request, aliases, baseMessages);
+            List<ValidationError> reasons = index < tiers.size() - 1 ? escalationReasons(request, result) : List.of();
+            tier.record(reasons.isEmpty() && result.fields() != null, System.nanoTime() - started);
 
-        for (int i = 0; i <= maxRetries; i++) {
-            if (i > 0) {
-                // Retry logic: append error context to prompt
-                prompt = generateRetryPrompt(prompt, lastResponse, validationErrors);
+            ParsingMetadata metadata = result.metadata();
+            if (metadata != null) {
+                attempts += metadata.attempts();
+                usage = addUsage(usage, metadata.usage());
             }
+            if (reasons.isEmpty()) {
+                return metadata == null ? result
+                        : result.withMetadata(new ParsingMetadata(attempts, usage, metadata.repaired(), tierName(tier)));
+            }
+            // The next tier starts over from the original prompt; the rejected answer is not replayed
+        }
+    }
 
-            String jsonResponse = llmClient.chat(prompt);
-            lastResponse = jsonResponse;
+    /**
+     * Extract {@code request} with the program learned for its input template, validated like an LLM answer.
+     *
+     * @return null if there is no program for the template, the input does not fit it, or the values fail
+     *         validation (the program is then dropped and the template learned again)
+     */
+    private ParsingResult extractWithTemplate(ParsingRequest request) {
+        Map<String, Object> values = templateLearner.extract(request.schema(), request.userInput());
+        if (values == null) {
+            return null;
+        }
+        Map<String, FieldResult> fields = new LinkedHashMap<>();
+        values.forEach((name, value) -> fields.put(name, new FieldResult(value, TEMPLATE_CONFIDENCE, null, List.of())));
+        ParsingResult result = new ParsingResult(fields, List.of());
+        try {
+            if (schemaValidator.validate(request.schema(), extractValuesJson(result)).isEmpty()) {
+                return markOmitted(result, request.effectiveOutputProfile()).withMetadata(new ParsingMetadata(0, null));
+            }
+        } catch (JsonProcessingException e) {
+            // Treated like a failed validation
+        }
+        templateLearner.invalidate(request.schema(), request.userInput());
+        return null;
+    }
 
-            try {
-                // 1. Parse LLM response to ParsingResult object
-                // The LLM is instructed to return { fields: ..., errors: ... }
-                ParsingResult result = objectMapper.readValue(jsonResponse, ParsingResult.class);
+    /**
+     * Record an accepted LLM answer for template induction; when it confirms a recurring template, ask the
+     * default client for an extraction program in the background, so the caller never waits for it.
+     */
+    private void learnTemplate(ParsingRequest request, ParsingResult result) {
+        if (result.fields() == null || result.metadata() == null || backgroundTasks.isDisposed()) {
+            return;
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        result.fields().forEach((name, field) -> {
+            if (field.value() != null) {
+                values.put(name, field.value());
+            }
+        });
+        List<TemplateLearner.Sample> samples = templateLearner.observe(request.schema(), request.userInput(), values);
+        if (samples == null) {
+            return;
+        }
+        List<ChatMessage> messages = promptManager.generateTemplateInductionMessages(request.schema(),
+                samples.stream().map(TemplateLearner.Sample::input).toList(),
+                samples.stream().map(TemplateLearner.Sample::values).toList());
+        ChatOptions options = ChatOptions.defaults().withTimeout(TEMPLATE_INDUCTION_TIMEOUT);
+        Disposable.Swap task = Disposables.swap();
+        backgroundTasks.add(task);
+        task.update(Mono.fromRunnable(() -> {
+                    ExtractionProgram program = null;
+                    try {
+                        String response = transportRetryPolicy.execute(
+                                () -> llmClient.complete(messages, options), null).content();
+                        program = ExtractionProgram.parse(JsonRepair.repair(response));
+                    } catch (RuntimeException e) {
+                        // Induction is best effort; the template is tried again after more samples
+                    }
+                    templateLearner.learn(request.schema(), request.userInput(), program);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doFinally(signal -> backgroundTasks.remove(task))
+                .subscribe());
+    }
 
-                // 2. Extract the "value" part to validate against strict JSON Schema
-                // We need to construct a simplified JSON object of just values for validation
-                String valueOnlyJson = extractValuesJson(result);
+    /**
+     * Cancel template induction calls still running in the background; no new ones are started afterwards.
+     * Parsing itself keeps working.
+     */
+    @Override
+    public void close() {
+        backgroundTasks.dispose();
+    }
 
-                // 3. Validate against the provided JSON Schema
-                List<ValidationError> schemaErrors = schemaValidator.validate(request.schema(), valueOnlyJson);
+    /**
+     * The validation loop of one tier: up to {@code tier.maxRetries + 1} attempts with its client.
+     */
+    private ParsingResult parseWith(Tier tier, ParsingRequest request, KeyAliases aliases,
+                                    List<ChatMessage> baseMessages) {
+        List<ChatMessage> messages = baseMessages;
+        String lastResponse = null;
+        ParsingResult lastResult = null;
+        List<ValidationError> validationErrors = new ArrayList<>();
+        Deadline deadline = request.deadline();
+        TokenUsage usage = null;
+        List<List<String>> groups = fieldGroupsFor(request);
 
-                if (schemaErrors.isEmpty()) {
-                    return result;
+        for (int i = 0; i <= tier.maxRetries; i++) {
+            if (!hasTimeForAttempt(deadline)) {
+                return deadlineResult(validationErrors, "Deadline reached before attempt " + (i + 1));
+            }
+            FieldRepair repair = i > 0 ? fieldRepairFor(request, lastResult, validationErrors) : null;
+            ParsingRequest attemptRequest = request;
+            KeyAliases attemptAliases = aliases;
+            if (repair != null) {
+                // Only some fields failed: ask for just those, under a schema that contains nothing else
+                attemptRequest = repair.request();
+                attemptAliases = aliasesFor(attemptRequest);
+                messages = retryMessages(promptManager.generateMessages(attemptRequest, attemptAliases),
+                        valuesOnlyAnswer(lastResult.fields(), repair.fields(), attemptAliases), validationErrors);
+                targetedRetryCount.incrementAndGet();
+            } else if (i > 0) {
+                // Retry logic: show the model its last answer and what was wrong with it
+                messages = retryMessages(baseMessages, lastResponse, validationErrors);
+            }
+
+            final List<ChatMessage> attemptMessages = messages;
+            final ParsingRequest optionsRequest = attemptRequest;
+            final KeyAliases readAliases = attemptAliases;
+            final FieldRepair attemptRepair = repair;
+            final ParsingResult base = lastResult;
+            Function<ChatCompletion, Evaluation> evaluator = completion -> evaluate(
+                    completion, request.schema(), readAliases, attemptRepair, base, aliases);
+            Evaluation evaluation;
+            try {
+                if (i == 0 && groups.size() > 1) {
+                    evaluation = extractGroups(tier.client, request, groups, aliases);
                 } else {
-                    validationErrors = schemaErrors;
+                    // Options are rebuilt per transport try so each one only gets the time that is left
+                    evaluation = transportRetryPolicy.execute(() -> candidates > 1
+                            ? bestCandidate(tier.client, attemptMessages, optionsFor(optionsRequest), evaluator)
+                            : evaluator.apply(tier.client.complete(attemptMessages, optionsFor(optionsRequest))),
+                            deadline);
                 }
+            } catch (LlmBusyException e) {
+                // Backend saturated: fail fast instead of queueing more retries behind it
+                return busyResult(e);
+            } catch (DeadlineExceededException e) {
+                return deadlineResult(validationErrors, e.getMessage());
+            } catch (PromptTooLargeException e) {
+                return inputTooLargeResult(e.getMessage());
+            } catch (IncompleteOutputException e) {
+                // Continuations could not finish the answer; local repair may still close what is there
+                evaluation = evaluator.apply(new ChatCompletion(e.getPartialResponse(), "length", null));
+            }
+            usage = addUsage(usage, evaluation.usage());
 
-            } catch (JsonProcessingException e) {
-                validationErrors = List.of(new ValidationError("root", "Invalid JSON format: " + e.getMessage(), "json_error"));
+            if (evaluation.valid()) {
+                if (evaluation.repaired()) {
+                    retriesSavedByRepair.incrementAndGet();
+                }
+                return markOmitted(evaluation.result(), request.effectiveOutputProfile())
+                        .withMetadata(new ParsingMetadata(i + 1, usage, evaluation.repaired()));
             }
+            if (evaluation.result() == null && repair != null) {
+                // Keep the document and its field errors, so the next attempt asks for the same fields again
+                continue;
+            }
+            lastResponse = evaluation.response();
+            lastResult = evaluation.result();
+            validationErrors = evaluation.errors();
         }
 
         // If retries exhausted, return the best effort (or failure) with errors
-        return new ParsingResult(null, validationErrors);
+        return new ParsingResult(null, validationErrors, new ParsingMetadata(tier.maxRetries + 1, usage));
+    }
+
+    /**
+     * The property groups to extract separately, or an empty list to ask for the whole form at once.
+     */
+    private List<List<String>> fieldGroupsFor(ParsingRequest request) {
+        if (fieldGroups.isEmpty() && fieldGroupSize <= 0) {
+            return List.of();
+        }
+        try {
+            return SubSchema.partition(request.schema(), fieldGroups, fieldGroupSize);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * First attempt for a large form: every group of properties is asked for concurrently, under a schema with
+     * only those properties, and the answers are merged and validated against the full schema. The wait is that
+     * of the largest group instead of the whole form. A group whose answer cannot be read leaves a
+     * {@code json_error} on each of its fields, so the targeted retry asks for just that group again.
+     */
+    private Evaluation extractGroups(LlmClient client, ParsingRequest request, List<List<String>> groups,
+                                     KeyAliases aliases) {
+        List<ParsingRequest> groupRequests = groups.stream()
+                .map(group -> request.withSchema(SubSchema.forFields(request.schema(), group)))
+                .toList();
+        List<SingleAnswer> answers = answerAll(client, groupRequests);
+
+        Map<String, FieldResult> fields = new LinkedHashMap<>();
+        List<ValidationError> modelErrors = new ArrayList<>();
+        List<ValidationError> errors = new ArrayList<>();
+        boolean repaired = false;
+        TokenUsage usage = null;
+        for (int i = 0; i < groups.size(); i++) {
+            List<String> group = groups.get(i);
+            SingleAnswer answer = answers.get(i);
+            usage = addUsage(usage, answer.usage());
+            if (answer.parsed() == null) {
+                for (String name : group) {
+                    errors.add(new ValidationError("$." + name, "Invalid JSON format: " + answer.readError(), "json_error"));
+                }
+                continue;
+            }
+            repaired |= answer.parsed().repaired();
+            ParsingResult result = answer.parsed().result();
+            if (result.fields() != null) {
+                for (String name : group) {
+                    FieldResult field = result.fields().get(name);
+                    if (field != null) {
+                        fields.put(name, field);
+                    }
+                }
+            }
+            if (result.errors() != null) {
+                modelErrors.addAll(result.errors());
+            }
+        }
+
+        ParsingResult merged = new ParsingResult(fields, modelErrors);
+        try {
+            errors.addAll(schemaValidator.validate(request.schema(), extractValuesJson(merged)));
+        } catch (JsonProcessingException e) {
+            errors.add(new ValidationError("root", "Validation error: " + e.getMessage(), "validation_error"));
+        }
+        // A full retry replays the merged document as if it had been one answer
+        return new Evaluation(valuesOnlyAnswer(fields, fields.keySet(), aliases), merged, repaired, errors, usage);
+    }
+
+    /**
+     * {@link #answerOnce(LlmClient, ParsingRequest)} for all {@code requests}, at most
+     * {@link Builder#maxParallelCalls(int)} at a time, answers in the same order. Busy, deadline and prompt-size
+     * failures of any call are thrown.
+     */
+    private List<SingleAnswer> answerAll(LlmClient client, List<ParsingRequest> requests) {
+        return Flux.fromIterable(requests)
+                .flatMapSequential(one -> Mono.fromCallable(() -> answerOnce(client, one))
+                        .subscribeOn(Schedulers.boundedElastic()), Math.min(requests.size(), maxParallelCalls))
+                .collectList()
+                .block();
+    }
+
+    /**
+     * One call for {@code request}, read but not validated and never retried (except for transport errors).
+     */
+    private SingleAnswer answerOnce(LlmClient client, ParsingRequest request) {
+        KeyAliases aliases = aliasesFor(request);
+        List<ChatMessage> messages = promptManager.generateMessages(request, aliases);
+        ChatCompletion completion;
+        try {
+            completion = transportRetryPolicy.execute(
+                    () -> client.complete(messages, optionsFor(request)), request.deadline());
+        } catch (IncompleteOutputException e) {
+            completion = new ChatCompletion(e.getPartialResponse(), "length", null);
+        }
+        try {
+            return new SingleAnswer(readResponse(completion.content(), aliases), null, completion.usage());
+        } catch (JsonProcessingException e) {
+            return new SingleAnswer(null, e.getMessage(), completion.usage());
+        }
+    }
+
+    /**
+     * An answer of {@link #answerOnce(LlmClient, ParsingRequest)}; {@code parsed} is null if it could not be read.
+     */
+    private record SingleAnswer(ParsedResponse parsed, String readError, TokenUsage usage) {}
+
+    /**
+     * Map-reduce for an input longer than {@link Builder#longInput(int, int)} allows: every window is extracted
+     * concurrently with the same schema, the fields are merged by confidence and recency (see
+     * {@link WindowMerger}), and only fields on which windows disagree get one more call with the excerpts that
+     * produced the competing values. The merged document is then validated against the full schema once.
+     */
+    private ParsingResult parseLongInput(ParsingRequest request, List<String> windows) {
+        int attempts = windows.size();
+        TokenUsage usage = null;
+        boolean repaired = false;
+        Map<String, FieldResult> fields;
+        try {
+            List<SingleAnswer> answers = answerAll(llmClient,
+                    windows.stream().map(request::withUserInput).toList());
+            List<Map<String, FieldResult>> found = new ArrayList<>();
+            for (SingleAnswer answer : answers) {
+                usage = addUsage(usage, answer.usage());
+                ParsingResult result = answer.parsed() != null ? answer.parsed().result() : null;
+                // Errors a window reports are mostly "not mentioned here"; only its fields are kept
+                found.add(result != null && result.fields() != null ? result.fields() : Map.of());
+                repaired |= answer.parsed() != null && answer.parsed().repaired();
+            }
+            WindowMerger.Merged merged = WindowMerger.merge(found, LONG_INPUT_CONFLICT_MARGIN);
+            fields = new LinkedHashMap<>(merged.fields());
+
+            if (!merged.conflicts().isEmpty()) {
+                SingleAnswer answer = reconcile(request, windows, merged.conflicts());
+                attempts++;
+                usage = addUsage(usage, answer.usage());
+                if (answer.parsed() != null && answer.parsed().result().fields() != null) {
+                    Map<String, FieldResult> settled = answer.parsed().result().fields();
+                    for (String name : merged.conflicts().keySet()) {
+                        FieldResult field = settled.get(name);
+                        if (field != null && field.value() != null) {
+                            List<Object> alternatives = new ArrayList<>();
+                            for (WindowMerger.Candidate candidate : merged.conflicts().get(name)) {
+                                Object value = candidate.field().value();
+                                if (!value.equals(field.value()) && !alternatives.contains(value)) {
+                                    alternatives.add(value);
+                                }
+                            }
+                            fields.put(name, new FieldResult(
+                                    field.value(), field.confidence(), field.reasoning(), alternatives));
+                        }
+                    }
+                }
+                // An unreadable reconciliation keeps the merged choice
+            }
+        } catch (LlmBusyException e) {
+            return busyResult(e);
+        } catch (DeadlineExceededException e) {
+            return deadlineResult(List.of(), e.getMessage());
+        } catch (PromptTooLargeException e) {
+            return inputTooLargeResult(e.getMessage());
+        }
+
+        ParsingResult result = new ParsingResult(fields, List.of());
+        List<ValidationError> errors;
+        try {
+            errors = schemaValidator.validate(request.schema(), extractValuesJson(result));
+        } catch (JsonProcessingException e) {
+            errors = List.of(new ValidationError("root", "Validation error: " + e.getMessage(), "validation_error"));
+        }
+        if (!errors.isEmpty()) {
+            return new ParsingResult(null, errors, new ParsingMetadata(attempts, usage));
+        }
+        return markOmitted(result, request.effectiveOutputProfile())
+                .withMetadata(new ParsingMetadata(attempts, usage, repaired));
+    }
+
+    /**
+     * The reconciliation call for the conflicting fields of a long input, on the cheapest tier: a schema with
+     * just those fields and, as input, the windows their values came from.
+     */
+    private SingleAnswer reconcile(ParsingRequest request, List<String> windows,
+                                   Map<String, List<WindowMerger.Candidate>> conflicts) {
+        Set<Integer> sources = new TreeSet<>();
+        Map<String, List<Object>> values = new LinkedHashMap<>();
+        conflicts.forEach((name, candidates) -> {
+            List<Object> found = new ArrayList<>();
+            for (WindowMerger.Candidate candidate : candidates) {
+                sources.add(candidate.window());
+                found.add(candidate.field().value());
+            }
+            values.put(name, found);
+        });
+        List<String> excerpts = sources.stream().map(windows::get).toList();
+        ParsingRequest reconcileRequest = request
+                .withSchema(SubSchema.forFields(request.schema(), conflicts.keySet()))
+                .withUserInput(promptManager.generateReconcileInput(excerpts, values));
+        return answerOnce(tiers.get(0).client, reconcileRequest);
+    }
+
+    /**
+     * Why a tier's result is passed on to the next tier; empty to accept it. That is its validation errors if it
+     * has no valid answer, or one {@link #LOW_CONFIDENCE_ERROR_TYPE} error per required field answered with less
+     * than {@link Builder#minConfidence(double)} (only when the output profile includes confidence).
+     */
+    private List<ValidationError> escalationReasons(ParsingRequest request, ParsingResult result) {
+        List<ValidationError> errors = result.errors() != null ? result.errors() : List.of();
+        if (result.fields() == null) {
+            if (errors.stream().anyMatch(error -> NON_ESCALATING_ERROR_TYPES.contains(error.type()))) {
+                return List.of();
+            }
+            return errors.isEmpty()
+                    ? List.of(new ValidationError("root", "No valid answer", "validation_error")) : errors;
+        }
+        if (!request.effectiveOutputProfile().includes(FieldResult.CONFIDENCE)) {
+            return List.of();
+        }
+        List<String> required;
+        try {
+            required = SubSchema.requiredNames(request.schema());
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+        List<ValidationError> reasons = new ArrayList<>();
+        for (String name : required) {
+            FieldResult field = result.fields().get(name);
+            if (field != null && field.confidence() < minConfidence) {
+                reasons.add(new ValidationError("$." + name, String.format(Locale.ROOT,
+                        "Confidence %.2f is below %.2f", field.confidence(), minConfidence), LOW_CONFIDENCE_ERROR_TYPE));
+            }
+        }
+        return reasons;
+    }
+
+    /**
+     * Tier name for {@link ParsingMetadata#tier()}; null without a cascade.
+     */
+    private String tierName(Tier tier) {
+        return tiers.size() > 1 ? tier.name : null;
+    }
+
+    /**
+     * One answer, read and validated against the whole form.
+     *
+     * @param completion  the LLM answer
+     * @param readAliases short keys the answer was asked to use (null = real names)
+     * @param repair      for a targeted retry: the fields the answer is for, merged into {@code base}
+     * @param aliases     short keys of the full form, used for the merged answer a later full retry replays
+     */
+    private Evaluation evaluate(ChatCompletion completion, String schema, KeyAliases readAliases,
+                                FieldRepair repair, ParsingResult base, KeyAliases aliases) {
+        String response = completion.content();
+        try {
+            // 1. Parse LLM response to ParsingResult object
+            // The LLM is instructed to return { fields: ..., errors: ... }
+            ParsedResponse parsed = readResponse(response, readAliases);
+            ParsingResult result = parsed.result();
+            if (repair != null) {
+                result = mergeRepair(base, result, repair.fields());
+                // A later full retry shows the merged document, not just the repaired fields
+                response = valuesOnlyAnswer(result.fields(), result.fields().keySet(), aliases);
+            }
+
+            // 2. Extract the "value" part to validate against strict JSON Schema
+            // We need to construct a simplified JSON object of just values for validation
+            String valueOnlyJson = extractValuesJson(result);
+
+            // 3. Validate against the provided JSON Schema
+            List<ValidationError> schemaErrors = schemaValidator.validate(schema, valueOnlyJson);
+            return new Evaluation(response, result, parsed.repaired(), schemaErrors, completion.usage());
+        } catch (JsonProcessingException e) {
+            return new Evaluation(response, null, false,
+                    List.of(new ValidationError("root", "Invalid JSON format: " + e.getMessage(), "json_error")),
+                    completion.usage());
+        }
+    }
+
+    /**
+     * Request {@link Builder#candidates(int)} answers at once and evaluate them as they arrive: the first valid
+     * one wins and the calls still running are cancelled. If none is valid, the best one is returned (see
+     * {@link #best(List)}). Usage covers every candidate received.
+     */
+    private Evaluation bestCandidate(LlmClient client, List<ChatMessage> messages, ChatOptions options,
+                                     Function<ChatCompletion, Evaluation> evaluator) {
+        List<Evaluation> evaluated = client.completeCandidates(messages, options, candidates)
+                .map(evaluator)
+                .takeUntil(Evaluation::valid)
+                .collectList()
+                .block();
+        TokenUsage usage = null;
+        for (Evaluation evaluation : evaluated) {
+            usage = addUsage(usage, evaluation.usage());
+        }
+        return best(evaluated).withUsage(usage);
+    }
+
+    /**
+     * The first valid candidate; otherwise the readable one with the highest mean confidence, then the fewest
+     * errors. Its errors drive the next retry.
+     */
+    static Evaluation best(List<Evaluation> candidates) {
+        for (Evaluation candidate : candidates) {
+            if (candidate.valid()) {
+                return candidate;
+            }
+        }
+        return Collections.max(candidates, Comparator
+                .comparing((Evaluation candidate) -> candidate.result() != null)
+                .thenComparingDouble(Evaluation::meanConfidence)
+                .thenComparingInt(candidate -> -candidate.errors().size()));
+    }
+
+    /**
+     * Fetch confidence, reasoning and alternatives for {@code fieldNames} after a parse with a lean
+     * {@link OutputProfile}, e.g. when the user opens the details of a field in the UI.
+     *
+     * <p>The follow-up continues the original conversation (same leading messages, then the previous answer), so
+     * providers can serve most of the prompt from cache. The conversation is rebuilt the way {@code parse} started
+     * it: with the same temporal hints and, if pre-extraction filled some fields, for the remaining fields only;
+     * prefilled fields keep their details. Values are never changed: only the details of the already-validated
+     * fields are filled in. Failures are reported as extra errors on the returned result.</p>
+     *
+     * @param request    the request that produced {@code result}
+     * @param result     a successful result from {@link #parse(ParsingRequest)}
+     * @param fieldNames fields to explain; names not present in {@code result} are ignored
+     * @return a copy of {@code result} with the requested fields completed
+     */
+    public ParsingResult explainFields(ParsingRequest request, ParsingResult result, Collection<String> fieldNames) {
+        if (result.fields() == null || fieldNames.isEmpty()) {
+            return result;
+        }
+        ParsingRequest asked = withTemporalHints(request);
+        Collection<String> askedFields = result.fields().keySet();
+        if (preExtractor != null) {
+            PreExtractor.Prefill prefill = preExtractor.extract(asked);
+            if (!prefill.fields().isEmpty() && !prefill.complete()) {
+                asked = asked.withSchema(SubSchema.forFields(asked.schema(), prefill.remaining()));
+                askedFields = prefill.remaining().stream().filter(result.fields()::containsKey).toList();
+            }
+        }
+        List<String> toExplain = fieldNames.stream().filter(askedFields::contains).toList();
+        if (toExplain.isEmpty()) {
+            return result;
+        }
+        KeyAliases aliases = aliasesFor(asked);
+        List<ChatMessage> messages = new ArrayList<>(promptManager.generateMessages(asked, aliases));
+        messages.add(ChatMessage.assistant(valuesOnlyAnswer(result.fields(), askedFields, aliases)));
+        messages.add(ChatMessage.user(promptManager.generateExplainPrompt(toExplain)));
+
+        Deadline deadline = request.deadline();
+        ParsingResult explained;
+        try {
+            String response = transportRetryPolicy.execute(
+                    () -> llmClient.complete(messages, optionsFor(deadline)), deadline).content();
+            explained = readResponse(response, aliases).result();
+        } catch (LlmBusyException e) {
+            return withExtraError(result, new ValidationError("root", e.getMessage(), BUSY_ERROR_TYPE));
+        } catch (DeadlineExceededException e) {
+            return withExtraError(result, new ValidationError("root", e.getMessage(), DEADLINE_ERROR_TYPE));
+        } catch (JsonProcessingException e) {
+            return withExtraError(result, new ValidationError("root", "Invalid JSON format: " + e.getMessage(), "json_error"));
+        }
+
+        Map<String, FieldResult> fields = new LinkedHashMap<>(result.fields());
+        if (explained.fields() != null) {
+            for (String name : toExplain) {
+                FieldResult original = fields.get(name);
+                FieldResult details = explained.fields().get(name);
+                if (original != null && details != null) {
+                    fields.put(name, new FieldResult(
+                            original.value(), details.confidence(), details.reasoning(), details.alternatives()));
+                }
+            }
+        }
+        return new ParsingResult(fields, result.errors(), result.metadata());
     }
 
     /**
@@ -81,68 +842,174 @@ public class LazyFormInstructor {
      *
      * <p>Emits:
      * <ul>
-     *   <li>RawChunk events as LLM text arrives</li>
+     *   <li>RawChunk events as LLM text arrives (reasoning and code fences already removed)</li>
+     *   <li>Reasoning events with the model's reasoning, if enabled via {@link Builder#streamReasoning(boolean)}</li>
      *   <li>Snapshot events when the buffered JSON becomes parseable as {@link ParsingResult}</li>
      *   <li>AttemptFailed events when schema validation fails for an attempt</li>
+     *   <li>TierEscalated events when a cascade tier's answer is rejected and the next tier starts</li>
      *   <li>FinalResult event when schema validation passes (or retries are exhausted)</li>
      * </ul>
      *
      * <p>Schema validation is performed only on the final assembled JSON for each attempt.</p>
      */
     public Flux<StreamingParseEvent> parseStreaming(ParsingRequest request) {
-        String basePrompt = promptManager.generateSystemPrompt(request);
-        return Flux.defer(() -> attemptStreaming(request, 1, basePrompt, null, null));
+        ParsingResult oversized = checkInputSize(request);
+        if (oversized != null) {
+            return Flux.just(new StreamingParseEvent.FinalResult(oversized, oversized.errors(), 0));
+        }
+        ParsingRequest hinted = withTemporalHints(request);
+        List<ChatMessage> baseMessages = promptManager.generateMessages(hinted, aliasesFor(hinted));
+        if (preExtractor != null) {
+            PreExtractor.Prefill prefill = preExtractor.extract(hinted);
+            if (!prefill.fields().isEmpty()) {
+                return streamWithPrefill(hinted, prefill, baseMessages);
+            }
+        }
+        return Flux.defer(() -> streamTier(hinted, baseMessages, 0, 1));
+    }
+
+    /**
+     * Streaming counterpart of {@link #parseWithPrefill(ParsingRequest)}: the prefilled fields come first as a
+     * Snapshot of attempt 0 and are part of every later snapshot and of the final result. If the merged form fails
+     * validation, an AttemptFailed is followed by the whole form's attempts.
+     */
+    private Flux<StreamingParseEvent> streamWithPrefill(ParsingRequest request, PreExtractor.Prefill prefill,
+                                                        List<ChatMessage> baseMessages) {
+        ParsingResult prefilled = markOmitted(new ParsingResult(prefill.fields(), List.of()),
+                request.effectiveOutputProfile());
+        if (prefill.complete()) {
+            return validate(request.schema(), prefilled).isEmpty()
+                    ? Flux.just(new StreamingParseEvent.FinalResult(
+                            prefilled.withMetadata(new ParsingMetadata(0, null)), List.of(), 0))
+                    : Flux.defer(() -> streamTier(request, baseMessages, 0, 1));
+        }
+        ParsingRequest rest = request.withSchema(SubSchema.forFields(request.schema(), prefill.remaining()));
+        List<ChatMessage> restMessages = promptManager.generateMessages(rest, aliasesFor(rest));
+        return Flux.concat(
+                Flux.just(new StreamingParseEvent.Snapshot(prefilled, 0)),
+                Flux.defer(() -> streamTier(rest, restMessages, 0, 1)).concatMap(event -> {
+                    if (event instanceof StreamingParseEvent.Snapshot snapshot && snapshot.partial().fields() != null) {
+                        return Flux.just(new StreamingParseEvent.Snapshot(
+                                withPrefilled(prefilled, snapshot.partial()), snapshot.attempt()));
+                    }
+                    if (!(event instanceof StreamingParseEvent.FinalResult finalResult)
+                            || finalResult.result().fields() == null) {
+                        return Flux.just(event);
+                    }
+                    ParsingResult merged = withPrefilled(prefilled, finalResult.result());
+                    List<ValidationError> errors = validate(request.schema(), merged);
+                    if (errors.isEmpty()) {
+                        return Flux.just(new StreamingParseEvent.FinalResult(
+                                merged, finalResult.schemaErrors(), finalResult.attempt()));
+                    }
+                    return Flux.concat(
+                            Flux.just(new StreamingParseEvent.AttemptFailed(errors, finalResult.attempt())),
+                            Flux.defer(() -> streamTier(request, baseMessages, 0, finalResult.attempt() + 1)));
+                }));
+    }
+
+    /**
+     * The attempts of tier {@code index}; if its final result is rejected (see
+     * {@link #escalationReasons(ParsingRequest, ParsingResult)}), a TierEscalated event and then the next tier's
+     * attempts, numbered on from the last one.
+     */
+    private Flux<StreamingParseEvent> streamTier(ParsingRequest request, List<ChatMessage> baseMessages,
+                                                 int index, int firstAttempt) {
+        Tier tier = tiers.get(index);
+        boolean last = index == tiers.size() - 1;
+        long started = System.nanoTime();
+        return attemptStreaming(request, tier, firstAttempt, firstAttempt + tier.maxRetries, baseMessages, null, null)
+                .concatMap(event -> {
+                    if (event instanceof StreamingParseEvent.Error) {
+                        tier.record(false, System.nanoTime() - started);
+                        return Flux.just(event);
+                    }
+                    if (!(event instanceof StreamingParseEvent.FinalResult finalResult)) {
+                        return Flux.just(event);
+                    }
+                    ParsingResult result = finalResult.result();
+                    List<ValidationError> reasons = last ? List.of() : escalationReasons(request, result);
+                    tier.record(reasons.isEmpty() && result.fields() != null, System.nanoTime() - started);
+                    if (reasons.isEmpty()) {
+                        if (result.metadata() == null || tierName(tier) == null) {
+                            return Flux.just(event);
+                        }
+                        return Flux.just(new StreamingParseEvent.FinalResult(
+                                result.withMetadata(result.metadata().withTier(tier.name)),
+                                finalResult.schemaErrors(), finalResult.attempt()));
+                    }
+                    return Flux.concat(
+                            Flux.just(new StreamingParseEvent.TierEscalated(
+                                    tier.name, tiers.get(index + 1).name, reasons, finalResult.attempt())),
+                            streamTier(request, baseMessages, index + 1, finalResult.attempt() + 1));
+                });
     }
 
+    /**
+     * @param lastAttempt number of the tier's final attempt; later attempts end in an exhausted FinalResult
+     */
     private Flux<StreamingParseEvent> attemptStreaming(
             ParsingRequest originalRequest,
+            Tier tier,
             int attempt,
-            String prompt,
+            int lastAttempt,
+            List<ChatMessage> baseMessages,
             String lastResponse,
             List<ValidationError> lastSchemaErrors
     ) {
-        if (attempt > (maxRetries + 1)) {
+        if (attempt > lastAttempt) {
             // Exhausted: return best-effort final result with last known schema errors.
             List<ValidationError> errs = lastSchemaErrors != null ? lastSchemaErrors : List.of();
             return Flux.just(new StreamingParseEvent.FinalResult(new ParsingResult(null, errs), errs, attempt - 1));
         }
+        Deadline deadline = originalRequest.deadline();
+        if (!hasTimeForAttempt(deadline)) {
+            ParsingResult result = deadlineResult(lastSchemaErrors, "Deadline reached before attempt " + attempt);
+            return Flux.just(new StreamingParseEvent.FinalResult(result, result.errors(), attempt - 1));
+        }
 
-        String effectivePrompt = prompt;
+        List<ChatMessage> messages = baseMessages;
         if (attempt > 1 && lastSchemaErrors != null) {
-            // Keep behavior aligned with parse(): append error context to prompt.
-            effectivePrompt = generateRetryPrompt(prompt, lastResponse, lastSchemaErrors);
+            // Keep behavior aligned with parse(): continue the conversation with the last failure only.
+            messages = retryMessages(baseMessages, lastResponse, lastSchemaErrors);
         }
 
         final StringBuilder buffer = new StringBuilder();
         final AtomicInteger lastSnapshotAtLen = new AtomicInteger(0);
-        final int snapshotCharThreshold = 256;
 
         Flux<StreamingParseEvent> started = Flux.just(new StreamingParseEvent.AttemptStarted(attempt));
 
-        Flux<StreamingParseEvent> stream = llmClient.streamChat(effectivePrompt)
-                .flatMap(chunk -> {
+        final List<ChatMessage> attemptMessages = messages;
+        final KeyAliases aliases = aliasesFor(originalRequest);
+        if (candidates > 1) {
+            return Flux.concat(started, streamCandidates(originalRequest, tier, attempt, lastAttempt,
+                    baseMessages, attemptMessages, aliases, lastSchemaErrors));
+        }
+        Flux<StreamingParseEvent> stream = transportRetryPolicy.executeStream(
+                        () -> tier.client.streamChatDeltas(attemptMessages, optionsFor(originalRequest)), deadline)
+                .flatMap(delta -> {
+                    if (!delta.isContent()) {
+                        return streamReasoning
+                                ? Flux.just(new StreamingParseEvent.Reasoning(delta.text(), attempt))
+                                : Flux.empty();
+                    }
+                    String chunk = delta.text();
                     buffer.append(chunk);
                     List<StreamingParseEvent> out = new ArrayList<>(2);
                     out.add(new StreamingParseEvent.RawChunk(chunk, attempt));
-
-                    // Best-effort snapshot parsing (not schema validated)
-                    if (buffer.length() - lastSnapshotAtLen.get() >= snapshotCharThreshold) {
-                        try {
-                            ParsingResult partial = objectMapper.readValue(buffer.toString(), ParsingResult.class);
-                            out.add(new StreamingParseEvent.Snapshot(partial, attempt));
-                            lastSnapshotAtLen.set(buffer.length());
-                        } catch (Exception ignored) {
-                            // Expected for partial JSON; no snapshot emitted.
-                        }
-                    }
-
+                    addSnapshotIfDue(out, buffer, lastSnapshotAtLen, aliases, attempt);
                     return Flux.fromIterable(out);
                 })
+                // Continuations could not finish the answer; the final parse below still tries to repair it
+                .onErrorResume(IncompleteOutputException.class, e -> Flux.empty())
                 .concatWith(Flux.defer(() -> {
                     // Attempt completion: parse full JSON and validate schema once.
                     ParsingResult parsed;
+                    boolean repaired;
                     try {
-                        parsed = objectMapper.readValue(buffer.toString(), ParsingResult.class);
+                        ParsedResponse response = readResponse(buffer.toString(), aliases);
+                        parsed = response.result();
+                        repaired = response.repaired();
                     } catch (Exception e) {
                         List<ValidationError> jsonErr = List.of(new ValidationError(
                                 "root",
@@ -151,7 +1018,7 @@ public class LazyFormInstructor {
                         ));
                         return Flux.concat(
                                 Flux.just(new StreamingParseEvent.AttemptFailed(jsonErr, attempt)),
-                                attemptStreaming(originalRequest, attempt + 1, prompt, buffer.toString(), jsonErr)
+                                attemptStreaming(originalRequest, tier, attempt + 1, lastAttempt, baseMessages, buffer.toString(), jsonErr)
                         );
                     }
 
@@ -167,33 +1034,680 @@ public class LazyFormInstructor {
                     }
 
                     if (schemaErrors == null || schemaErrors.isEmpty()) {
-                        return Flux.concat(finalSnapshot, Flux.just(new StreamingParseEvent.FinalResult(parsed, List.of(), attempt)));
+                        if (repaired) {
+                            retriesSavedByRepair.incrementAndGet();
+                        }
+                        ParsingResult result = markOmitted(parsed, originalRequest.effectiveOutputProfile())
+                                .withMetadata(new ParsingMetadata(attempt, null, repaired));
+                        return Flux.concat(finalSnapshot, Flux.just(new StreamingParseEvent.FinalResult(result, List.of(), attempt)));
                     }
 
                     return Flux.concat(
                             finalSnapshot,
                             Flux.just(new StreamingParseEvent.AttemptFailed(schemaErrors, attempt)),
-                            attemptStreaming(originalRequest, attempt + 1, prompt, buffer.toString(), schemaErrors)
+                            attemptStreaming(originalRequest, tier, attempt + 1, lastAttempt, baseMessages, buffer.toString(),
+                                    schemaErrors)
                     );
                 }))
-                .onErrorResume(e ->
-                        Flux.just(new StreamingParseEvent.Error(e, attempt))
-                );
+                .onErrorResume(e -> attemptError(e, attempt, lastSchemaErrors));
 
         return Flux.concat(started, stream);
     }
 
-    private String generateRetryPrompt(String originalPrompt, String lastResponse, List<ValidationError> errors) {
-        StringBuilder sb = new StringBuilder(originalPrompt);
-        sb.append("\n\n### PREVIOUS ATTEMPT FAILED\n");
+    /**
+     * A streaming attempt with {@link Builder#candidates(int)} parallel streams. Only the first one is forwarded
+     * as RawChunk, Reasoning and Snapshot events; the others are buffered silently. The attempt ends as soon as
+     * any candidate completes with a valid answer, cancelling the streams still running, or else once all are
+     * done, with the best of them (see {@link #best(List)}) as the answer that is retried.
+     */
+    private Flux<StreamingParseEvent> streamCandidates(
+            ParsingRequest originalRequest,
+            Tier tier,
+            int attempt,
+            int lastAttempt,
+            List<ChatMessage> baseMessages,
+            List<ChatMessage> messages,
+            KeyAliases aliases,
+            List<ValidationError> lastSchemaErrors
+    ) {
+        Deadline deadline = originalRequest.deadline();
+        List<Evaluation> evaluated = Collections.synchronizedList(new ArrayList<>());
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Flux<StreamingParseEvent>> streams = new ArrayList<>(candidates);
+        for (int candidate = 0; candidate < candidates; candidate++) {
+            boolean forwarded = candidate == 0;
+            StringBuilder buffer = new StringBuilder();
+            AtomicInteger lastSnapshotAtLen = new AtomicInteger(0);
+            streams.add(transportRetryPolicy.executeStream(
+                            () -> tier.client.streamChatDeltas(messages, optionsFor(originalRequest)), deadline)
+                    .flatMap(delta -> {
+                        if (!delta.isContent()) {
+                            return forwarded && streamReasoning
+                                    ? Flux.just(new StreamingParseEvent.Reasoning(delta.text(), attempt))
+                                    : Flux.empty();
+                        }
+                        buffer.append(delta.text());
+                        if (!forwarded) {
+                            return Flux.empty();
+                        }
+                        List<StreamingParseEvent> out = new ArrayList<>(2);
+                        out.add(new StreamingParseEvent.RawChunk(delta.text(), attempt));
+                        addSnapshotIfDue(out, buffer, lastSnapshotAtLen, aliases, attempt);
+                        return Flux.fromIterable(out);
+                    })
+                    .onErrorResume(IncompleteOutputException.class, e -> Flux.empty())
+                    .concatWith(Flux.defer(() -> {
+                        Evaluation evaluation = evaluate(ChatCompletion.of(buffer.toString()),
+                                originalRequest.schema(), aliases, null, null, aliases);
+                        evaluated.add(evaluation);
+                        return Flux.just(new CandidateFinished(evaluation, attempt));
+                    }))
+                    // A failed candidate is skipped; the attempt only fails if all of them do
+                    .onErrorResume(e -> {
+                        failure.set(e);
+                        return Flux.empty();
+                    }));
+        }
+
+        return Flux.merge(streams)
+                .takeUntil(event -> event instanceof CandidateFinished finished && finished.evaluation().valid())
+                .filter(event -> !(event instanceof CandidateFinished))
+                .concatWith(Flux.defer(() -> {
+                    if (evaluated.isEmpty()) {
+                        return Flux.error(failure.get() != null
+                                ? failure.get() : new IllegalStateException("No candidate completed"));
+                    }
+                    Evaluation best = best(List.copyOf(evaluated));
+                    if (best.result() == null) {
+                        return Flux.concat(
+                                Flux.just(new StreamingParseEvent.AttemptFailed(best.errors(), attempt)),
+                                attemptStreaming(originalRequest, tier, attempt + 1, lastAttempt, baseMessages, best.response(),
+                                        best.errors()));
+                    }
+                    Flux<StreamingParseEvent> finalSnapshot = Flux.just(new StreamingParseEvent.Snapshot(best.result(), attempt));
+                    if (best.valid()) {
+                        if (best.repaired()) {
+                            retriesSavedByRepair.incrementAndGet();
+                        }
+                        ParsingResult result = markOmitted(best.result(), originalRequest.effectiveOutputProfile())
+                                .withMetadata(new ParsingMetadata(attempt, null, best.repaired()));
+                        return Flux.concat(finalSnapshot, Flux.just(new StreamingParseEvent.FinalResult(result, List.of(), attempt)));
+                    }
+                    return Flux.concat(
+                            finalSnapshot,
+                            Flux.just(new StreamingParseEvent.AttemptFailed(best.errors(), attempt)),
+                            attemptStreaming(originalRequest, tier, attempt + 1, lastAttempt, baseMessages, best.response(),
+                                        best.errors()));
+                }))
+                .onErrorResume(e -> attemptError(e, attempt, lastSchemaErrors));
+    }
+
+    /**
+     * Internal marker for a finished candidate stream; never emitted to subscribers.
+     */
+    private record CandidateFinished(Evaluation evaluation, int attempt) implements StreamingParseEvent {}
+
+    /**
+     * Parse an input that describes many items ("create these 40 tasks: ...") into one result per item, each
+     * validated against {@code request.schema()} on its own.
+     *
+     * <p>The model returns {@code {"records": [...], "more": ...}}. When the list does not fit into one answer
+     * (the output is cut off by the token limit, or the model says {@code "more": true}), the next call continues
+     * after the last complete record, up to {@value #MAX_RECORD_CALLS} calls. Records are not retried: an invalid
+     * one is returned with its errors.</p>
+     */
+    public RecordsResult parseRecords(ParsingRequest request) {
+        ParsingResult oversized = checkInputSize(request);
+        if (oversized != null) {
+            return new RecordsResult(List.of(), oversized.errors(), null);
+        }
+        KeyAliases aliases = aliasesFor(request);
+        Deadline deadline = request.deadline();
+        List<ParsingResult> records = new ArrayList<>();
+        String lastRecord = null;
+        TokenUsage usage = null;
+        int call = 0;
+        while (call < MAX_RECORD_CALLS) {
+            if (!hasTimeForAttempt(deadline)) {
+                return new RecordsResult(records, deadlineResult(List.of(), "Deadline reached before call " + (call + 1))
+                        .errors(), new ParsingMetadata(call, usage));
+            }
+            call++;
+            List<ChatMessage> messages = promptManager.generateRecordsMessages(request, aliases, records.size(), lastRecord);
+            ChatCompletion completion;
+            try {
+                completion = transportRetryPolicy.execute(
+                        () -> llmClient.complete(messages, recordOptionsFor(request)), deadline);
+            } catch (IncompleteOutputException e) {
+                completion = new ChatCompletion(e.getPartialResponse(), "length", null);
+            } catch (LlmBusyException e) {
+                return new RecordsResult(records, busyResult(e).errors(), new ParsingMetadata(call, usage));
+            } catch (DeadlineExceededException e) {
+                return new RecordsResult(records, deadlineResult(List.of(), e.getMessage()).errors(),
+                        new ParsingMetadata(call, usage));
+            } catch (PromptTooLargeException e) {
+                return new RecordsResult(records, inputTooLargeResult(e.getMessage()).errors(),
+                        new ParsingMetadata(call, usage));
+            }
+            usage = addUsage(usage, completion.usage());
+
+            JsonArrayScanner scanner = new JsonArrayScanner(RECORDS_KEY);
+            for (String element : scanner.feed(completion.content())) {
+                records.add(readRecord(element, request, aliases));
+                lastRecord = element;
+            }
+            if (!moreRecords(completion.content(), scanner.elementCount())) {
+                break;
+            }
+        }
+        return new RecordsResult(records, List.of(), new ParsingMetadata(call, usage));
+    }
+
+    /**
+     * Streaming variant of {@link #parseRecords(ParsingRequest)}: emits RawChunk events, a RecordCompleted event
+     * as soon as each record's object closes (so downstream work can start on the first records while the rest
+     * are generated), and finally RecordsFinished with the whole list. Reasoning is not forwarded.
+     */
+    public Flux<StreamingParseEvent> parseRecordsStreaming(ParsingRequest request) {
+        ParsingResult oversized = checkInputSize(request);
+        if (oversized != null) {
+            return Flux.just(new StreamingParseEvent.RecordsFinished(
+                    new RecordsResult(List.of(), oversized.errors(), null), 0));
+        }
+        KeyAliases aliases = aliasesFor(request);
+        return Flux.defer(() -> streamRecords(request, aliases, new ArrayList<>(), null, 1));
+    }
+
+    private Flux<StreamingParseEvent> streamRecords(ParsingRequest request, KeyAliases aliases,
+                                                    List<ParsingResult> records, String lastRecord, int call) {
+        if (call > MAX_RECORD_CALLS) {
+            return Flux.just(recordsFinished(records, List.of(), call - 1));
+        }
+        Deadline deadline = request.deadline();
+        if (!hasTimeForAttempt(deadline)) {
+            return Flux.just(recordsFinished(records,
+                    deadlineResult(List.of(), "Deadline reached before call " + call).errors(), call - 1));
+        }
+        List<ChatMessage> messages = promptManager.generateRecordsMessages(request, aliases, records.size(), lastRecord);
+        JsonArrayScanner scanner = new JsonArrayScanner(RECORDS_KEY);
+        StringBuilder buffer = new StringBuilder();
+        AtomicReference<String> last = new AtomicReference<>(lastRecord);
+        return transportRetryPolicy.executeStream(
+                        () -> llmClient.streamChatDeltas(messages, recordOptionsFor(request)), deadline)
+                .filter(ChatDelta::isContent)
+                .concatMap(delta -> {
+                    buffer.append(delta.text());
+                    List<StreamingParseEvent> out = new ArrayList<>(2);
+                    out.add(new StreamingParseEvent.RawChunk(delta.text(), call));
+                    for (String element : scanner.feed(delta.text())) {
+                        ParsingResult record = readRecord(element, request, aliases);
+                        out.add(new StreamingParseEvent.RecordCompleted(records.size(), record,
+                                record.fields() == null ? record.errors() : List.of(), call));
+                        records.add(record);
+                        last.set(element);
+                    }
+                    return Flux.fromIterable(out);
+                })
+                // Cut off: the records that closed are kept and the next call continues after them
+                .onErrorResume(IncompleteOutputException.class, e -> Flux.empty())
+                .concatWith(Flux.defer(() -> moreRecords(buffer.toString(), scanner.elementCount())
+                        ? streamRecords(request, aliases, records, last.get(), call + 1)
+                        : Flux.just(recordsFinished(records, List.of(), call))))
+                .onErrorResume(e -> {
+                    List<ValidationError> errors;
+                    if (e instanceof LlmBusyException busy) {
+                        errors = busyResult(busy).errors();
+                    } else if (e instanceof PromptTooLargeException) {
+                        errors = inputTooLargeResult(e.getMessage()).errors();
+                    } else if (e instanceof DeadlineExceededException || e instanceof TimeoutException) {
+                        errors = deadlineResult(List.of(), "Deadline exceeded during call " + call).errors();
+                    } else {
+                        return Flux.just(new StreamingParseEvent.Error(e, call));
+                    }
+                    return Flux.just(recordsFinished(records, errors, call));
+                });
+    }
+
+    private static StreamingParseEvent recordsFinished(List<ParsingResult> records, List<ValidationError> errors,
+                                                       int calls) {
+        return new StreamingParseEvent.RecordsFinished(
+                new RecordsResult(List.copyOf(records), errors, new ParsingMetadata(calls, null)), calls);
+    }
+
+    /**
+     * One element of the records array, validated against the form schema.
+     */
+    private ParsingResult readRecord(String element, ParsingRequest request, KeyAliases aliases) {
+        try {
+            ParsingResult record = readResponse(element, aliases).result();
+            List<ValidationError> errors = schemaValidator.validate(request.schema(), extractValuesJson(record));
+            if (!errors.isEmpty()) {
+                return new ParsingResult(null, errors);
+            }
+            return markOmitted(record, request.effectiveOutputProfile());
+        } catch (JsonProcessingException e) {
+            return new ParsingResult(null,
+                    List.of(new ValidationError("root", "Invalid JSON format: " + e.getMessage(), "json_error")));
+        }
+    }
+
+    /**
+     * Whether another call should continue the list: this answer added records and was either cut off (it is not
+     * complete JSON) or says {@code "more": true}.
+     */
+    private boolean moreRecords(String response, int added) {
+        if (added == 0) {
+            return false;
+        }
+        try {
+            return objectMapper.readTree(response).path("more").asBoolean(false);
+        } catch (JsonProcessingException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Options for a records call: the deadline and the records envelope. No form-derived {@code max_tokens}: the
+     * list may use the client's whole output limit and is continued when it hits it.
+     */
+    private ChatOptions recordOptionsFor(ParsingRequest request) {
+        ChatOptions options = optionsFor(request.deadline());
+        try {
+            return options.withResponseSchema(ResponseEnvelopeSchema.forRecords(
+                    request.schema(), request.effectiveOutputProfile(), aliasKeys));
+        } catch (IllegalArgumentException e) {
+            return options;
+        }
+    }
+
+    /**
+     * Best-effort snapshot parsing (not schema validated) every {@value #SNAPSHOT_CHAR_THRESHOLD} characters.
+     */
+    private void addSnapshotIfDue(List<StreamingParseEvent> out, StringBuilder buffer, AtomicInteger lastSnapshotAtLen,
+                                  KeyAliases aliases, int attempt) {
+        if (buffer.length() - lastSnapshotAtLen.get() < SNAPSHOT_CHAR_THRESHOLD) {
+            return;
+        }
+        try {
+            ParsingResult partial = readResult(buffer.toString(), aliases);
+            out.add(new StreamingParseEvent.Snapshot(partial, attempt));
+            lastSnapshotAtLen.set(buffer.length());
+        } catch (Exception ignored) {
+            // Expected for partial JSON; no snapshot emitted.
+        }
+    }
+
+    /**
+     * How a streaming attempt ends when its LLM call fails.
+     */
+    private Flux<StreamingParseEvent> attemptError(Throwable e, int attempt, List<ValidationError> lastSchemaErrors) {
+        if (e instanceof LlmBusyException busy) {
+            ParsingResult result = busyResult(busy);
+            return Flux.just(new StreamingParseEvent.FinalResult(result, result.errors(), attempt));
+        }
+        if (e instanceof PromptTooLargeException) {
+            ParsingResult result = inputTooLargeResult(e.getMessage());
+            return Flux.just(new StreamingParseEvent.FinalResult(result, result.errors(), attempt));
+        }
+        if (e instanceof DeadlineExceededException || e instanceof TimeoutException) {
+            ParsingResult result = deadlineResult(lastSchemaErrors, "Deadline exceeded during attempt " + attempt);
+            return Flux.just(new StreamingParseEvent.FinalResult(result, result.errors(), attempt));
+        }
+        return Flux.just(new StreamingParseEvent.Error(e, attempt));
+    }
+
+    /**
+     * Flag the parts that the profile did not ask for, so callers do not mistake e.g. a missing confidence for 0.0.
+     */
+    private static ParsingResult markOmitted(ParsingResult result, OutputProfile profile) {
+        if (result.fields() == null || profile.omittedParts().isEmpty()) {
+            return result;
+        }
+        Map<String, FieldResult> fields = new LinkedHashMap<>();
+        result.fields().forEach((name, field) -> fields.put(name, field.withOmitted(profile.omittedParts())));
+        return new ParsingResult(fields, result.errors(), result.metadata());
+    }
+
+    /**
+     * The values of {@code names} (those present in {@code fields}) as an answer in the envelope format.
+     */
+    private String valuesOnlyAnswer(Map<String, FieldResult> fields, Collection<String> names, KeyAliases aliases) {
+        Map<String, Object> answer = new LinkedHashMap<>();
+        // Written the way the model was asked to answer, so the replayed turn matches the prompt
+        for (String name : names) {
+            FieldResult field = fields.get(name);
+            if (field != null) {
+                answer.put(aliases != null ? aliases.alias(name) : name,
+                        Collections.singletonMap(aliases != null ? KeyAliases.partAlias("value") : "value", field.value()));
+            }
+        }
+        try {
+            return objectMapper.writeValueAsString(Map.of("fields", answer));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize parsed values", e);
+        }
+    }
+
+    private static ParsingResult withExtraError(ParsingResult result, ValidationError error) {
+        List<ValidationError> errors = new ArrayList<>();
+        if (result.errors() != null) {
+            errors.addAll(result.errors());
+        }
+        errors.add(error);
+        return new ParsingResult(result.fields(), errors, result.metadata());
+    }
+
+    private static TokenUsage addUsage(TokenUsage total, TokenUsage more) {
+        return total == null ? more : total.plus(more);
+    }
+
+    private boolean hasTimeForAttempt(Deadline deadline) {
+        return deadline == null || deadline.hasAtLeast(minAttemptBudget);
+    }
+
+    private static ChatOptions optionsFor(Deadline deadline) {
+        return deadline == null ? ChatOptions.defaults() : ChatOptions.defaults().withTimeout(deadline.remaining());
+    }
+
+    /**
+     * Options for a parse attempt: the deadline plus the expected response schema, so clients with structured
+     * output or constrained decoding can enforce the envelope server-side.
+     */
+    private ChatOptions optionsFor(ParsingRequest request) {
+        ChatOptions options = optionsFor(request.deadline());
+        try {
+            if (dynamicMaxTokens) {
+                int budget = ResponseBudget.forForm(request.schema(), request.effectiveOutputProfile(), aliasKeys);
+                if (budget > 0) {
+                    options = options.withMaxTokens(budget);
+                }
+            }
+            return options.withResponseSchema(
+                    ResponseEnvelopeSchema.forForm(request.schema(), request.effectiveOutputProfile(), aliasKeys));
+        } catch (IllegalArgumentException e) {
+            // Unparseable schema: validation will report it; just don't ask for structured output
+            return options;
+        }
+    }
+
+    /**
+     * Best-effort result when time ran out: the last attempt's errors (if any) plus a deadline error.
+     */
+    private static ParsingResult deadlineResult(List<ValidationError> lastErrors, String message) {
+        List<ValidationError> errors = new ArrayList<>();
+        if (lastErrors != null) {
+            errors.addAll(lastErrors);
+        }
+        errors.add(new ValidationError("root", message, DEADLINE_ERROR_TYPE));
+        return new ParsingResult(null, errors);
+    }
+
+    /**
+     * The request with its date expressions resolved against {@code context.now} under
+     * {@link #RESOLVED_DATES_CONTEXT_KEY}, if {@link Builder#temporalHints(boolean)} is on and any were found.
+     */
+    private ParsingRequest withTemporalHints(ParsingRequest request) {
+        if (!temporalHints) {
+            return request;
+        }
+        Map<String, String> hints = TemporalResolver.hints(request.userInput(), request.context());
+        if (hints.isEmpty()) {
+            return request;
+        }
+        Map<String, Object> context = new LinkedHashMap<>(request.context());
+        context.put(RESOLVED_DATES_CONTEXT_KEY, hints);
+        return request.withContext(context);
+    }
+
+    /**
+     * An {@link #INPUT_TOO_LARGE_ERROR_TYPE} result if the user input and context exceed
+     * {@link Builder#maxInputTokens(int)}, otherwise null.
+     */
+    private ParsingResult checkInputSize(ParsingRequest request) {
+        if (maxInputTokens <= 0) {
+            return null;
+        }
+        long tokens = tokenCounter.count(request.userInput())
+                + tokenCounter.count(PromptManager.canonicalJson(request.context()));
+        if (tokens <= maxInputTokens) {
+            return null;
+        }
+        return inputTooLargeResult("Input of ~" + tokens + " tokens exceeds the limit of " + maxInputTokens);
+    }
+
+    private static ParsingResult inputTooLargeResult(String message) {
+        return new ParsingResult(null, List.of(new ValidationError("root", message, INPUT_TOO_LARGE_ERROR_TYPE)));
+    }
+
+    private static ParsingResult busyResult(LlmBusyException e) {
+        return new ParsingResult(null, List.of(new ValidationError("root", e.getMessage(), BUSY_ERROR_TYPE)));
+    }
+
+    /**
+     * The base conversation followed by only the most recent failed answer and its errors. Earlier failures are
+     * not repeated, so the prompt size stays bounded and the base messages remain a cacheable prefix.
+     */
+    private List<ChatMessage> retryMessages(List<ChatMessage> baseMessages, String lastResponse, List<ValidationError> errors) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("### PREVIOUS ATTEMPT FAILED\n");
         sb.append("Your previous response was invalid.\n");
-        sb.append("Response: ").append(lastResponse).append("\n");
         sb.append("Errors:\n");
         for (ValidationError error : errors) {
             sb.append("- ").append(error.path()).append(": ").append(error.message()).append("\n");
         }
         sb.append("\nPlease fix these errors and return the valid JSON.");
-        return sb.toString();
+
+        List<ChatMessage> messages = new ArrayList<>(baseMessages.size() + 2);
+        messages.addAll(baseMessages);
+        messages.add(ChatMessage.assistant(lastResponse != null ? lastResponse : ""));
+        messages.add(ChatMessage.user(sb.toString()));
+        return messages;
+    }
+
+    /**
+     * A retry that asks only for {@code fields}, using {@code request} (the original one with the schema cut down
+     * to those fields).
+     */
+    private record FieldRepair(ParsingRequest request, Set<String> fields) {}
+
+    /**
+     * A targeted retry for the fields behind {@code errors}, or null if a full retry is needed: targeted retries
+     * are off, the last answer could not be read, some error is not about a known top-level field (invalid JSON,
+     * a rule across fields, ...), or every field failed anyway.
+     */
+    private FieldRepair fieldRepairFor(ParsingRequest request, ParsingResult lastResult, List<ValidationError> errors) {
+        if (!targetedRetries || lastResult == null || lastResult.fields() == null || errors.isEmpty()) {
+            return null;
+        }
+        try {
+            List<String> properties = SubSchema.propertyNames(request.schema());
+            Set<String> failing = new LinkedHashSet<>();
+            for (ValidationError error : errors) {
+                String field = SubSchema.fieldOf(error.path(), properties);
+                if (field == null) {
+                    return null;
+                }
+                failing.add(field);
+            }
+            if (failing.size() >= properties.size()) {
+                return null;
+            }
+            return new FieldRepair(request.withSchema(SubSchema.forFields(request.schema(), failing)), failing);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * {@code previous} with the repaired fields taken from {@code repaired}; a repaired field the model left out
+     * is dropped rather than kept with its invalid value.
+     */
+    private static ParsingResult mergeRepair(ParsingResult previous, ParsingResult repaired, Set<String> fieldNames) {
+        Map<String, FieldResult> fields = new LinkedHashMap<>(previous.fields());
+        for (String name : fieldNames) {
+            FieldResult field = repaired.fields() != null ? repaired.fields().get(name) : null;
+            if (field != null) {
+                fields.put(name, field);
+            } else {
+                fields.remove(name);
+            }
+        }
+        List<ValidationError> errors = new ArrayList<>();
+        if (previous.errors() != null) {
+            for (ValidationError error : previous.errors()) {
+                if (SubSchema.fieldOf(error.path(), fieldNames) == null) {
+                    errors.add(error);
+                }
+            }
+        }
+        if (repaired.errors() != null) {
+            errors.addAll(repaired.errors());
+        }
+        return new ParsingResult(fields, errors);
+    }
+
+    /**
+     * The short keys the LLM is asked to use for this request, or null when aliasing is off (or the schema
+     * cannot be read, which validation reports anyway).
+     */
+    private KeyAliases aliasesFor(ParsingRequest request) {
+        if (!aliasKeys) {
+            return null;
+        }
+        try {
+            return KeyAliases.forSchema(request.schema());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private record ParsedResponse(ParsingResult result, boolean repaired) {}
+
+    /**
+     * An answer after reading and validation.
+     *
+     * @param response the answer as a retry replays it
+     * @param result   the parsed answer; null if it was not readable JSON
+     * @param errors   schema errors, or the JSON error when {@code result} is null
+     */
+    record Evaluation(String response, ParsingResult result, boolean repaired, List<ValidationError> errors,
+                      TokenUsage usage) {
+
+        boolean valid() {
+            return result != null && errors.isEmpty();
+        }
+
+        double meanConfidence() {
+            if (result == null || result.fields() == null || result.fields().isEmpty()) {
+                return 0.0;
+            }
+            return result.fields().values().stream().mapToDouble(FieldResult::confidence).average().orElse(0.0);
+        }
+
+        Evaluation withUsage(TokenUsage usage) {
+            return new Evaluation(response, result, repaired, errors, usage);
+        }
+    }
+
+    /**
+     * Deserialize an LLM answer. If it is not valid JSON, a local repair (unbalanced brackets, trailing
+     * commas, quotes, surrounding text) is tried before giving up, which is far cheaper than another LLM call.
+     */
+    private ParsedResponse readResponse(String response, KeyAliases aliases) throws JsonProcessingException {
+        try {
+            return new ParsedResponse(readResult(response, aliases), false);
+        } catch (JsonProcessingException e) {
+            String repaired = JsonRepair.repair(response);
+            if (repaired == null || repaired.equals(response)) {
+                throw e;
+            }
+            try {
+                ParsingResult result = readResult(repaired, aliases);
+                repairedResponses.incrementAndGet();
+                return new ParsedResponse(result, true);
+            } catch (JsonProcessingException stillBroken) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Deserialize an answer, first mapping short keys back to the real names if aliasing is on.
+     */
+    private ParsingResult readResult(String response, KeyAliases aliases) throws JsonProcessingException {
+        if (aliases == null) {
+            return objectMapper.readValue(response, ParsingResult.class);
+        }
+        JsonNode tree = objectMapper.readTree(response);
+        aliases.expand(tree);
+        return objectMapper.treeToValue(tree, ParsingResult.class);
+    }
+
+    /**
+     * Number of LLM answers that were invalid JSON but could be repaired locally.
+     */
+    public long getRepairedResponseCount() {
+        return repairedResponses.get();
+    }
+
+    /**
+     * Number of validation retries avoided by JSON repair: repaired answers that then passed schema validation
+     * and would otherwise have been re-requested with a {@code json_error}.
+     */
+    public long getRetriesSavedByRepair() {
+        return retriesSavedByRepair.get();
+    }
+
+    /**
+     * Number of retries that re-asked only the fields that failed validation instead of the whole form.
+     */
+    public long getTargetedRetryCount() {
+        return targetedRetryCount.get();
+    }
+
+    /**
+     * The template learner set with {@link Builder#templateInduction(TemplateLearner)}, or null.
+     */
+    public TemplateLearner getTemplateLearner() {
+        return templateLearner;
+    }
+
+    /**
+     * Requests, acceptances and latency per model tier, cheapest first; a single {@link #DEFAULT_TIER_NAME} entry
+     * without a cascade.
+     */
+    public List<TierStats> getTierStats() {
+        return tiers.stream().map(Tier::stats).toList();
+    }
+
+    /**
+     * A model tier and its counters.
+     */
+    private static final class Tier {
+        final String name;
+        final LlmClient client;
+        final int maxRetries;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong accepted = new AtomicLong();
+        private final AtomicLong latencyNanos = new AtomicLong();
+
+        Tier(String name, LlmClient client, int maxRetries) {
+            this.name = name;
+            this.client = client;
+            this.maxRetries = maxRetries;
+        }
+
+        void record(boolean answered, long nanos) {
+            requests.incrementAndGet();
+            if (answered) {
+                accepted.incrementAndGet();
+            }
+            latencyNanos.addAndGet(nanos);
+        }
+
+        TierStats stats() {
+            return new TierStats(name, requests.get(), accepted.get(), Duration.ofNanos(latencyNanos.get()));
+        }
     }
 
     private String extractValuesJson(ParsingResult result) throws JsonProcessingException {
@@ -214,5 +1728,256 @@ public class LazyFormInstructor {
         
         return objectMapper.writeValueAsString(valuesMap);
     }
-}
 
+    public static class Builder {
+        private final LlmClient llmClient;
+        private int maxRetries = 3;
+        private TransportRetryPolicy transportRetryPolicy = TransportRetryPolicy.defaults();
+        private Duration minAttemptBudget = Duration.ofSeconds(1);
+        private boolean streamReasoning;
+        private boolean aliasKeys;
+        private boolean dynamicMaxTokens = true;
+        private int maxInputTokens;
+        private TokenCounter tokenCounter = TokenCounters.forEncoding(TokenEncoding.CL100K_BASE);
+        private boolean targetedRetries = true;
+        private int candidates = 1;
+        private List<ModelTier> cascade = List.of();
+        private double minConfidence = 0.7;
+        private List<List<String>> fieldGroups = List.of();
+        private TemplateLearner templateLearner;
+        private PreExtractor preExtractor;
+        private boolean temporalHints;
+        private int fieldGroupSize;
+        private int windowTokens;
+        private int windowOverlapTokens;
+        private int maxParallelCalls = DEFAULT_MAX_PARALLEL_CALLS;
+
+        private Builder(LlmClient llmClient) {
+            this.llmClient = llmClient;
+        }
+
+        /**
+         * Number of validation retries, i.e. how often the LLM is re-asked after schema-invalid output.
+         */
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Retry policy for transport failures (network errors, 5xx, 429). These retries re-send the same
+         * request and do not count against {@link #maxRetries(int)}.
+         */
+        public Builder transportRetryPolicy(TransportRetryPolicy transportRetryPolicy) {
+            this.transportRetryPolicy = transportRetryPolicy;
+            return this;
+        }
+
+        /**
+         * Minimum time that must be left before the request's deadline to start another attempt.
+         */
+        public Builder minAttemptBudget(Duration minAttemptBudget) {
+            this.minAttemptBudget = minAttemptBudget;
+            return this;
+        }
+
+        /**
+         * Emit the model's reasoning as {@link StreamingParseEvent.Reasoning} events while streaming.
+         * Off by default: reasoning is dropped and never reaches the JSON buffer either way.
+         */
+        public Builder streamReasoning(boolean streamReasoning) {
+            this.streamReasoning = streamReasoning;
+            return this;
+        }
+
+        /**
+         * Have the LLM write short keys ({@code st} for {@code schedule_time}, {@code v} for {@code value}, ...)
+         * and expand them before validation, which cuts the output tokens of forms with long property names.
+         * Results, snapshots and errors always use the real names. Off by default.
+         */
+        public Builder aliasKeys(boolean aliasKeys) {
+            this.aliasKeys = aliasKeys;
+            return this;
+        }
+
+        /**
+         * Request a {@code max_tokens} derived from the form schema and output profile instead of the client's
+         * fixed limit (which stays the upper bound). On by default.
+         */
+        public Builder dynamicMaxTokens(boolean dynamicMaxTokens) {
+            this.dynamicMaxTokens = dynamicMaxTokens;
+            return this;
+        }
+
+        /**
+         * Reject inputs (user input plus context) larger than this many tokens with an
+         * {@link LazyFormInstructor#INPUT_TOO_LARGE_ERROR_TYPE} error, without calling the LLM.
+         * 0 (the default) means no limit.
+         */
+        public Builder maxInputTokens(int maxInputTokens) {
+            this.maxInputTokens = maxInputTokens;
+            return this;
+        }
+
+        /**
+         * Counter for {@link #maxInputTokens(int)}; defaults to {@code cl100k_base}. Use
+         * {@code TokenCounters.forModel(model)} to match the model.
+         */
+        public Builder tokenCounter(TokenCounter tokenCounter) {
+            this.tokenCounter = tokenCounter;
+            return this;
+        }
+
+        /**
+         * When only some fields fail validation, keep the valid ones and re-ask for just the failing fields
+         * under a schema that contains only them, then merge and validate the whole document again. Errors that
+         * are not about a single field still trigger a full retry. On by default; applies to
+         * {@link LazyFormInstructor#parse(ParsingRequest)}.
+         */
+        public Builder targetedRetries(boolean targetedRetries) {
+            this.targetedRetries = targetedRetries;
+            return this;
+        }
+
+        /**
+         * Ask for {@code candidates} answers per attempt instead of one, evaluate them as they arrive and use
+         * the first valid one, cancelling the rest; if none is valid, the best one (by mean confidence) is
+         * retried. Uses the {@code n} parameter where the client supports it, otherwise parallel calls.
+         * Costs up to {@code candidates} times the output tokens, in exchange for far fewer sequential retries
+         * on schemas that often fail. 1 (the default) disables it.
+         */
+        public Builder candidates(int candidates) {
+            if (candidates < 1) {
+                throw new IllegalArgumentException("candidates must be at least 1");
+            }
+            this.candidates = candidates;
+            return this;
+        }
+
+        /**
+         * Try these tiers, in order, before the builder's own client (the last tier, named
+         * {@link LazyFormInstructor#DEFAULT_TIER_NAME}, with {@link #maxRetries(int)} retries). A tier's answer is
+         * accepted unless it fails validation after that tier's retries or a required field's confidence is below
+         * {@link #minConfidence(double)}; then the next tier starts over. Busy, deadline and oversized-input
+         * results are returned as they are. Works for both {@code parse} and {@code parseStreaming}; see
+         * {@link LazyFormInstructor#getTierStats()} for tuning.
+         */
+        public Builder cascade(ModelTier... tiers) {
+            this.cascade = List.of(tiers);
+            return this;
+        }
+
+        /**
+         * Lowest confidence a cascade tier may report for a required field before the next tier is asked.
+         * Defaults to 0.7; ignored for the last tier and for output profiles without confidence.
+         */
+        public Builder minConfidence(double minConfidence) {
+            if (minConfidence < 0.0 || minConfidence > 1.0) {
+                throw new IllegalArgumentException("minConfidence must be in [0, 1]");
+            }
+            this.minConfidence = minConfidence;
+            return this;
+        }
+
+        /**
+         * Extract large forms in groups of at most {@code maxFields} top-level properties, concurrently, instead
+         * of in one long generation; the merged answer is validated against the full schema. Groups are balanced
+         * in size and keep properties linked by {@code dependentRequired} together. 0 (the default) disables it
+         * unless groups are given via {@link #fieldGroups(List)}. Only the first attempt of {@code parse} is
+         * split; retries re-ask the failing fields as usual.
+         */
+        public Builder fieldGroupSize(int maxFields) {
+            if (maxFields < 0) {
+                throw new IllegalArgumentException("maxFields must not be negative");
+            }
+            this.fieldGroupSize = maxFields;
+            return this;
+        }
+
+        /**
+         * Property groups to extract concurrently, e.g. fields that the model should see together. Properties not
+         * in any group are grouped by {@link #fieldGroupSize(int)}, or form one extra group.
+         */
+        public Builder fieldGroups(List<List<String>> fieldGroups) {
+            this.fieldGroups = fieldGroups.stream().map(List::copyOf).toList();
+            return this;
+        }
+
+        /**
+         * Map-reduce for long inputs (email threads, meeting transcripts): a {@code userInput} of more than
+         * {@code windowTokens} (counted with {@link #tokenCounter(TokenCounter)}) is split on sentence boundaries
+         * into windows of that size overlapping by {@code overlapTokens}, which are extracted concurrently. Per
+         * field, the most confident value wins, the latest one among near ties; fields where windows disagree get
+         * one reconciliation call on the cheapest tier, with just the excerpts involved. The merged result is
+         * validated once against the full schema, without retries. 0 (the default) disables it; note that
+         * {@link #maxInputTokens(int)} still applies to the whole input.
+         */
+        public Builder longInput(int windowTokens, int overlapTokens) {
+            if (windowTokens < 0 || overlapTokens < 0 || (windowTokens > 0 && overlapTokens >= windowTokens)) {
+                throw new IllegalArgumentException("Require 0 <= overlapTokens < windowTokens");
+            }
+            this.windowTokens = windowTokens;
+            this.windowOverlapTokens = overlapTokens;
+            return this;
+        }
+
+        /**
+         * Most calls one request makes at the same time when it is split into field groups
+         * ({@link #fieldGroupSize(int)}) or long-input windows ({@link #longInput(int, int)}); the others wait
+         * for a free slot. A very long input would otherwise send all its windows at once and hit the provider's
+         * rate limit or starve other requests. Defaults to {@value LazyFormInstructor#DEFAULT_MAX_PARALLEL_CALLS}.
+         */
+        public Builder maxParallelCalls(int maxParallelCalls) {
+            if (maxParallelCalls < 1) {
+                throw new IllegalArgumentException("maxParallelCalls must be at least 1");
+            }
+            this.maxParallelCalls = maxParallelCalls;
+            return this;
+        }
+
+        /**
+         * Learn local extractors for inputs that keep arriving in the same format (system notifications, form
+         * emails): once {@code learner} has seen a token-shape template often enough, the default client is asked
+         * once, in the background, for anchored regexes that reproduce its own answers on the samples. Later
+         * inputs of that template are extracted by {@code parse} without an LLM call (attempts 0, confidence
+         * {@link LazyFormInstructor#TEMPLATE_CONFIDENCE}); a local result that fails validation goes to the LLM and
+         * the template is learned again. Only for templates whose values are all in the text: the context is not
+         * seen by the extractor. {@link LazyFormInstructor#close()} cancels induction calls still running. Off by
+         * default.
+         */
+        public Builder templateInduction(TemplateLearner learner) {
+            this.templateLearner = learner;
+            return this;
+        }
+
+        /**
+         * Fill fields without the LLM where the schema allows it ({@code format} email/date/uuid, a single
+         * {@code enum} option mentioned, a number within {@code minimum}/{@code maximum}, a {@code pattern} id; see
+         * {@link com.fanyamin.instructor.prefill.FieldExtractors}). The prompt then covers only the remaining
+         * fields, and the LLM is skipped when every required field was filled (attempts 0). Values carry the
+         * extractor's confidence; the merged form is validated against the full schema, and if it fails the whole
+         * form goes to the LLM. Applies to {@code parse} and {@code parseStreaming}. Off by default.
+         */
+        public Builder preExtraction(PreExtractor preExtractor) {
+            this.preExtractor = preExtractor;
+            return this;
+        }
+
+        /**
+         * Resolve the date and time expressions in the input against {@code context.now} (and
+         * {@code context.locale}) with {@link TemporalResolver}, and give them to the LLM in the context under
+         * {@link #RESOLVED_DATES_CONTEXT_KEY}, e.g. {@code "next Monday": "2023-10-30 (Monday)"}, so the model
+         * copies dates instead of counting days. Fields can also be filled from them without the LLM; see
+         * {@link com.fanyamin.instructor.prefill.FieldExtractors#temporal()}. Applies to {@code parse} and
+         * {@code parseStreaming}. Off by default.
+         */
+        public Builder temporalHints(boolean temporalHints) {
+            this.temporalHints = temporalHints;
+            return this;
+        }
+
+        public LazyFormInstructor build() {
+            return new LazyFormInstructor(this);
+        }
+    }
+}
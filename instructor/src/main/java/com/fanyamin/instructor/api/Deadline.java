@@ -0,0 +1,39 @@
+package com.fanyamin.instructor.api;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Absolute point in time by which a parse request must be answered.
+ *
+ * <p>The deadline is carried by {@link ParsingRequest} and converted into a remaining time budget for
+ * every attempt, so that retries only get what is left instead of a fresh timeout each.</p>
+ */
+public record Deadline(Instant expiresAt) {
+
+    /**
+     * A deadline {@code timeout} from now.
+     */
+    public static Deadline in(Duration timeout) {
+        return new Deadline(Instant.now().plus(timeout));
+    }
+
+    /**
+     * Time left before the deadline, never negative.
+     */
+    public Duration remaining() {
+        Duration left = Duration.between(Instant.now(), expiresAt);
+        return left.isNegative() ? Duration.ZERO : left;
+    }
+
+    public boolean isExpired() {
+        return !Instant.now().isBefore(expiresAt);
+    }
+
+    /**
+     * Whether at least {@code budget} is left, i.e. whether it is still worth starting work that needs it.
+     */
+    public boolean hasAtLeast(Duration budget) {
+        return remaining().compareTo(budget) >= 0;
+    }
+}
@@ -1,11 +1,28 @@
 package com.fanyamin.instructor.api;
 
 import java.util.List;
+import java.util.Set;
 
 public record FieldResult(
     Object value,
     double confidence,
     String reasoning,
-    List<Object> alternatives
-) {}
+    List<Object> alternatives,
+    Set<String> omitted // parts not generated under the request's OutputProfile; null or empty = complete
+) {
+    public static final String CONFIDENCE = "confidence";
+    public static final String REASONING = "reasoning";
+    public static final String ALTERNATIVES = "alternatives";
 
+    public FieldResult(Object value, double confidence, String reasoning, List<Object> alternatives) {
+        this(value, confidence, reasoning, alternatives, null);
+    }
+
+    public boolean isOmitted(String part) {
+        return omitted != null && omitted.contains(part);
+    }
+
+    public FieldResult withOmitted(Set<String> omitted) {
+        return new FieldResult(value, confidence, reasoning, alternatives, omitted);
+    }
+}
@@ -0,0 +1,36 @@
+package com.fanyamin.instructor.api;
+
+import java.util.Set;
+
+/**
+ * How much per-field detail the LLM is asked to generate.
+ *
+ * <p>Output tokens dominate generation latency, and reasoning text is by far the largest part of a full
+ * response. Leaner profiles skip it; use {@code LazyFormInstructor.explainFields} to fetch reasoning and
+ * alternatives later for the fields that need them.</p>
+ */
+public enum OutputProfile {
+    /** Only {@code value} per field. */
+    VALUES(Set.of(FieldResult.CONFIDENCE, FieldResult.REASONING, FieldResult.ALTERNATIVES)),
+    /** {@code value} and {@code confidence} per field. */
+    VALUES_AND_CONFIDENCE(Set.of(FieldResult.REASONING, FieldResult.ALTERNATIVES)),
+    /** {@code value}, {@code confidence}, {@code reasoning} and {@code alternatives} per field. */
+    FULL(Set.of());
+
+    private final Set<String> omittedParts;
+
+    OutputProfile(Set<String> omittedParts) {
+        this.omittedParts = omittedParts;
+    }
+
+    /**
+     * The {@link FieldResult} parts this profile does not ask for.
+     */
+    public Set<String> omittedParts() {
+        return omittedParts;
+    }
+
+    public boolean includes(String part) {
+        return !omittedParts.contains(part);
+    }
+}
@@ -0,0 +1,20 @@
+package com.fanyamin.instructor.api;
+
+public record ParsingMetadata(
+    int attempts,     // LLM calls made by the validation loop (transport retries not counted)
+    TokenUsage usage, // summed over all attempts; null if the client does not report usage
+    boolean repaired, // the accepted answer was not valid JSON and had to be fixed locally
+    String tier       // model tier that produced the answer when a cascade is configured; null otherwise
+) {
+    public ParsingMetadata(int attempts, TokenUsage usage, boolean repaired) {
+        this(attempts, usage, repaired, null);
+    }
+
+    public ParsingMetadata(int attempts, TokenUsage usage) {
+        this(attempts, usage, false);
+    }
+
+    public ParsingMetadata withTier(String tier) {
+        return new ParsingMetadata(attempts, usage, repaired, tier);
+    }
+}
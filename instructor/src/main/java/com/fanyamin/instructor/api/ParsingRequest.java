@@ -5,6 +5,42 @@ import java.util.Map;
 public record ParsingRequest(
     String schema, // JSON Schema string
     String userInput,
-    Map<String, Object> context
-) {}
+    Map<String, Object> context,
+    Deadline deadline, // null = no deadline
+    OutputProfile outputProfile // null = FULL
+) {
+    public ParsingRequest(String schema, String userInput, Map<String, Object> context) {
+        this(schema, userInput, context, null, null);
+    }
 
+    public ParsingRequest(String schema, String userInput, Map<String, Object> context, Deadline deadline) {
+        this(schema, userInput, context, deadline, null);
+    }
+
+    public ParsingRequest withDeadline(Deadline deadline) {
+        return new ParsingRequest(schema, userInput, context, deadline, outputProfile);
+    }
+
+    public ParsingRequest withUserInput(String userInput) {
+        return new ParsingRequest(schema, userInput, context, deadline, outputProfile);
+    }
+
+    public ParsingRequest withSchema(String schema) {
+        return new ParsingRequest(schema, userInput, context, deadline, outputProfile);
+    }
+
+    public ParsingRequest withContext(Map<String, Object> context) {
+        return new ParsingRequest(schema, userInput, context, deadline, outputProfile);
+    }
+
+    public ParsingRequest withOutputProfile(OutputProfile outputProfile) {
+        return new ParsingRequest(schema, userInput, context, deadline, outputProfile);
+    }
+
+    /**
+     * The requested profile, defaulting to {@link OutputProfile#FULL}.
+     */
+    public OutputProfile effectiveOutputProfile() {
+        return outputProfile != null ? outputProfile : OutputProfile.FULL;
+    }
+}
@@ -1,9 +1,33 @@
 package com.fanyamin.instructor.api;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.Objects;
 
 public record ParsingResult(
     Map<String, FieldResult> fields,
-    List<ValidationError> errors
-) {}
+    List<ValidationError> errors,
+    ParsingMetadata metadata // filled in by the instructor, never by the LLM; may be null
+) {
+    public ParsingResult {
+        // Constrained decoding reports optional fields it could not fill as "name": null
+        if (fields != null && fields.values().stream().anyMatch(Objects::isNull)) {
+            Map<String, FieldResult> present = new LinkedHashMap<>();
+            fields.forEach((name, field) -> {
+                if (field != null) {
+                    present.put(name, field);
+                }
+            });
+            fields = present;
+        }
+    }
+
+    public ParsingResult(Map<String, FieldResult> fields, List<ValidationError> errors) {
+        this(fields, errors, null);
+    }
+
+    public ParsingResult withMetadata(ParsingMetadata metadata) {
+        return new ParsingResult(fields, errors, metadata);
+    }
+}
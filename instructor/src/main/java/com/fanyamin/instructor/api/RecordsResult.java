@@ -0,0 +1,13 @@
+package com.fanyamin.instructor.api;
+
+import java.util.List;
+
+/**
+ * Result of a multi-record parse: one {@link ParsingResult} per item in input order. A record that failed schema
+ * validation has null fields and its errors, like a failed single parse.
+ */
+public record RecordsResult(
+    List<ParsingResult> records,
+    List<ValidationError> errors, // why the list may be incomplete (busy, deadline, ...); empty if it is complete
+    ParsingMetadata metadata      // attempts = LLM calls the list took; may be null
+) {}
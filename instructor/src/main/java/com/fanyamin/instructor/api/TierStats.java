@@ -0,0 +1,24 @@
+package com.fanyamin.instructor.api;
+
+import java.time.Duration;
+
+/**
+ * Counters for one tier of a model cascade, for tuning which requests a cheap model may answer.
+ */
+public record TierStats(
+    String tier,
+    long requests,         // parses that reached this tier
+    long accepted,         // of those, answered by this tier without escalating
+    Duration totalLatency  // time spent in this tier, retries included
+) {
+    /**
+     * Share of the requests reaching this tier that it answered (0.0 when it saw none).
+     */
+    public double acceptanceRate() {
+        return requests > 0 ? (double) accepted / requests : 0.0;
+    }
+
+    public Duration meanLatency() {
+        return requests > 0 ? totalLatency.dividedBy(requests) : Duration.ZERO;
+    }
+}
@@ -0,0 +1,26 @@
+package com.fanyamin.instructor.api;
+
+public record TokenUsage(
+    long promptTokens,
+    long completionTokens,
+    long cachedTokens // prompt tokens served from the provider's prefix cache
+) {
+    public static final TokenUsage ZERO = new TokenUsage(0, 0, 0);
+
+    public TokenUsage plus(TokenUsage other) {
+        if (other == null) {
+            return this;
+        }
+        return new TokenUsage(
+                promptTokens + other.promptTokens,
+                completionTokens + other.completionTokens,
+                cachedTokens + other.cachedTokens);
+    }
+
+    /**
+     * Share of prompt tokens that were cache hits (0.0 when nothing was reported).
+     */
+    public double cacheHitRatio() {
+        return promptTokens > 0 ? (double) cachedTokens / promptTokens : 0.0;
+    }
+}
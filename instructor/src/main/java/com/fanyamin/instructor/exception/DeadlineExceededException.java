@@ -0,0 +1,15 @@
+package com.fanyamin.instructor.exception;
+
+/**
+ * Thrown when an LLM call does not complete within the time left before the request's deadline.
+ */
+public class DeadlineExceededException extends InstructorException {
+
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+
+    public DeadlineExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
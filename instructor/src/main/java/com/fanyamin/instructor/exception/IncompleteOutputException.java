@@ -12,6 +12,11 @@ public class IncompleteOutputException extends InstructorException {
         this.partialResponse = partialResponse;
     }
 
+    public IncompleteOutputException(String message, String partialResponse, Throwable cause) {
+        super(message, cause);
+        this.partialResponse = partialResponse;
+    }
+
     public String getPartialResponse() {
         return partialResponse;
     }
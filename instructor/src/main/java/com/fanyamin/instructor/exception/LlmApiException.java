@@ -0,0 +1,43 @@
+package com.fanyamin.instructor.exception;
+
+import java.time.Duration;
+
+/**
+ * Thrown when an LLM provider answers with a non-success HTTP status.
+ *
+ * <p>Carries the status code and the provider's {@code Retry-After} hint (if any) so that callers
+ * can tell overload signals (429/503) apart from other failures.</p>
+ */
+public class LlmApiException extends InstructorException {
+
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    public LlmApiException(String message, int statusCode) {
+        this(message, statusCode, null);
+    }
+
+    public LlmApiException(String message, int statusCode, Duration retryAfter) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Provider-suggested wait before the next request, or null if none was sent.
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * Whether the provider signalled that it is overloaded or rate limiting (429 / 503).
+     */
+    public boolean isOverloaded() {
+        return statusCode == 429 || statusCode == 503;
+    }
+}
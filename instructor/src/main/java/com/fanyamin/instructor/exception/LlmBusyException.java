@@ -0,0 +1,12 @@
+package com.fanyamin.instructor.exception;
+
+/**
+ * Thrown when a request is rejected locally because the LLM backend is already at capacity
+ * (e.g., the concurrency limiter's wait queue is full or the queue timeout elapsed).
+ */
+public class LlmBusyException extends InstructorException {
+
+    public LlmBusyException(String message) {
+        super(message);
+    }
+}
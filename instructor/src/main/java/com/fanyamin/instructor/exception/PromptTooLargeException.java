@@ -0,0 +1,28 @@
+package com.fanyamin.instructor.exception;
+
+/**
+ * Thrown before an LLM call when the prompt would not leave room for the answer in the model's context window
+ * (or exceeds a configured input limit), so the request is not sent at all.
+ */
+public class PromptTooLargeException extends InstructorException {
+
+    private final long promptTokens;
+    private final long limit;
+
+    public PromptTooLargeException(String message, long promptTokens, long limit) {
+        super(message);
+        this.promptTokens = promptTokens;
+        this.limit = limit;
+    }
+
+    /**
+     * Estimated size of the rejected prompt (or input) in tokens.
+     */
+    public long getPromptTokens() {
+        return promptTokens;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,101 @@
+package com.fanyamin.instructor.json;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental scanner that returns the elements of one array inside a streamed JSON object as soon as each of
+ * them closes, e.g. every record of {@code {"records": [{...}, {...}], "more": false}} while the rest is still
+ * being generated.
+ *
+ * <p>Only object elements of the array under {@code arrayKey} in the top-level object are returned, as raw text;
+ * text before the object (chatter, code fences) is skipped. The scanner does not validate JSON: elements are
+ * parsed by the caller.</p>
+ */
+public final class JsonArrayScanner {
+
+    private final String arrayKey;
+
+    private final StringBuilder element = new StringBuilder();
+    private StringBuilder key;          // a string at the top level, possibly the key before the array
+    private String lastKey;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+    private boolean inArray;
+    private boolean collecting;
+    private int elements;
+
+    public JsonArrayScanner(String arrayKey) {
+        this.arrayKey = arrayKey;
+    }
+
+    /**
+     * Scan the next chunk of the response.
+     *
+     * @return the elements completed by this chunk, in order
+     */
+    public List<String> feed(String chunk) {
+        List<String> completed = new ArrayList<>(1);
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (collecting) {
+                element.append(c);
+            }
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                    if (key != null) {
+                        lastKey = key.toString();
+                        key = null;
+                    }
+                } else if (key != null) {
+                    key.append(c);
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> {
+                    inString = true;
+                    if (depth == 1) {
+                        key = new StringBuilder();
+                    }
+                }
+                case '{', '[' -> {
+                    if (depth == 1 && c == '[' && arrayKey.equals(lastKey)) {
+                        inArray = true;
+                    } else if (depth == 2 && inArray && c == '{') {
+                        collecting = true;
+                        element.setLength(0);
+                        element.append(c);
+                    }
+                    depth++;
+                }
+                case '}', ']' -> {
+                    depth = Math.max(0, depth - 1);
+                    if (collecting && depth == 2) {
+                        completed.add(element.toString());
+                        collecting = false;
+                        elements++;
+                    } else if (inArray && depth == 1) {
+                        inArray = false;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Number of elements returned so far.
+     */
+    public int elementCount() {
+        return elements;
+    }
+}
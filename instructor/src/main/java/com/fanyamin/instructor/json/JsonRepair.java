@@ -0,0 +1,241 @@
+package com.fanyamin.instructor.json;
+
+/**
+ * Lenient repair of almost-valid JSON objects produced by an LLM.
+ *
+ * <p>A single pass over the text that:</p>
+ * <ul>
+ *   <li>extracts the outermost object, dropping leading chatter, Markdown fences and trailing text</li>
+ *   <li>turns single-quoted and typographic-quoted strings into double-quoted ones, and escapes raw
+ *       control characters inside strings</li>
+ *   <li>quotes bare keys and maps Python-style {@code True}/{@code False}/{@code None}</li>
+ *   <li>removes trailing and duplicate commas, comments and stray characters between tokens</li>
+ *   <li>closes unterminated strings and balances brackets, completing a dangling key with {@code null}</li>
+ * </ul>
+ *
+ * <p>The result is not guaranteed to be valid JSON; callers parse it and treat failure as before.
+ * Valid JSON is left untouched apart from the removal of surrounding text.</p>
+ */
+public final class JsonRepair {
+
+    private JsonRepair() {
+    }
+
+    /**
+     * @return the repaired text, or {@code text} itself if it contains no JSON object
+     */
+    public static String repair(String text) {
+        if (text == null) {
+            return null;
+        }
+        int start = objectStart(text);
+        if (start < 0) {
+            return text;
+        }
+
+        StringBuilder out = new StringBuilder(text.length() + 8);
+        StringBuilder stack = new StringBuilder();
+        char quote = 0;            // closing delimiter of the string being copied, 0 outside strings
+        boolean keyString = false; // whether that string sits in key position
+
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            if (quote != 0) {
+                if (c == '\\' && i + 1 < text.length()) {
+                    char next = text.charAt(++i);
+                    if (next == '\'') {
+                        out.append('\'');
+                    } else {
+                        out.append('\\').append(next);
+                    }
+                } else if (c == quote) {
+                    out.append('"');
+                    quote = 0;
+                    if (keyString && !followedByColon(text, i + 1)) {
+                        // A "key" without a colon was really a value, e.g. in an array
+                        keyString = false;
+                    }
+                } else if (c == '"') {
+                    out.append("\\\"");
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else if (c == '\r') {
+                    out.append("\\r");
+                } else if (c == '\t') {
+                    out.append("\\t");
+                } else if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+                continue;
+            }
+
+            switch (c) {
+                case '"', '\'', '“', '‘' -> {
+                    quote = c == '"' ? '"' : c == '\'' ? '\'' : c == '“' ? '”' : '’';
+                    keyString = isKeyPosition(out, stack);
+                    out.append('"');
+                }
+                case '{', '[' -> {
+                    stack.append(c);
+                    out.append(c);
+                }
+                case '}', ']' -> {
+                    if (stack.length() == 0) {
+                        continue;
+                    }
+                    char expected = c == '}' ? '{' : '[';
+                    // Close containers the model forgot, up to the one this bracket belongs to
+                    while (stack.length() > 0 && stack.charAt(stack.length() - 1) != expected
+                            && stack.indexOf(String.valueOf(expected)) >= 0) {
+                        close(out, stack);
+                    }
+                    if (stack.length() > 0 && stack.charAt(stack.length() - 1) == expected) {
+                        close(out, stack);
+                    }
+                    if (stack.length() == 0) {
+                        return finish(text, out);
+                    }
+                }
+                case ',' -> {
+                    char last = lastSignificant(out);
+                    if (last != ',' && last != '{' && last != '[' && last != ':') {
+                        out.append(',');
+                    }
+                }
+                case '/' -> {
+                    // Line comments, which some models add after values
+                    if (i + 1 < text.length() && text.charAt(i + 1) == '/') {
+                        while (i + 1 < text.length() && text.charAt(i + 1) != '\n') {
+                            i++;
+                        }
+                    } else {
+                        out.append(c);
+                    }
+                }
+                default -> {
+                    char previous = out.charAt(out.length() - 1);
+                    boolean inNumber = Character.isDigit(previous) || previous == '.';
+                    if (!inNumber && (Character.isLetter(c) || c == '_')) {
+                        int end = i;
+                        while (end < text.length()
+                                && (Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '_')) {
+                            end++;
+                        }
+                        out.append(bareWord(text.substring(i, end), isKeyPosition(out, stack)));
+                        i = end - 1;
+                    } else if (Character.isWhitespace(c) || Character.isDigit(c) || "-+.:".indexOf(c) >= 0
+                            || (inNumber && (c == 'e' || c == 'E'))) {
+                        out.append(c);
+                    }
+                    // anything else outside a string (stray backticks, bullets, ...) is dropped
+                }
+            }
+        }
+
+        // Truncated output: terminate the open string and close every open container
+        if (quote != 0) {
+            if (out.charAt(out.length() - 1) == '\\') {
+                out.setLength(out.length() - 1);
+            }
+            out.append('"');
+            if (keyString) {
+                out.append(": null");
+            }
+        }
+        char last = lastSignificant(out);
+        if (last == ':') {
+            out.append(" null");
+        } else if (quote == 0 && keyString && last == '"') {
+            out.append(": null");
+        }
+        while (stack.length() > 0) {
+            close(out, stack);
+        }
+        return finish(text, out);
+    }
+
+    /**
+     * The first '{' that starts an object with a key (or an empty object), so braces in leading prose are
+     * skipped; falls back to the first '{' at all.
+     */
+    private static int objectStart(String text) {
+        int first = text.indexOf('{');
+        for (int i = first; i >= 0; i = text.indexOf('{', i + 1)) {
+            int j = i + 1;
+            while (j < text.length() && Character.isWhitespace(text.charAt(j))) {
+                j++;
+            }
+            if (j == text.length() || "\"'}“".indexOf(text.charAt(j)) >= 0) {
+                return i;
+            }
+        }
+        return first;
+    }
+
+    private static String finish(String original, StringBuilder out) {
+        String repaired = out.toString();
+        return repaired.equals(original.strip()) ? original : repaired;
+    }
+
+    private static void close(StringBuilder out, StringBuilder stack) {
+        char open = stack.charAt(stack.length() - 1);
+        stack.setLength(stack.length() - 1);
+        trimTrailingComma(out);
+        out.append(open == '{' ? '}' : ']');
+    }
+
+    private static void trimTrailingComma(StringBuilder out) {
+        int end = out.length();
+        while (end > 0 && Character.isWhitespace(out.charAt(end - 1))) {
+            end--;
+        }
+        if (end > 0 && out.charAt(end - 1) == ',') {
+            out.setLength(end - 1);
+        }
+    }
+
+    private static char lastSignificant(StringBuilder out) {
+        for (int i = out.length() - 1; i >= 0; i--) {
+            if (!Character.isWhitespace(out.charAt(i))) {
+                return out.charAt(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Whether the next token starts an object key: inside an object, right after '{' or ','.
+     */
+    private static boolean isKeyPosition(StringBuilder out, StringBuilder stack) {
+        if (stack.length() == 0 || stack.charAt(stack.length() - 1) != '{') {
+            return false;
+        }
+        char last = lastSignificant(out);
+        return last == '{' || last == ',';
+    }
+
+    private static boolean followedByColon(String text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == ':';
+            }
+        }
+        return true;
+    }
+
+    private static String bareWord(String word, boolean key) {
+        if (key) {
+            return '"' + word + '"';
+        }
+        return switch (word) {
+            case "true", "True" -> "true";
+            case "false", "False" -> "false";
+            case "null", "None", "undefined" -> "null";
+            default -> '"' + word + '"';
+        };
+    }
+}
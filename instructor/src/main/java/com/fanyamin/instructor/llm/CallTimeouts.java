@@ -0,0 +1,60 @@
+package com.fanyamin.instructor.llm;
+
+import com.fanyamin.instructor.exception.DeadlineExceededException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Applying a {@link ChatOptions#timeout()} to a whole call.
+ *
+ * <p>{@link Flux#timeout(Duration)} only bounds the gap between two chunks, so a model that keeps trickling
+ * tokens could stream far past the caller's deadline. Here every chunk re-arms the timer with whatever is left
+ * until the deadline instead. Blocking provider calls that take no timeout of their own are run on a worker
+ * thread and abandoned when the time is up.</p>
+ */
+final class CallTimeouts {
+
+    private CallTimeouts() {
+    }
+
+    /**
+     * {@code stream}, failing with {@link DeadlineExceededException} once {@code timeout} has passed since
+     * subscription; unchanged if {@code timeout} is {@code null}.
+     *
+     * @param what the call, for the error message (e.g. {@code "Spring AI streaming call"})
+     */
+    static <T> Flux<T> bound(Flux<T> stream, Duration timeout, String what) {
+        if (timeout == null) {
+            return stream;
+        }
+        return Flux.defer(() -> {
+            long deadlineNanos = System.nanoTime() + timeout.toNanos();
+            return stream.timeout(
+                    Mono.delay(timeout),
+                    chunk -> Mono.delay(Duration.ofNanos(Math.max(deadlineNanos - System.nanoTime(), 0L))),
+                    Flux.defer(() -> Flux.error(
+                            new DeadlineExceededException(what + " exceeded its timeout of " + timeout))));
+        });
+    }
+
+    /**
+     * The result of {@code call}, or a {@link DeadlineExceededException} once {@code timeout} has passed; the
+     * call runs on the caller's thread if {@code timeout} is {@code null}.
+     *
+     * @param what the call, for the error message (e.g. {@code "Spring AI call"})
+     */
+    static <T> T call(Supplier<T> call, Duration timeout, String what) {
+        if (timeout == null) {
+            return call.get();
+        }
+        return Mono.fromSupplier(call)
+                .subscribeOn(Schedulers.boundedElastic())
+                .timeout(timeout, Mono.defer(() -> Mono.error(
+                        new DeadlineExceededException(what + " exceeded its timeout of " + timeout))))
+                .block();
+    }
+}
@@ -0,0 +1,17 @@
+package com.fanyamin.instructor.llm;
+
+import com.fanyamin.instructor.api.TokenUsage;
+
+/**
+ * Result of a non-streaming chat call, with whatever metadata the provider reported.
+ *
+ * @param content      answer text, with reasoning already removed
+ * @param finishReason provider finish reason (e.g. {@code stop}, {@code length}); null if unknown
+ * @param usage        token usage; null if the provider did not report it
+ */
+public record ChatCompletion(String content, String finishReason, TokenUsage usage) {
+
+    public static ChatCompletion of(String content) {
+        return new ChatCompletion(content, null, null);
+    }
+}
@@ -0,0 +1,26 @@
+package com.fanyamin.instructor.llm;
+
+/**
+ * One increment of a streamed chat completion.
+ *
+ * @param kind whether the text belongs to the answer or to the model's reasoning
+ * @param text the new text
+ */
+public record ChatDelta(Kind kind, String text) {
+
+    public enum Kind {
+        CONTENT, REASONING
+    }
+
+    public static ChatDelta content(String text) {
+        return new ChatDelta(Kind.CONTENT, text);
+    }
+
+    public static ChatDelta reasoning(String text) {
+        return new ChatDelta(Kind.REASONING, text);
+    }
+
+    public boolean isContent() {
+        return kind == Kind.CONTENT;
+    }
+}
@@ -0,0 +1,52 @@
+package com.fanyamin.instructor.llm;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * One message of a chat conversation sent to an {@link LlmClient}.
+ *
+ * @param role    who authored the message
+ * @param content message text
+ */
+public record ChatMessage(Role role, String content) {
+
+    public enum Role {
+        SYSTEM, USER, ASSISTANT;
+
+        /** Role name as used by OpenAI-compatible APIs. */
+        public String apiName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public static ChatMessage system(String content) {
+        return new ChatMessage(Role.SYSTEM, content);
+    }
+
+    public static ChatMessage user(String content) {
+        return new ChatMessage(Role.USER, content);
+    }
+
+    public static ChatMessage assistant(String content) {
+        return new ChatMessage(Role.ASSISTANT, content);
+    }
+
+    /**
+     * Render a conversation as a single prompt, for clients that only accept plain text.
+     * A lone message is returned verbatim.
+     */
+    public static String flatten(List<ChatMessage> messages) {
+        if (messages.size() == 1) {
+            return messages.get(0).content();
+        }
+        StringBuilder sb = new StringBuilder();
+        for (ChatMessage message : messages) {
+            if (sb.length() > 0) {
+                sb.append("\n\n");
+            }
+            sb.append("### ").append(message.role().name()).append('\n').append(message.content());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.fanyamin.instructor.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Duration;
+
+/**
+ * Per-call options passed to {@link LlmClient}.
+ *
+ * <p>Use {@link #defaults()} and the {@code with*} methods rather than the canonical constructor, so that call
+ * sites keep compiling as options are added.</p>
+ *
+ * @param timeout        maximum time the call may take (null = no limit); clients map it to their transport timeout
+ * @param responseSchema JSON Schema the complete response must match (null = free text); clients that support
+ *                       structured output or constrained decoding enforce it, others ignore it
+ * @param maxTokens      output token budget for this call (null = the client's configured limit); clients use the
+ *                       smaller of the two
+ */
+public record ChatOptions(Duration timeout, JsonNode responseSchema, Integer maxTokens) {
+
+    private static final ChatOptions DEFAULTS = new ChatOptions(null, null, null);
+
+    public static ChatOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public ChatOptions withTimeout(Duration timeout) {
+        return new ChatOptions(timeout, responseSchema, maxTokens);
+    }
+
+    public ChatOptions withResponseSchema(JsonNode responseSchema) {
+        return new ChatOptions(timeout, responseSchema, maxTokens);
+    }
+
+    public ChatOptions withMaxTokens(Integer maxTokens) {
+        return new ChatOptions(timeout, responseSchema, maxTokens);
+    }
+}
@@ -0,0 +1,165 @@
+package com.fanyamin.instructor.llm;
+
+import com.fanyamin.instructor.exception.DeadlineExceededException;
+import com.fanyamin.instructor.exception.LlmApiException;
+import com.fanyamin.instructor.resilience.AdaptiveConcurrencyLimiter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Decorator that puts an {@link AdaptiveConcurrencyLimiter} in front of any {@link LlmClient}.
+ *
+ * <p>Each call holds one slot for its whole duration (for streaming: until the stream terminates
+ * or is cancelled). Successful latencies and 429/503 responses feed back into the limit.
+ * When no slot can be obtained the call fails fast with
+ * {@link com.fanyamin.instructor.exception.LlmBusyException}.</p>
+ *
+ * <pre>
+ * LlmClient client = new ConcurrencyLimitedLlmClient(
+ *         LlmClientFactory.createFromEnvironment(),
+ *         AdaptiveConcurrencyLimiter.builder().initialLimit(8).maxQueueSize(16).build());
+ * </pre>
+ */
+public class ConcurrencyLimitedLlmClient implements LlmClient {
+
+    private final LlmClient delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitedLlmClient(LlmClient delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    @Override
+    public String chat(String prompt) {
+        return chat(prompt, ChatOptions.defaults());
+    }
+
+    @Override
+    public String chat(String prompt, ChatOptions options) {
+        return limitedCall(limitedOptions -> delegate.chat(prompt, limitedOptions), options);
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages, ChatOptions options) {
+        return limitedCall(limitedOptions -> delegate.chat(messages, limitedOptions), options);
+    }
+
+    @Override
+    public ChatCompletion complete(List<ChatMessage> messages, ChatOptions options) {
+        return limitedCall(limitedOptions -> delegate.complete(messages, limitedOptions), options);
+    }
+
+    private <T> T limitedCall(Function<ChatOptions, T> call, ChatOptions options) {
+        AdaptiveConcurrencyLimiter.Permit permit = acquire(options);
+        try {
+            T response = call.apply(remainingAfterQueue(options, permit));
+            permit.onSuccess();
+            return response;
+        } catch (RuntimeException e) {
+            complete(permit, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public Flux<String> streamChat(String prompt) {
+        return streamChat(prompt, ChatOptions.defaults());
+    }
+
+    @Override
+    public Flux<String> streamChat(String prompt, ChatOptions options) {
+        return limitedStream(limitedOptions -> delegate.streamChat(prompt, limitedOptions), options);
+    }
+
+    @Override
+    public Flux<String> streamChat(List<ChatMessage> messages, ChatOptions options) {
+        return limitedStream(limitedOptions -> delegate.streamChat(messages, limitedOptions), options);
+    }
+
+    @Override
+    public Flux<ChatDelta> streamChatDeltas(List<ChatMessage> messages, ChatOptions options) {
+        return limitedStream(limitedOptions -> delegate.streamChatDeltas(messages, limitedOptions), options);
+    }
+
+    private <T> Flux<T> limitedStream(Function<ChatOptions, Flux<T>> call, ChatOptions options) {
+        // Waiting for a slot may block, so never do it on the subscriber's thread.
+        return Flux.defer(() -> {
+                    AdaptiveConcurrencyLimiter.Permit permit = acquire(options);
+                    Flux<T> stream;
+                    try {
+                        stream = call.apply(remainingAfterQueue(options, permit));
+                    } catch (RuntimeException e) {
+                        // The delegate failed before returning a stream, so no terminal signal will release the slot
+                        complete(permit, e);
+                        throw e;
+                    }
+                    return stream
+                            .doOnError(e -> complete(permit, e))
+                            .doFinally(signal -> {
+                                if (signal == SignalType.ON_COMPLETE) {
+                                    permit.onSuccess();
+                                } else {
+                                    permit.onIgnore();
+                                }
+                            });
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Holds one slot for the whole set of candidates: with a client that requests them as one call (the
+     * {@code n} parameter) that is exactly one request.
+     */
+    @Override
+    public Flux<ChatCompletion> completeCandidates(List<ChatMessage> messages, ChatOptions options, int n) {
+        return limitedStream(limitedOptions -> delegate.completeCandidates(messages, limitedOptions, n), options);
+    }
+
+    @Override
+    public boolean supportsStreaming() {
+        return delegate.supportsStreaming();
+    }
+
+    /**
+     * Never wait in the queue longer than the caller's own timeout. A caller with no time left fails with
+     * {@link DeadlineExceededException}, not as busy.
+     */
+    private AdaptiveConcurrencyLimiter.Permit acquire(ChatOptions options) {
+        if (options.timeout() != null && (options.timeout().isZero() || options.timeout().isNegative())) {
+            throw new DeadlineExceededException("No time left to wait for an LLM slot");
+        }
+        if (options.timeout() == null || options.timeout().compareTo(limiter.getQueueTimeout()) >= 0) {
+            return limiter.acquire();
+        }
+        return limiter.acquire(options.timeout());
+    }
+
+    /**
+     * Time spent queueing comes out of the caller's timeout.
+     */
+    private static ChatOptions remainingAfterQueue(ChatOptions options, AdaptiveConcurrencyLimiter.Permit permit) {
+        if (options.timeout() == null) {
+            return options;
+        }
+        Duration left = options.timeout().minus(permit.getQueueTime());
+        return options.withTimeout(left.isNegative() ? Duration.ZERO : left);
+    }
+
+    private static void complete(AdaptiveConcurrencyLimiter.Permit permit, Throwable error) {
+        if (error instanceof LlmApiException apiError && apiError.isOverloaded()) {
+            permit.onOverload();
+        } else {
+            permit.onIgnore();
+        }
+    }
+}
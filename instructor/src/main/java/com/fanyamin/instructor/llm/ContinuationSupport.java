@@ -0,0 +1,95 @@
+package com.fanyamin.instructor.llm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Resuming an answer that the provider cut off at {@code max_tokens}.
+ *
+ * <p>The continuation request replays the conversation with the partial answer as the assistant's turn,
+ * followed by a short instruction to go on from its last character. Models sometimes repeat the tail of
+ * what they already wrote; {@link #stitch(String, String)} removes such an overlap.</p>
+ */
+final class ContinuationSupport {
+
+    /** Continuation requests made for one answer before giving up. */
+    static final int MAX_CONTINUATIONS = 3;
+
+    /** Shorter overlaps are too likely to be legitimate repetition (e.g. {@code "}}"}). */
+    static final int MIN_OVERLAP = 8;
+
+    /** Only this much of the continuation is searched for a repeated tail. */
+    static final int OVERLAP_WINDOW = 256;
+
+    static final String CONTINUE_PROMPT = "Your previous answer was cut off by the output limit. "
+            + "Continue it exactly where it stopped: output only the remaining characters, "
+            + "without repeating anything and without any commentary.";
+
+    private ContinuationSupport() {
+    }
+
+    /**
+     * Whether a finish reason means the output hit the token limit.
+     */
+    static boolean isTruncated(String finishReason) {
+        return "length".equalsIgnoreCase(finishReason) || "max_tokens".equalsIgnoreCase(finishReason);
+    }
+
+    static List<ChatMessage> continuationMessages(List<ChatMessage> messages, String partial) {
+        List<ChatMessage> continuation = new ArrayList<>(messages.size() + 2);
+        continuation.addAll(messages);
+        continuation.add(ChatMessage.assistant(partial));
+        continuation.add(ChatMessage.user(CONTINUE_PROMPT));
+        return continuation;
+    }
+
+    static String stitch(String partial, String continuation) {
+        return partial + continuation.substring(overlap(partial, continuation));
+    }
+
+    /**
+     * Length of the longest prefix of {@code continuation} (within the window) that repeats the end of
+     * {@code partial}, or 0 if it is shorter than {@link #MIN_OVERLAP}.
+     */
+    static int overlap(String partial, String continuation) {
+        int max = Math.min(OVERLAP_WINDOW, Math.min(partial.length(), continuation.length()));
+        for (int k = max; k >= MIN_OVERLAP; k--) {
+            if (partial.regionMatches(partial.length() - k, continuation, 0, k)) {
+                return k;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Streaming counterpart of {@link #stitch(String, String)}: holds back the start of a continuation until
+     * the window is full (or the stream ends), drops the repeated part, then passes everything through.
+     */
+    static final class Stitcher {
+        private final String partial;
+        private final StringBuilder head = new StringBuilder();
+        private boolean resolved;
+
+        Stitcher(String partial) {
+            this.partial = partial;
+        }
+
+        String accept(String chunk) {
+            if (resolved) {
+                return chunk;
+            }
+            head.append(chunk);
+            return head.length() >= OVERLAP_WINDOW ? resolve() : "";
+        }
+
+        String finish() {
+            return resolved ? "" : resolve();
+        }
+
+        private String resolve() {
+            resolved = true;
+            String text = head.toString();
+            return text.substring(overlap(partial, text));
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.fanyamin.instructor.llm;
+
+import com.fanyamin.instructor.resilience.HedgePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * Decorator that hedges slow calls: if the primary {@link LlmClient} has not answered (blocking) or sent its first
+ * chunk (streaming) within the {@link HedgePolicy}'s delay, the same request is also sent to the secondary. The
+ * first to respond is used and the other call is cancelled.
+ *
+ * <p>Works with any pair of clients, e.g. two providers, two regions, or the same client twice. Only latency is
+ * hedged, not failures: whichever call signals first wins, even with an error, so transport errors are still
+ * handled by the caller's retry policy. Hedge and win rates are available from {@link #getPolicy()}.</p>
+ *
+ * <pre>
+ * LlmClient client = new HedgingLlmClient(
+ *         LlmClientFactory.createFromEnvironment(),
+ *         backupClient,
+ *         HedgePolicy.builder().percentile(0.9).maxHedgeRatio(0.1).build());
+ * </pre>
+ */
+public class HedgingLlmClient implements LlmClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgingLlmClient.class);
+
+    private final LlmClient primary;
+    private final LlmClient secondary;
+    private final HedgePolicy policy;
+
+    public HedgingLlmClient(LlmClient primary, LlmClient secondary, HedgePolicy policy) {
+        this.primary = primary;
+        this.secondary = secondary;
+        this.policy = policy;
+    }
+
+    public HedgePolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public String chat(String prompt) {
+        return chat(prompt, ChatOptions.defaults());
+    }
+
+    @Override
+    public String chat(String prompt, ChatOptions options) {
+        return hedgedCall((client, hedgeOptions) -> client.chat(prompt, hedgeOptions), options);
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages, ChatOptions options) {
+        return hedgedCall((client, hedgeOptions) -> client.chat(messages, hedgeOptions), options);
+    }
+
+    @Override
+    public ChatCompletion complete(List<ChatMessage> messages, ChatOptions options) {
+        return hedgedCall((client, hedgeOptions) -> client.complete(messages, hedgeOptions), options);
+    }
+
+    /**
+     * Not hedged: the candidates are already requested in parallel.
+     */
+    @Override
+    public Flux<ChatCompletion> completeCandidates(List<ChatMessage> messages, ChatOptions options, int n) {
+        return primary.completeCandidates(messages, options, n);
+    }
+
+    @Override
+    public Flux<String> streamChat(String prompt) {
+        return streamChat(prompt, ChatOptions.defaults());
+    }
+
+    @Override
+    public Flux<String> streamChat(String prompt, ChatOptions options) {
+        return hedgedStream((client, hedgeOptions) -> client.streamChat(prompt, hedgeOptions), options);
+    }
+
+    @Override
+    public Flux<String> streamChat(List<ChatMessage> messages, ChatOptions options) {
+        return hedgedStream((client, hedgeOptions) -> client.streamChat(messages, hedgeOptions), options);
+    }
+
+    @Override
+    public Flux<ChatDelta> streamChatDeltas(List<ChatMessage> messages, ChatOptions options) {
+        return hedgedStream((client, hedgeOptions) -> client.streamChatDeltas(messages, hedgeOptions), options);
+    }
+
+    @Override
+    public boolean supportsStreaming() {
+        return primary.supportsStreaming();
+    }
+
+    private record Outcome<T>(T value, boolean hedge) {}
+
+    private <T> T hedgedCall(BiFunction<LlmClient, ChatOptions, T> call, ChatOptions options) {
+        policy.onRequest();
+        long startNanos = System.nanoTime();
+        Duration delay = policy.hedgeDelay(HedgePolicy.Stage.RESPONSE);
+
+        Mono<Outcome<T>> primaryCall = Mono.fromCallable(() -> new Outcome<>(call.apply(primary, options), false))
+                .subscribeOn(Schedulers.boundedElastic());
+        Mono<Outcome<T>> hedgeCall = Mono.delay(delay).flatMap(tick -> {
+            if (!policy.tryAcquireHedge()) {
+                return Mono.never();
+            }
+            logger.debug("🏁 No response after {} ms; hedging to the secondary client", delay.toMillis());
+            ChatOptions hedgeOptions = remaining(options, startNanos);
+            return Mono.fromCallable(() -> new Outcome<>(call.apply(secondary, hedgeOptions), true))
+                    .subscribeOn(Schedulers.boundedElastic());
+        });
+
+        // The loser is cancelled, which interrupts its blocking call. An error is rethrown here, before any latency
+        // is recorded: a burst of fast 429/5xx responses would otherwise pull the percentile, and with it the hedge
+        // delay, toward zero just when the backend is overloaded.
+        Outcome<T> outcome = Mono.firstWithSignal(primaryCall, hedgeCall).block();
+        // Only answers are timed. For a primary that lost this is a lower bound of its latency, which still keeps
+        // the tail in the window.
+        policy.recordLatency(HedgePolicy.Stage.RESPONSE, Duration.ofNanos(System.nanoTime() - startNanos));
+        if (outcome.hedge()) {
+            policy.onHedgeWon();
+        }
+        return outcome.value();
+    }
+
+    private <T> Flux<T> hedgedStream(BiFunction<LlmClient, ChatOptions, Flux<T>> call, ChatOptions options) {
+        return Flux.defer(() -> {
+            policy.onRequest();
+            long startNanos = System.nanoTime();
+            Duration delay = policy.hedgeDelay(HedgePolicy.Stage.FIRST_TOKEN);
+            AtomicBoolean firstChunk = new AtomicBoolean();
+
+            Flux<T> primaryStream = call.apply(primary, options).doOnNext(chunk -> {
+                if (firstChunk.compareAndSet(false, true)) {
+                    policy.recordLatency(HedgePolicy.Stage.FIRST_TOKEN, Duration.ofNanos(System.nanoTime() - startNanos));
+                }
+            });
+            Flux<T> hedgeStream = Mono.delay(delay).flatMapMany(tick -> {
+                if (!policy.tryAcquireHedge()) {
+                    return Flux.never();
+                }
+                logger.debug("🏁 No first chunk after {} ms; hedging to the secondary client", delay.toMillis());
+                return call.apply(secondary, remaining(options, startNanos)).doOnNext(chunk -> {
+                    if (firstChunk.compareAndSet(false, true)) {
+                        policy.recordLatency(HedgePolicy.Stage.FIRST_TOKEN, Duration.ofNanos(System.nanoTime() - startNanos));
+                        policy.onHedgeWon();
+                    }
+                });
+            });
+
+            // Whichever stream signals first is followed to the end; the other one is cancelled
+            return Flux.firstWithSignal(primaryStream, hedgeStream);
+        });
+    }
+
+    /**
+     * The hedge only gets the time the caller has left.
+     */
+    private static ChatOptions remaining(ChatOptions options, long startNanos) {
+        if (options.timeout() == null) {
+            return options;
+        }
+        Duration left = options.timeout().minusNanos(System.nanoTime() - startNanos);
+        return options.withTimeout(left.isNegative() ? Duration.ZERO : left);
+    }
+}
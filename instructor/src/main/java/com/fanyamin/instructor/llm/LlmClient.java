@@ -1,6 +1,11 @@
 package com.fanyamin.instructor.llm;
 
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Abstraction for interacting with an LLM provider.
@@ -26,6 +31,88 @@ public interface LlmClient {
         return Flux.defer(() -> Flux.just(chat(prompt)));
     }
 
+    /**
+     * Non-streaming chat completion with per-call options (e.g. a timeout derived from the request deadline).
+     *
+     * <p>Default implementation ignores the options and delegates to {@link #chat(String)}.</p>
+     */
+    default String chat(String prompt, ChatOptions options) {
+        return chat(prompt);
+    }
+
+    /**
+     * Streaming chat completion with per-call options.
+     *
+     * <p>Default implementation delegates to {@link #streamChat(String)} and, if a timeout is set, fails the
+     * stream with a {@link com.fanyamin.instructor.exception.DeadlineExceededException} once that time has
+     * passed, however steadily chunks arrive.</p>
+     */
+    default Flux<String> streamChat(String prompt, ChatOptions options) {
+        Flux<String> stream = streamChat(prompt);
+        return CallTimeouts.bound(stream, options.timeout(), "Streaming call");
+    }
+
+    /**
+     * Non-streaming chat completion over a conversation (system/user/assistant messages).
+     *
+     * <p>Default implementation flattens the conversation into one prompt via {@link ChatMessage#flatten(List)}.
+     * Clients whose API accepts message lists SHOULD override it, so that a stable leading message can be
+     * served from the provider's prefix cache.</p>
+     */
+    default String chat(List<ChatMessage> messages, ChatOptions options) {
+        return chat(ChatMessage.flatten(messages), options);
+    }
+
+    /**
+     * Like {@link #chat(List, ChatOptions)}, but also returns provider metadata such as token usage.
+     *
+     * <p>Default implementation wraps {@link #chat(List, ChatOptions)} and reports no metadata.</p>
+     */
+    default ChatCompletion complete(List<ChatMessage> messages, ChatOptions options) {
+        return ChatCompletion.of(chat(messages, options));
+    }
+
+    /**
+     * {@code n} independent answers to the same conversation, emitted as they complete, so a caller can take the
+     * first acceptable one and cancel the rest.
+     *
+     * <p>Default implementation makes {@code n} {@link #complete(List, ChatOptions)} calls in parallel. A
+     * candidate whose call fails is skipped; the stream only fails, with the last error, if none succeeds.
+     * Clients whose API can return several choices for one request SHOULD override it.</p>
+     */
+    default Flux<ChatCompletion> completeCandidates(List<ChatMessage> messages, ChatOptions options, int n) {
+        return Flux.defer(() -> {
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            return Flux.range(0, Math.max(n, 1))
+                    .flatMap(i -> Mono.fromCallable(() -> complete(messages, options))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .onErrorResume(e -> {
+                                failure.set(e);
+                                return Mono.empty();
+                            }), Math.max(n, 1))
+                    .switchIfEmpty(Flux.defer(() -> Flux.error(failure.get())));
+        });
+    }
+
+    /**
+     * Streaming chat completion over a conversation. Default implementation flattens the conversation.
+     */
+    default Flux<String> streamChat(List<ChatMessage> messages, ChatOptions options) {
+        return streamChat(ChatMessage.flatten(messages), options);
+    }
+
+    /**
+     * Streaming chat completion that keeps the model's reasoning, as {@link ChatDelta.Kind#REASONING} deltas,
+     * separate from the answer. Concatenating the content deltas gives the same text as
+     * {@link #streamChat(List, ChatOptions)}.
+     *
+     * <p>Default implementation reports every chunk of {@link #streamChat(List, ChatOptions)} as content.
+     * Clients that can tell reasoning apart SHOULD override it.</p>
+     */
+    default Flux<ChatDelta> streamChatDeltas(List<ChatMessage> messages, ChatOptions options) {
+        return streamChat(messages, options).map(ChatDelta::content);
+    }
+
     /**
      * Whether this client supports true streaming (multiple chunks over time).
      *
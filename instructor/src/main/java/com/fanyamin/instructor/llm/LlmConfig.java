@@ -32,6 +32,11 @@ public class LlmConfig {
     public static final String ENV_LLM_MAX_TOKENS = "LLM_MAX_TOKENS";
     public static final String ENV_LLM_SKIP_SSL_VERIFY = "LLM_SKIP_SSL_VERIFY";
     public static final String ENV_LLM_DEBUG = "LLM_DEBUG";
+    public static final String ENV_LLM_MAX_CONCURRENCY = "LLM_MAX_CONCURRENCY";
+    public static final String ENV_LLM_QUEUE_SIZE = "LLM_QUEUE_SIZE";
+    public static final String ENV_LLM_QUEUE_TIMEOUT_MS = "LLM_QUEUE_TIMEOUT_MS";
+    public static final String ENV_LLM_STRUCTURED_OUTPUT = "LLM_STRUCTURED_OUTPUT";
+    public static final String ENV_LLM_CONTEXT_WINDOW = "LLM_CONTEXT_WINDOW";
 
     // Default values
     public static final String DEFAULT_OPENAI_BASE_URL = "https://api.openai.com/v1/chat/completions";
@@ -41,6 +46,11 @@ public class LlmConfig {
     public static final int DEFAULT_MAX_TOKENS = 4096;
     public static final boolean DEFAULT_SKIP_SSL_VERIFY = false;
     public static final boolean DEFAULT_DEBUG = false;
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+    public static final int DEFAULT_QUEUE_SIZE = 32;
+    public static final int DEFAULT_QUEUE_TIMEOUT_MS = 10_000;
+    public static final String DEFAULT_STRUCTURED_OUTPUT = "none";
+    public static final int DEFAULT_CONTEXT_WINDOW = 0; // unknown: no preflight check
 
     // Cached .env file properties
     private static Map<String, String> dotEnvCache = null;
@@ -0,0 +1,24 @@
+package com.fanyamin.instructor.llm;
+
+/**
+ * One step of a model cascade: a (usually cheaper, faster) client tried before the next tier.
+ *
+ * @param name       label used in {@code ParsingMetadata.tier()} and the tier statistics
+ * @param client     the model for this tier
+ * @param maxRetries validation retries on this tier before escalating; 0 escalates on the first invalid answer
+ */
+public record ModelTier(String name, LlmClient client, int maxRetries) {
+
+    public ModelTier {
+        if (name == null || client == null) {
+            throw new IllegalArgumentException("name and client are required");
+        }
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        }
+    }
+
+    public ModelTier(String name, LlmClient client) {
+        this(name, client, 0);
+    }
+}
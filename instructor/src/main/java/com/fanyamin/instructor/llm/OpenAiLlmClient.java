@@ -1,5 +1,15 @@
 package com.fanyamin.instructor.llm;
 
+import com.fanyamin.instructor.api.TokenUsage;
+import com.fanyamin.instructor.exception.DeadlineExceededException;
+import com.fanyamin.instructor.exception.IncompleteOutputException;
+import com.fanyamin.instructor.exception.LlmApiException;
+import com.fanyamin.instructor.exception.PromptTooLargeException;
+import com.fanyamin.instructor.resilience.RateLimitScheduler;
+import com.fanyamin.instructor.schema.GbnfGrammarCompiler;
+import com.fanyamin.instructor.schema.StrictSchemaTransformer;
+import com.fanyamin.instructor.tokenizer.TokenCounter;
+import com.fanyamin.instructor.tokenizer.TokenCounters;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -11,16 +21,27 @@ import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
 /**
@@ -44,6 +65,12 @@ import reactor.core.scheduler.Schedulers;
  * - LLM_SKIP_SSL_VERIFY: Skip SSL certificate verification for self-hosted/private LLMs (default: false)
  *   Set to "true", "yes", or "1" to disable SSL verification
  * - LLM_DEBUG: Enable debug logging for request/response (default: false)
+ * - LLM_STRUCTURED_OUTPUT: Server-side schema enforcement, "none", "json_schema", "guided_json" (vLLM)
+ *   or "gbnf" (llama.cpp) (default: none)
+ * 
+ * Rate limits:
+ * Requests are paced by a {@link RateLimitScheduler} shared per API key, which learns RPM/TPM budgets from
+ * the x-ratelimit-* response headers and honours Retry-After on 429.
  * 
  * Thinking Mode Support:
  * For models with reasoning capabilities (like o1), this client:
@@ -76,6 +103,12 @@ import reactor.core.scheduler.Schedulers;
 public class OpenAiLlmClient implements LlmClient {
     
     private static final Logger logger = LoggerFactory.getLogger(OpenAiLlmClient.class);
+
+    /** A prompt that leaves less room than this for the answer is rejected before sending. */
+    static final int MIN_ANSWER_TOKENS = 128;
+
+    /** Tokens the chat format adds per message (role and separators), as counted by OpenAI. */
+    private static final int TOKENS_PER_MESSAGE = 4;
     
     private final String apiKey;
     private final String model;
@@ -86,6 +119,11 @@ public class OpenAiLlmClient implements LlmClient {
     private final int maxTokens;
     private final boolean skipSslVerify;
     private final boolean debug;
+    private final RateLimitScheduler rateLimitScheduler;
+    private final StructuredOutputMode structuredOutputMode;
+    private final int contextWindow;
+    private final TokenCounter tokenCounter;
+    private volatile boolean structuredOutputRejected;
 
     /**
      * Create client with configuration from environment variables.
@@ -129,6 +167,35 @@ public class OpenAiLlmClient implements LlmClient {
     }
 
     public OpenAiLlmClient(String apiKey, String model, String apiUrl, double temperature, int maxTokens, boolean skipSslVerify, boolean debug) {
+        this(apiKey, model, apiUrl, temperature, maxTokens, skipSslVerify, debug, RateLimitScheduler.forEndpoint(apiUrl, apiKey));
+    }
+
+    /**
+     * @param rateLimitScheduler paces requests under the provider's RPM/TPM limits; by default one scheduler
+     *                           is shared by all clients using the same API key
+     */
+    public OpenAiLlmClient(String apiKey, String model, String apiUrl, double temperature, int maxTokens, boolean skipSslVerify, boolean debug,
+                           RateLimitScheduler rateLimitScheduler) {
+        this(apiKey, model, apiUrl, temperature, maxTokens, skipSslVerify, debug, rateLimitScheduler, StructuredOutputMode.NONE);
+    }
+
+    /**
+     * @param structuredOutputMode how to have the server enforce the response schema; falls back to prompt-only
+     *                             output automatically if the endpoint rejects it
+     */
+    public OpenAiLlmClient(String apiKey, String model, String apiUrl, double temperature, int maxTokens, boolean skipSslVerify, boolean debug,
+                           RateLimitScheduler rateLimitScheduler, StructuredOutputMode structuredOutputMode) {
+        this(apiKey, model, apiUrl, temperature, maxTokens, skipSslVerify, debug, rateLimitScheduler, structuredOutputMode,
+             LlmConfig.getEnvInt(LlmConfig.ENV_LLM_CONTEXT_WINDOW, LlmConfig.DEFAULT_CONTEXT_WINDOW));
+    }
+
+    /**
+     * @param contextWindow the model's context size in tokens; when set (&gt; 0), prompts are counted locally
+     *                      before sending, {@code max_tokens} is lowered to what still fits, and prompts that leave
+     *                      no room for an answer fail with {@link PromptTooLargeException} without a call
+     */
+    public OpenAiLlmClient(String apiKey, String model, String apiUrl, double temperature, int maxTokens, boolean skipSslVerify, boolean debug,
+                           RateLimitScheduler rateLimitScheduler, StructuredOutputMode structuredOutputMode, int contextWindow) {
         this.apiKey = apiKey;
         this.model = model;
         this.apiUrl = apiUrl;
@@ -136,6 +203,10 @@ public class OpenAiLlmClient implements LlmClient {
         this.maxTokens = maxTokens;
         this.skipSslVerify = skipSslVerify;
         this.debug = debug;
+        this.rateLimitScheduler = rateLimitScheduler;
+        this.structuredOutputMode = structuredOutputMode;
+        this.contextWindow = contextWindow;
+        this.tokenCounter = TokenCounters.forModel(model);
         this.httpClient = createHttpClient(skipSslVerify);
         this.objectMapper = new ObjectMapper();
         
@@ -198,16 +269,162 @@ public class OpenAiLlmClient implements LlmClient {
 
     @Override
     public String chat(String prompt) {
+        return chat(prompt, ChatOptions.defaults());
+    }
+
+    @Override
+    public String chat(String prompt, ChatOptions options) {
+        return chat(List.of(ChatMessage.user(prompt)), options);
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages, ChatOptions options) {
+        return complete(messages, options).content();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the answer is cut off by {@code max_tokens} ({@code finish_reason: length}), up to
+     * {@value ContinuationSupport#MAX_CONTINUATIONS} continuation requests resume it and the pieces are stitched
+     * together. When that is not possible, an {@link IncompleteOutputException} carries the partial answer.</p>
+     */
+    @Override
+    public ChatCompletion complete(List<ChatMessage> messages, ChatOptions options) {
+        long startNanos = System.nanoTime();
+        ChatCompletion completion = sendWithFallback(messages, options);
+        String content = completion.content();
+        TokenUsage usage = completion.usage();
+
+        for (int continuation = 1; ContinuationSupport.isTruncated(completion.finishReason()); continuation++) {
+            if (continuation > ContinuationSupport.MAX_CONTINUATIONS) {
+                throw new IncompleteOutputException("Answer still truncated after "
+                        + ContinuationSupport.MAX_CONTINUATIONS + " continuations", content);
+            }
+            logger.info("✂️  Answer truncated at {} chars (max_tokens={}); requesting continuation {}",
+                    content.length(), maxTokens, continuation);
+            try {
+                // No schema enforcement here: it would make the model start a new object instead of resuming
+                completion = send(ContinuationSupport.continuationMessages(messages, content),
+                        remainingOptions(options, startNanos).withResponseSchema(null), null);
+            } catch (RuntimeException e) {
+                throw new IncompleteOutputException(
+                        "Answer truncated and continuation failed: " + e.getMessage(), content, e);
+            }
+            content = ContinuationSupport.stitch(content, completion.content());
+            usage = usage != null ? usage.plus(completion.usage()) : completion.usage();
+        }
+
+        String answer = ReasoningFilter.extractAnswer(content);
+        if (debug) {
+            if (!answer.equals(content)) {
+                logger.debug("📝 Raw content ({} chars):", content.length());
+                logger.debug("{}", "─".repeat(80));
+                logger.debug("{}", content);
+                logger.debug("{}\n", "─".repeat(80));
+            }
+            logger.debug("✅ Extracted answer ({} chars):", answer.length());
+            logger.debug("{}", "─".repeat(80));
+            logger.debug("{}", answer);
+            logger.debug("{}\n", "─".repeat(80));
+        }
+        return new ChatCompletion(answer, completion.finishReason(), usage);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Asks for all {@code n} answers in one request with the {@code n} parameter, so the prompt is only
+     * processed once. Backends that ignore {@code n} return a single choice; the missing candidates are then
+     * requested as parallel calls.</p>
+     */
+    @Override
+    public Flux<ChatCompletion> completeCandidates(List<ChatMessage> messages, ChatOptions options, int n) {
+        if (n <= 1) {
+            return LlmClient.super.completeCandidates(messages, options, n);
+        }
+        return Mono.fromCallable(() -> completeChoices(messages, options, n))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(choices -> choices.size() >= n
+                        ? Flux.fromIterable(choices)
+                        : Flux.concat(Flux.fromIterable(choices),
+                                LlmClient.super.completeCandidates(messages, options, n - choices.size())));
+    }
+
+    /**
+     * Up to {@code n} answers from one request. Truncated choices are returned as they are (finish reason
+     * {@code length}) rather than continued; the usage of the request is reported on the first choice only.
+     */
+    List<ChatCompletion> completeChoices(List<ChatMessage> messages, ChatOptions options, int n) {
+        List<ChatCompletion> choices = new ArrayList<>();
+        for (ChatCompletion choice : sendWithFallback(messages, options, n)) {
+            choices.add(new ChatCompletion(ReasoningFilter.extractAnswer(choice.content()),
+                    choice.finishReason(), choices.isEmpty() ? choice.usage() : null));
+        }
+        return choices;
+    }
+
+    private ChatCompletion sendWithFallback(List<ChatMessage> messages, ChatOptions options) {
+        return sendWithFallback(messages, options, 1).get(0);
+    }
+
+    private List<ChatCompletion> sendWithFallback(List<ChatMessage> messages, ChatOptions options, int n) {
+        ObjectNode structuredOutput = structuredOutputFields(options);
+        if (structuredOutput == null) {
+            return send(messages, options, null, n);
+        }
+        try {
+            return send(messages, options, structuredOutput, n);
+        } catch (LlmApiException e) {
+            if (!isStructuredOutputRejection(e.getStatusCode())) {
+                throw e;
+            }
+            logger.warn("⚠️  {} request rejected with {}; retrying with prompt-only output", structuredOutputMode, e.getStatusCode());
+            List<ChatCompletion> choices = send(messages, options, null, n);
+            // Only give up on structured output once the same request without it went through
+            disableStructuredOutput();
+            return choices;
+        }
+    }
+
+    /**
+     * The options of a follow-up request made {@code startNanos} into a call: its timeout is what is left.
+     */
+    private static ChatOptions remainingOptions(ChatOptions options, long startNanos) {
+        if (options.timeout() == null) {
+            return options;
+        }
+        Duration remaining = options.timeout().minusNanos(System.nanoTime() - startNanos);
+        if (remaining.isNegative() || remaining.isZero()) {
+            throw new DeadlineExceededException("No time left for a continuation request");
+        }
+        return options.withTimeout(remaining);
+    }
+
+    private ChatCompletion send(List<ChatMessage> messages, ChatOptions options, ObjectNode structuredOutput) {
+        return send(messages, options, structuredOutput, 1).get(0);
+    }
+
+    /**
+     * One request for {@code n} choices; the result has at least one element. Tokens reserved with the rate
+     * limit scheduler are settled with the reported usage, or given back if the call fails.
+     */
+    private List<ChatCompletion> send(List<ChatMessage> messages, ChatOptions options, ObjectNode structuredOutput, int n) {
+        long reservedTokens = 0L;
+        boolean settled = false;
         try {
+            RequestBudget budget = budgetFor(messages, options, n);
             ObjectNode requestBody = objectMapper.createObjectNode();
             requestBody.put("model", model);
             requestBody.put("temperature", temperature);
-            requestBody.put("max_tokens", maxTokens);
-            
-            ArrayNode messages = requestBody.putArray("messages");
-            ObjectNode userMessage = messages.addObject();
-            userMessage.put("role", "user");
-            userMessage.put("content", prompt);
+            requestBody.put("max_tokens", budget.maxTokens());
+            if (n > 1) {
+                requestBody.put("n", n);
+            }
+            putMessages(requestBody, messages);
+            if (structuredOutput != null) {
+                requestBody.setAll(structuredOutput);
+            }
 
             String requestBodyStr = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(requestBody);
             
@@ -236,12 +453,15 @@ public class OpenAiLlmClient implements LlmClient {
             if (apiKey != null && !apiKey.isEmpty()) {
                 requestBuilder.header("Authorization", "Bearer " + apiKey);
             }
-            
+            acquire(requestBuilder, options, budget.reservedTokens());
+            reservedTokens = budget.reservedTokens();
+
             HttpRequest request = requestBuilder.build();
 
             long startTime = System.currentTimeMillis();
             HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
             long duration = System.currentTimeMillis() - startTime;
+            rateLimitScheduler.updateFromHeaders(response.headers());
 
             if (debug) {
                 logger.debug("🔵 HTTP RESPONSE");
@@ -266,56 +486,86 @@ public class OpenAiLlmClient implements LlmClient {
             if (response.statusCode() != 200) {
                 String errorMsg = "OpenAI API error: " + response.statusCode() + " - " + response.body();
                 logger.error("❌ {}", errorMsg);
-                throw new RuntimeException(errorMsg);
+                throw apiError(errorMsg, response);
             }
 
             JsonNode responseJson = objectMapper.readTree(response.body());
-            JsonNode firstChoice = responseJson.path("choices").get(0);
-            JsonNode message = firstChoice.path("message");
-            
-            // Extract content - standard field for most models
-            String content = message.path("content").asText();
-            
-            // For thinking models (like o1), there might be additional fields
-            // Check if there's a "reasoning" or "thinking" field to log separately
-            if (message.has("reasoning")) {
-                String reasoning = message.path("reasoning").asText();
-                if (debug && reasoning != null && !reasoning.isEmpty()) {
-                    logger.debug("🧠 Model Reasoning ({} chars):", reasoning.length());
-                    logger.debug("{}", "─".repeat(80));
-                    logger.debug("{}", reasoning);
-                    logger.debug("{}\n", "─".repeat(80));
-                }
+            JsonNode usageNode = responseJson.path("usage");
+            // Without reported usage the reservation stands as the estimate
+            rateLimitScheduler.recordUsage(reservedTokens, usageNode.path("total_tokens").asLong(-1));
+            settled = true;
+            TokenUsage usage = parseUsage(usageNode);
+            if (debug && usage != null) {
+                logger.debug("📊 Usage: prompt={} (cached={}, {}%), completion={}", usage.promptTokens(),
+                        usage.cachedTokens(), Math.round(usage.cacheHitRatio() * 100), usage.completionTokens());
             }
-            
-            // Extract the actual answer, filtering out any thinking/reasoning content
-            String answer = extractAnswerFromContent(content);
-            
-            if (debug) {
-                if (!answer.equals(content)) {
-                    logger.debug("📝 Raw content ({} chars):", content.length());
-                    logger.debug("{}", "─".repeat(80));
-                    logger.debug("{}", content);
-                    logger.debug("{}\n", "─".repeat(80));
+            List<ChatCompletion> choices = new ArrayList<>();
+            for (JsonNode choice : responseJson.path("choices")) {
+                JsonNode message = choice.path("message");
+
+                // Extract content - standard field for most models
+                String content = message.path("content").asText();
+
+                // For thinking models (like o1), there might be additional fields
+                // Check if there's a "reasoning" or "thinking" field to log separately
+                if (message.has("reasoning") || message.has("reasoning_content")) {
+                    String reasoning = message.path("reasoning_content").asText(message.path("reasoning").asText());
+                    if (debug && reasoning != null && !reasoning.isEmpty()) {
+                        logger.debug("🧠 Model Reasoning ({} chars):", reasoning.length());
+                        logger.debug("{}", "─".repeat(80));
+                        logger.debug("{}", reasoning);
+                        logger.debug("{}\n", "─".repeat(80));
+                    }
                 }
-                logger.debug("✅ Extracted answer ({} chars):", answer.length());
-                logger.debug("{}", "─".repeat(80));
-                logger.debug("{}", answer);
-                logger.debug("{}\n", "─".repeat(80));
+
+                String finishReason = choice.path("finish_reason").asText(null);
+                // Raw content: reasoning is only removed once a truncated answer has been completed
+                choices.add(new ChatCompletion(content, finishReason, choices.isEmpty() ? usage : null));
             }
-            
-            return answer;
+            if (choices.isEmpty()) {
+                throw new LlmApiException("OpenAI API returned no choices", response.statusCode());
+            }
+            return choices;
 
+        } catch (HttpTimeoutException e) {
+            throw new DeadlineExceededException("OpenAI API call exceeded its timeout of " + options.timeout(), e);
         } catch (IOException | InterruptedException e) {
             String errorMsg = "Failed to call OpenAI API: " + e.getMessage();
             logger.error("❌ {}", errorMsg, e);
             throw new RuntimeException(errorMsg, e);
+        } finally {
+            if (!settled) {
+                // Rejected, failed or timed out: give the reservation back
+                rateLimitScheduler.recordUsage(reservedTokens, 0);
+            }
         }
     }
 
     @Override
     public Flux<String> streamChat(String prompt) {
-        return Flux.<String>create(sink -> startStreamingRequest(prompt, sink), FluxSink.OverflowStrategy.BUFFER)
+        return streamChat(prompt, ChatOptions.defaults());
+    }
+
+    @Override
+    public Flux<String> streamChat(String prompt, ChatOptions options) {
+        return streamChat(List.of(ChatMessage.user(prompt)), options);
+    }
+
+    @Override
+    public Flux<String> streamChat(List<ChatMessage> messages, ChatOptions options) {
+        return streamChatDeltas(messages, options)
+                .filter(ChatDelta::isContent)
+                .map(ChatDelta::text);
+    }
+
+    /**
+     * Streams answer and reasoning separately. Reasoning comes either from dedicated
+     * {@code reasoning_content}/{@code reasoning} delta fields (DeepSeek, vLLM, OpenRouter) or from
+     * think sections inside the content; code fences around the answer are stripped.
+     */
+    @Override
+    public Flux<ChatDelta> streamChatDeltas(List<ChatMessage> messages, ChatOptions options) {
+        return Flux.<ChatDelta>create(sink -> startStreamingRequest(messages, options, sink), FluxSink.OverflowStrategy.BUFFER)
                 .subscribeOn(Schedulers.boundedElastic());
     }
 
@@ -324,101 +574,74 @@ public class OpenAiLlmClient implements LlmClient {
         return true;
     }
 
-    private void startStreamingRequest(String prompt, FluxSink<String> sink) {
+    private void startStreamingRequest(List<ChatMessage> messages, ChatOptions options, FluxSink<ChatDelta> sink) {
         AtomicBoolean cancelled = new AtomicBoolean(false);
+        ReasoningStreamFilter filter = new ReasoningStreamFilter();
         sink.onCancel(() -> cancelled.set(true));
+        long startNanos = System.nanoTime();
+        // Raw answer so far, before reasoning/fence filtering; replayed if the stream is cut off
+        StringBuilder raw = new StringBuilder();
+        Consumer<String> forward = text -> {
+            if (!text.isEmpty()) {
+                raw.append(text);
+                filter.accept(text).forEach(sink::next);
+            }
+        };
 
         try {
-            ObjectNode requestBody = objectMapper.createObjectNode();
-            requestBody.put("model", model);
-            requestBody.put("temperature", temperature);
-            requestBody.put("max_tokens", maxTokens);
-            requestBody.put("stream", true);
-
-            ArrayNode messages = requestBody.putArray("messages");
-            ObjectNode userMessage = messages.addObject();
-            userMessage.put("role", "user");
-            userMessage.put("content", prompt);
-
-            String requestBodyStr = objectMapper.writeValueAsString(requestBody);
-
-            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
-                    .uri(URI.create(apiUrl))
-                    .header("Content-Type", "application/json")
-                    .header("Accept", "text/event-stream")
-                    .POST(HttpRequest.BodyPublishers.ofString(requestBodyStr));
-
-            if (apiKey != null && !apiKey.isEmpty()) {
-                requestBuilder.header("Authorization", "Bearer " + apiKey);
+            ObjectNode structuredOutput = structuredOutputFields(options);
+            SseResponse response = openStream(messages, options, structuredOutput);
+            if (structuredOutput != null && isStructuredOutputRejection(response.http().statusCode())) {
+                discard(response);
+                logger.warn("⚠️  {} streaming request rejected with {}; retrying with prompt-only output",
+                        structuredOutputMode, response.http().statusCode());
+                response = openStream(messages, options, null);
+                if (response.http().statusCode() == 200) {
+                    disableStructuredOutput();
+                }
             }
 
-            HttpRequest request = requestBuilder.build();
-
-            // Stream as lines (SSE)
-            HttpResponse<java.util.stream.Stream<String>> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
-
-            if (response.statusCode() != 200) {
-                String errorMsg = "OpenAI streaming API error: " + response.statusCode();
+            if (response.http().statusCode() != 200) {
+                String errorMsg = "OpenAI streaming API error: " + response.http().statusCode();
                 logger.error("❌ {} body not captured in streaming mode", errorMsg);
-                sink.error(new RuntimeException(errorMsg));
+                discard(response);
+                sink.error(apiError(errorMsg, response.http()));
                 return;
             }
 
-            response.body().forEach(line -> {
-                if (cancelled.get() || sink.isCancelled()) {
-                    return;
-                }
-                if (line == null) {
-                    return;
-                }
-                String trimmed = line.trim();
-                if (trimmed.isEmpty()) {
-                    return;
-                }
-                if (!trimmed.startsWith("data:")) {
-                    return;
-                }
-
-                String data = trimmed.substring("data:".length()).trim();
-                if ("[DONE]".equals(data)) {
-                    sink.complete();
+            String finishReason = readStream(response, options, startNanos, sink, cancelled, forward);
+            for (int continuation = 1; ContinuationSupport.isTruncated(finishReason) && !cancelled.get(); continuation++) {
+                if (continuation > ContinuationSupport.MAX_CONTINUATIONS) {
+                    sink.error(new IncompleteOutputException("Answer still truncated after "
+                            + ContinuationSupport.MAX_CONTINUATIONS + " continuations", raw.toString()));
                     return;
                 }
-
+                logger.info("✂️  Streamed answer truncated at {} chars (max_tokens={}); requesting continuation {}",
+                        raw.length(), maxTokens, continuation);
                 try {
-                    JsonNode evt = objectMapper.readTree(data);
-                    JsonNode choice0 = evt.path("choices").path(0);
-
-                    // OpenAI streaming: choices[0].delta.content
-                    String delta = null;
-                    JsonNode deltaNode = choice0.path("delta");
-                    if (!deltaNode.isMissingNode() && deltaNode.has("content")) {
-                        delta = deltaNode.path("content").asText();
-                    }
-
-                    // Some compatible providers may stream in message.content
-                    if ((delta == null || delta.isEmpty()) && choice0.has("message")) {
-                        JsonNode msg = choice0.path("message");
-                        if (msg.has("content")) {
-                            delta = msg.path("content").asText();
-                        }
-                    }
-
-                    if (delta != null && !delta.isEmpty()) {
-                        sink.next(delta);
-                    }
-                } catch (Exception parseEx) {
-                    // Don't fail the whole stream on a single malformed line; log and continue.
-                    if (debug) {
-                        logger.debug("Ignoring non-JSON SSE data line: {}", data, parseEx);
+                    response = openStream(ContinuationSupport.continuationMessages(messages, raw.toString()),
+                            remainingOptions(options, startNanos).withResponseSchema(null), null);
+                    if (response.http().statusCode() != 200) {
+                        discard(response);
+                        throw apiError("OpenAI streaming API error: " + response.http().statusCode(), response.http());
                     }
+                } catch (IOException | RuntimeException e) {
+                    sink.error(new IncompleteOutputException(
+                            "Answer truncated and continuation failed: " + e.getMessage(), raw.toString(), e));
+                    return;
                 }
-            });
+                ContinuationSupport.Stitcher stitcher = new ContinuationSupport.Stitcher(raw.toString());
+                finishReason = readStream(response, options, startNanos, sink, cancelled,
+                        chunk -> forward.accept(stitcher.accept(chunk)));
+                forward.accept(stitcher.finish());
+            }
 
             if (!sink.isCancelled() && !cancelled.get()) {
+                filter.finish().forEach(sink::next);
                 sink.complete();
             }
+        } catch (HttpTimeoutException e) {
+            sink.error(new DeadlineExceededException("OpenAI streaming call exceeded its timeout of " + options.timeout(), e));
         } catch (IOException | InterruptedException e) {
             String errorMsg = "Failed to call OpenAI streaming API: " + e.getMessage();
             logger.error("❌ {}", errorMsg, e);
@@ -429,70 +652,359 @@ public class OpenAiLlmClient implements LlmClient {
         }
     }
 
-    private String maskApiKey(String apiKey) {
-        if (apiKey == null || apiKey.length() <= 8) {
-            return "***";
-        }
-        return apiKey.substring(0, 4) + "..." + apiKey.substring(apiKey.length() - 4);
+    /**
+     * An opened SSE response and the budget reserved with the rate limit scheduler for it.
+     */
+    private record SseResponse(HttpResponse<java.util.stream.Stream<String>> http, RequestBudget budget) {
+    }
+
+    /**
+     * Tokens of one SSE response: the final {@code usage} chunk if the server sent one, and a local count of
+     * what was streamed in case it did not.
+     */
+    private static final class StreamUsage {
+        long totalTokens = -1;
+        long streamedTokens;
     }
 
     /**
-     * Extract the actual response content from a model that may include thinking/reasoning.
-     * This handles various formats:
-     * 1. Standard models: just return the content as-is
-     * 2. Thinking models with structured format: extract the answer section
-     * 3. Models with inline thinking markers: filter out thinking sections
-     * 4. Models with <think> tags: extract content after </think>
+     * Read one SSE response up to {@code [DONE]}, passing answer text to {@code onContent} and reasoning
+     * straight to the sink. However the read ends, the tokens reserved for the request are settled with the
+     * rate limit scheduler: with the reported usage, or with a local count when the server reported none.
+     *
+     * @return the last {@code finish_reason} seen, or null; also null once cancelled or past the deadline
+     *         (which sets {@code cancelled} and errors the sink)
      */
-    private String extractAnswerFromContent(String content) {
-        if (content == null || content.isEmpty()) {
-            return content;
+    private String readStream(SseResponse response, ChatOptions options,
+                              long startNanos, FluxSink<ChatDelta> sink, AtomicBoolean cancelled,
+                              Consumer<String> onContent) {
+        // HttpRequest.timeout only covers waiting for the response headers. A server that stalls mid-body would
+        // block the reader forever, so the body is closed at the deadline, which wakes it up.
+        long deadlineNanos = options.timeout() != null ? startNanos + options.timeout().toNanos() : Long.MAX_VALUE;
+        // Whoever sets it first, the reader finishing or the watchdog, decides how the stream ended
+        AtomicBoolean settled = new AtomicBoolean(false);
+        boolean timedOut = false;
+        String finishReason = null;
+        StreamUsage usage = new StreamUsage();
+
+        // Closed by whichever ends the read, so not a try-with-resources variable
+        java.util.stream.Stream<String> lines = response.http().body();
+        Disposable watchdog = deadlineNanos == Long.MAX_VALUE ? null : Schedulers.parallel().schedule(() -> {
+            if (settled.compareAndSet(false, true)) {
+                lines.close();
+            }
+        }, Math.max(deadlineNanos - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
+        try {
+            finishReason = readLines(lines.iterator(), options, deadlineNanos, sink, cancelled, onContent, usage);
+        } catch (UncheckedIOException e) {
+            if (settled.compareAndSet(false, true)) {
+                throw e;
+            }
+        } finally {
+            timedOut = !settled.compareAndSet(false, true);
+            if (watchdog != null) {
+                watchdog.dispose();
+            }
+            lines.close();
+            rateLimitScheduler.recordUsage(response.budget().reservedTokens(), usage.totalTokens >= 0
+                    ? usage.totalTokens : response.budget().promptTokens() + usage.streamedTokens);
         }
-        
-        // Pattern 1: <think>...</think> tags (used by some Qwen models)
-        // Extract everything after </think>
-        if (content.contains("</think>")) {
-            int thinkEnd = content.indexOf("</think>");
-            if (thinkEnd != -1) {
-                String answer = content.substring(thinkEnd + 8).trim();
-                if (!answer.isEmpty()) {
-                    logger.debug("🔍 Extracted answer after </think> tag (filtered {} chars of thinking)", thinkEnd + 8);
-                    return answer;
+        if (timedOut && !cancelled.getAndSet(true)) {
+            sink.error(new DeadlineExceededException("OpenAI streaming call exceeded its timeout of " + options.timeout()));
+        }
+        return cancelled.get() || sink.isCancelled() ? null : finishReason;
+    }
+
+    private String readLines(Iterator<String> it, ChatOptions options, long deadlineNanos, FluxSink<ChatDelta> sink,
+                             AtomicBoolean cancelled, Consumer<String> onContent, StreamUsage usage) {
+        String finishReason = null;
+        while (it.hasNext()) {
+            if (cancelled.get() || sink.isCancelled()) {
+                return null;
+            }
+            if (deadlineNanos != Long.MAX_VALUE && System.nanoTime() - deadlineNanos > 0L) {
+                cancelled.set(true);
+                sink.error(new DeadlineExceededException("OpenAI streaming call exceeded its timeout of " + options.timeout()));
+                return null;
+            }
+            String line = it.next();
+            if (line == null) {
+                continue;
+            }
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!trimmed.startsWith("data:")) {
+                continue;
+            }
+
+            String data = trimmed.substring("data:".length()).trim();
+            if ("[DONE]".equals(data)) {
+                break;
+            }
+
+            try {
+                JsonNode evt = objectMapper.readTree(data);
+                JsonNode choice0 = evt.path("choices").path(0);
+                // With include_usage, the last chunk before [DONE] carries the usage of the whole response
+                long totalTokens = evt.path("usage").path("total_tokens").asLong(-1);
+                if (totalTokens >= 0) {
+                    usage.totalTokens = totalTokens;
+                }
+
+                // OpenAI streaming: choices[0].delta.content
+                String delta = null;
+                JsonNode deltaNode = choice0.path("delta");
+                if (!deltaNode.isMissingNode() && deltaNode.has("content")) {
+                    delta = deltaNode.path("content").asText();
+                }
+
+                // Some compatible providers may stream in message.content
+                if ((delta == null || delta.isEmpty()) && choice0.has("message")) {
+                    JsonNode msg = choice0.path("message");
+                    if (msg.has("content")) {
+                        delta = msg.path("content").asText();
+                    }
+                }
+
+                // Reasoning models served by DeepSeek/vLLM (reasoning_content) or OpenRouter (reasoning)
+                String reasoning = deltaNode.path("reasoning_content").asText(deltaNode.path("reasoning").asText(""));
+                if (!reasoning.isEmpty()) {
+                    usage.streamedTokens += tokenCounter.count(reasoning);
+                    sink.next(ChatDelta.reasoning(reasoning));
+                }
+
+                if (delta != null && !delta.isEmpty()) {
+                    usage.streamedTokens += tokenCounter.count(delta);
+                    onContent.accept(delta);
+                }
+
+                String reason = choice0.path("finish_reason").asText("");
+                if (!reason.isEmpty() && !"null".equals(reason)) {
+                    finishReason = reason;
+                }
+            } catch (Exception parseEx) {
+                // Don't fail the whole stream on a single malformed line; log and continue.
+                if (debug) {
+                    logger.debug("Ignoring non-JSON SSE data line: {}", data, parseEx);
                 }
             }
         }
-        
-        // Pattern 2: Some models wrap thinking in XML-like tags
-        // Example: <thinking>...</thinking>\n<answer>...</answer>
-        if (content.contains("<thinking>") && content.contains("<answer>")) {
-            int answerStart = content.indexOf("<answer>");
-            int answerEnd = content.indexOf("</answer>");
-            if (answerStart != -1 && answerEnd != -1) {
-                String answer = content.substring(answerStart + 8, answerEnd).trim();
-                logger.debug("🔍 Extracted answer from XML-tagged content");
-                return answer;
-            }
+        return finishReason;
+    }
+
+    private SseResponse openStream(List<ChatMessage> messages, ChatOptions options, ObjectNode structuredOutput)
+            throws IOException, InterruptedException {
+        RequestBudget budget = budgetFor(messages, options, 1);
+        ObjectNode requestBody = objectMapper.createObjectNode();
+        requestBody.put("model", model);
+        requestBody.put("temperature", temperature);
+        requestBody.put("max_tokens", budget.maxTokens());
+        requestBody.put("stream", true);
+        // Ask for a final usage chunk, so the tokens reserved for the rate limit can be settled
+        requestBody.putObject("stream_options").put("include_usage", true);
+        putMessages(requestBody, messages);
+        if (structuredOutput != null) {
+            requestBody.setAll(structuredOutput);
         }
-        
-        // Pattern 3: Markdown-style sections
-        // Example: ## Thinking\n...\n## Answer\n...
-        if (content.contains("## Thinking") && content.contains("## Answer")) {
-            int answerStart = content.indexOf("## Answer");
-            if (answerStart != -1) {
-                String answer = content.substring(answerStart + 9).trim();
-                // Remove the "## Answer" header if it's still there
-                if (answer.startsWith("\n")) {
-                    answer = answer.substring(1).trim();
+
+        String requestBodyStr = objectMapper.writeValueAsString(requestBody);
+
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                .uri(URI.create(apiUrl))
+                .header("Content-Type", "application/json")
+                .header("Accept", "text/event-stream")
+                .POST(HttpRequest.BodyPublishers.ofString(requestBodyStr));
+
+        if (apiKey != null && !apiKey.isEmpty()) {
+            requestBuilder.header("Authorization", "Bearer " + apiKey);
+        }
+        acquire(requestBuilder, options, budget.reservedTokens());
+
+        HttpRequest request = requestBuilder.build();
+
+        // Stream as lines (SSE)
+        HttpResponse<java.util.stream.Stream<String>> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            rateLimitScheduler.recordUsage(budget.reservedTokens(), 0);
+            throw e;
+        }
+        rateLimitScheduler.updateFromHeaders(response.headers());
+        return new SseResponse(response, budget);
+    }
+
+    /**
+     * Close a response that will not be read and give its reserved tokens back.
+     */
+    private void discard(SseResponse response) {
+        response.http().body().close();
+        rateLimitScheduler.recordUsage(response.budget().reservedTokens(), 0);
+    }
+
+    /**
+     * Extra top-level request fields that make the server enforce {@link ChatOptions#responseSchema()},
+     * or null when structured output is off, unsupported for this schema, or was rejected by the endpoint.
+     */
+    private ObjectNode structuredOutputFields(ChatOptions options) {
+        if (structuredOutputMode == StructuredOutputMode.NONE || structuredOutputRejected || options.responseSchema() == null) {
+            return null;
+        }
+        ObjectNode fields = objectMapper.createObjectNode();
+        switch (structuredOutputMode) {
+            case JSON_SCHEMA -> {
+                JsonNode strictSchema = StrictSchemaTransformer.transform(options.responseSchema());
+                if (strictSchema == null) {
+                    return null;
                 }
-                logger.debug("🔍 Extracted answer from markdown-sectioned content");
-                return answer;
+                ObjectNode jsonSchema = fields.putObject("response_format")
+                        .put("type", "json_schema")
+                        .putObject("json_schema");
+                jsonSchema.put("name", "form_response");
+                jsonSchema.put("strict", true);
+                jsonSchema.set("schema", strictSchema);
+            }
+            case GUIDED_JSON -> fields.set("guided_json", options.responseSchema());
+            case GBNF -> fields.put("grammar", GbnfGrammarCompiler.compile(options.responseSchema()));
+            default -> {
+                return null;
+            }
+        }
+        return fields;
+    }
+
+    private static boolean isStructuredOutputRejection(int statusCode) {
+        return statusCode == 400 || statusCode == 422;
+    }
+
+    private void disableStructuredOutput() {
+        if (!structuredOutputRejected) {
+            structuredOutputRejected = true;
+            logger.warn("⚠️  Endpoint {} does not accept {}; using prompt-only output from now on", apiUrl, structuredOutputMode);
+        }
+    }
+
+    /**
+     * Wait for the rate limit scheduler, then map what is left of the per-call timeout onto the HTTP request, so
+     * time spent waiting counts against the deadline. A budget used up by then fails without sending, and the
+     * reserved tokens are given back.
+     */
+    private void acquire(HttpRequest.Builder requestBuilder, ChatOptions options, long reservedTokens)
+            throws InterruptedException {
+        long startNanos = System.nanoTime();
+        if (options.timeout() != null && (options.timeout().isZero() || options.timeout().isNegative())) {
+            throw new DeadlineExceededException("No time left for the OpenAI API call");
+        }
+        rateLimitScheduler.acquire(reservedTokens);
+        if (options.timeout() == null) {
+            return;
+        }
+        Duration remaining = options.timeout().minusNanos(System.nanoTime() - startNanos);
+        if (remaining.isZero() || remaining.isNegative()) {
+            rateLimitScheduler.recordUsage(reservedTokens, 0);
+            throw new DeadlineExceededException("Timeout of " + options.timeout() + " used up waiting for the rate limit");
+        }
+        requestBuilder.timeout(remaining);
+    }
+
+    /**
+     * Build the exception for a non-200 response; a 429 also pauses every client sharing the rate limit scheduler.
+     */
+    private LlmApiException apiError(String message, HttpResponse<?> response) {
+        Duration retryAfter = parseRetryAfter(response.headers());
+        if (response.statusCode() == 429) {
+            rateLimitScheduler.onRateLimited(retryAfter);
+        }
+        return new LlmApiException(message, response.statusCode(), retryAfter);
+    }
+
+    /**
+     * Locally counted prompt size and the {@code max_tokens} to request.
+     */
+    private record RequestBudget(long promptTokens, int maxTokens, int choices) {
+        /**
+         * What the request counts against the TPM limit up front: prompt plus completion budget of every choice.
+         */
+        long reservedTokens() {
+            return promptTokens + (long) maxTokens * choices;
+        }
+    }
+
+    /**
+     * The smaller of the configured and the per-call output budget, lowered further if the prompt leaves less
+     * room than that in the context window.
+     *
+     * @throws PromptTooLargeException if less than {@link #MIN_ANSWER_TOKENS} would be left for the answer
+     */
+    private RequestBudget budgetFor(List<ChatMessage> messages, ChatOptions options, int choices) {
+        long promptTokens = countPromptTokens(messages);
+        int budget = options.maxTokens() != null ? Math.min(options.maxTokens(), maxTokens) : maxTokens;
+        if (contextWindow > 0) {
+            long room = contextWindow - promptTokens;
+            if (room < MIN_ANSWER_TOKENS) {
+                throw new PromptTooLargeException("Prompt of ~" + promptTokens + " tokens leaves no room for an answer in "
+                        + model + "'s context window of " + contextWindow + " tokens", promptTokens, contextWindow);
+            }
+            if (room < budget) {
+                logger.info("✂️  Lowering max_tokens from {} to {} to fit the ~{} token prompt into the context window",
+                        budget, room, promptTokens);
+                budget = (int) room;
             }
         }
+        return new RequestBudget(promptTokens, budget, choices);
+    }
+
+    private long countPromptTokens(List<ChatMessage> messages) {
+        long tokens = 3; // every reply is primed with the assistant role
+        for (ChatMessage message : messages) {
+            tokens += TOKENS_PER_MESSAGE + tokenCounter.count(message.content());
+        }
+        return tokens;
+    }
+
+    /**
+     * Read the {@code usage} object. Cached prompt tokens are reported as
+     * {@code prompt_tokens_details.cached_tokens} by OpenAI and as {@code prompt_cache_hit_tokens} by DeepSeek.
+     */
+    private static TokenUsage parseUsage(JsonNode usageNode) {
+        if (usageNode.isMissingNode() || usageNode.isNull()) {
+            return null;
+        }
+        long cached = usageNode.path("prompt_tokens_details").path("cached_tokens")
+                .asLong(usageNode.path("prompt_cache_hit_tokens").asLong(0));
+        return new TokenUsage(
+                usageNode.path("prompt_tokens").asLong(0),
+                usageNode.path("completion_tokens").asLong(0),
+                cached);
+    }
+
+    private static void putMessages(ObjectNode requestBody, List<ChatMessage> messages) {
+        ArrayNode array = requestBody.putArray("messages");
+        for (ChatMessage message : messages) {
+            ObjectNode node = array.addObject();
+            node.put("role", message.role().apiName());
+            node.put("content", message.content());
+        }
+    }
+
+    /**
+     * Parse the {@code Retry-After} header (delta-seconds form). HTTP-date values are ignored.
+     */
+    private static Duration parseRetryAfter(HttpHeaders headers) {
+        return headers.firstValue("Retry-After")
+                .map(String::trim)
+                .filter(v -> v.matches("\\d+(\\.\\d+)?"))
+                .map(v -> Duration.ofMillis((long) (Double.parseDouble(v) * 1000)))
+                .orElse(null);
+    }
 
-        // Pattern 4: For o1-like models, the content itself is the answer
-        // The thinking is in a separate field (handled in chat method)
-        // So we just return the content as-is
-        return content;
+    private String maskApiKey(String apiKey) {
+        if (apiKey == null || apiKey.length() <= 8) {
+            return "***";
+        }
+        return apiKey.substring(0, 4) + "..." + apiKey.substring(apiKey.length() - 4);
     }
 
     public static class Builder {
@@ -503,6 +1015,10 @@ public class OpenAiLlmClient implements LlmClient {
         private int maxTokens = LlmConfig.getEnvInt(LlmConfig.ENV_LLM_MAX_TOKENS, LlmConfig.DEFAULT_MAX_TOKENS);
         private boolean skipSslVerify = LlmConfig.getEnvBoolean(LlmConfig.ENV_LLM_SKIP_SSL_VERIFY, LlmConfig.DEFAULT_SKIP_SSL_VERIFY);
         private boolean debug = LlmConfig.getEnvBoolean(LlmConfig.ENV_LLM_DEBUG, LlmConfig.DEFAULT_DEBUG);
+        private RateLimitScheduler rateLimitScheduler;
+        private StructuredOutputMode structuredOutputMode = StructuredOutputMode.fromConfig(
+                LlmConfig.getEnv(LlmConfig.ENV_LLM_STRUCTURED_OUTPUT, LlmConfig.DEFAULT_STRUCTURED_OUTPUT));
+        private int contextWindow = LlmConfig.getEnvInt(LlmConfig.ENV_LLM_CONTEXT_WINDOW, LlmConfig.DEFAULT_CONTEXT_WINDOW);
 
         public Builder apiKey(String apiKey) {
             this.apiKey = apiKey;
@@ -539,8 +1055,28 @@ public class OpenAiLlmClient implements LlmClient {
             return this;
         }
 
+        public Builder rateLimitScheduler(RateLimitScheduler rateLimitScheduler) {
+            this.rateLimitScheduler = rateLimitScheduler;
+            return this;
+        }
+
+        public Builder structuredOutputMode(StructuredOutputMode structuredOutputMode) {
+            this.structuredOutputMode = structuredOutputMode;
+            return this;
+        }
+
+        /**
+         * The model's context size in tokens, enabling the local preflight check (0 = unknown, no check).
+         */
+        public Builder contextWindow(int contextWindow) {
+            this.contextWindow = contextWindow;
+            return this;
+        }
+
         public OpenAiLlmClient build() {
-            return new OpenAiLlmClient(apiKey, model, apiUrl, temperature, maxTokens, skipSslVerify, debug);
+            RateLimitScheduler scheduler = rateLimitScheduler != null ? rateLimitScheduler : RateLimitScheduler.forEndpoint(apiUrl, apiKey);
+            return new OpenAiLlmClient(apiKey, model, apiUrl, temperature, maxTokens, skipSslVerify, debug, scheduler,
+                    structuredOutputMode, contextWindow);
         }
     }
 }
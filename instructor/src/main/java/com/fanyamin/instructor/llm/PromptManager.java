@@ -1,9 +1,28 @@
 package com.fanyamin.instructor.llm;
 
+import com.fanyamin.instructor.api.FieldResult;
+import com.fanyamin.instructor.api.OutputProfile;
 import com.fanyamin.instructor.api.ParsingRequest;
+import com.fanyamin.instructor.schema.KeyAliases;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 public class PromptManager {
 
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .build();
+
     private static final String SYSTEM_PROMPT_TEMPLATE = """
         You are a smart form filling assistant. Your goal is to extract structured data from user input based on a provided JSON Schema.
         
@@ -11,10 +30,7 @@ public class PromptManager {
         1. **Analyze the Input**: detailedly read the User Input and Context.
         2. **Follow the Schema**: The output MUST adhere to the provided JSON Schema.
         3. **Extraction Rules**:
-           - **Value**: Extract the value for each field. If a field is missing, do not invent it unless a default is clear from context.
-           - **Confidence**: Assign a confidence score (0.0 to 1.0) for each extracted value.
-           - **Reasoning**: Explain why you extracted this value or why you are unsure.
-           - **Alternatives**: If the input is ambiguous, list alternative values.
+        %s
         4. **Validation**:
            - Ensure types match the schema (e.g., integers for numbers).
            - Respect enums and constraints.
@@ -23,10 +39,7 @@ public class PromptManager {
            {
              "fields": {
                "fieldName": {
-                 "value": <extracted_value>,
-                 "confidence": <0.0-1.0>,
-                 "reasoning": "<explanation>",
-                 "alternatives": [<alt1>, <alt2>]
+        %s
                }
              },
              "errors": [
@@ -34,11 +47,84 @@ public class PromptManager {
              ]
            }
 
-        ### CONTEXT
+        ### FORM SCHEMA
+        %s
+        """;
+
+    private static final String VALUE_RULE =
+            "   - **Value**: Extract the value for each field. If a field is missing, do not invent it unless a default is clear from context.";
+    private static final String CONFIDENCE_RULE =
+            "   - **Confidence**: Assign a confidence score (0.0 to 1.0) for each extracted value.";
+    private static final String REASONING_RULE =
+            "   - **Reasoning**: Explain why you extracted this value or why you are unsure.";
+    private static final String ALTERNATIVES_RULE =
+            "   - **Alternatives**: If the input is ambiguous, list alternative values.";
+    private static final String LEAN_RULE =
+            "   - Output only the parts shown below. Do not add explanations; they will be requested separately if needed.";
+
+    private static final String ALIAS_RULE =
+            "   - **Short keys**: Write each field under its key from FIELD KEYS (fields not listed keep their name), and use %s.";
+
+    private static final String VALUE_FORMAT = "         \"%s\": <extracted_value>";
+    private static final String CONFIDENCE_FORMAT = "         \"%s\": <0.0-1.0>";
+    private static final String REASONING_FORMAT = "         \"%s\": \"<explanation>\"";
+    private static final String ALTERNATIVES_FORMAT = "         \"%s\": [<alt1>, <alt2>]";
+
+    private static final String FIELD_KEYS_TEMPLATE = """
+
+        ### FIELD KEYS
+        %s
+        """;
+
+    private static final String EXPLAIN_PROMPT_TEMPLATE = """
+        ### EXPLAIN FIELDS
+        For each of these fields: %s
+        keep the value from your previous answer and add confidence, reasoning and alternatives.
+        Return JSON with only these fields: { "fields": { "fieldName": { "value": ..., "confidence": ..., "reasoning": "...", "alternatives": [...] } } }
+        """;
+
+    private static final String RECONCILE_INPUT_TEMPLATE = """
+        The following excerpts of a longer text are in their original order; later ones are more recent.
+
+        %s
+
+        Different parts of the text gave different values for these fields: %s
+        Choose the value the text as a whole supports; a later statement usually replaces an earlier one.
+        """;
+
+    private static final String RECORDS_TEMPLATE = """
+
+        ### MULTIPLE RECORDS
+        The input describes several items. Extract every item as one object in the format above, in the order the
+        items appear, and return:
+        { "records": [ { "fields": { ... }, "errors": [ ... ] }, ... ], "more": <true if items remain that are not in this answer> }
+        """;
+
+    private static final String RECORDS_START = "Return the items starting with the first one.";
+
+    private static final String RECORDS_CONTINUE_TEMPLATE = """
+        Items 1 to %d were already extracted; the last of them was:
         %s
+        Return the items starting with item %d.""";
+
+    private static final String TEMPLATE_INDUCTION_TEMPLATE = """
+        You write extraction programs for machine-generated text that always follows the same template.
+        The samples below follow one template; each comes with the values extracted from it for this form.
+
+        Return JSON:
+        { "fields": { "fieldName": { "regex": "<Java regex>", "group": 1 } } }
+        - The regex's capturing group must be exactly the value; anchor it on the template's fixed wording around the value, not on the value itself.
+        - Use { "constant": <value> } for a field that has the same value in every text of this template.
+        - Leave out fields that are not in the values.
+        - The program must reproduce the given values exactly for every sample.
 
         ### FORM SCHEMA
         %s
+        """;
+
+    private static final String USER_PROMPT_TEMPLATE = """
+        ### CONTEXT
+        %s
 
         ### USER INPUT
         %s
@@ -46,9 +132,147 @@ public class PromptManager {
         Answer strictly in JSON.
         """;
 
+    /**
+     * The whole prompt as one text (system part followed by the user part).
+     */
     public String generateSystemPrompt(ParsingRequest request) {
-        String contextStr = request.context() != null ? request.context().toString() : "{}";
-        return String.format(SYSTEM_PROMPT_TEMPLATE, contextStr, request.schema(), request.userInput());
+        return generateInstructions(request, null) + "\n" + generateUserPrompt(request);
+    }
+
+    /**
+     * The prompt as a conversation: a system message with instructions and schema, then a user message with
+     * context and input. The system message depends only on the schema, so providers can serve it from their
+     * prefix cache across requests; everything that changes per request (e.g. {@code now}) comes after it.
+     */
+    public List<ChatMessage> generateMessages(ParsingRequest request) {
+        return generateMessages(request, null);
+    }
+
+    /**
+     * Like {@link #generateMessages(ParsingRequest)}, but asks for the short keys of {@code aliases} in the
+     * answer; null means real names.
+     */
+    public List<ChatMessage> generateMessages(ParsingRequest request, KeyAliases aliases) {
+        return List.of(
+                ChatMessage.system(generateInstructions(request, aliases)),
+                ChatMessage.user(generateUserPrompt(request)));
+    }
+
+    /**
+     * The prompt for a multi-record parse: the form instructions plus the records envelope, then the input and
+     * where to start. {@code extracted} items were returned by earlier calls, the last one as {@code lastRecord};
+     * the system message still depends only on the schema.
+     */
+    public List<ChatMessage> generateRecordsMessages(ParsingRequest request, KeyAliases aliases,
+                                                     int extracted, String lastRecord) {
+        String start = extracted == 0 ? RECORDS_START
+                : String.format(RECORDS_CONTINUE_TEMPLATE, extracted, lastRecord, extracted + 1);
+        return List.of(
+                ChatMessage.system(generateInstructions(request, aliases) + RECORDS_TEMPLATE),
+                ChatMessage.user(generateUserPrompt(request) + "\n" + start));
+    }
+
+    /**
+     * Follow-up turn asking for the details that a lean {@link OutputProfile} left out. Sent after the original
+     * conversation and the model's answer, so the cached prefix is reused.
+     */
+    public String generateExplainPrompt(Collection<String> fieldNames) {
+        return String.format(EXPLAIN_PROMPT_TEMPLATE, String.join(", ", fieldNames));
+    }
+
+    /**
+     * User input for settling fields on which the windows of a long input disagreed: the excerpts that produced
+     * the competing values (in text order) and, per field, the values found.
+     */
+    public String generateReconcileInput(List<String> excerpts, Map<String, List<Object>> candidateValues) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < excerpts.size(); i++) {
+            text.append(i == 0 ? "" : "\n\n").append("[Excerpt ").append(i + 1).append("]\n").append(excerpts.get(i));
+        }
+        List<String> fields = new ArrayList<>();
+        candidateValues.forEach((name, values) -> fields.add(name + " " + canonicalJson(Map.of("found", values))));
+        return String.format(RECONCILE_INPUT_TEMPLATE, text, String.join("; ", fields));
+    }
+
+    /**
+     * The prompt asking for an extraction program (see {@code ExtractionProgram}) for a recurring input template:
+     * the schema, then the sample inputs with the values extracted from each.
+     */
+    public List<ChatMessage> generateTemplateInductionMessages(String schema, List<String> inputs,
+                                                               List<Map<String, Object>> values) {
+        StringBuilder samples = new StringBuilder("### SAMPLES");
+        for (int i = 0; i < inputs.size(); i++) {
+            samples.append("\n\n[Sample ").append(i + 1).append("]\nTEXT:\n").append(inputs.get(i))
+                    .append("\nVALUES: ").append(canonicalJson(values.get(i)));
+        }
+        return List.of(
+                ChatMessage.system(String.format(TEMPLATE_INDUCTION_TEMPLATE, schema)),
+                ChatMessage.user(samples + "\n\nAnswer strictly in JSON."));
+    }
+
+    private String generateInstructions(ParsingRequest request, KeyAliases aliases) {
+        OutputProfile profile = request.effectiveOutputProfile();
+        List<String> rules = new ArrayList<>();
+        List<String> format = new ArrayList<>();
+        List<String> partKeys = new ArrayList<>();
+        rules.add(VALUE_RULE);
+        format.add(formatLine(VALUE_FORMAT, "value", aliases, partKeys));
+        if (profile.includes(FieldResult.CONFIDENCE)) {
+            rules.add(CONFIDENCE_RULE);
+            format.add(formatLine(CONFIDENCE_FORMAT, FieldResult.CONFIDENCE, aliases, partKeys));
+        }
+        if (profile.includes(FieldResult.REASONING)) {
+            rules.add(REASONING_RULE);
+            format.add(formatLine(REASONING_FORMAT, FieldResult.REASONING, aliases, partKeys));
+        }
+        if (profile.includes(FieldResult.ALTERNATIVES)) {
+            rules.add(ALTERNATIVES_RULE);
+            format.add(formatLine(ALTERNATIVES_FORMAT, FieldResult.ALTERNATIVES, aliases, partKeys));
+        }
+        if (!profile.omittedParts().isEmpty()) {
+            rules.add(LEAN_RULE);
+        }
+        if (aliases != null) {
+            rules.add(String.format(ALIAS_RULE, String.join(", ", partKeys)));
+        }
+        String instructions = String.format(SYSTEM_PROMPT_TEMPLATE,
+                String.join("\n", rules), String.join(",\n", format), request.schema());
+        if (aliases == null) {
+            return instructions;
+        }
+        // Still part of the system message: it depends only on the schema, so the prefix stays cacheable
+        List<String> keys = new ArrayList<>();
+        aliases.fieldAliases().forEach((name, alias) -> keys.add("   " + alias + " = " + name));
+        return instructions + String.format(FIELD_KEYS_TEMPLATE, String.join("\n", keys));
+    }
+
+    private static String formatLine(String template, String part, KeyAliases aliases, List<String> partKeys) {
+        if (aliases == null) {
+            return String.format(template, part);
+        }
+        String key = KeyAliases.partAlias(part);
+        partKeys.add("\"" + key + "\" for " + part);
+        return String.format(template, key);
+    }
+
+    private String generateUserPrompt(ParsingRequest request) {
+        return String.format(USER_PROMPT_TEMPLATE, canonicalJson(request.context()), request.userInput());
+    }
+
+    /**
+     * Context as compact JSON with map keys sorted at every level, so equal contexts always render to the same
+     * bytes regardless of the map implementation's iteration order.
+     */
+    public static String canonicalJson(Map<String, Object> context) {
+        if (context == null || context.isEmpty()) {
+            return "{}";
+        }
+        try {
+            return CANONICAL_MAPPER.writeValueAsString(context);
+        } catch (JsonProcessingException e) {
+            // Non-serializable values: fall back to the sorted toString() form rather than failing the request
+            return new TreeMap<>(context).toString();
+        }
     }
 }
 
@@ -0,0 +1,90 @@
+package com.fanyamin.instructor.llm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extracts the answer from a complete response of a model that may include thinking/reasoning.
+ * Shared by the clients; {@link ReasoningStreamFilter} does the same for streamed responses.
+ *
+ * <p>Handles these formats:</p>
+ * <ol>
+ *   <li>Standard models: the content is returned as-is</li>
+ *   <li>{@code <think>...</think>} (some Qwen/DeepSeek models, opening tag optional): the text after
+ *       {@code </think>}</li>
+ *   <li>{@code <thinking>...</thinking><answer>...</answer>}: the answer body</li>
+ *   <li>{@code ## Thinking ... ## Answer ...}: the answer section</li>
+ * </ol>
+ *
+ * <p>A Markdown code fence around the answer (e.g. {@code ```json ... ```}) is removed as well.</p>
+ */
+final class ReasoningFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReasoningFilter.class);
+
+    private static final String FENCE = "```";
+
+    private ReasoningFilter() {
+    }
+
+    static String extractAnswer(String content) {
+        if (content == null || content.isEmpty()) {
+            return content;
+        }
+        return stripCodeFence(extractAnswerSection(content));
+    }
+
+    private static String extractAnswerSection(String content) {
+        // Pattern 1: <think>...</think> tags; extract everything after </think>
+        int thinkEnd = content.indexOf("</think>");
+        if (thinkEnd != -1) {
+            String answer = content.substring(thinkEnd + 8).trim();
+            if (!answer.isEmpty()) {
+                logger.debug("🔍 Extracted answer after </think> tag (filtered {} chars of thinking)", thinkEnd + 8);
+                return answer;
+            }
+        }
+
+        // Pattern 2: <thinking>...</thinking>\n<answer>...</answer>
+        if (content.contains("<thinking>")) {
+            int answerStart = content.indexOf("<answer>");
+            int answerEnd = content.indexOf("</answer>");
+            if (answerStart != -1 && answerEnd > answerStart) {
+                logger.debug("🔍 Extracted answer from XML-tagged content");
+                return content.substring(answerStart + 8, answerEnd).trim();
+            }
+        }
+
+        // Pattern 3: ## Thinking\n...\n## Answer\n...
+        if (content.contains("## Thinking")) {
+            int answerStart = content.indexOf("## Answer");
+            if (answerStart != -1) {
+                logger.debug("🔍 Extracted answer from markdown-sectioned content");
+                return content.substring(answerStart + 9).trim();
+            }
+        }
+
+        // Pattern 4: o1-like models return reasoning in a separate field, so the content is the answer
+        return content;
+    }
+
+    /**
+     * Remove a Markdown code fence (with optional language tag) that wraps the whole answer.
+     */
+    static String stripCodeFence(String answer) {
+        String trimmed = answer.strip();
+        if (!trimmed.startsWith(FENCE)) {
+            return answer;
+        }
+        int bodyStart = trimmed.indexOf('\n');
+        if (bodyStart == -1) {
+            return answer;
+        }
+        int bodyEnd = trimmed.lastIndexOf(FENCE);
+        if (bodyEnd <= bodyStart) {
+            // Unclosed fence, e.g. a truncated answer: keep what follows the opening line
+            bodyEnd = trimmed.length();
+        }
+        return trimmed.substring(bodyStart + 1, bodyEnd).strip();
+    }
+}
@@ -0,0 +1,316 @@
+package com.fanyamin.instructor.llm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental counterpart of {@link ReasoningFilter}, shared by the streaming clients.
+ *
+ * <p>Feed streamed chunks to {@link #accept(String)} and forward whatever it returns; call {@link #finish()}
+ * once the stream completes. Reasoning that the model puts in front of its answer is split off as it arrives
+ * and returned as {@link ChatDelta.Kind#REASONING} deltas:</p>
+ * <ul>
+ *   <li>{@code <think>...</think>} followed by the answer</li>
+ *   <li>{@code <thinking>...</thinking><answer>...</answer>} (only the answer body is kept)</li>
+ *   <li>{@code ## Thinking ... ## Answer ...}</li>
+ *   <li>{@code ...</think>} without the opening tag (DeepSeek-R1 chat templates add it to the prompt)</li>
+ * </ul>
+ *
+ * <p>A Markdown code fence around the answer ({@code ```json ... ```}) is stripped as well, so the content
+ * deltas concatenate to plain JSON.</p>
+ *
+ * <p>Only the few characters that could still turn out to be part of a tag or fence are held back, so answer
+ * text is emitted with at most a tag's length of delay. The exception is output that starts with neither a tag
+ * nor JSON: it may be reasoning whose opening tag was never sent, so it is held back until {@code </think>}
+ * shows up or a line starts like an answer ({@code {}, {@code [} or a fence). Not thread-safe; use one
+ * instance per stream.</p>
+ */
+final class ReasoningStreamFilter {
+
+    private static final String THINK_OPEN = "<think>";
+    private static final String THINK_CLOSE = "</think>";
+    private static final String THINKING_OPEN = "<thinking>";
+    private static final String THINKING_CLOSE = "</thinking>";
+    private static final String ANSWER_OPEN = "<answer>";
+    private static final String ANSWER_CLOSE = "</answer>";
+    private static final String MD_THINKING = "## Thinking";
+    private static final String MD_ANSWER = "## Answer";
+    private static final String FENCE = "```";
+
+    private enum State {
+        DETECT, UNTAGGED, IN_THINK, IN_THINKING, SKIP_UNTIL_ANSWER_TAG, IN_MD_THINKING, IN_ANSWER_TAG, PASS, DONE
+    }
+
+    private enum FenceState { DETECT, OPENING_LINE, INSIDE, CLOSED, NONE }
+
+    private final StringBuilder pending = new StringBuilder();
+    private final StringBuilder fenced = new StringBuilder();
+    private State state = State.DETECT;
+    private FenceState fenceState = FenceState.DETECT;
+    private boolean trimLeading;
+    /** In {@link State#UNTAGGED}: how much of {@link #pending} has been searched already. */
+    private int scanned;
+
+    /**
+     * Consume the next chunk and return what can be emitted now: reasoning first, then answer text.
+     * Both parts are omitted when empty, so the list may be empty.
+     */
+    List<ChatDelta> accept(String chunk) {
+        if (chunk == null || chunk.isEmpty()) {
+            return List.of();
+        }
+        pending.append(chunk);
+        StringBuilder content = new StringBuilder();
+        StringBuilder reasoning = new StringBuilder();
+        while (step(content, reasoning)) {
+            // keep going while a state transition consumed input
+        }
+        return deltas(content, reasoning);
+    }
+
+    /**
+     * Flush anything still held back at end of stream.
+     */
+    List<ChatDelta> finish() {
+        StringBuilder content = new StringBuilder();
+        StringBuilder reasoning = new StringBuilder();
+        switch (state) {
+            // No complete tag ever showed up: the held-back text was answer after all
+            case DETECT, UNTAGGED, PASS, IN_ANSWER_TAG -> emit(content, pending.toString());
+            case IN_THINK, IN_THINKING, IN_MD_THINKING -> reasoning.append(pending);
+            default -> {
+                // between </thinking> and <answer>, or already done: nothing to keep
+            }
+        }
+        pending.setLength(0);
+        state = State.DONE;
+
+        if (fenceState == FenceState.DETECT || fenceState == FenceState.INSIDE) {
+            content.append(fenced);
+        }
+        fenced.setLength(0);
+        fenceState = FenceState.CLOSED;
+        return deltas(content, reasoning);
+    }
+
+    private static List<ChatDelta> deltas(StringBuilder content, StringBuilder reasoning) {
+        List<ChatDelta> out = new ArrayList<>(2);
+        if (reasoning.length() > 0) {
+            out.add(ChatDelta.reasoning(reasoning.toString()));
+        }
+        if (content.length() > 0) {
+            out.add(ChatDelta.content(content.toString()));
+        }
+        return out;
+    }
+
+    private boolean step(StringBuilder content, StringBuilder reasoning) {
+        switch (state) {
+            case DETECT -> {
+                String head = pending.toString().stripLeading();
+                if (head.isEmpty()) {
+                    return false;
+                }
+                if (startsWithAndSkip(head, THINK_OPEN, State.IN_THINK)
+                        || startsWithAndSkip(head, THINKING_OPEN, State.IN_THINKING)
+                        || startsWithAndSkip(head, MD_THINKING, State.IN_MD_THINKING)) {
+                    return true;
+                }
+                if (THINK_OPEN.startsWith(head) || THINKING_OPEN.startsWith(head) || MD_THINKING.startsWith(head)) {
+                    return false;
+                }
+                state = isAnswerStart(head.charAt(0)) ? State.PASS : State.UNTAGGED;
+                scanned = 0;
+                return true;
+            }
+            case UNTAGGED -> {
+                int close = pending.indexOf(THINK_CLOSE, Math.max(scanned - (THINK_CLOSE.length() - 1), 0));
+                if (close >= 0) {
+                    // Everything so far was reasoning whose opening tag the model never sent
+                    reasoning.append(pending, 0, close);
+                    pending.delete(0, close + THINK_CLOSE.length());
+                    state = State.PASS;
+                    trimLeading = true;
+                    return true;
+                }
+                if (answerLineSeen()) {
+                    state = State.PASS;
+                    return true;
+                }
+                return false;
+            }
+            case IN_THINK -> {
+                return skipUntil(THINK_CLOSE, State.PASS, reasoning);
+            }
+            case IN_THINKING -> {
+                return skipUntil(THINKING_CLOSE, State.SKIP_UNTIL_ANSWER_TAG, reasoning);
+            }
+            case SKIP_UNTIL_ANSWER_TAG -> {
+                return skipUntil(ANSWER_OPEN, State.IN_ANSWER_TAG, null);
+            }
+            case IN_MD_THINKING -> {
+                return skipUntil(MD_ANSWER, State.PASS, reasoning);
+            }
+            case IN_ANSWER_TAG -> {
+                int end = pending.indexOf(ANSWER_CLOSE);
+                if (end >= 0) {
+                    emit(content, pending.substring(0, end));
+                    pending.setLength(0);
+                    state = State.DONE;
+                    return false;
+                }
+                int safe = pending.length() - (ANSWER_CLOSE.length() - 1);
+                if (safe > 0) {
+                    emit(content, pending.substring(0, safe));
+                    pending.delete(0, safe);
+                }
+                return false;
+            }
+            case PASS -> {
+                emit(content, pending.toString());
+                pending.setLength(0);
+                return false;
+            }
+            default -> {
+                pending.setLength(0);
+                return false;
+            }
+        }
+    }
+
+    private static boolean isAnswerStart(char c) {
+        return c == '{' || c == '[' || c == '`';
+    }
+
+    /**
+     * Whether a line of {@link #pending} starts like an answer; only input not searched before is looked at.
+     */
+    private boolean answerLineSeen() {
+        for (int i = scanned; i < pending.length(); i++) {
+            if (i > 0 && pending.charAt(i - 1) != '\n') {
+                continue;
+            }
+            int first = i;
+            while (first < pending.length() && (pending.charAt(first) == ' ' || pending.charAt(first) == '\t')) {
+                first++;
+            }
+            if (first == pending.length()) {
+                // The line has no text yet: look at it again with the next chunk
+                scanned = i;
+                return false;
+            }
+            if (isAnswerStart(pending.charAt(first))) {
+                return true;
+            }
+        }
+        scanned = pending.length();
+        return false;
+    }
+
+    private boolean startsWithAndSkip(String head, String opener, State next) {
+        if (!head.startsWith(opener)) {
+            return false;
+        }
+        pending.setLength(0);
+        pending.append(head, opener.length(), head.length());
+        state = next;
+        return true;
+    }
+
+    /**
+     * Move input up to {@code marker} into {@code reasoning} (or drop it if null) and consume the marker;
+     * only a marker-sized tail is kept while searching.
+     */
+    private boolean skipUntil(String marker, State next, StringBuilder reasoning) {
+        int idx = pending.indexOf(marker);
+        if (idx >= 0) {
+            if (reasoning != null) {
+                reasoning.append(pending, 0, idx);
+            }
+            pending.delete(0, idx + marker.length());
+            state = next;
+            trimLeading = true;
+            return true;
+        }
+        int keep = marker.length() - 1;
+        if (pending.length() > keep) {
+            int drop = pending.length() - keep;
+            if (reasoning != null) {
+                reasoning.append(pending, 0, drop);
+            }
+            pending.delete(0, drop);
+        }
+        return false;
+    }
+
+    private void emit(StringBuilder out, String text) {
+        if (trimLeading) {
+            text = text.stripLeading();
+            if (text.isEmpty()) {
+                return;
+            }
+            trimLeading = false;
+        }
+        unfence(out, text);
+    }
+
+    /**
+     * Second stage: drop a code fence around the answer. The opening line ({@code ```json}) is skipped,
+     * and everything from the closing fence on is discarded.
+     */
+    private void unfence(StringBuilder out, String text) {
+        switch (fenceState) {
+            case NONE -> out.append(text);
+            case CLOSED -> {
+                // trailing prose after the closing fence
+            }
+            case DETECT -> {
+                fenced.append(text);
+                String head = fenced.toString().stripLeading();
+                if (head.isEmpty() || (FENCE.startsWith(head) && !head.equals(FENCE))) {
+                    return;
+                }
+                if (head.startsWith(FENCE)) {
+                    fenced.setLength(0);
+                    fenceState = FenceState.OPENING_LINE;
+                    unfence(out, head.substring(FENCE.length()));
+                    return;
+                }
+                fenceState = FenceState.NONE;
+                out.append(fenced);
+                fenced.setLength(0);
+            }
+            case OPENING_LINE -> {
+                fenced.append(text);
+                for (int i = 0; i < fenced.length(); i++) {
+                    char c = fenced.charAt(i);
+                    if (c == '\n' || c == '{' || c == '[') {
+                        // JSON starting on the fence line is kept; a language tag is not
+                        String body = fenced.substring(c == '\n' ? i + 1 : i);
+                        fenced.setLength(0);
+                        fenceState = FenceState.INSIDE;
+                        unfence(out, body);
+                        return;
+                    }
+                }
+            }
+            case INSIDE -> {
+                fenced.append(text);
+                int close = fenced.indexOf(FENCE);
+                if (close >= 0) {
+                    out.append(fenced, 0, close);
+                    fenced.setLength(0);
+                    fenceState = FenceState.CLOSED;
+                    return;
+                }
+                // Hold back trailing backticks that may become the closing fence
+                int safe = fenced.length();
+                while (safe > 0 && fenced.length() - safe < FENCE.length() - 1 && fenced.charAt(safe - 1) == '`') {
+                    safe--;
+                }
+                out.append(fenced, 0, safe);
+                fenced.delete(0, safe);
+            }
+        }
+    }
+}
@@ -1,10 +1,18 @@
 package com.fanyamin.instructor.llm;
 
+import com.fanyamin.instructor.exception.DeadlineExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
 import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Spring AI LLM client implementation.
  * Uses Spring AI's ChatClient which provides a unified interface across multiple LLM providers.
@@ -12,7 +20,9 @@ import reactor.core.publisher.Flux;
  * Supports OpenAI, Anthropic, Azure OpenAI, Ollama, and more.
  * 
  * Includes support for:
- * - Thinking mode extraction (filtering reasoning content)
+ * - Token-by-token streaming via {@code ChatClient.prompt().stream()}
+ * - Thinking mode extraction (reasoning is filtered out, or streamed separately via streamChatDeltas)
+ * - Markdown code fences around the JSON answer are stripped
  * - Debug logging (when enabled via constructor or setDebug)
  */
 public class SpringAiLlmClient implements LlmClient {
@@ -50,6 +60,11 @@ public class SpringAiLlmClient implements LlmClient {
 
     @Override
     public String chat(String promptText) {
+        return chat(List.of(ChatMessage.user(promptText)), ChatOptions.defaults());
+    }
+
+    @Override
+    public String chat(List<ChatMessage> messages, ChatOptions options) {
         long startTime = System.currentTimeMillis();
         
         if (debug) {
@@ -57,16 +72,12 @@ public class SpringAiLlmClient implements LlmClient {
             logger.debug("🔵 SPRING AI REQUEST");
             logger.debug("{}", "=".repeat(80));
             logger.debug("Prompt:");
-            logger.debug("{}", promptText);
+            logger.debug("{}", ChatMessage.flatten(messages));
             logger.debug("{}\n", "=".repeat(80));
         }
 
         try {
-            // Use Spring AI's fluent API
-            String content = chatClient.prompt()
-                    .user(promptText)
-                .call()
-                .content();
+            String content = CallTimeouts.call(() -> callContent(messages), options.timeout(), "Spring AI call");
             
             long duration = System.currentTimeMillis() - startTime;
 
@@ -82,7 +93,7 @@ public class SpringAiLlmClient implements LlmClient {
             }
             
             // Extract the actual answer, filtering out any thinking/reasoning content
-            String answer = extractAnswerFromContent(content);
+            String answer = ReasoningFilter.extractAnswer(content);
             
             if (debug) {
                 if (!answer.equals(content)) {
@@ -99,6 +110,8 @@ public class SpringAiLlmClient implements LlmClient {
             
             return answer;
             
+        } catch (DeadlineExceededException e) {
+            throw e;
         } catch (Exception e) {
             String errorMsg = "Spring AI error: " + e.getMessage();
             logger.error("❌ {}", errorMsg, e);
@@ -108,83 +121,86 @@ public class SpringAiLlmClient implements LlmClient {
 
     @Override
     public Flux<String> streamChat(String promptText) {
-        // Minimal, always-correct fallback: emit once with the full response.
-        // If/when Spring AI streaming API is wired in, this can be upgraded to emit chunks.
-        return Flux.defer(() -> Flux.just(chat(promptText)));
+        return streamChat(List.of(ChatMessage.user(promptText)), ChatOptions.defaults());
     }
 
     @Override
-    public boolean supportsStreaming() {
-        // Current implementation emits a single chunk (fallback).
-        // Return false until we implement true chunked streaming via Spring AI.
-        return false;
+    public Flux<String> streamChat(List<ChatMessage> messages, ChatOptions options) {
+        return streamChatDeltas(messages, options)
+                .filter(ChatDelta::isContent)
+                .map(ChatDelta::text);
+    }
+
+    @Override
+    public Flux<ChatDelta> streamChatDeltas(List<ChatMessage> messages, ChatOptions options) {
+        Flux<ChatDelta> stream = Flux.defer(() -> {
+            if (debug) {
+                logger.debug("🔵 SPRING AI STREAM REQUEST ({} messages)", messages.size());
+            }
+            long startTime = System.currentTimeMillis();
+            ReasoningStreamFilter filter = new ReasoningStreamFilter();
+            // Cancelling the returned Flux cancels the provider stream underneath
+            return Flux.concat(
+                            streamContent(messages).concatMapIterable(filter::accept),
+                            Flux.defer(() -> Flux.fromIterable(filter.finish())))
+                    .doOnComplete(() -> {
+                        if (debug) {
+                            logger.debug("🔵 SPRING AI STREAM COMPLETED in {}ms", System.currentTimeMillis() - startTime);
+                        }
+                    })
+                    .onErrorMap(e -> {
+                        String errorMsg = "Spring AI streaming error: " + e.getMessage();
+                        logger.error("❌ {}", errorMsg, e);
+                        return new RuntimeException(errorMsg, e);
+                    });
+        });
+        return CallTimeouts.bound(stream, options.timeout(), "Spring AI streaming call");
     }
 
     /**
-     * Programmatically set the log level for this client's logger.
+     * Raw answer as produced by the underlying chat model, before reasoning is filtered out.
      */
-    private void setLogLevel(ch.qos.logback.classic.Level level) {
-        if (logger instanceof ch.qos.logback.classic.Logger) {
-            ((ch.qos.logback.classic.Logger) logger).setLevel(level);
-        }
+    protected String callContent(List<ChatMessage> messages) {
+        // Use Spring AI's fluent API
+        return chatClient.prompt()
+                .messages(toSpringMessages(messages))
+                .call()
+                .content();
     }
 
     /**
-     * Extract the actual response content from a model that may include thinking/reasoning.
-     * This handles various formats:
-     * 1. Standard models: just return the content as-is
-     * 2. Thinking models with structured format: extract the answer section
-     * 3. Models with inline thinking markers: filter out thinking sections
-     * 4. Models with <think> tags: extract content after </think>
+     * Raw content deltas as produced by the underlying chat model, before reasoning is filtered out.
      */
-    private String extractAnswerFromContent(String content) {
-        if (content == null || content.isEmpty()) {
-            return content;
-        }
-        
-        // Pattern 1: <think>...</think> tags (used by some Qwen models)
-        // Extract everything after </think>
-        if (content.contains("</think>")) {
-            int thinkEnd = content.indexOf("</think>");
-            if (thinkEnd != -1) {
-                String answer = content.substring(thinkEnd + 8).trim();
-                if (!answer.isEmpty()) {
-                    logger.debug("🔍 Extracted answer after </think> tag (filtered {} chars of thinking)", thinkEnd + 8);
-                    return answer;
-                }
-            }
-        }
-        
-        // Pattern 2: Some models wrap thinking in XML-like tags
-        // Example: <thinking>...</thinking>\n<answer>...</answer>
-        if (content.contains("<thinking>") && content.contains("<answer>")) {
-            int answerStart = content.indexOf("<answer>");
-            int answerEnd = content.indexOf("</answer>");
-            if (answerStart != -1 && answerEnd != -1) {
-                String answer = content.substring(answerStart + 8, answerEnd).trim();
-                logger.debug("🔍 Extracted answer from XML-tagged content");
-                return answer;
-            }
+    protected Flux<String> streamContent(List<ChatMessage> messages) {
+        return chatClient.prompt()
+                .messages(toSpringMessages(messages))
+                .stream()
+                .content();
+    }
+
+    private static List<Message> toSpringMessages(List<ChatMessage> messages) {
+        List<Message> converted = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            converted.add(switch (message.role()) {
+                case SYSTEM -> new SystemMessage(message.content());
+                case ASSISTANT -> new AssistantMessage(message.content());
+                case USER -> new UserMessage(message.content());
+            });
         }
-        
-        // Pattern 3: Markdown-style sections
-        // Example: ## Thinking\n...\n## Answer\n...
-        if (content.contains("## Thinking") && content.contains("## Answer")) {
-            int answerStart = content.indexOf("## Answer");
-            if (answerStart != -1) {
-                String answer = content.substring(answerStart + 9).trim();
-                // Remove the "## Answer" header if it's still there
-                if (answer.startsWith("\n")) {
-                    answer = answer.substring(1).trim();
-                }
-                logger.debug("🔍 Extracted answer from markdown-sectioned content");
-                return answer;
-            }
+        return converted;
+    }
+
+    @Override
+    public boolean supportsStreaming() {
+        return true;
+    }
+
+    /**
+     * Programmatically set the log level for this client's logger.
+     */
+    private void setLogLevel(ch.qos.logback.classic.Level level) {
+        if (logger instanceof ch.qos.logback.classic.Logger) {
+            ((ch.qos.logback.classic.Logger) logger).setLevel(level);
         }
-        
-        // Pattern 4: For o1-like models, the content itself is the answer
-        // The thinking is in a separate field (handled in chat method)
-        // So we just return the content as-is
-        return content;
     }
 }
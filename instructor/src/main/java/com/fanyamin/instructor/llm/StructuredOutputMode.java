@@ -0,0 +1,31 @@
+package com.fanyamin.instructor.llm;
+
+import java.util.Locale;
+
+/**
+ * How {@link OpenAiLlmClient} asks the server to enforce {@link ChatOptions#responseSchema()}.
+ */
+public enum StructuredOutputMode {
+    /** Prompt-only: the schema is described in the prompt and checked afterwards. */
+    NONE,
+    /** OpenAI structured outputs: {@code response_format: {type: json_schema, strict: true}}. */
+    JSON_SCHEMA,
+    /** vLLM guided decoding: the schema is sent unchanged as {@code guided_json}. */
+    GUIDED_JSON,
+    /** llama.cpp server: the schema is compiled into a GBNF {@code grammar}. */
+    GBNF;
+
+    /**
+     * Parse a configuration value such as {@code json_schema} or {@code gbnf}; unknown or empty values mean {@link #NONE}.
+     */
+    public static StructuredOutputMode fromConfig(String value) {
+        if (value == null || value.isBlank()) {
+            return NONE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            return NONE;
+        }
+    }
+}
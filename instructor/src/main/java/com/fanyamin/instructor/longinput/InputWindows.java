@@ -0,0 +1,86 @@
+package com.fanyamin.instructor.longinput;
+
+import com.fanyamin.instructor.tokenizer.TokenCounter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a long input into overlapping windows on sentence boundaries, so each window can be extracted on its own
+ * with a short prompt.
+ *
+ * <p>A sentence ends at {@code . ! ?} followed by whitespace, at {@code 。！？}, or at a line break. Consecutive
+ * windows share whole sentences worth up to {@code overlapTokens}, so a fact split across a boundary is seen
+ * complete at least once. A single sentence longer than a window becomes a window of its own.</p>
+ */
+public final class InputWindows {
+
+    private InputWindows() {
+    }
+
+    /**
+     * @param windowTokens  maximum tokens per window (except for a single over-long sentence)
+     * @param overlapTokens tokens repeated from the end of one window at the start of the next
+     * @throws IllegalArgumentException unless {@code 0 <= overlapTokens < windowTokens}
+     */
+    public static List<String> split(String text, TokenCounter counter, int windowTokens, int overlapTokens) {
+        if (windowTokens <= 0 || overlapTokens < 0 || overlapTokens >= windowTokens) {
+            throw new IllegalArgumentException("Require 0 <= overlapTokens < windowTokens");
+        }
+        List<String> sentences = sentences(text);
+        long[] tokens = new long[sentences.size()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = counter.count(sentences.get(i));
+        }
+
+        List<String> windows = new ArrayList<>();
+        int start = 0;
+        while (start < sentences.size()) {
+            int end = start;
+            long size = 0;
+            while (end < sentences.size() && (end == start || size + tokens[end] <= windowTokens)) {
+                size += tokens[end++];
+            }
+            windows.add(String.join("", sentences.subList(start, end)).strip());
+            if (end == sentences.size()) {
+                break;
+            }
+            // Start the next window a few sentences back; always at least one sentence after this one's start
+            int next = end;
+            long overlap = 0;
+            while (next - 1 > start && overlap + tokens[next - 1] <= overlapTokens) {
+                overlap += tokens[--next];
+            }
+            start = next;
+        }
+        return windows;
+    }
+
+    /**
+     * The text cut after each sentence end; trailing whitespace stays with its sentence, so joining the parts
+     * gives back the text.
+     */
+    static List<String> sentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean end = c == '\n' || c == '。' || c == '！' || c == '？'
+                    || ((c == '.' || c == '!' || c == '?')
+                        && (i + 1 == text.length() || Character.isWhitespace(text.charAt(i + 1))));
+            if (end) {
+                int next = i + 1;
+                while (next < text.length() && Character.isWhitespace(text.charAt(next))) {
+                    next++;
+                }
+                sentences.add(text.substring(start, next));
+                start = next;
+                i = next - 1;
+            }
+        }
+        if (start < text.length()) {
+            sentences.add(text.substring(start));
+        }
+        return sentences;
+    }
+}
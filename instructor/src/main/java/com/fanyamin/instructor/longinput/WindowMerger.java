@@ -0,0 +1,92 @@
+package com.fanyamin.instructor.longinput;
+
+import com.fanyamin.instructor.api.FieldResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Merges the fields extracted from the windows of a long input into one answer.
+ *
+ * <p>Per field, the candidate with the highest confidence wins; candidates within {@link #RECENCY_TOLERANCE} of
+ * it count as equally good and the latest window wins among them, because later messages usually correct earlier
+ * ones. A field is a conflict when another value comes within {@code conflictMargin} of the winner: those fields,
+ * and only those, are worth a reconciliation call. The losing values become the winner's alternatives.</p>
+ */
+public final class WindowMerger {
+
+    /**
+     * Confidence difference below which the more recent candidate is preferred.
+     */
+    public static final double RECENCY_TOLERANCE = 0.05;
+
+    /**
+     * A value a window gave for a field; {@code window} is the window's index.
+     */
+    public record Candidate(FieldResult field, int window) {}
+
+    /**
+     * @param fields    the winning value per field, in order of first appearance
+     * @param conflicts every candidate (in window order) of the fields whose winner is in doubt
+     */
+    public record Merged(Map<String, FieldResult> fields, Map<String, List<Candidate>> conflicts) {}
+
+    private WindowMerger() {
+    }
+
+    /**
+     * @param windows the fields extracted from each window, in window order; missing or null values are ignored
+     */
+    public static Merged merge(List<Map<String, FieldResult>> windows, double conflictMargin) {
+        Map<String, List<Candidate>> candidates = new LinkedHashMap<>();
+        for (int window = 0; window < windows.size(); window++) {
+            for (Map.Entry<String, FieldResult> entry : windows.get(window).entrySet()) {
+                if (entry.getValue() != null && entry.getValue().value() != null) {
+                    candidates.computeIfAbsent(entry.getKey(), name -> new ArrayList<>())
+                            .add(new Candidate(entry.getValue(), window));
+                }
+            }
+        }
+
+        Map<String, FieldResult> fields = new LinkedHashMap<>();
+        Map<String, List<Candidate>> conflicts = new LinkedHashMap<>();
+        candidates.forEach((name, found) -> {
+            Candidate best = best(found);
+            List<Object> alternatives = new ArrayList<>();
+            boolean conflict = false;
+            for (Candidate candidate : found) {
+                Object value = candidate.field().value();
+                if (Objects.equals(value, best.field().value())) {
+                    continue;
+                }
+                if (!alternatives.contains(value)) {
+                    alternatives.add(value);
+                }
+                conflict |= candidate.field().confidence() >= best.field().confidence() - conflictMargin;
+            }
+            FieldResult winner = best.field();
+            if (winner.alternatives() != null) {
+                winner.alternatives().stream().filter(value -> !alternatives.contains(value)).forEach(alternatives::add);
+            }
+            fields.put(name, new FieldResult(winner.value(), winner.confidence(), winner.reasoning(), alternatives));
+            if (conflict) {
+                conflicts.put(name, List.copyOf(found));
+            }
+        });
+        return new Merged(fields, conflicts);
+    }
+
+    private static Candidate best(List<Candidate> found) {
+        double top = found.stream().mapToDouble(candidate -> candidate.field().confidence()).max().orElse(0.0);
+        Candidate best = null;
+        for (Candidate candidate : found) {
+            if (candidate.field().confidence() >= top - RECENCY_TOLERANCE) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,25 @@
+package com.fanyamin.instructor.prefill;
+
+import com.fanyamin.instructor.api.FieldResult;
+import com.fanyamin.instructor.api.ParsingRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Finds the value of one form property in the input without a model, e.g. the only email address in the text for
+ * a property with {@code "format": "email"}.
+ *
+ * <p>An extractor should answer only when the input leaves no doubt and say how sure it is in
+ * {@link FieldResult#confidence()}; {@link PreExtractor} keeps answers at or above its minimum confidence and asks
+ * the LLM for everything else.</p>
+ */
+@FunctionalInterface
+public interface FieldExtractor {
+
+    /**
+     * @param field    the property name
+     * @param property the property's schema
+     * @param request  the request, for its input and context
+     * @return the value found, or null if this extractor does not apply or the input is ambiguous
+     */
+    FieldResult extract(String field, JsonNode property, ParsingRequest request);
+}
@@ -0,0 +1,229 @@
+package com.fanyamin.instructor.prefill;
+
+import com.fanyamin.instructor.api.FieldResult;
+import com.fanyamin.instructor.temporal.TemporalMention;
+import com.fanyamin.instructor.temporal.TemporalResolver;
+import com.fanyamin.instructor.temporal.TemporalValue;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Schema-driven {@link FieldExtractor}s. Each one answers only if exactly one distinct candidate is in the input:
+ * with two email addresses it cannot tell which one the form wants, so the LLM decides.
+ */
+public final class FieldExtractors {
+
+    private static final Pattern EMAIL = Pattern.compile("[\\w.+-]+@[\\w-]+(?:\\.[\\w-]+)*\\.[A-Za-z]{2,}");
+    private static final Pattern UUID = Pattern.compile(
+            "\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}\\b");
+    private static final Pattern ISO_DATE = Pattern.compile("(?<![\\d-])\\d{4}-\\d{2}-\\d{2}(?![\\d-])");
+    // A number on its own: not part of a date, time, decimal, word or identifier
+    private static final Pattern INTEGER = Pattern.compile("(?<![\\w.,:/-])\\d{1,9}(?![\\w,:/-]|\\.\\d)");
+
+    private static final int MAX_PATTERN_MATCH = 64;
+
+    // Words in a field name (startDate, leave_from, return-date) that pick one end of a range
+    private static final Set<String> START_WORDS = Set.of("start", "from", "begin", "since");
+    private static final Set<String> END_WORDS =
+            Set.of("end", "until", "till", "to", "due", "deadline", "finish", "through", "return");
+
+    private FieldExtractors() {
+    }
+
+    /**
+     * Built-in extractors, in the order they are tried: email, uuid, resolved date, ISO date, pattern, enum
+     * mention, ranged integer.
+     */
+    public static List<FieldExtractor> defaults() {
+        return List.of(email(), uuid(), temporal(), isoDate(), pattern(), enumMention(), rangedInteger());
+    }
+
+    /**
+     * {@code "format": "email"}: the only email address in the input.
+     */
+    public static FieldExtractor email() {
+        return (field, property, request) -> "email".equals(property.path("format").asText())
+                ? single(EMAIL.matcher(request.userInput()), 0.98, "Only email address in the input") : null;
+    }
+
+    /**
+     * {@code "format": "uuid"}: the only UUID in the input, in lowercase.
+     */
+    public static FieldExtractor uuid() {
+        return (field, property, request) -> "uuid".equals(property.path("format").asText())
+                ? single(UUID.matcher(request.userInput().toLowerCase()), 0.98, "Only UUID in the input") : null;
+    }
+
+    /**
+     * {@code "format": "date"}: the only valid {@code yyyy-MM-dd} date in the input. Relative and spelled-out
+     * dates are left to {@link #temporal()}, or to the LLM when the request has no {@code now}.
+     */
+    public static FieldExtractor isoDate() {
+        return (field, property, request) -> {
+            if (!"date".equals(property.path("format").asText())) {
+                return null;
+            }
+            Set<String> dates = new LinkedHashSet<>();
+            Matcher matcher = ISO_DATE.matcher(request.userInput());
+            while (matcher.find()) {
+                try {
+                    dates.add(LocalDate.parse(matcher.group()).toString());
+                } catch (DateTimeParseException e) {
+                    return null;
+                }
+            }
+            return dates.size() == 1 ? found(dates.iterator().next(), 0.95, "Only date in the input") : null;
+        };
+    }
+
+    /**
+     * {@code "format": "date"} or {@code "date-time"}, when the request context has a {@code now} (see
+     * {@link TemporalResolver#now}): the only date expression in the input, resolved against it ("next Monday",
+     * "明天下午3点"). A range ("Monday to Wednesday", "a week off from Nov 1") fills a field whose name says
+     * which end it is ({@code startDate}, {@code end_date}, {@code leaveUntil}). A date-time field needs a time of
+     * day in the input and gets the offset of {@code now}.
+     */
+    public static FieldExtractor temporal() {
+        return (field, property, request) -> {
+            String format = property.path("format").asText();
+            if (!"date".equals(format) && !"date-time".equals(format)) {
+                return null;
+            }
+            ZonedDateTime now = TemporalResolver.now(request.context());
+            if (now == null) {
+                return null;
+            }
+            List<TemporalMention> mentions = TemporalResolver.resolve(request.userInput(), request.context());
+            if (mentions.size() != 1) {
+                return null;
+            }
+            TemporalMention mention = mentions.get(0);
+            TemporalValue value = mention.from();
+            if (mention.isRange()) {
+                List<String> words = Arrays.asList(
+                        field.replaceAll("([a-z])([A-Z])", "$1 $2").toLowerCase(Locale.ROOT).split("[^a-z]+"));
+                boolean start = words.stream().anyMatch(START_WORDS::contains);
+                boolean end = words.stream().anyMatch(END_WORDS::contains);
+                if (start == end) {
+                    return null;
+                }
+                value = start ? mention.from() : mention.to();
+            }
+            if ("date-time".equals(format) && !value.hasTime()) {
+                return null;
+            }
+            String resolved = "date".equals(format) ? value.isoDate() : value.isoDateTime(now.getOffset());
+            return found(resolved, 0.95, "Resolved \"" + mention.text() + "\" against now");
+        };
+    }
+
+    /**
+     * String {@code enum}: the only value mentioned in the input, as a whole word and ignoring case. Values in
+     * scripts without word spacing (e.g. Chinese) are matched as substrings.
+     */
+    public static FieldExtractor enumMention() {
+        return (field, property, request) -> {
+            if (!property.path("enum").isArray()) {
+                return null;
+            }
+            Set<String> mentioned = new LinkedHashSet<>();
+            for (JsonNode value : property.get("enum")) {
+                if (!value.isTextual() || value.asText().isBlank()) {
+                    return null;
+                }
+                if (mention(value.asText()).matcher(request.userInput()).find()) {
+                    mentioned.add(value.asText());
+                }
+            }
+            return mentioned.size() == 1 ? found(mentioned.iterator().next(), 0.9, "Only option mentioned") : null;
+        };
+    }
+
+    /**
+     * {@code "type": "integer"} with both {@code minimum} and {@code maximum} (see {@code @SchemaRange}): the only
+     * stand-alone number in the input within the range.
+     */
+    public static FieldExtractor rangedInteger() {
+        return (field, property, request) -> {
+            if (!"integer".equals(property.path("type").asText())
+                    || !property.path("minimum").isNumber() || !property.path("maximum").isNumber()) {
+                return null;
+            }
+            double min = property.get("minimum").asDouble();
+            double max = property.get("maximum").asDouble();
+            Set<Integer> inRange = new LinkedHashSet<>();
+            Matcher matcher = INTEGER.matcher(request.userInput());
+            while (matcher.find()) {
+                int value = Integer.parseInt(matcher.group());
+                if (value >= min && value <= max) {
+                    inRange.add(value);
+                }
+            }
+            return inRange.size() == 1 ? found(inRange.iterator().next(), 0.9, "Only number in range") : null;
+        };
+    }
+
+    /**
+     * String with a {@code pattern} (see {@code @SchemaPattern}), e.g. ticket or employee ids: the only match in
+     * the input, with the pattern's {@code ^}/{@code $} anchors dropped. Patterns with open wildcards
+     * ({@code .*}, {@code .+}) would match ordinary text and are skipped.
+     */
+    public static FieldExtractor pattern() {
+        return (field, property, request) -> {
+            String regex = property.path("pattern").asText("");
+            if (regex.isEmpty() || regex.contains(".*") || regex.contains(".+")) {
+                return null;
+            }
+            if (regex.startsWith("^")) {
+                regex = regex.substring(1);
+            }
+            if (regex.endsWith("$") && !regex.endsWith("\\$")) {
+                regex = regex.substring(0, regex.length() - 1);
+            }
+            try {
+                // Whole tokens only: "AB-12" must not be found inside "XAB-123"
+                Pattern pattern = Pattern.compile("(?<![\\w-])(?:" + regex + ")(?![\\w-])");
+                FieldResult found = single(pattern.matcher(request.userInput()), 0.95, "Only match of the pattern");
+                return found != null && ((String) found.value()).length() <= MAX_PATTERN_MATCH ? found : null;
+            } catch (PatternSyntaxException e) {
+                return null;
+            }
+        };
+    }
+
+    private static Pattern mention(String value) {
+        String before = isWordChar(value.charAt(0)) ? "(?<![\\p{L}\\p{N}_])" : "";
+        String after = isWordChar(value.charAt(value.length() - 1)) ? "(?![\\p{L}\\p{N}_])" : "";
+        return Pattern.compile(before + Pattern.quote(value) + after, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    // Latin letters and digits delimit words; CJK characters do not
+    private static boolean isWordChar(char c) {
+        return c < 0x250 && (Character.isLetterOrDigit(c) || c == '_');
+    }
+
+    private static FieldResult single(Matcher matcher, double confidence, String reasoning) {
+        Set<String> matches = new LinkedHashSet<>();
+        while (matcher.find()) {
+            if (!matcher.group().isEmpty()) {
+                matches.add(matcher.group());
+            }
+        }
+        return matches.size() == 1 ? found(matches.iterator().next(), confidence, reasoning) : null;
+    }
+
+    private static FieldResult found(Object value, double confidence, String reasoning) {
+        return new FieldResult(value, confidence, reasoning, List.of());
+    }
+}
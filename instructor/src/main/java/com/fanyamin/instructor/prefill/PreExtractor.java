@@ -0,0 +1,131 @@
+package com.fanyamin.instructor.prefill;
+
+import com.fanyamin.instructor.api.FieldResult;
+import com.fanyamin.instructor.api.ParsingRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills what it can of a form before the LLM is asked: every top-level property is offered to the
+ * {@link FieldExtractor}s in order, and the first answer with at least {@code minConfidence} is kept.
+ *
+ * <p>A value found for several properties (one date in the text, a start and an end date in the form) is dropped
+ * from all of them, since nothing says which one it belongs to. The instructor then prompts only for the
+ * remaining properties, or skips the LLM when the prefill is {@linkplain Prefill#complete() complete}.</p>
+ */
+public class PreExtractor {
+
+    public static final double DEFAULT_MIN_CONFIDENCE = 0.9;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<FieldExtractor> extractors;
+    private final double minConfidence;
+
+    /**
+     * The outcome for one request.
+     *
+     * @param fields    properties filled without the LLM, in declaration order
+     * @param remaining properties left for the LLM, in declaration order
+     * @param complete  whether no LLM call is needed: nothing remains, or every required property was filled
+     *                  (optional ones that remain are then left empty)
+     */
+    public record Prefill(Map<String, FieldResult> fields, List<String> remaining, boolean complete) {}
+
+    private PreExtractor(Builder builder) {
+        this.extractors = List.copyOf(builder.extractors);
+        this.minConfidence = builder.minConfidence;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A pre-extractor with {@link FieldExtractors#defaults()}.
+     */
+    public static PreExtractor defaults() {
+        return builder().build();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the request's schema is not valid JSON
+     */
+    public Prefill extract(ParsingRequest request) {
+        JsonNode schema;
+        try {
+            schema = MAPPER.readTree(request.schema());
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Form schema is not valid JSON", e);
+        }
+        Map<String, FieldResult> fields = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> properties = schema.path("properties").fields();
+        while (properties.hasNext()) {
+            Map.Entry<String, JsonNode> property = properties.next();
+            names.add(property.getKey());
+            for (FieldExtractor extractor : extractors) {
+                FieldResult found = extractor.extract(property.getKey(), property.getValue(), request);
+                if (found != null && found.value() != null && found.confidence() >= minConfidence) {
+                    fields.put(property.getKey(), found);
+                    break;
+                }
+            }
+        }
+
+        Map<Object, Integer> claims = new HashMap<>();
+        fields.values().forEach(field -> claims.merge(field.value(), 1, Integer::sum));
+        fields.values().removeIf(field -> claims.get(field.value()) > 1);
+
+        List<String> remaining = names.stream().filter(name -> !fields.containsKey(name)).toList();
+        List<String> required = new ArrayList<>();
+        schema.path("required").forEach(name -> required.add(name.asText()));
+        boolean complete = !fields.isEmpty()
+                && (remaining.isEmpty() || (!required.isEmpty() && fields.keySet().containsAll(required)));
+        return new Prefill(fields, remaining, complete);
+    }
+
+    public static class Builder {
+        private final List<FieldExtractor> extractors = new ArrayList<>(FieldExtractors.defaults());
+        private double minConfidence = DEFAULT_MIN_CONFIDENCE;
+
+        /**
+         * Try {@code extractor} before the ones already registered (the built-ins by default).
+         */
+        public Builder extractor(FieldExtractor extractor) {
+            this.extractors.add(0, extractor);
+            return this;
+        }
+
+        /**
+         * Replace all extractors, including the built-ins.
+         */
+        public Builder extractors(List<FieldExtractor> extractors) {
+            this.extractors.clear();
+            this.extractors.addAll(extractors);
+            return this;
+        }
+
+        /**
+         * Lowest confidence for a value to be used without asking the LLM. Defaults to 0.9.
+         */
+        public Builder minConfidence(double minConfidence) {
+            if (minConfidence < 0.0 || minConfidence > 1.0) {
+                throw new IllegalArgumentException("minConfidence must be in [0, 1]");
+            }
+            this.minConfidence = minConfidence;
+            return this;
+        }
+
+        public PreExtractor build() {
+            return new PreExtractor(this);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.fanyamin.instructor.resilience;
+
+import com.fanyamin.instructor.exception.LlmBusyException;
+import com.fanyamin.instructor.llm.LlmConfig;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive concurrency limiter using AIMD (additive increase, multiplicative decrease).
+ *
+ * <p>The limit grows by roughly one slot per "window" of successful calls and shrinks
+ * multiplicatively only when the backend signals overload (429/503). A call that takes much
+ * longer than the smoothed baseline latency stops the growth but does not shrink the limit:
+ * generation time scales with the number of output tokens, so a long answer is not by itself
+ * a sign of congestion.</p>
+ *
+ * <p>Callers that cannot get a slot wait in a bounded queue for at most {@code queueTimeout};
+ * once the queue is full, new callers are rejected immediately with {@link LlmBusyException}
+ * instead of piling up threads.</p>
+ *
+ * <p>Builder defaults for the initial limit and the queue are read from
+ * {@code LLM_MAX_CONCURRENCY}, {@code LLM_QUEUE_SIZE} and {@code LLM_QUEUE_TIMEOUT_MS}.</p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueueSize;
+    private final Duration queueTimeout;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotAvailable = lock.newCondition();
+
+    // Guarded by lock
+    private double limit;
+    private int inFlight;
+    private int queued;
+    private double baselineLatencyNanos;
+    private long lastDecreaseNanos;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private AdaptiveConcurrencyLimiter(Builder builder) {
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.maxQueueSize = builder.maxQueueSize;
+        this.queueTimeout = builder.queueTimeout;
+        this.backoffRatio = builder.backoffRatio;
+        this.latencyTolerance = builder.latencyTolerance;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, builder.initialLimit));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Acquire a slot, waiting in the queue for at most the configured queue timeout.
+     *
+     * @throws LlmBusyException if the queue is full or the timeout elapses
+     */
+    public Permit acquire() {
+        return acquire(queueTimeout);
+    }
+
+    /**
+     * Acquire a slot, waiting in the queue for at most {@code timeout}.
+     *
+     * @throws LlmBusyException if the queue is full or the timeout elapses
+     */
+    public Permit acquire(Duration timeout) {
+        long enqueuedNanos = System.nanoTime();
+        lock.lock();
+        try {
+            if (inFlight < currentLimit()) {
+                inFlight++;
+                return new Permit(enqueuedNanos, System.nanoTime());
+            }
+            if (queued >= maxQueueSize) {
+                rejected.incrementAndGet();
+                throw new LlmBusyException("LLM backend busy: " + inFlight + " in flight, "
+                        + queued + " queued (limit " + currentLimit() + ")");
+            }
+
+            queued++;
+            try {
+                long remaining = timeout.toNanos();
+                while (inFlight >= currentLimit()) {
+                    if (remaining <= 0L) {
+                        rejected.incrementAndGet();
+                        throw new LlmBusyException("LLM backend busy: no slot within " + timeout.toMillis() + "ms");
+                    }
+                    remaining = slotAvailable.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.incrementAndGet();
+                throw new LlmBusyException("Interrupted while waiting for an LLM slot");
+            } finally {
+                queued--;
+            }
+
+            inFlight++;
+            return new Permit(enqueuedNanos, System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return currentLimit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Duration getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private int currentLimit() {
+        return (int) Math.floor(limit);
+    }
+
+    private void release(long startNanos, Outcome outcome) {
+        long now = System.nanoTime();
+        long latency = now - startNanos;
+
+        lock.lock();
+        try {
+            inFlight--;
+            int before = currentLimit();
+
+            switch (outcome) {
+                case SUCCESS -> {
+                    if (baselineLatencyNanos == 0.0) {
+                        baselineLatencyNanos = latency;
+                    }
+                    // A slow call may just be a long answer: hold the limit rather than shrink it
+                    if (latency <= baselineLatencyNanos * latencyTolerance) {
+                        // Additive increase: ~+1 per window of `limit` successful calls
+                        limit = Math.min(maxLimit, limit + 1.0 / limit);
+                    }
+                    // Slow-moving average so that one long generation does not reset the baseline
+                    baselineLatencyNanos = baselineLatencyNanos * 0.95 + latency * 0.05;
+                }
+                case OVERLOAD -> decrease(now);
+                case IGNORE -> {
+                    // Failures unrelated to capacity (bad request, cancellation) do not move the limit
+                }
+            }
+
+            if (currentLimit() > before) {
+                slotAvailable.signalAll();
+            } else {
+                slotAvailable.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void decrease(long now) {
+        // Collapse a burst of overload signals from the same congestion episode into one decrease
+        if (lastDecreaseNanos != 0L && now - lastDecreaseNanos < (long) baselineLatencyNanos) {
+            return;
+        }
+        limit = Math.max(minLimit, limit * backoffRatio);
+        lastDecreaseNanos = now;
+    }
+
+    private enum Outcome { SUCCESS, OVERLOAD, IGNORE }
+
+    /**
+     * A held concurrency slot. Exactly one of the completion methods should be called;
+     * subsequent calls are ignored.
+     */
+    public final class Permit {
+        private final long enqueuedNanos;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(long enqueuedNanos, long startNanos) {
+            this.enqueuedNanos = enqueuedNanos;
+            this.startNanos = startNanos;
+        }
+
+        /** How long the caller waited for this slot. */
+        public Duration getQueueTime() {
+            return Duration.ofNanos(startNanos - enqueuedNanos);
+        }
+
+        /** The call completed normally; unless it was unusually slow, the limit grows. */
+        public void onSuccess() {
+            if (released.compareAndSet(false, true)) {
+                release(startNanos, Outcome.SUCCESS);
+            }
+        }
+
+        /** The backend signalled overload (429/503); the limit is reduced. */
+        public void onOverload() {
+            if (released.compareAndSet(false, true)) {
+                release(startNanos, Outcome.OVERLOAD);
+            }
+        }
+
+        /** The call ended for a reason unrelated to capacity; the limit is left unchanged. */
+        public void onIgnore() {
+            if (released.compareAndSet(false, true)) {
+                release(startNanos, Outcome.IGNORE);
+            }
+        }
+    }
+
+    public static class Builder {
+        private int initialLimit = LlmConfig.getEnvInt(LlmConfig.ENV_LLM_MAX_CONCURRENCY, LlmConfig.DEFAULT_MAX_CONCURRENCY);
+        private int minLimit = 1;
+        private int maxLimit = 64;
+        private int maxQueueSize = LlmConfig.getEnvInt(LlmConfig.ENV_LLM_QUEUE_SIZE, LlmConfig.DEFAULT_QUEUE_SIZE);
+        private Duration queueTimeout = Duration.ofMillis(
+                LlmConfig.getEnvInt(LlmConfig.ENV_LLM_QUEUE_TIMEOUT_MS, LlmConfig.DEFAULT_QUEUE_TIMEOUT_MS));
+        private double backoffRatio = 0.75;
+        private double latencyTolerance = 2.0;
+
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        public Builder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        public Builder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        public Builder maxQueueSize(int maxQueueSize) {
+            this.maxQueueSize = maxQueueSize;
+            return this;
+        }
+
+        public Builder queueTimeout(Duration queueTimeout) {
+            this.queueTimeout = queueTimeout;
+            return this;
+        }
+
+        /**
+         * Factor applied to the limit on overload (0 &lt; ratio &lt; 1).
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * A call slower than {@code tolerance × baseline latency} does not grow the limit.
+         */
+        public Builder latencyTolerance(double latencyTolerance) {
+            this.latencyTolerance = latencyTolerance;
+            return this;
+        }
+
+        public AdaptiveConcurrencyLimiter build() {
+            if (minLimit < 1 || maxLimit < minLimit) {
+                throw new IllegalArgumentException("Require 1 <= minLimit <= maxLimit");
+            }
+            if (backoffRatio <= 0.0 || backoffRatio >= 1.0) {
+                throw new IllegalArgumentException("backoffRatio must be in (0, 1)");
+            }
+            return new AdaptiveConcurrencyLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.fanyamin.instructor.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides when a slow request gets a duplicate ("hedge") and how many may be sent.
+ *
+ * <p>The hedge delay is a percentile (p90 by default) of the recently observed primary latencies, kept separately
+ * for complete responses and for the first token of streams. Until enough samples are in, a fixed initial delay
+ * is used. A request slower than the delay is most likely in the tail, where a second attempt is usually faster
+ * than waiting.</p>
+ *
+ * <p>Hedges are capped by a token bucket: every request earns {@code maxHedgeRatio} of a hedge, every hedge costs
+ * one, and at most {@code maxBurst} can be saved up. So at most about 10% (by default) extra requests are sent,
+ * even when the whole backend is slow and hedging would only add load.</p>
+ */
+public class HedgePolicy {
+
+    /**
+     * What the latency is measured to.
+     */
+    public enum Stage {
+        /** A complete (blocking) response. */
+        RESPONSE,
+        /** The first chunk of a stream. */
+        FIRST_TOKEN
+    }
+
+    private final double percentile;
+    private final Duration initialDelay;
+    private final Duration minDelay;
+    private final Duration maxDelay;
+    private final int minSamples;
+    private final double maxHedgeRatio;
+    private final double maxBurst;
+
+    private final Map<Stage, LatencyWindow> windows = new EnumMap<>(Stage.class);
+
+    // Guarded by this
+    private double hedgeTokens;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    private HedgePolicy(Builder builder) {
+        this.percentile = builder.percentile;
+        this.initialDelay = builder.initialDelay;
+        this.minDelay = builder.minDelay;
+        this.maxDelay = builder.maxDelay;
+        this.minSamples = builder.minSamples;
+        this.maxHedgeRatio = builder.maxHedgeRatio;
+        this.maxBurst = builder.maxBurst;
+        this.hedgeTokens = builder.maxBurst;
+        for (Stage stage : Stage.values()) {
+            windows.put(stage, new LatencyWindow(builder.windowSize));
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * How long to wait for the primary before hedging: the configured percentile of recent latencies, clamped to
+     * {@code [minDelay, maxDelay]}, or the initial delay while there are fewer than {@code minSamples}.
+     */
+    public Duration hedgeDelay(Stage stage) {
+        long nanos = windows.get(stage).percentileNanos(percentile, minSamples);
+        if (nanos < 0) {
+            return initialDelay;
+        }
+        return Duration.ofNanos(Math.max(minDelay.toNanos(), Math.min(maxDelay.toNanos(), nanos)));
+    }
+
+    /**
+     * Record how long the primary took. For a primary that lost to its hedge and was cancelled, pass the time it
+     * had run by then: a lower bound, but it keeps the tail in the window.
+     */
+    public void recordLatency(Stage stage, Duration latency) {
+        windows.get(stage).add(latency.toNanos());
+    }
+
+    /**
+     * Count a request and credit its share of the hedge budget.
+     */
+    public synchronized void onRequest() {
+        requests.incrementAndGet();
+        hedgeTokens = Math.min(maxBurst, hedgeTokens + maxHedgeRatio);
+    }
+
+    /**
+     * Take one hedge from the budget.
+     *
+     * @return false if the hedge rate cap is reached and the request must wait for the primary alone
+     */
+    public synchronized boolean tryAcquireHedge() {
+        if (hedgeTokens < 1.0) {
+            return false;
+        }
+        hedgeTokens -= 1.0;
+        hedges.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * The hedge answered before the primary.
+     */
+    public void onHedgeWon() {
+        hedgeWins.incrementAndGet();
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * Number of hedges that answered first.
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * Share of requests that were hedged.
+     */
+    public double getHedgeRate() {
+        long total = requests.get();
+        return total > 0 ? (double) hedges.get() / total : 0.0;
+    }
+
+    /**
+     * Share of hedges that answered before their primary; a low value means the delay is too short.
+     */
+    public double getHedgeWinRate() {
+        long sent = hedges.get();
+        return sent > 0 ? (double) hedgeWins.get() / sent : 0.0;
+    }
+
+    /**
+     * Ring buffer of the most recent latencies.
+     */
+    private static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * @return the percentile, or -1 with fewer than {@code minSamples} samples
+         */
+        synchronized long percentileNanos(double percentile, int minSamples) {
+            if (size == 0 || size < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+
+    public static class Builder {
+        private double percentile = 0.9;
+        private Duration initialDelay = Duration.ofSeconds(2);
+        private Duration minDelay = Duration.ofMillis(50);
+        private Duration maxDelay = Duration.ofSeconds(30);
+        private int windowSize = 200;
+        private int minSamples = 20;
+        private double maxHedgeRatio = 0.1;
+        private double maxBurst = 3;
+
+        /**
+         * Latency percentile after which a request is hedged (0 &lt; percentile &lt; 1).
+         */
+        public Builder percentile(double percentile) {
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Delay used until {@link #minSamples(int)} latencies have been observed.
+         */
+        public Builder initialDelay(Duration initialDelay) {
+            this.initialDelay = initialDelay;
+            return this;
+        }
+
+        public Builder minDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+            return this;
+        }
+
+        public Builder maxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        /**
+         * Number of recent latencies the percentile is computed over.
+         */
+        public Builder windowSize(int windowSize) {
+            this.windowSize = windowSize;
+            return this;
+        }
+
+        public Builder minSamples(int minSamples) {
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /**
+         * Long-run cap on hedges per request, e.g. 0.1 for at most 10% extra requests.
+         */
+        public Builder maxHedgeRatio(double maxHedgeRatio) {
+            this.maxHedgeRatio = maxHedgeRatio;
+            return this;
+        }
+
+        /**
+         * Hedges that may be sent back to back when the budget has been saved up.
+         */
+        public Builder maxBurst(double maxBurst) {
+            this.maxBurst = maxBurst;
+            return this;
+        }
+
+        public HedgePolicy build() {
+            if (percentile <= 0.0 || percentile >= 1.0) {
+                throw new IllegalArgumentException("percentile must be in (0, 1)");
+            }
+            if (windowSize < 1 || minSamples > windowSize) {
+                throw new IllegalArgumentException("Require 1 <= windowSize and minSamples <= windowSize");
+            }
+            if (maxHedgeRatio < 0.0 || maxBurst < 1.0) {
+                throw new IllegalArgumentException("Require maxHedgeRatio >= 0 and maxBurst >= 1");
+            }
+            return new HedgePolicy(this);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.fanyamin.instructor.resilience;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Paces outgoing LLM requests so that they stay just under the provider's rate limits.
+ *
+ * <p>Two token buckets are kept, one for requests per minute (RPM) and one for tokens per minute (TPM).
+ * Their capacities are learned from the provider's {@code x-ratelimit-limit-*} headers and their levels are
+ * re-synchronized from {@code x-ratelimit-remaining-*} after every response. Until the first headers arrive
+ * (or for providers that send none, e.g. local Ollama) the scheduler lets everything through.</p>
+ *
+ * <p>Callers reserve capacity with {@link #acquire(long)} before sending. Reservations may drive a bucket
+ * negative; the caller then sleeps until the bucket has refilled, so concurrent callers are spread out
+ * evenly instead of all hitting 429 at once. A 429 with {@code Retry-After} pauses every caller sharing
+ * the scheduler.</p>
+ *
+ * <p>Schedulers are shared per endpoint and API key via {@link #forEndpoint(String, String)}, because provider
+ * limits apply to the key (organization), not to a single client instance. The endpoint is part of the key so
+ * that servers without API keys (e.g. several local Ollama hosts) do not throttle each other.</p>
+ */
+public class RateLimitScheduler {
+
+    private static final Map<String, RateLimitScheduler> SHARED = new ConcurrentHashMap<>();
+
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(1);
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final double headroom;
+    private final TokenBucket requests = new TokenBucket();
+    private final TokenBucket tokens = new TokenBucket();
+
+    private volatile long pausedUntilNanos = System.nanoTime();
+
+    /**
+     * @param headroom fraction of the advertised limit to actually use (e.g. 0.95 keeps 5% in reserve)
+     */
+    public RateLimitScheduler(double headroom) {
+        if (headroom <= 0.0 || headroom > 1.0) {
+            throw new IllegalArgumentException("headroom must be in (0, 1]");
+        }
+        this.headroom = headroom;
+    }
+
+    public RateLimitScheduler() {
+        this(0.95);
+    }
+
+    /**
+     * The scheduler shared by all clients that use {@code apiKey}, whatever their endpoint.
+     */
+    public static RateLimitScheduler forApiKey(String apiKey) {
+        return forEndpoint(null, apiKey);
+    }
+
+    /**
+     * The scheduler shared by all clients that call the server of {@code apiUrl} with {@code apiKey}. Only the
+     * scheme, host and port of the URL count, so different API paths of one provider share their limits.
+     */
+    public static RateLimitScheduler forEndpoint(String apiUrl, String apiKey) {
+        return SHARED.computeIfAbsent(origin(apiUrl) + "\n" + (apiKey != null ? apiKey : ""),
+                k -> new RateLimitScheduler());
+    }
+
+    private static String origin(String apiUrl) {
+        if (apiUrl == null) {
+            return "";
+        }
+        try {
+            URI uri = URI.create(apiUrl.trim());
+            if (uri.getHost() != null) {
+                return (uri.getScheme() + "://" + uri.getHost() + ":" + uri.getPort()).toLowerCase(Locale.ROOT);
+            }
+        } catch (IllegalArgumentException e) {
+            // not a URL: use it as it is
+        }
+        return apiUrl.trim();
+    }
+
+    /**
+     * Configure known limits up front instead of waiting for the first response headers.
+     */
+    public RateLimitScheduler withLimits(long requestsPerMinute, long tokensPerMinute) {
+        requests.configure(requestsPerMinute * headroom);
+        tokens.configure(tokensPerMinute * headroom);
+        return this;
+    }
+
+    /**
+     * Reserve one request and {@code estimatedTokens} tokens, sleeping until the reservation is covered.
+     *
+     * @param estimatedTokens prompt tokens plus the requested completion budget
+     */
+    public void acquire(long estimatedTokens) throws InterruptedException {
+        long waitNanos = Math.max(pausedUntilNanos - System.nanoTime(), 0L);
+        waitNanos = Math.max(waitNanos, requests.reserve(1));
+        waitNanos = Math.max(waitNanos, tokens.reserve(estimatedTokens));
+        if (waitNanos > 0L) {
+            Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+        }
+    }
+
+    /**
+     * Correct the token bucket once the provider has reported actual usage for a request.
+     */
+    public void recordUsage(long estimatedTokens, long actualTokens) {
+        if (actualTokens >= 0) {
+            tokens.refund(estimatedTokens - actualTokens);
+        }
+    }
+
+    /**
+     * Learn limits and re-synchronize remaining budgets from {@code x-ratelimit-*} response headers.
+     */
+    public void updateFromHeaders(HttpHeaders headers) {
+        update(requests,
+                header(headers, "x-ratelimit-limit-requests"),
+                header(headers, "x-ratelimit-remaining-requests"),
+                headers.firstValue("x-ratelimit-reset-requests").orElse(null));
+        update(tokens,
+                header(headers, "x-ratelimit-limit-tokens"),
+                header(headers, "x-ratelimit-remaining-tokens"),
+                headers.firstValue("x-ratelimit-reset-tokens").orElse(null));
+    }
+
+    /**
+     * The provider rejected a request with 429: pause all callers for {@code retryAfter} (1s if unknown).
+     */
+    public void onRateLimited(Duration retryAfter) {
+        pauseFor(retryAfter != null ? retryAfter : DEFAULT_RETRY_AFTER);
+        requests.drain();
+        tokens.drain();
+    }
+
+    private void pauseFor(Duration pause) {
+        long until = System.nanoTime() + pause.toNanos();
+        if (until - pausedUntilNanos > 0L) {
+            pausedUntilNanos = until;
+        }
+    }
+
+    /**
+     * Remaining request budget as currently tracked, or -1 if no limit is known yet.
+     */
+    public long getRemainingRequests() {
+        return requests.available();
+    }
+
+    /**
+     * Remaining token budget as currently tracked, or -1 if no limit is known yet.
+     */
+    public long getRemainingTokens() {
+        return tokens.available();
+    }
+
+    private void update(TokenBucket bucket, OptionalLong limit, OptionalLong remaining, String reset) {
+        if (limit.isPresent()) {
+            bucket.configure(limit.getAsLong() * headroom);
+        }
+        if (remaining.isPresent()) {
+            bucket.syncRemaining(remaining.getAsLong() - bucket.margin(headroom));
+            if (remaining.getAsLong() == 0L) {
+                // Budget exhausted on the provider side: nobody should send before it resets
+                Duration resetIn = parseResetDuration(reset);
+                if (resetIn != null) {
+                    pauseFor(resetIn);
+                }
+            }
+        }
+    }
+
+    private static OptionalLong header(HttpHeaders headers, String name) {
+        return headers.firstValue(name)
+                .map(String::trim)
+                .filter(v -> v.matches("\\d+"))
+                .map(v -> OptionalLong.of(Long.parseLong(v)))
+                .orElse(OptionalLong.empty());
+    }
+
+    /**
+     * Parse provider reset durations such as {@code "1s"}, {@code "6m0s"}, {@code "20ms"} or {@code "1h2m3.5s"}.
+     */
+    public static Duration parseResetDuration(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Matcher m = DURATION_PART.matcher(value.trim());
+        double millis = 0.0;
+        boolean matched = false;
+        while (m.find()) {
+            matched = true;
+            double amount = Double.parseDouble(m.group(1));
+            switch (m.group(2)) {
+                case "h" -> millis += amount * 3_600_000.0;
+                case "m" -> millis += amount * 60_000.0;
+                case "s" -> millis += amount * 1_000.0;
+                default -> millis += amount;
+            }
+        }
+        return matched ? Duration.ofMillis((long) millis) : null;
+    }
+
+    /**
+     * Per-minute token bucket. Unconfigured buckets never block.
+     */
+    private static final class TokenBucket {
+        private static final double NANOS_PER_MINUTE = 60_000_000_000.0;
+
+        private double capacity = -1.0;
+        private double level;
+        private long lastRefillNanos = System.nanoTime();
+
+        synchronized void configure(double perMinute) {
+            if (perMinute <= 0.0) {
+                return;
+            }
+            refill();
+            if (capacity < 0.0) {
+                level = perMinute;
+            }
+            capacity = perMinute;
+            level = Math.min(level, capacity);
+        }
+
+        /**
+         * Reserve {@code amount}; returns how long the caller must wait for the reservation to be covered.
+         */
+        synchronized long reserve(long amount) {
+            if (capacity < 0.0) {
+                return 0L;
+            }
+            refill();
+            level -= Math.min(amount, capacity);
+            return level >= 0.0 ? 0L : (long) (-level / capacity * NANOS_PER_MINUTE);
+        }
+
+        /**
+         * Absolute amount kept back from the provider's "remaining" figure.
+         */
+        synchronized long margin(double headroom) {
+            return capacity < 0.0 ? 0L : (long) (capacity / headroom * (1.0 - headroom));
+        }
+
+        synchronized void syncRemaining(long remaining) {
+            if (capacity < 0.0) {
+                return;
+            }
+            refill();
+            // The provider's view wins when it is lower than ours (other processes share the key)
+            level = Math.min(level, remaining);
+        }
+
+        synchronized void refund(long amount) {
+            if (capacity < 0.0) {
+                return;
+            }
+            refill();
+            level = Math.min(capacity, level + amount);
+        }
+
+        synchronized void drain() {
+            if (capacity >= 0.0) {
+                refill();
+                level = Math.min(level, 0.0);
+            }
+        }
+
+        synchronized long available() {
+            if (capacity < 0.0) {
+                return -1L;
+            }
+            refill();
+            return (long) Math.max(level, 0.0);
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            if (capacity > 0.0) {
+                level = Math.min(capacity, level + (now - lastRefillNanos) / NANOS_PER_MINUTE * capacity);
+            }
+            lastRefillNanos = now;
+        }
+    }
+}
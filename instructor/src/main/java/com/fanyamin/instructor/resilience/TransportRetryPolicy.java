@@ -0,0 +1,271 @@
+package com.fanyamin.instructor.resilience;
+
+import com.fanyamin.instructor.api.Deadline;
+import com.fanyamin.instructor.exception.DeadlineExceededException;
+import com.fanyamin.instructor.exception.IncompleteOutputException;
+import com.fanyamin.instructor.exception.LlmApiException;
+import com.fanyamin.instructor.exception.LlmBusyException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Retry policy for transport-level failures of idempotent LLM calls (network errors, 5xx, 429).
+ *
+ * <p>This is deliberately separate from the validation retry loop in
+ * {@link com.fanyamin.LazyFormInstructor}: a dropped connection is retried with the same prompt and does
+ * not consume the validation budget, while a schema failure is never retried here.</p>
+ *
+ * <ul>
+ *   <li>Exponential backoff with full jitter, never shorter than the provider's {@code Retry-After}.</li>
+ *   <li>A retry budget: within each time window, retries may not exceed {@code budgetRatio} of the calls
+ *       made (plus a small floor), so a provider outage does not turn into a retry storm.</li>
+ *   <li>Streams are retried only if they failed before emitting anything.</li>
+ * </ul>
+ */
+public class TransportRetryPolicy {
+
+    public static final Set<Integer> DEFAULT_RETRYABLE_STATUS_CODES = Set.of(408, 429, 500, 502, 503, 504);
+
+    private final int maxRetries;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final Set<Integer> retryableStatusCodes;
+    private final RetryBudget budget;
+
+    private TransportRetryPolicy(Builder builder) {
+        this.maxRetries = builder.maxRetries;
+        this.baseDelay = builder.baseDelay;
+        this.maxDelay = builder.maxDelay;
+        this.retryableStatusCodes = Set.copyOf(builder.retryableStatusCodes);
+        this.budget = new RetryBudget(builder.budgetRatio, builder.minRetriesPerWindow, builder.budgetWindow);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static TransportRetryPolicy defaults() {
+        return builder().build();
+    }
+
+    /**
+     * A policy that never retries.
+     */
+    public static TransportRetryPolicy none() {
+        return builder().maxRetries(0).build();
+    }
+
+    /**
+     * Run a blocking call, retrying retryable failures.
+     */
+    public <T> T execute(Supplier<T> call) {
+        return execute(call, null);
+    }
+
+    /**
+     * Run a blocking call, retrying retryable failures as long as the backoff still fits before {@code deadline}.
+     * The supplier is re-evaluated per try, so it can derive its own timeout from the remaining time.
+     */
+    public <T> T execute(Supplier<T> call, Deadline deadline) {
+        for (int retry = 0; ; retry++) {
+            budget.recordCall();
+            try {
+                return call.get();
+            } catch (RuntimeException e) {
+                Duration delay = shouldRetry(e, retry) ? delayFor(e, retry) : null;
+                if (delay == null || !fitsBefore(delay, deadline)) {
+                    throw e;
+                }
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Subscribe to a stream, re-subscribing on retryable failures that happen before the first element.
+     * Once anything has been emitted the error is propagated as-is, since replaying would duplicate output.
+     */
+    public <T> Flux<T> executeStream(Supplier<Flux<T>> call) {
+        return executeStream(call, null);
+    }
+
+    /**
+     * Like {@link #executeStream(Supplier)}, but never schedules a retry that would start after {@code deadline}.
+     */
+    public <T> Flux<T> executeStream(Supplier<Flux<T>> call, Deadline deadline) {
+        return Flux.defer(() -> streamAttempt(call, deadline, 0));
+    }
+
+    private <T> Flux<T> streamAttempt(Supplier<Flux<T>> call, Deadline deadline, int retry) {
+        budget.recordCall();
+        AtomicBoolean emitted = new AtomicBoolean(false);
+        return call.get()
+                .doOnNext(item -> emitted.set(true))
+                .onErrorResume(e -> {
+                    Duration delay = !emitted.get() && shouldRetry(e, retry) ? delayFor(e, retry) : null;
+                    if (delay == null || !fitsBefore(delay, deadline)) {
+                        return Flux.error(e);
+                    }
+                    return Mono.delay(delay).flatMapMany(tick -> streamAttempt(call, deadline, retry + 1));
+                });
+    }
+
+    private static boolean fitsBefore(Duration delay, Deadline deadline) {
+        return deadline == null || deadline.remaining().compareTo(delay) > 0;
+    }
+
+    /**
+     * Whether {@code error} is a transient transport failure worth retrying with the same request.
+     */
+    public boolean isRetryable(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof IncompleteOutputException) {
+                // A failed continuation: the caller works with the partial answer rather than starting over
+                return false;
+            }
+            if (t instanceof DeadlineExceededException || t instanceof LlmBusyException) {
+                // The call ran out of time or capacity; a retry would start a fresh per-call timeout
+                return false;
+            }
+            if (t instanceof LlmApiException apiError) {
+                return retryableStatusCodes.contains(apiError.getStatusCode());
+            }
+            if (t instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean shouldRetry(Throwable error, int retry) {
+        return retry < maxRetries && isRetryable(error) && budget.tryAcquireRetry();
+    }
+
+    /**
+     * Full jitter: uniform in [0, min(maxDelay, baseDelay * 2^retry)], but at least the provider's Retry-After.
+     */
+    Duration delayFor(Throwable error, int retry) {
+        long cap = Math.min(maxDelay.toMillis(), baseDelay.toMillis() << Math.min(retry, 20));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof LlmApiException apiError && apiError.getRetryAfter() != null) {
+                delay = Math.max(delay, apiError.getRetryAfter().toMillis());
+                break;
+            }
+        }
+        return Duration.ofMillis(delay);
+    }
+
+    private static void sleep(Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during retry backoff", e);
+        }
+    }
+
+    /**
+     * Tumbling-window retry budget: at most {@code max(minRetries, ratio × calls)} retries per window.
+     */
+    static final class RetryBudget {
+        private final double ratio;
+        private final int minRetries;
+        private final long windowNanos;
+
+        private long windowStart = System.nanoTime();
+        private long calls;
+        private long retries;
+
+        RetryBudget(double ratio, int minRetries, Duration window) {
+            this.ratio = ratio;
+            this.minRetries = minRetries;
+            this.windowNanos = window.toNanos();
+        }
+
+        synchronized void recordCall() {
+            roll();
+            calls++;
+        }
+
+        synchronized boolean tryAcquireRetry() {
+            roll();
+            if (retries >= Math.max(minRetries, (long) (ratio * calls))) {
+                return false;
+            }
+            retries++;
+            return true;
+        }
+
+        private void roll() {
+            long now = System.nanoTime();
+            if (now - windowStart >= windowNanos) {
+                windowStart = now;
+                calls = 0;
+                retries = 0;
+            }
+        }
+    }
+
+    public static class Builder {
+        private int maxRetries = 2;
+        private Duration baseDelay = Duration.ofMillis(250);
+        private Duration maxDelay = Duration.ofSeconds(8);
+        private Set<Integer> retryableStatusCodes = DEFAULT_RETRYABLE_STATUS_CODES;
+        private double budgetRatio = 0.2;
+        private int minRetriesPerWindow = 3;
+        private Duration budgetWindow = Duration.ofSeconds(10);
+
+        public Builder maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        public Builder baseDelay(Duration baseDelay) {
+            this.baseDelay = baseDelay;
+            return this;
+        }
+
+        public Builder maxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+            return this;
+        }
+
+        public Builder retryableStatusCodes(Set<Integer> retryableStatusCodes) {
+            this.retryableStatusCodes = retryableStatusCodes;
+            return this;
+        }
+
+        /**
+         * Maximum share of calls per window that may be retries (e.g. 0.2 = 20%).
+         */
+        public Builder budgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+            return this;
+        }
+
+        /**
+         * Retries always allowed per window regardless of the ratio, so low-traffic callers can still retry.
+         */
+        public Builder minRetriesPerWindow(int minRetriesPerWindow) {
+            this.minRetriesPerWindow = minRetriesPerWindow;
+            return this;
+        }
+
+        public Builder budgetWindow(Duration budgetWindow) {
+            this.budgetWindow = budgetWindow;
+            return this;
+        }
+
+        public TransportRetryPolicy build() {
+            return new TransportRetryPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.fanyamin.instructor.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles a JSON Schema into a GBNF grammar, the format llama.cpp uses for grammar-constrained decoding.
+ *
+ * <p>The grammar only admits JSON that has the schema's shape, so a model decoding under it cannot produce
+ * malformed JSON, unknown properties or out-of-enum values:</p>
+ * <ul>
+ *   <li>objects with {@code properties} emit their properties in schema order; required ones are always
+ *       present, the others may be left out</li>
+ *   <li>{@code enum}/{@code const} become literal alternatives</li>
+ *   <li>integers with {@code minimum} and {@code maximum} spanning at most {@value #MAX_ENUMERATED_RANGE}
+ *       values are spelled out; other bounds only restrict the sign</li>
+ *   <li>numbers in [0, 1] (confidence scores) and strings with {@code format: date} get dedicated rules</li>
+ *   <li>schemas without a usable type fall back to any JSON value</li>
+ * </ul>
+ *
+ * <p>Remaining keywords ({@code pattern}, {@code maxLength}, ...) are not encoded; {@link SchemaValidator} still
+ * checks them afterwards. Whitespace is limited to single spaces, which also keeps the output short.
+ * Compiled grammars are cached per schema.</p>
+ */
+public final class GbnfGrammarCompiler {
+
+    /** Integer ranges with at most this many values are compiled into literal alternatives. */
+    static final int MAX_ENUMERATED_RANGE = 256;
+
+    private static final int MAX_CACHED = 256;
+    private static final Map<JsonNode, String> CACHE = new ConcurrentHashMap<>();
+
+    private static final Map<String, String> PRIMITIVES = new LinkedHashMap<>();
+    private static final Map<String, List<String>> PRIMITIVE_DEPENDENCIES = new HashMap<>();
+
+    static {
+        primitive("ws", "\" \"?");
+        primitive("string", "\"\\\"\" ( [^\"\\\\\\x7F\\x00-\\x1F] | \"\\\\\" ( [\"\\\\/bfnrt] "
+                + "| \"u\" [0-9a-fA-F] [0-9a-fA-F] [0-9a-fA-F] [0-9a-fA-F] ) )* \"\\\"\"");
+        primitive("integer", "\"-\"? ( \"0\" | [1-9] [0-9]* )");
+        primitive("number", "integer ( \".\" [0-9]+ )? ( [eE] [-+]? [0-9]+ )?", "integer");
+        primitive("boolean", "\"true\" | \"false\"");
+        primitive("null", "\"null\"");
+        primitive("date", "\"\\\"\" [0-9] [0-9] [0-9] [0-9] \"-\" ( \"0\" [1-9] | \"1\" [0-2] ) "
+                + "\"-\" ( \"0\" [1-9] | [12] [0-9] | \"3\" [01] ) \"\\\"\"");
+        primitive("value", "object | array | string | number | boolean | null",
+                "object", "array", "string", "number", "boolean", "null");
+        primitive("object", "\"{\" ws ( string ws \":\" ws value ( ws \",\" ws string ws \":\" ws value )* )? ws \"}\"",
+                "ws", "string", "value");
+        primitive("array", "\"[\" ws ( value ( ws \",\" ws value )* )? ws \"]\"", "ws", "value");
+    }
+
+    private static final String UNIT_INTERVAL =
+            "( \"0\" ( \".\" [0-9] [0-9]? [0-9]? [0-9]? )? | \"1\" ( \".\" \"0\"+ )? )";
+
+    private static final String TOP_RULE = "response";
+
+    private final Map<String, String> rules = new LinkedHashMap<>();
+    private final Map<String, String> namesByBody = new HashMap<>();
+    private final Set<String> usedPrimitives = new HashSet<>();
+
+    private GbnfGrammarCompiler() {
+    }
+
+    private static void primitive(String name, String body, String... dependencies) {
+        PRIMITIVES.put(name, body);
+        PRIMITIVE_DEPENDENCIES.put(name, List.of(dependencies));
+    }
+
+    /**
+     * @return the grammar text, with {@code root} as start rule
+     */
+    public static String compile(JsonNode schema) {
+        String cached = CACHE.get(schema);
+        if (cached == null) {
+            if (CACHE.size() >= MAX_CACHED) {
+                CACHE.clear();
+            }
+            cached = new GbnfGrammarCompiler().compileRoot(schema);
+            CACHE.put(schema, cached);
+        }
+        return cached;
+    }
+
+    private String compileRoot(JsonNode schema) {
+        String start = rule(schema, TOP_RULE);
+
+        StringBuilder grammar = new StringBuilder();
+        grammar.append("root ::= ").append(start).append('\n');
+        rules.forEach((name, body) -> grammar.append(name).append(" ::= ").append(body).append('\n'));
+        PRIMITIVES.forEach((name, body) -> {
+            if (usedPrimitives.contains(name)) {
+                grammar.append(name).append(" ::= ").append(body).append('\n');
+            }
+        });
+        return grammar.toString();
+    }
+
+    /**
+     * Compile {@code schema} and return the name of the rule that matches it.
+     */
+    private String rule(JsonNode schema, String name) {
+        if (schema.has("enum") && schema.get("enum").isArray()) {
+            List<String> literals = new ArrayList<>();
+            schema.get("enum").forEach(value -> literals.add(literal(value.toString())));
+            return define(name, String.join(" | ", literals));
+        }
+        if (schema.has("const")) {
+            return define(name, literal(schema.get("const").toString()));
+        }
+        JsonNode variants = schema.has("anyOf") ? schema.get("anyOf") : schema.get("oneOf");
+        if (variants != null && variants.isArray()) {
+            List<String> alternatives = new ArrayList<>();
+            for (int i = 0; i < variants.size(); i++) {
+                alternatives.add(rule(variants.get(i), name + "-" + i));
+            }
+            return define(name, String.join(" | ", alternatives));
+        }
+        JsonNode type = schema.get("type");
+        if (type != null && type.isArray()) {
+            List<String> alternatives = new ArrayList<>();
+            type.forEach(t -> alternatives.add(typedRule(schema, t.asText(), name + "-" + t.asText())));
+            return define(name, String.join(" | ", alternatives));
+        }
+        return typedRule(schema, type != null ? type.asText() : inferType(schema), name);
+    }
+
+    private String typedRule(JsonNode schema, String type, String name) {
+        switch (type) {
+            case "object" -> {
+                return schema.path("properties").isObject() ? objectRule(schema, name) : use("object");
+            }
+            case "array" -> {
+                JsonNode items = schema.get("items");
+                if (items == null || !items.isObject()) {
+                    return use("array");
+                }
+                String item = rule(items, name + "-item");
+                return define(name, "\"[\" " + use("ws") + " ( " + item + " ( ws \",\" ws " + item + " )* )? ws \"]\"");
+            }
+            case "string" -> {
+                return "date".equals(schema.path("format").asText()) ? use("date") : use("string");
+            }
+            case "integer" -> {
+                return integerRule(schema, name);
+            }
+            case "number" -> {
+                if (schema.path("minimum").asDouble(-1) == 0 && schema.path("maximum").asDouble(-1) == 1) {
+                    return define(name, UNIT_INTERVAL);
+                }
+                return use("number");
+            }
+            case "boolean", "null" -> {
+                return use(type);
+            }
+            default -> {
+                return use("value");
+            }
+        }
+    }
+
+    private static String inferType(JsonNode schema) {
+        if (schema.has("properties")) {
+            return "object";
+        }
+        return schema.has("items") ? "array" : "";
+    }
+
+    private String objectRule(JsonNode schema, String name) {
+        Set<String> required = new HashSet<>();
+        schema.path("required").forEach(n -> required.add(n.asText()));
+
+        List<String> requiredPairs = new ArrayList<>();
+        List<String> optionalPairs = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> it = schema.get("properties").fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> property = it.next();
+            String key = property.getKey();
+            String valueRule = rule(property.getValue(), name.equals(TOP_RULE) ? key : name + "-" + key);
+            String pair = literal(quoteJson(key)) + " ws \":\" ws " + valueRule;
+            (required.contains(key) ? requiredPairs : optionalPairs).add(pair);
+        }
+
+        StringBuilder members = new StringBuilder();
+        if (!requiredPairs.isEmpty()) {
+            members.append(String.join(" ws \",\" ws ", requiredPairs));
+            for (String pair : optionalPairs) {
+                members.append(" ( ws \",\" ws ").append(pair).append(" )?");
+            }
+        } else if (!optionalPairs.isEmpty()) {
+            // No anchor member: each alternative starts with the first property present
+            List<String> alternatives = new ArrayList<>();
+            for (int first = 0; first < optionalPairs.size(); first++) {
+                StringBuilder alternative = new StringBuilder(optionalPairs.get(first));
+                for (String pair : optionalPairs.subList(first + 1, optionalPairs.size())) {
+                    alternative.append(" ( ws \",\" ws ").append(pair).append(" )?");
+                }
+                alternatives.add(alternative.toString());
+            }
+            members.append("( ").append(String.join(" | ", alternatives)).append(" )?");
+        }
+        return define(name, "\"{\" " + use("ws") + " " + members + " ws \"}\"");
+    }
+
+    private String integerRule(JsonNode schema, String name) {
+        JsonNode minimum = schema.get("minimum");
+        JsonNode maximum = schema.get("maximum");
+        if (minimum != null && minimum.isNumber() && maximum != null && maximum.isNumber()) {
+            long low = (long) Math.ceil(minimum.asDouble());
+            long high = (long) Math.floor(maximum.asDouble());
+            if (high >= low && high - low < MAX_ENUMERATED_RANGE) {
+                List<String> literals = new ArrayList<>();
+                for (long i = low; i <= high; i++) {
+                    literals.add(literal(Long.toString(i)));
+                }
+                return define(name, String.join(" | ", literals));
+            }
+        }
+        if (minimum != null && minimum.isNumber() && minimum.asDouble() > 0) {
+            return define(name, "[1-9] [0-9]*");
+        }
+        if (minimum != null && minimum.isNumber() && minimum.asDouble() >= 0) {
+            return define(name, "\"0\" | [1-9] [0-9]*");
+        }
+        return use("integer");
+    }
+
+    /**
+     * Register a rule, reusing an existing one with the same body (e.g. an enum shared by value and alternatives).
+     */
+    private String define(String name, String body) {
+        String existing = namesByBody.get(body);
+        if (existing != null) {
+            return existing;
+        }
+        String base = name.replaceAll("[^a-zA-Z0-9-]", "-");
+        String unique = base;
+        for (int i = 2; rules.containsKey(unique) || PRIMITIVES.containsKey(unique) || unique.equals("root"); i++) {
+            unique = base + "-" + i;
+        }
+        rules.put(unique, body);
+        namesByBody.put(body, unique);
+        return unique;
+    }
+
+    private String use(String primitive) {
+        if (usedPrimitives.add(primitive)) {
+            PRIMITIVE_DEPENDENCIES.get(primitive).forEach(this::use);
+        }
+        return primitive;
+    }
+
+    private static String quoteJson(String text) {
+        return TextNode.valueOf(text).toString();
+    }
+
+    /**
+     * A GBNF string literal matching {@code text} exactly.
+     */
+    static String literal(String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
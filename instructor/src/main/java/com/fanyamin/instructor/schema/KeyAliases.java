@@ -0,0 +1,206 @@
+package com.fanyamin.instructor.schema;
+
+import com.fanyamin.instructor.api.FieldResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short keys the LLM writes instead of the form's property names and the {@link FieldResult} part names,
+ * e.g. {@code {"st": {"v": "09:00", "c": 0.9}}} instead of
+ * {@code {"schedule_time": {"value": "09:00", "confidence": 0.9}}}.
+ *
+ * <p>Every field repeats its name and up to four part names, so long snake_case names make up a large share of
+ * the output tokens of a lean response. Aliases are derived from the schema alone (initials of the name's words,
+ * numbered on collision), so the same schema always gets the same aliases and the prompt stays cacheable.
+ * Only top-level properties are aliased; nested values keep their real keys.</p>
+ *
+ * <p>{@link #expand(JsonNode)} maps a response back to the real names before it is deserialized and validated.
+ * Real names are accepted as well, so a model that ignores the aliases still works.</p>
+ */
+public final class KeyAliases {
+
+    /** Short keys of the parts of a field result, in prompt order. */
+    public static final Map<String, String> PART_ALIASES;
+
+    static {
+        Map<String, String> parts = new LinkedHashMap<>();
+        parts.put("value", "v");
+        parts.put(FieldResult.CONFIDENCE, "c");
+        parts.put(FieldResult.REASONING, "r");
+        parts.put(FieldResult.ALTERNATIVES, "a");
+        PART_ALIASES = Collections.unmodifiableMap(parts);
+    }
+
+    private static final Map<String, String> PART_NAMES = invert(PART_ALIASES);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_CACHED = 256;
+    private static final Map<String, KeyAliases> CACHE = new ConcurrentHashMap<>();
+
+    private final Map<String, String> aliasByField;
+    private final Map<String, String> fieldByAlias;
+
+    private KeyAliases(Map<String, String> aliasByField) {
+        this.aliasByField = Collections.unmodifiableMap(aliasByField);
+        this.fieldByAlias = invert(aliasByField);
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code formSchema} is not valid JSON
+     */
+    public static KeyAliases forSchema(String formSchema) {
+        KeyAliases cached = CACHE.get(formSchema);
+        if (cached != null) {
+            return cached;
+        }
+        if (CACHE.size() >= MAX_CACHED) {
+            CACHE.clear();
+        }
+        return CACHE.computeIfAbsent(formSchema, KeyAliases::build);
+    }
+
+    static KeyAliases build(String formSchema) {
+        JsonNode form;
+        try {
+            form = MAPPER.readTree(formSchema);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Form schema is not valid JSON", e);
+        }
+        Set<String> names = new HashSet<>();
+        form.path("properties").fieldNames().forEachRemaining(names::add);
+
+        Map<String, String> aliases = new LinkedHashMap<>();
+        Set<String> taken = new HashSet<>();
+        Iterator<String> it = form.path("properties").fieldNames();
+        while (it.hasNext()) {
+            String name = it.next();
+            String base = initials(name);
+            if (base.length() >= name.length()) {
+                // Nothing to save; a name is never an alias of another field, so it stays unambiguous
+                aliases.put(name, name);
+                taken.add(name);
+                continue;
+            }
+            String alias = base;
+            for (int n = 2; taken.contains(alias) || names.contains(alias); n++) {
+                alias = base + n;
+            }
+            aliases.put(name, alias);
+            taken.add(alias);
+        }
+        return new KeyAliases(aliases);
+    }
+
+    /**
+     * First letter of each word of a snake_case, kebab-case or camelCase name, lower-cased.
+     */
+    private static String initials(String name) {
+        StringBuilder out = new StringBuilder();
+        boolean wordStart = true;
+        char previous = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c)) {
+                wordStart = true;
+            } else {
+                if (wordStart || (Character.isUpperCase(c) && Character.isLowerCase(previous))) {
+                    out.append(Character.toLowerCase(c));
+                }
+                wordStart = false;
+            }
+            previous = c;
+        }
+        if (out.length() == 0 || !Character.isLetter(out.charAt(0))) {
+            out.insert(0, 'f');
+        }
+        return out.toString();
+    }
+
+    /**
+     * The alias of a top-level property, or the name itself if it has none.
+     */
+    public String alias(String field) {
+        return aliasByField.getOrDefault(field, field);
+    }
+
+    /**
+     * Property name to alias, in schema order; only entries where the alias differs from the name.
+     */
+    public Map<String, String> fieldAliases() {
+        Map<String, String> out = new LinkedHashMap<>();
+        aliasByField.forEach((name, alias) -> {
+            if (!name.equals(alias)) {
+                out.put(name, alias);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * The short key of a {@link FieldResult} part ({@code value}, {@code confidence}, ...).
+     */
+    public static String partAlias(String part) {
+        return PART_ALIASES.getOrDefault(part, part);
+    }
+
+    /**
+     * Rewrite an aliased response in place to the real field and part names, including the field an error's
+     * {@code path} starts with. Keys that are not aliases are kept as they are.
+     */
+    public void expand(JsonNode response) {
+        if (!(response instanceof ObjectNode root)) {
+            return;
+        }
+        if (root.get("fields") instanceof ObjectNode fields) {
+            ObjectNode expanded = MAPPER.createObjectNode();
+            fields.fields().forEachRemaining(entry -> {
+                String name = fieldByAlias.getOrDefault(entry.getKey(), entry.getKey());
+                expanded.set(name, expandParts(entry.getValue()));
+            });
+            root.set("fields", expanded);
+        }
+        for (JsonNode error : root.path("errors")) {
+            if (error instanceof ObjectNode errorNode && errorNode.path("path").isTextual()) {
+                errorNode.put("path", expandPath(errorNode.path("path").asText()));
+            }
+        }
+    }
+
+    private static JsonNode expandParts(JsonNode field) {
+        if (!(field instanceof ObjectNode parts)) {
+            return field;
+        }
+        ObjectNode expanded = MAPPER.createObjectNode();
+        parts.fields().forEachRemaining(entry -> {
+            String part = PART_NAMES.getOrDefault(entry.getKey(), entry.getKey());
+            if (!expanded.has(part)) {
+                expanded.set(part, entry.getValue());
+            }
+        });
+        return expanded;
+    }
+
+    private String expandPath(String path) {
+        int end = 0;
+        while (end < path.length() && path.charAt(end) != '.' && path.charAt(end) != '[') {
+            end++;
+        }
+        String field = fieldByAlias.get(path.substring(0, end));
+        return field != null ? field + path.substring(end) : path;
+    }
+
+    private static Map<String, String> invert(Map<String, String> map) {
+        Map<String, String> inverted = new LinkedHashMap<>();
+        map.forEach((key, value) -> inverted.put(value, key));
+        return Collections.unmodifiableMap(inverted);
+    }
+}
@@ -0,0 +1,171 @@
+package com.fanyamin.instructor.schema;
+
+import com.fanyamin.instructor.api.FieldResult;
+import com.fanyamin.instructor.api.OutputProfile;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Output token budget ({@code max_tokens}) for the answer to a form, derived from its schema: the expected
+ * cost of each field under the {@link OutputProfile}, summed and given some headroom.
+ *
+ * <p>A fixed cap has to fit the largest form, so it neither protects against runaway output on small forms nor
+ * reserves a realistic amount of rate-limit capacity. The estimate is generous on purpose: an answer cut off by
+ * it costs a continuation request, which is more expensive than a somewhat larger reservation.</p>
+ */
+public final class ResponseBudget {
+
+    /** Budget never goes below this, whatever the schema. */
+    public static final int MIN_TOKENS = 256;
+
+    private static final int ENVELOPE = 16;          // {"fields": {...}, "errors": []}
+    private static final int ERRORS_ALLOWANCE = 64;  // a couple of reported errors
+    private static final int FIELD_STRUCTURE = 8;    // quotes, braces, "value": ...
+    private static final int CONFIDENCE = 6;
+    private static final int REASONING = 48;
+    private static final int ALTERNATIVE_SLOTS = 2;
+    private static final int FREE_TEXT = 32;         // string without maxLength, enum or format
+    private static final int MAX_VALUE = 1024;       // cap for one field, e.g. a very large maxLength
+    private static final int DEFAULT_ITEMS = 5;
+    private static final int MAX_DEPTH = 6;
+    private static final double HEADROOM = 1.3;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_CACHED = 256;
+    private static final Map<String, Integer> CACHE = new ConcurrentHashMap<>();
+
+    private ResponseBudget() {
+    }
+
+    /**
+     * @param aliased whether the answer uses {@link KeyAliases}, which makes field keys cheaper
+     * @return the budget, or 0 if the schema declares no properties to base it on
+     * @throws IllegalArgumentException if {@code formSchema} is not valid JSON
+     */
+    public static int forForm(String formSchema, OutputProfile profile, boolean aliased) {
+        String key = profile.name() + (aliased ? "/aliased" : "") + '\n' + formSchema;
+        Integer cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (CACHE.size() >= MAX_CACHED) {
+            CACHE.clear();
+        }
+        return CACHE.computeIfAbsent(key, k -> estimate(formSchema, profile, aliased));
+    }
+
+    static int estimate(String formSchema, OutputProfile profile, boolean aliased) {
+        JsonNode form;
+        try {
+            form = MAPPER.readTree(formSchema);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Form schema is not valid JSON", e);
+        }
+        if (!form.path("properties").isObject()) {
+            return 0;
+        }
+        KeyAliases aliases = aliased ? KeyAliases.build(formSchema) : null;
+
+        int total = ENVELOPE + ERRORS_ALLOWANCE;
+        Iterator<Map.Entry<String, JsonNode>> it = form.path("properties").fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> property = it.next();
+            String key = aliases != null ? aliases.alias(property.getKey()) : property.getKey();
+            int value = valueTokens(property.getValue(), 0);
+            total += keyTokens(key) + FIELD_STRUCTURE + value;
+            if (profile.includes(FieldResult.CONFIDENCE)) {
+                total += CONFIDENCE;
+            }
+            if (profile.includes(FieldResult.REASONING)) {
+                total += REASONING;
+            }
+            if (profile.includes(FieldResult.ALTERNATIVES)) {
+                total += 2 + ALTERNATIVE_SLOTS * value;
+            }
+        }
+        return Math.max(MIN_TOKENS, (int) Math.ceil(total * HEADROOM));
+    }
+
+    private static int keyTokens(String key) {
+        return 1 + key.length() / 6;
+    }
+
+    /**
+     * Expected tokens of a value matching {@code schema}.
+     */
+    static int valueTokens(JsonNode schema, int depth) {
+        if (depth > MAX_DEPTH) {
+            return FREE_TEXT;
+        }
+        if (schema.has("enum")) {
+            int longest = 1;
+            for (JsonNode option : schema.get("enum")) {
+                longest = Math.max(longest, option.asText().length());
+            }
+            return 2 + longest / 3;
+        }
+        if (schema.has("const")) {
+            return 2 + schema.get("const").asText().length() / 3;
+        }
+        for (String combinator : new String[]{"anyOf", "oneOf"}) {
+            if (schema.path(combinator).isArray()) {
+                int largest = 1;
+                for (JsonNode option : schema.get(combinator)) {
+                    largest = Math.max(largest, valueTokens(option, depth + 1));
+                }
+                return largest;
+            }
+        }
+        JsonNode typeNode = schema.path("type");
+        String type = typeNode.isArray() ? firstNonNullType(typeNode) : typeNode.asText("");
+        switch (type) {
+            case "integer", "number" -> {
+                return 4;
+            }
+            case "boolean", "null" -> {
+                return 1;
+            }
+            case "string" -> {
+                if (schema.has("format")) {
+                    return 10; // dates, times, e-mails, URIs
+                }
+                if (schema.has("maxLength")) {
+                    return Math.min(MAX_VALUE, 2 + schema.get("maxLength").asInt() / 3);
+                }
+                return FREE_TEXT;
+            }
+            case "array" -> {
+                int items = Math.min(schema.path("maxItems").asInt(DEFAULT_ITEMS), 50);
+                return Math.min(MAX_VALUE, 2 + items * (1 + valueTokens(schema.path("items"), depth + 1)));
+            }
+            case "object" -> {
+                if (!schema.path("properties").isObject()) {
+                    return FREE_TEXT;
+                }
+                int total = 2;
+                Iterator<Map.Entry<String, JsonNode>> it = schema.path("properties").fields();
+                while (it.hasNext()) {
+                    Map.Entry<String, JsonNode> property = it.next();
+                    total += keyTokens(property.getKey()) + 2 + valueTokens(property.getValue(), depth + 1);
+                }
+                return Math.min(MAX_VALUE, total);
+            }
+            default -> {
+                return FREE_TEXT;
+            }
+        }
+    }
+
+    private static String firstNonNullType(JsonNode types) {
+        for (JsonNode type : types) {
+            if (!"null".equals(type.asText())) {
+                return type.asText();
+            }
+        }
+        return "null";
+    }
+}
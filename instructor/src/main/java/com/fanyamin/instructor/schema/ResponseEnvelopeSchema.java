@@ -0,0 +1,155 @@
+package com.fanyamin.instructor.schema;
+
+import com.fanyamin.instructor.api.FieldResult;
+import com.fanyamin.instructor.api.OutputProfile;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JSON Schema of a complete LLM response for a form: the form's properties wrapped in the
+ * {@code fields}/{@code errors} envelope that the prompt describes, with each field reduced to the parts
+ * requested by the {@link OutputProfile}.
+ *
+ * <p>The result is used for provider-side structured output (response_format, guided decoding). It is cached
+ * per form schema and profile and must be treated as read-only.</p>
+ *
+ * <p>With aliasing, property and part names are the {@link KeyAliases} the prompt asks for.</p>
+ */
+public final class ResponseEnvelopeSchema {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int MAX_CACHED = 256;
+    private static final Map<String, JsonNode> CACHE = new ConcurrentHashMap<>();
+
+    private ResponseEnvelopeSchema() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code formSchema} is not valid JSON
+     */
+    public static JsonNode forForm(String formSchema, OutputProfile profile) {
+        return forForm(formSchema, profile, false);
+    }
+
+    /**
+     * @param aliased whether the response uses {@link KeyAliases} instead of the real names
+     * @throws IllegalArgumentException if {@code formSchema} is not valid JSON
+     */
+    public static JsonNode forForm(String formSchema, OutputProfile profile, boolean aliased) {
+        String key = profile.name() + (aliased ? "/aliased" : "") + '\n' + formSchema;
+        JsonNode cached = CACHE.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (CACHE.size() >= MAX_CACHED) {
+            // Forms are normally a small fixed set; this only guards against unbounded ad-hoc schemas
+            CACHE.clear();
+        }
+        return CACHE.computeIfAbsent(key, k -> build(formSchema, profile, aliased ? KeyAliases.forSchema(formSchema) : null));
+    }
+
+    /**
+     * The response of a multi-record parse: {@code {"records": [<response for the form>, ...], "more": bool}}.
+     *
+     * @throws IllegalArgumentException if {@code formSchema} is not valid JSON
+     */
+    public static JsonNode forRecords(String formSchema, OutputProfile profile, boolean aliased) {
+        ObjectNode response = MAPPER.createObjectNode().put("type", "object");
+        ObjectNode properties = response.putObject("properties");
+        properties.putObject("records").put("type", "array").set("items", forForm(formSchema, profile, aliased));
+        properties.putObject("more").put("type", "boolean");
+        response.putArray("required").add("records").add("more");
+        response.put("additionalProperties", false);
+        return response;
+    }
+
+    static ObjectNode build(String formSchema, OutputProfile profile, KeyAliases aliases) {
+        JsonNode form;
+        try {
+            form = MAPPER.readTree(formSchema);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Form schema is not valid JSON", e);
+        }
+
+        Set<String> requiredFields = new HashSet<>();
+        form.path("required").forEach(name -> requiredFields.add(name.asText()));
+
+        ObjectNode fields = MAPPER.createObjectNode().put("type", "object");
+        JsonNode properties = form.path("properties");
+        if (properties.isObject()) {
+            ObjectNode fieldProperties = fields.putObject("properties");
+            ArrayNode required = fields.putArray("required");
+            Iterator<Map.Entry<String, JsonNode>> it = properties.fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> property = it.next();
+                String name = aliases != null ? aliases.alias(property.getKey()) : property.getKey();
+                fieldProperties.set(name, fieldResultSchema(property.getValue(), profile, aliases != null));
+                if (requiredFields.contains(property.getKey())) {
+                    required.add(name);
+                }
+            }
+            fields.put("additionalProperties", false);
+        }
+
+        ObjectNode root = MAPPER.createObjectNode().put("type", "object");
+        ObjectNode rootProperties = root.putObject("properties");
+        rootProperties.set("fields", fields);
+        rootProperties.set("errors", errorsSchema());
+        root.putArray("required").add("fields").add("errors");
+        root.put("additionalProperties", false);
+        return root;
+    }
+
+    private static ObjectNode fieldResultSchema(JsonNode valueSchema, OutputProfile profile, boolean aliased) {
+        ObjectNode value = valueSchema.deepCopy();
+        value.remove("$schema");
+
+        ObjectNode field = MAPPER.createObjectNode().put("type", "object");
+        ObjectNode properties = field.putObject("properties");
+        ArrayNode required = field.putArray("required");
+        properties.set(part("value", aliased), value);
+        required.add(part("value", aliased));
+        if (profile.includes(FieldResult.CONFIDENCE)) {
+            String confidence = part(FieldResult.CONFIDENCE, aliased);
+            properties.putObject(confidence).put("type", "number").put("minimum", 0).put("maximum", 1);
+            required.add(confidence);
+        }
+        if (profile.includes(FieldResult.REASONING)) {
+            String reasoning = part(FieldResult.REASONING, aliased);
+            properties.putObject(reasoning).put("type", "string");
+            required.add(reasoning);
+        }
+        if (profile.includes(FieldResult.ALTERNATIVES)) {
+            String alternativesKey = part(FieldResult.ALTERNATIVES, aliased);
+            ObjectNode alternatives = properties.putObject(alternativesKey).put("type", "array");
+            alternatives.set("items", value.deepCopy());
+            required.add(alternativesKey);
+        }
+        field.put("additionalProperties", false);
+        return field;
+    }
+
+    private static String part(String name, boolean aliased) {
+        return aliased ? KeyAliases.partAlias(name) : name;
+    }
+
+    private static ObjectNode errorsSchema() {
+        ObjectNode errors = MAPPER.createObjectNode().put("type", "array");
+        ObjectNode item = errors.putObject("items").put("type", "object");
+        ObjectNode properties = item.putObject("properties");
+        properties.putObject("path").put("type", "string");
+        properties.putObject("message").put("type", "string");
+        properties.putObject("type").put("type", "string");
+        item.putArray("required").add("path").add("message").add("type");
+        item.put("additionalProperties", false);
+        return errors;
+    }
+}
@@ -37,7 +37,7 @@ public class SchemaValidator {
 
             return messages.stream()
                 .map(msg -> new ValidationError(
-                    msg.getMessage(), // Using message as path for now if path is missing
+                    instancePath(msg),
                     msg.getMessage(),
                     msg.getType()
                 ))
@@ -47,4 +47,18 @@ public class SchemaValidator {
             return List.of(new ValidationError("$", "Malformed JSON: " + e.getMessage(), "parsing_error"));
         }
     }
+
+    /**
+     * JSON path of the value an error is about, e.g. {@code $.priority} or {@code $.items[0].name}. Errors about
+     * a missing or unexpected property are reported on the object that holds it, so the property is appended
+     * to point at the field itself ({@code $.name} for a missing required {@code name}).
+     */
+    static String instancePath(ValidationMessage msg) {
+        String path = msg.getInstanceLocation() != null ? msg.getInstanceLocation().toString() : "$";
+        String property = msg.getProperty();
+        if (property == null || property.isEmpty() || path.endsWith("." + property)) {
+            return path;
+        }
+        return path + "." + property;
+    }
 }
@@ -0,0 +1,165 @@
+package com.fanyamin.instructor.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rewrites a JSON Schema into the subset accepted by OpenAI structured outputs in strict mode.
+ *
+ * <ul>
+ *   <li>every object lists all of its properties as {@code required} and sets {@code additionalProperties: false};
+ *       properties that were optional become nullable instead</li>
+ *   <li>validation keywords that strict mode rejects ({@code minimum}, {@code pattern}, {@code format}, ...) are
+ *       dropped; they are still enforced afterwards by {@link SchemaValidator}</li>
+ *   <li>{@code oneOf} becomes {@code anyOf}</li>
+ * </ul>
+ *
+ * <p>Free-form objects and arrays without {@code items} cannot be expressed in strict mode; for such schemas
+ * {@link #transform(JsonNode)} returns null and callers should fall back to prompt-only output.</p>
+ */
+public final class StrictSchemaTransformer {
+
+    private static final Set<String> UNSUPPORTED_KEYWORDS = Set.of(
+            "$schema", "$id", "default", "examples", "format", "pattern", "patternProperties",
+            "minLength", "maxLength", "minimum", "maximum", "exclusiveMinimum", "exclusiveMaximum", "multipleOf",
+            "minItems", "maxItems", "uniqueItems", "contains", "minProperties", "maxProperties",
+            "if", "then", "else", "not", "dependentRequired", "dependentSchemas", "unevaluatedProperties");
+
+    private static final int MAX_CACHED = 256;
+    private static final Map<JsonNode, JsonNode> CACHE = new ConcurrentHashMap<>();
+    private static final JsonNode NOT_REPRESENTABLE = JsonNodeFactory.instance.missingNode();
+
+    private StrictSchemaTransformer() {
+    }
+
+    /**
+     * @return the strict-mode schema, or null if {@code schema} cannot be expressed in strict mode
+     */
+    public static JsonNode transform(JsonNode schema) {
+        JsonNode cached = CACHE.get(schema);
+        if (cached == null) {
+            if (CACHE.size() >= MAX_CACHED) {
+                CACHE.clear();
+            }
+            JsonNode strict = rewrite(schema);
+            cached = strict != null ? strict : NOT_REPRESENTABLE;
+            CACHE.put(schema, cached);
+        }
+        return cached.isMissingNode() ? null : cached;
+    }
+
+    private static JsonNode rewrite(JsonNode node) {
+        if (!node.isObject()) {
+            return node;
+        }
+        ObjectNode out = ((ObjectNode) node).deepCopy();
+        UNSUPPORTED_KEYWORDS.forEach(out::remove);
+
+        if (out.has("oneOf")) {
+            out.set("anyOf", out.remove("oneOf"));
+        }
+        if (out.has("anyOf")) {
+            ArrayNode variants = JsonNodeFactory.instance.arrayNode();
+            for (JsonNode variant : out.get("anyOf")) {
+                JsonNode strict = rewrite(variant);
+                if (strict == null) {
+                    return null;
+                }
+                variants.add(strict);
+            }
+            out.set("anyOf", variants);
+        }
+
+        if (hasType(out, "object")) {
+            JsonNode properties = out.get("properties");
+            if (properties == null || !properties.isObject() || properties.isEmpty()) {
+                return null;
+            }
+            Set<String> originallyRequired = new HashSet<>();
+            out.path("required").forEach(name -> originallyRequired.add(name.asText()));
+
+            ObjectNode strictProperties = out.putObject("properties");
+            ArrayNode required = out.putArray("required");
+            Iterator<Map.Entry<String, JsonNode>> it = properties.fields();
+            while (it.hasNext()) {
+                Map.Entry<String, JsonNode> property = it.next();
+                JsonNode strict = rewrite(property.getValue());
+                if (strict == null) {
+                    return null;
+                }
+                if (!originallyRequired.contains(property.getKey())) {
+                    strict = nullable(strict);
+                }
+                strictProperties.set(property.getKey(), strict);
+                required.add(property.getKey());
+            }
+            out.put("additionalProperties", false);
+        }
+
+        if (hasType(out, "array")) {
+            JsonNode items = out.get("items");
+            if (items == null || !items.isObject() || items.isEmpty()) {
+                return null;
+            }
+            JsonNode strict = rewrite(items);
+            if (strict == null) {
+                return null;
+            }
+            out.set("items", strict);
+        }
+        return out;
+    }
+
+    private static boolean hasType(JsonNode schema, String type) {
+        JsonNode t = schema.get("type");
+        if (t == null) {
+            return false;
+        }
+        if (t.isTextual()) {
+            return type.equals(t.asText());
+        }
+        for (JsonNode element : t) {
+            if (type.equals(element.asText())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static JsonNode nullable(JsonNode schema) {
+        ObjectNode out = ((ObjectNode) schema).deepCopy();
+        JsonNode type = out.get("type");
+        if (type == null) {
+            ArrayNode anyOf = JsonNodeFactory.instance.arrayNode();
+            anyOf.add(schema);
+            anyOf.addObject().put("type", "null");
+            return JsonNodeFactory.instance.objectNode().set("anyOf", anyOf);
+        }
+        if (hasType(out, "null")) {
+            return out;
+        }
+        List<String> types = new ArrayList<>();
+        if (type.isTextual()) {
+            types.add(type.asText());
+        } else {
+            type.forEach(t -> types.add(t.asText()));
+        }
+        types.add("null");
+        ArrayNode typeArray = out.putArray("type");
+        types.forEach(typeArray::add);
+        if (out.get("enum") instanceof ArrayNode values) {
+            values.addNull();
+        }
+        return out;
+    }
+}
@@ -0,0 +1,205 @@
+package com.fanyamin.instructor.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A form schema cut down to some of its top-level properties, for re-asking only the fields that failed
+ * validation while keeping the ones that passed.
+ *
+ * <p>Only keywords that describe the kept properties themselves survive ({@code properties}, the matching part of
+ * {@code required}, shared definitions for {@code $ref}). Keywords that relate several properties
+ * ({@code dependentRequired}, {@code allOf}, {@code if}/{@code then}, ...) are dropped: they cannot be checked on
+ * a subset, so the merged document is always validated against the full schema afterwards.</p>
+ */
+public final class SubSchema {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final Set<String> KEPT_KEYWORDS = Set.of(
+            "$schema", "$id", "$defs", "definitions", "type", "title", "description", "additionalProperties");
+
+    private SubSchema() {
+    }
+
+    /**
+     * Top-level property names of a form schema, in declaration order.
+     *
+     * @throws IllegalArgumentException if {@code formSchema} is not valid JSON
+     */
+    public static List<String> propertyNames(String formSchema) {
+        List<String> names = new ArrayList<>();
+        read(formSchema).path("properties").fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    /**
+     * Names listed in the form schema's top-level {@code required}.
+     *
+     * @throws IllegalArgumentException if {@code formSchema} is not valid JSON
+     */
+    public static List<String> requiredNames(String formSchema) {
+        List<String> names = new ArrayList<>();
+        read(formSchema).path("required").forEach(name -> names.add(name.asText()));
+        return names;
+    }
+
+    /**
+     * The top-level field an error path points into ({@code $.priority}, {@code $.items[0].name},
+     * {@code $['odd key']}), or null if it is about the document as a whole or a property not in
+     * {@code fieldNames}. The longest matching name wins, so {@code a.b} is not mistaken for {@code a}.
+     */
+    public static String fieldOf(String errorPath, Collection<String> fieldNames) {
+        if (errorPath == null) {
+            return null;
+        }
+        String best = null;
+        for (String name : fieldNames) {
+            if (pointsInto(errorPath, name) && (best == null || name.length() > best.length())) {
+                best = name;
+            }
+        }
+        return best;
+    }
+
+    private static boolean pointsInto(String path, String name) {
+        for (String prefix : new String[]{"$." + name, "$['" + name + "']", "$[\"" + name + "\"]"}) {
+            if (path.startsWith(prefix)) {
+                if (path.length() == prefix.length()) {
+                    return true;
+                }
+                char next = path.charAt(prefix.length());
+                if (next == '.' || next == '[') {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The form schema with only {@code fields} among its properties.
+     *
+     * @throws IllegalArgumentException if {@code formSchema} is not valid JSON
+     */
+    public static String forFields(String formSchema, Collection<String> fields) {
+        JsonNode form = read(formSchema);
+        ObjectNode subset = MAPPER.createObjectNode();
+        Iterator<String> keywords = form.fieldNames();
+        while (keywords.hasNext()) {
+            String keyword = keywords.next();
+            if (KEPT_KEYWORDS.contains(keyword)) {
+                subset.set(keyword, form.get(keyword));
+            }
+        }
+        ObjectNode properties = subset.putObject("properties");
+        JsonNode formProperties = form.path("properties");
+        for (String field : fields) {
+            if (formProperties.has(field)) {
+                properties.set(field, formProperties.get(field));
+            }
+        }
+        ArrayNode required = MAPPER.createArrayNode();
+        for (JsonNode name : form.path("required")) {
+            if (properties.has(name.asText())) {
+                required.add(name);
+            }
+        }
+        if (!required.isEmpty()) {
+            subset.set("required", required);
+        }
+        return subset.toString();
+    }
+
+    /**
+     * Top-level properties split into groups that can be extracted independently: the configured {@code groups}
+     * first (names not in the schema or already taken are dropped), then the remaining properties in balanced
+     * chunks of at most {@code maxFields} (0 = one chunk). Properties tied by {@code dependentRequired} stay in
+     * the same chunk, even if that makes it larger.
+     *
+     * @throws IllegalArgumentException if {@code formSchema} is not valid JSON
+     */
+    public static List<List<String>> partition(String formSchema, List<? extends Collection<String>> groups,
+                                               int maxFields) {
+        JsonNode form = read(formSchema);
+        List<String> properties = new ArrayList<>();
+        form.path("properties").fieldNames().forEachRemaining(properties::add);
+
+        Set<String> assigned = new HashSet<>();
+        List<List<String>> partition = new ArrayList<>();
+        for (Collection<String> group : groups) {
+            List<String> kept = group.stream().filter(name -> properties.contains(name) && assigned.add(name)).toList();
+            if (!kept.isEmpty()) {
+                partition.add(kept);
+            }
+        }
+
+        Map<String, Set<String>> clusterOf = new LinkedHashMap<>();
+        for (String name : properties) {
+            if (!assigned.contains(name)) {
+                clusterOf.put(name, new LinkedHashSet<>(List.of(name)));
+            }
+        }
+        if (clusterOf.isEmpty()) {
+            return partition;
+        }
+        form.path("dependentRequired").fields().forEachRemaining(rule -> {
+            for (JsonNode dependent : rule.getValue()) {
+                join(clusterOf, rule.getKey(), dependent.asText());
+            }
+        });
+
+        int remaining = clusterOf.size();
+        int chunks = maxFields > 0 ? (remaining + maxFields - 1) / maxFields : 1;
+        // Same number of chunks, but evenly filled: the slowest chunk decides the latency
+        int target = (remaining + chunks - 1) / chunks;
+        List<String> chunk = new ArrayList<>();
+        for (Set<String> cluster : new LinkedHashSet<>(clusterOf.values())) {
+            if (!chunk.isEmpty() && chunk.size() + cluster.size() > target) {
+                partition.add(inDeclarationOrder(chunk, properties));
+                chunk = new ArrayList<>();
+            }
+            chunk.addAll(cluster);
+        }
+        partition.add(inDeclarationOrder(chunk, properties));
+        return partition;
+    }
+
+    private static List<String> inDeclarationOrder(List<String> names, List<String> properties) {
+        names.sort(Comparator.comparingInt(properties::indexOf));
+        return names;
+    }
+
+    private static void join(Map<String, Set<String>> clusterOf, String a, String b) {
+        Set<String> first = clusterOf.get(a);
+        Set<String> second = clusterOf.get(b);
+        if (first == null || second == null || first == second) {
+            return;
+        }
+        first.addAll(second);
+        for (String name : second) {
+            clusterOf.put(name, first);
+        }
+    }
+
+    private static JsonNode read(String formSchema) {
+        try {
+            return MAPPER.readTree(formSchema);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Form schema is not valid JSON", e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.fanyamin.instructor.streaming;
 
 import com.fanyamin.instructor.api.ParsingResult;
+import com.fanyamin.instructor.api.RecordsResult;
 import com.fanyamin.instructor.api.ValidationError;
 
 import java.util.List;
@@ -26,6 +27,11 @@ public interface StreamingParseEvent {
 
     record RawChunk(String chunk, int attempt) implements StreamingParseEvent {}
 
+    /**
+     * Reasoning the model produced before its answer; only emitted when enabled on the instructor.
+     */
+    record Reasoning(String text, int attempt) implements StreamingParseEvent {}
+
     /**
      * Best-effort parsed snapshot (may fail to parse for partial JSON and thus not emitted).
      * This snapshot is not schema-validated.
@@ -42,6 +48,26 @@ public interface StreamingParseEvent {
      */
     record FinalResult(ParsingResult result, List<ValidationError> schemaErrors, int attempt) implements StreamingParseEvent {}
 
+    /**
+     * A model tier's answer was rejected (invalid after its retries, or not confident enough) and the next tier
+     * takes over. {@code attempt} is the last attempt of the tier that gave up; the next tier continues the
+     * numbering.
+     */
+    record TierEscalated(String fromTier, String toTier, List<ValidationError> reasons, int attempt)
+            implements StreamingParseEvent {}
+
+    /**
+     * One item of a multi-record parse, validated as soon as its object closed in the stream. {@code index} counts
+     * from 0 across all calls; {@code attempt} is the call that produced it. schemaErrors empty means valid.
+     */
+    record RecordCompleted(int index, ParsingResult record, List<ValidationError> schemaErrors, int attempt)
+            implements StreamingParseEvent {}
+
+    /**
+     * End of a multi-record parse, with all records in order.
+     */
+    record RecordsFinished(RecordsResult result, int attempt) implements StreamingParseEvent {}
+
     record Error(Throwable error, int attempt) implements StreamingParseEvent {}
 }
 
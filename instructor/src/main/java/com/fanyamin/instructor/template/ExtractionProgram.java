@@ -0,0 +1,198 @@
+package com.fanyamin.instructor.template;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A local extractor for one input template, written by the LLM once: per field, either a regex anchored on the
+ * template's fixed wording whose capturing group is the value, or a constant.
+ *
+ * <p>The LLM answers with
+ * {@code {"fields": {"name": {"regex": "from (.+?) on", "group": 1}, "type": {"constant": "sick"}}}}.
+ * Captured text is converted to the form property's {@code type} (integer, number, boolean, otherwise string).
+ * Regex matching is bounded in steps, so a pattern with catastrophic backtracking fails instead of hanging.</p>
+ */
+public final class ExtractionProgram {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Steps per input character a pattern may take before it counts as not matching
+    private static final int STEPS_PER_CHAR = 200;
+
+    private final Map<String, Rule> rules;
+
+    /**
+     * @param pattern  regex whose {@code group} is the value; null for a constant
+     * @param constant the value when there is no pattern
+     */
+    record Rule(Pattern pattern, int group, Object constant) {}
+
+    private ExtractionProgram(Map<String, Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Read a program from the LLM's answer.
+     *
+     * @throws IllegalArgumentException if the answer is not a program or a regex does not compile
+     */
+    public static ExtractionProgram parse(String json) {
+        JsonNode fields;
+        try {
+            fields = MAPPER.readTree(json).path("fields");
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Extraction program is not valid JSON", e);
+        }
+        if (!fields.isObject() || fields.isEmpty()) {
+            throw new IllegalArgumentException("Extraction program has no fields");
+        }
+        Map<String, Rule> rules = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, JsonNode>> it = fields.fields();
+        while (it.hasNext()) {
+            Map.Entry<String, JsonNode> field = it.next();
+            JsonNode rule = field.getValue();
+            if (rule.has("regex")) {
+                try {
+                    rules.put(field.getKey(), new Rule(Pattern.compile(rule.get("regex").asText()),
+                            rule.path("group").asInt(1), null));
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid regex for " + field.getKey(), e);
+                }
+            } else if (rule.has("constant")) {
+                rules.put(field.getKey(), new Rule(null, 0, MAPPER.convertValue(rule.get("constant"), Object.class)));
+            } else {
+                throw new IllegalArgumentException("No regex or constant for " + field.getKey());
+            }
+        }
+        return new ExtractionProgram(rules);
+    }
+
+    /**
+     * Run the program on {@code input}.
+     *
+     * @param propertyTypes JSON Schema {@code type} per property, for converting captured text
+     * @return the values per field, or null if a pattern did not match (the input does not fit the template)
+     */
+    public Map<String, Object> extract(String input, Map<String, String> propertyTypes) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<String, Rule> entry : rules.entrySet()) {
+            Rule rule = entry.getValue();
+            if (rule.pattern() == null) {
+                values.put(entry.getKey(), rule.constant());
+                continue;
+            }
+            try {
+                Matcher matcher = rule.pattern().matcher(new BoundedCharSequence(input, (long) STEPS_PER_CHAR * (input.length() + 100)));
+                if (!matcher.find() || rule.group() > matcher.groupCount() || matcher.group(rule.group()) == null) {
+                    return null;
+                }
+                Object value = convert(matcher.group(rule.group()).strip(), propertyTypes.get(entry.getKey()));
+                if (value == null) {
+                    return null;
+                }
+                values.put(entry.getKey(), value);
+            } catch (StepLimitExceeded e) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * JSON Schema {@code type} of each top-level property of a form schema (missing types are left out).
+     *
+     * @throws IllegalArgumentException if {@code formSchema} is not valid JSON
+     */
+    public static Map<String, String> propertyTypes(String formSchema) {
+        JsonNode properties;
+        try {
+            properties = MAPPER.readTree(formSchema).path("properties");
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Form schema is not valid JSON", e);
+        }
+        Map<String, String> types = new LinkedHashMap<>();
+        properties.fields().forEachRemaining(property -> {
+            if (property.getValue().path("type").isTextual()) {
+                types.put(property.getKey(), property.getValue().get("type").asText());
+            }
+        });
+        return Collections.unmodifiableMap(types);
+    }
+
+    /**
+     * @return the converted value, or null if the text is not of the type
+     */
+    private static Object convert(String text, String type) {
+        try {
+            if ("integer".equals(type)) {
+                long value = Long.parseLong(text);
+                return value == (int) value ? (Object) (int) value : (Object) value;
+            }
+            if ("number".equals(type)) {
+                return Double.parseDouble(text);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if ("boolean".equals(type)) {
+            return "true".equalsIgnoreCase(text) ? Boolean.TRUE : "false".equalsIgnoreCase(text) ? Boolean.FALSE : null;
+        }
+        return text;
+    }
+
+    private static final class StepLimitExceeded extends RuntimeException {
+        StepLimitExceeded() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * The input as seen by the regex engine, counting character reads to cut off runaway backtracking.
+     */
+    private static final class BoundedCharSequence implements CharSequence {
+        private final CharSequence text;
+        private final long[] steps;
+        private final long limit;
+
+        BoundedCharSequence(CharSequence text, long limit) {
+            this(text, new long[1], limit);
+        }
+
+        private BoundedCharSequence(CharSequence text, long[] steps, long limit) {
+            this.text = text;
+            this.steps = steps;
+            this.limit = limit;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (++steps[0] > limit) {
+                throw new StepLimitExceeded();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new BoundedCharSequence(text.subSequence(start, end), steps, limit);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.fanyamin.instructor.template;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Token-shape fingerprint of an input: texts produced by the same template (an HR system notification, a ticket
+ * email) get the same fingerprint even though names, dates and numbers differ.
+ *
+ * <p>The input is split into letter runs, digit runs and single symbols. Lowercase words are kept as they are
+ * (they are mostly the template's fixed wording), other letter runs become {@code X} (names, proper nouns, CJK
+ * text), consecutive {@code X} collapse into one so names of different length match, digit runs become
+ * {@code 9}, and symbols are kept. Values written as lowercase words ({@code sick}, {@code annual}) therefore give
+ * one template per value. Two different templates with the same shape are possible; the extraction
+ * program of one then fails on the other and the instructor falls back to the LLM.</p>
+ */
+public final class InputFingerprint {
+
+    private static final Pattern TOKEN = Pattern.compile("\\p{L}+|\\p{N}+|\\S");
+
+    private InputFingerprint() {
+    }
+
+    /**
+     * The shape of {@code input}, e.g. {@code "X : leave from 9 - 9 - 9 to 9 - 9 - 9"}.
+     */
+    public static String shape(String input) {
+        StringBuilder shape = new StringBuilder();
+        String previous = null;
+        Matcher tokens = TOKEN.matcher(input);
+        while (tokens.find()) {
+            String token = tokens.group();
+            String part;
+            if (Character.isDigit(token.codePointAt(0))) {
+                part = "9";
+            } else if (Character.isLetter(token.codePointAt(0))) {
+                part = isLowerCaseWord(token) ? token : "X";
+            } else {
+                part = token;
+            }
+            if (part.equals("X") && "X".equals(previous)) {
+                continue;
+            }
+            if (!shape.isEmpty()) {
+                shape.append(' ');
+            }
+            shape.append(part);
+            previous = part;
+        }
+        return shape.toString();
+    }
+
+    /**
+     * A fixed-length digest of {@link #shape(String)}, for use as a key.
+     */
+    public static String of(String input) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(shape(input).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static boolean isLowerCaseWord(String token) {
+        return token.codePoints().allMatch(Character::isLowerCase);
+    }
+}
@@ -0,0 +1,272 @@
+package com.fanyamin.instructor.template;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Learns local extractors for inputs that keep arriving in the same format, so repeat inputs skip the LLM.
+ *
+ * <p>Every input the LLM parsed is recorded under its {@link InputFingerprint} (per form schema) with the
+ * values the LLM extracted. Once a fingerprint has been seen {@code minSamples} times it counts as a template,
+ * and {@link #observe} hands the samples to the caller, which asks the LLM once for an
+ * {@link ExtractionProgram}. {@link #learn} installs the program only if it reproduces the LLM's own values on
+ * every sample; later inputs with the fingerprint are then extracted by {@link #extract}.</p>
+ *
+ * <p>A local extraction that fails schema validation is reported with {@link #invalidate}: the program is
+ * dropped and the template is learned again from new samples, since the format has probably changed. A program
+ * that fails verification is retried after {@code minSamples} further samples, at most
+ * {@code maxLearnAttempts} times per template.</p>
+ *
+ * <p>At most {@code maxTemplates} fingerprints are tracked. Most inputs are one-offs whose fingerprint never
+ * comes back, so when the limit is reached the least recently seen fingerprint without a program is dropped
+ * first; learned templates only go when nothing else is left.</p>
+ */
+public class TemplateLearner {
+
+    public static final int DEFAULT_MIN_SAMPLES = 3;
+    public static final int DEFAULT_MAX_SAMPLES = 5;
+    public static final int DEFAULT_MAX_LEARN_ATTEMPTS = 3;
+    public static final int DEFAULT_MAX_TEMPLATES = 1_000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * An input and the values the LLM extracted from it.
+     */
+    public record Sample(String input, Map<String, Object> values) {
+        public Sample {
+            values = Map.copyOf(values);
+        }
+    }
+
+    private record Key(String schema, String fingerprint) {}
+
+    private final int minSamples;
+    private final int maxSamples;
+    private final int maxLearnAttempts;
+    private final int maxTemplates;
+
+    // Guarded by this; in access order, least recently seen first
+    private final Map<Key, Template> templates = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Map<String, String>> propertyTypes = new HashMap<>();
+
+    private final AtomicLong localExtractions = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong learnAttempts = new AtomicLong();
+
+    public TemplateLearner() {
+        this(DEFAULT_MIN_SAMPLES, DEFAULT_MAX_SAMPLES, DEFAULT_MAX_LEARN_ATTEMPTS);
+    }
+
+    public TemplateLearner(int minSamples, int maxSamples, int maxLearnAttempts) {
+        this(minSamples, maxSamples, maxLearnAttempts, DEFAULT_MAX_TEMPLATES);
+    }
+
+    /**
+     * @param minSamples       sightings before a fingerprint counts as a template (and samples a program must match)
+     * @param maxSamples       most recent samples kept per template
+     * @param maxLearnAttempts programs requested per template before giving up on it
+     * @param maxTemplates     fingerprints tracked at once, learned or not
+     */
+    public TemplateLearner(int minSamples, int maxSamples, int maxLearnAttempts, int maxTemplates) {
+        if (minSamples < 2 || maxSamples < minSamples || maxLearnAttempts < 1 || maxTemplates < 1) {
+            throw new IllegalArgumentException(
+                    "Require 2 <= minSamples <= maxSamples, maxLearnAttempts >= 1 and maxTemplates >= 1");
+        }
+        this.minSamples = minSamples;
+        this.maxSamples = maxSamples;
+        this.maxLearnAttempts = maxLearnAttempts;
+        this.maxTemplates = maxTemplates;
+    }
+
+    /**
+     * Extract {@code input} with the learned program of its template.
+     *
+     * @return the values per field, or null if there is no program for the template or the input does not fit it
+     */
+    public Map<String, Object> extract(String schema, String input) {
+        ExtractionProgram program;
+        Map<String, String> types;
+        synchronized (this) {
+            Template template = templates.get(new Key(schema, InputFingerprint.of(input)));
+            if (template == null || template.program == null) {
+                return null;
+            }
+            program = template.program;
+            types = typesOf(schema);
+        }
+        Map<String, Object> values = program.extract(input, types);
+        if (values != null) {
+            localExtractions.incrementAndGet();
+        }
+        return values;
+    }
+
+    /**
+     * Record the values the LLM extracted from {@code input}.
+     *
+     * @return the samples to learn a program from if this sighting confirmed the template, otherwise null; the
+     *         caller must answer with {@link #learn} (with a null program if asking the LLM failed)
+     */
+    public synchronized List<Sample> observe(String schema, String input, Map<String, Object> values) {
+        Key key = new Key(schema, InputFingerprint.of(input));
+        Template template = templates.get(key);
+        if (template == null) {
+            evictIfFull();
+            template = new Template();
+            templates.put(key, template);
+        }
+        if (template.program != null) {
+            return null;
+        }
+        template.samples.addLast(new Sample(input, values));
+        if (template.samples.size() > maxSamples) {
+            template.samples.removeFirst();
+        }
+        template.sinceAttempt++;
+        if (template.learning || template.attempts >= maxLearnAttempts
+                || template.samples.size() < minSamples || template.sinceAttempt < minSamples) {
+            return null;
+        }
+        template.learning = true;
+        template.attempts++;
+        learnAttempts.incrementAndGet();
+        return List.copyOf(template.samples);
+    }
+
+    /**
+     * Install {@code program} for the template of {@code input} if it reproduces the values of every sample.
+     *
+     * @param program the program the LLM wrote, or null if it could not be obtained
+     * @return whether the program was installed
+     */
+    public synchronized boolean learn(String schema, String input, ExtractionProgram program) {
+        Template template = templates.get(new Key(schema, InputFingerprint.of(input)));
+        if (template == null || !template.learning) {
+            return false;
+        }
+        template.learning = false;
+        template.sinceAttempt = 0;
+        if (program == null || !reproducesSamples(program, template.samples, typesOf(schema))) {
+            return false;
+        }
+        template.program = program;
+        template.samples.clear();
+        return true;
+    }
+
+    /**
+     * A local extraction of {@code input} failed validation: drop the program and learn the template again.
+     */
+    public synchronized void invalidate(String schema, String input) {
+        Template template = templates.get(new Key(schema, InputFingerprint.of(input)));
+        if (template == null || template.program == null) {
+            return;
+        }
+        fallbacks.incrementAndGet();
+        template.program = null;
+        template.attempts = 0;
+        template.sinceAttempt = 0;
+        template.samples.clear();
+    }
+
+    /**
+     * Number of fingerprints tracked, with or without a program.
+     */
+    public synchronized int getTrackedFingerprintCount() {
+        return templates.size();
+    }
+
+    /**
+     * Number of templates with an installed program.
+     */
+    public synchronized int getLearnedTemplateCount() {
+        return (int) templates.values().stream().filter(t -> t.program != null).count();
+    }
+
+    /**
+     * Number of inputs extracted locally.
+     */
+    public long getLocalExtractionCount() {
+        return localExtractions.get();
+    }
+
+    /**
+     * Number of local extractions that failed validation and went back to the LLM.
+     */
+    public long getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    /**
+     * Number of programs requested from the LLM.
+     */
+    public long getLearnAttemptCount() {
+        return learnAttempts.get();
+    }
+
+    /**
+     * Make room for one more fingerprint: drop the least recently seen one that has no program and is not being
+     * learned, or the least recently seen one of all if every fingerprint has a program.
+     */
+    private void evictIfFull() {
+        if (templates.size() < maxTemplates) {
+            return;
+        }
+        Iterator<Template> it = templates.values().iterator();
+        while (it.hasNext()) {
+            Template template = it.next();
+            if (template.program == null && !template.learning) {
+                it.remove();
+                return;
+            }
+        }
+        it = templates.values().iterator();
+        it.next();
+        it.remove();
+    }
+
+    private Map<String, String> typesOf(String schema) {
+        return propertyTypes.computeIfAbsent(schema, ExtractionProgram::propertyTypes);
+    }
+
+    private static boolean reproducesSamples(ExtractionProgram program, Deque<Sample> samples,
+                                             Map<String, String> types) {
+        if (samples.isEmpty()) {
+            return false;
+        }
+        for (Sample sample : samples) {
+            Map<String, Object> values = program.extract(sample.input(), types);
+            if (values == null || !normalize(values).equals(normalize(sample.values()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Compare as JSON so 3, 3L and "3"-as-integer agree the way they would in the parsed result
+    private static JsonNode normalize(Map<String, Object> values) {
+        try {
+            return MAPPER.readTree(MAPPER.writeValueAsString(values));
+        } catch (Exception e) {
+            return MAPPER.nullNode();
+        }
+    }
+
+    private static final class Template {
+        final Deque<Sample> samples = new ArrayDeque<>();
+        ExtractionProgram program;
+        boolean learning;
+        int attempts;
+        int sinceAttempt;
+    }
+}
@@ -0,0 +1,25 @@
+package com.fanyamin.instructor.temporal;
+
+/**
+ * A date or time expression found in a text and what it resolved to.
+ *
+ * @param text  the expression as written, e.g. {@code "next Monday to Wednesday"}
+ * @param start offset of the expression in the text
+ * @param end   offset just past the expression
+ * @param from  the point, or the first day (and time) of a range
+ * @param to    the last day (and time) of a range; null for a point
+ */
+public record TemporalMention(String text, int start, int end, TemporalValue from, TemporalValue to) {
+
+    public boolean isRange() {
+        return to != null;
+    }
+
+    /**
+     * {@code from}, or {@code from..to} for a range.
+     */
+    @Override
+    public String toString() {
+        return to == null ? from.toString() : from + ".." + to;
+    }
+}
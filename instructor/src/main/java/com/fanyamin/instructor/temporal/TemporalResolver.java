@@ -0,0 +1,896 @@
+package com.fanyamin.instructor.temporal;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Period;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rule-based resolver for date and time expressions in English and Chinese ("next Monday to Wednesday",
+ * "tomorrow afternoon", "in two weeks", "下周三下午3点", "请3天假"), relative to a reference time.
+ *
+ * <p>Every rule is a regex that builds a piece: a date, a time of day, a date with a time, a range or a duration.
+ * Overlapping pieces are settled leftmost-longest. Then adjacent pieces are combined: a date and a time
+ * ("tomorrow at 3pm"), two points joined by "to"/"until"/"-"/"到" into a range, and a duration ("for 3 days",
+ * "a week off") with the date it starts on. A range end without its own week, month or year ("Monday to
+ * Wednesday", "3月30日到4月2日") is the first such day on or after the start.</p>
+ *
+ * <p>Conventions: weeks start on Monday; "this Friday" is the Friday of the current week, "next Friday" that of
+ * the following week, and a bare "Friday" the first Friday from today on (today included). A date without a year
+ * is the nearest one to today, as is a bare day of the month ("the 15th", "8号"). A time of day alone is today,
+ * or tomorrow if it has passed. Numeric dates like {@code 3/1} are month first for US and East Asian locales, day
+ * first for other locales, and only resolved without a locale when unambiguous (one part above 12).</p>
+ */
+public final class TemporalResolver {
+
+    /** Context key of the reference time: an ISO instant, offset or local date-time, or a date. */
+    public static final String NOW_KEY = "now";
+    /** Context key of the BCP 47 locale, e.g. {@code en-US}. */
+    public static final String LOCALE_KEY = "locale";
+    /** Optional context key of a zone ID to convert {@link #NOW_KEY} to, e.g. {@code Asia/Shanghai}. */
+    public static final String TIMEZONE_KEY = "timezone";
+
+    private static final String EN_NUMBER =
+            "(\\d{1,3}|an?|one|two|three|four|five|six|seven|eight|nine|ten|eleven|twelve|a\\s+couple\\s+of)";
+    private static final String ZH_NUMBER = "(\\d{1,3}|[零〇一二两三四五六七八九十]{1,3})";
+    private static final String WEEKDAY = "(monday|tuesday|wednesday|thursday|friday|saturday|sunday)";
+    private static final String WEEKDAY_SHORT = "(mon|tues?|wed|thu(?:rs?)?|fri|sat|sun)";
+    private static final String ZH_WEEKDAY = "([一二三四五六日天1-7])";
+    private static final String MONTH = "(jan(?:uary)?|feb(?:ruary)?|mar(?:ch)?|apr(?:il)?|may|june?|july?"
+            + "|aug(?:ust)?|sep(?:t(?:ember)?)?|oct(?:ober)?|nov(?:ember)?|dec(?:ember)?)";
+    private static final String NOT_A_QUANTITY =
+            "(?!\\s*(?:days?|weeks?|months?|years?|hours?|minutes?|mins?|people|persons|%|percent)\\b)";
+
+    private static final Pattern SENTENCE_END = Pattern.compile("[.!?;。！？；\\n]");
+    private static final Pattern DATE_TIME_GAP = Pattern.compile("[\\s,，]*(?:at|on|from|by|@|的)?[\\s,，]*");
+    private static final Pattern RANGE_GAP = Pattern.compile("\\s*(to|until|till|through|thru|and|-|–|—|~|～|到|至)\\s*");
+    private static final Pattern BETWEEN = Pattern.compile("between\\s*$");
+
+    private static final Set<String> EN_MONTH_FIRST_COUNTRIES = Set.of("US", "PH", "FM", "MH", "PW");
+    private static final Set<String> MONTH_FIRST_LANGUAGES = Set.of("zh", "ja", "ko");
+
+    private static final List<Rule> RULES = new ArrayList<>();
+
+    static {
+        // Absolute dates
+        rule("(?<![\\d-])(\\d{4})-(\\d{1,2})-(\\d{1,2})t(\\d{1,2}):(\\d{2})(?::\\d{2})?",
+                (m, now) -> Piece.dateTime(LocalDate.of(num(m, 1), num(m, 2), num(m, 3)), LocalTime.of(num(m, 4), num(m, 5))));
+        rule("(?<![\\d-])(\\d{4})-(\\d{1,2})-(\\d{1,2})(?!\\d)",
+                (m, now) -> Piece.date(LocalDate.of(num(m, 1), num(m, 2), num(m, 3))));
+        rule("(?<![\\d/.])(\\d{4})[/.](\\d{1,2})[/.](\\d{1,2})(?![\\d/.])",
+                (m, now) -> Piece.date(LocalDate.of(num(m, 1), num(m, 2), num(m, 3))));
+        rule("(?<![\\w/.])(\\d{1,2})/(\\d{1,2})(?:/(\\d{4}|\\d{2}))?(?![\\w/])", TemporalResolver::numericDate);
+        rule("\\b" + MONTH + "\\.?\\s+(\\d{1,2})(?:st|nd|rd|th)?\\b" + NOT_A_QUANTITY + "(?:,?\\s+(\\d{4})\\b)?",
+                (m, now) -> monthDay(now, month(m.group(1)), num(m, 2), m.group(3)));
+        rule("\\b(?:the\\s+)?(\\d{1,2})(?:st|nd|rd|th)?\\s+(?:of\\s+)?" + MONTH + "\\b(?:,?\\s+(\\d{4})\\b)?",
+                (m, now) -> monthDay(now, month(m.group(2)), num(m, 1), m.group(3)));
+        rule("\\bthe\\s+(\\d{1,2})(?:st|nd|rd|th)\\b(?!\\s+of\\b)", (m, now) -> dayOfMonth(now, num(m, 1)));
+        rule("(?:(\\d{4})年)?" + ZH_NUMBER + "月" + ZH_NUMBER + "[日号]",
+                (m, now) -> monthDay(now, number(m.group(2)), number(m.group(3)), m.group(1)));
+        rule("(这|本|下|上)(?:个)?月" + ZH_NUMBER + "[日号]", (m, now) -> {
+            LocalDate month = now.today().withDayOfMonth(1).plusMonths(monthOffset(m.group(1)));
+            return Piece.date(month.withDayOfMonth(number(m.group(2))));
+        });
+        rule("(?<![\\d月零〇一二两三四五六七八九十])" + ZH_NUMBER + "号(?!楼|线|房|门|床|位|机|车|院|馆|口|桌|窗|码|室|会议室|厅|柜|箱|店|仓|选手|球员)",
+                (m, now) -> dayOfMonth(now, number(m.group(1))));
+
+        // Days relative to today
+        rule("\\b(the\\s+day\\s+after\\s+tomorrow|day\\s+after\\s+tomorrow|the\\s+day\\s+before\\s+yesterday"
+                + "|day\\s+before\\s+yesterday|today|tonight|tomorrow|tmrw?|yesterday)\\b", (m, now) -> {
+            String word = m.group(1).replaceAll("\\s+", " ");
+            LocalDate today = now.today();
+            return switch (word) {
+                case "tonight" -> Piece.partOfDay(today, LocalTime.of(20, 0));
+                case "tomorrow", "tmr", "tmrw" -> Piece.date(today.plusDays(1));
+                case "yesterday" -> Piece.date(today.minusDays(1));
+                case "today" -> Piece.date(today);
+                default -> Piece.date(word.contains("after") ? today.plusDays(2) : today.minusDays(2));
+            };
+        });
+        rule("(大后天|大前天|今天|今日|明天|明日|后天|昨天|昨日|前天|今晚|今早|明早|明晚|昨晚)", (m, now) -> {
+            LocalDate today = now.today();
+            return switch (m.group(1)) {
+                case "大后天" -> Piece.date(today.plusDays(3));
+                case "大前天" -> Piece.date(today.minusDays(3));
+                case "明天", "明日" -> Piece.date(today.plusDays(1));
+                case "后天" -> Piece.date(today.plusDays(2));
+                case "昨天", "昨日" -> Piece.date(today.minusDays(1));
+                case "前天" -> Piece.date(today.minusDays(2));
+                case "今晚" -> Piece.partOfDay(today, LocalTime.of(20, 0));
+                case "今早" -> Piece.partOfDay(today, LocalTime.of(9, 0));
+                case "明早" -> Piece.partOfDay(today.plusDays(1), LocalTime.of(9, 0));
+                case "明晚" -> Piece.partOfDay(today.plusDays(1), LocalTime.of(20, 0));
+                case "昨晚" -> Piece.partOfDay(today.minusDays(1), LocalTime.of(20, 0));
+                default -> Piece.date(today);
+            };
+        });
+
+        // Weekdays, weeks, weekends and months
+        rule("\\b(?:(this|next|last|coming|on)\\s+)?" + WEEKDAY + "\\b(?:\\s+(next|this|last)\\s+week\\b)?",
+                (m, now) -> weekday(now, weekday(m.group(2)), m.group(3) != null ? m.group(3) : m.group(1)));
+        rule("\\b(this|next|last|coming|on)\\s+" + WEEKDAY_SHORT + "\\b\\.?",
+                (m, now) -> weekday(now, weekday(m.group(2)), m.group(1)));
+        rule("(下下|上上|这|本|上|下)?(?:个)?(?:周|星期|礼拜)" + ZH_WEEKDAY,
+                (m, now) -> weekday(now, zhWeekday(m.group(2)), m.group(1)));
+        rule("\\b(this|next|last)\\s+week\\b", (m, now) -> week(now, weekOffset(m.group(1))));
+        rule("(下下|上上|这|本|上|下)(?:个)?(?:周|星期|礼拜)(?![一二三四五六日天1-7末])",
+                (m, now) -> week(now, weekOffset(m.group(1))));
+        rule("\\b(?:(this|next|last)\\s+|the\\s+)?weekend\\b", (m, now) -> weekend(now, m.group(1)));
+        rule("(下下|这|本|上|下)?(?:个)?周末", (m, now) -> weekend(now, m.group(1)));
+        rule("\\b(this|next|last)\\s+month\\b", (m, now) -> month(now, monthOffset(m.group(1))));
+        rule("(这|本|上|下)(?:个)?月(?![底初末\\d零〇一二两三四五六七八九十])", (m, now) -> month(now, monthOffset(m.group(1))));
+        rule("\\b(?:the\\s+)?end\\s+of\\s+(?:the\\s+|this\\s+|(next)\\s+)?month\\b", (m, now) -> Piece.date(
+                now.today().plusMonths(m.group(1) != null ? 1 : 0).with(TemporalAdjusters.lastDayOfMonth())));
+        rule("(这|本|下|上)?(?:个)?月(?:底|末)", (m, now) -> Piece.date(
+                now.today().plusMonths(monthOffset(m.group(1))).with(TemporalAdjusters.lastDayOfMonth())));
+
+        // Offsets from now
+        rule("\\bin\\s+" + EN_NUMBER + "\\s+(days?|weeks?|months?|hours?|minutes?|mins?)\\b",
+                (m, now) -> offset(now, number(m.group(1)), m.group(2)));
+        rule("\\b" + EN_NUMBER + "\\s+(days?|weeks?|months?)\\s+(?:from\\s+(?:now|today)|later)\\b",
+                (m, now) -> offset(now, number(m.group(1)), m.group(2)));
+        rule("\\b" + EN_NUMBER + "\\s+(days?|weeks?|months?)\\s+ago\\b",
+                (m, now) -> offset(now, -number(m.group(1)), m.group(2)));
+        rule(ZH_NUMBER + "(?:个)?(天|日|周|星期|礼拜|月|小时|钟头|分钟)(?:以|之)?(后|前)",
+                (m, now) -> offset(now, number(m.group(1)) * (m.group(3).equals("前") ? -1 : 1), m.group(2)));
+        rule("\\bin\\s+half\\s+an\\s+hour\\b", (m, now) -> offset(now, 30, "minutes"));
+        rule("半(?:个)?(?:小时|钟头)(?:以|之)?后", (m, now) -> offset(now, 30, "分钟"));
+        rule("过" + ZH_NUMBER + "(?:个)?(天|周|星期|礼拜|月)", (m, now) -> offset(now, number(m.group(1)), m.group(2)));
+
+        // Times of day
+        rule("\\b(?:at\\s+)?(\\d{1,2})(?::(\\d{2}))?\\s*([ap])(?:\\.m\\.|m\\b)", (m, now) -> {
+            int hour = num(m, 1);
+            if (hour < 1 || hour > 12) {
+                return null;
+            }
+            return Piece.time(LocalTime.of(hour % 12 + (m.group(3).equals("p") ? 12 : 0),
+                    m.group(2) != null ? num(m, 2) : 0));
+        });
+        rule("\\b(\\d{1,2})(?::(\\d{2}))?\\s*(?:-|–|to)\\s*(\\d{1,2})(?::(\\d{2}))?\\s*([ap])(?:\\.m\\.|m\\b)",
+                (m, now) -> {
+                    // "2-4pm", "11-1pm": the period is said once, for the end
+                    int fromHour = num(m, 1);
+                    int toHour = num(m, 3);
+                    if (fromHour < 1 || fromHour > 12 || toHour < 1 || toHour > 12) {
+                        return null;
+                    }
+                    LocalTime to = LocalTime.of(toHour % 12 + (m.group(5).equals("p") ? 12 : 0),
+                            m.group(4) != null ? num(m, 4) : 0);
+                    LocalTime from = LocalTime.of(fromHour % 12 + to.getHour() / 12 * 12,
+                            m.group(2) != null ? num(m, 2) : 0);
+                    Piece range = Piece.time(from.isAfter(to) ? from.minusHours(12) : from);
+                    range.endTime = to;
+                    range.range = true;
+                    return range;
+                });
+        rule("\\b(?:at\\s+)?([01]?\\d|2[0-3]):([0-5]\\d)(?::[0-5]\\d)?\\b(?!\\s*[ap]\\.?m)",
+                (m, now) -> Piece.time(LocalTime.of(num(m, 1), num(m, 2))));
+        rule("\\bat\\s+(\\d{1,2})(?:\\s*o'?clock)?\\b(?![:.]\\d)" + NOT_A_QUANTITY + "(?!\\s*[ap]\\.?m)",
+                (m, now) -> clockHour(num(m, 1)));
+        rule("\\b(\\d{1,2})\\s*o'?clock\\b", (m, now) -> clockHour(num(m, 1)));
+        rule("\\b(noon|midday|midnight)\\b",
+                (m, now) -> Piece.time(m.group(1).equals("midnight") ? LocalTime.MIDNIGHT : LocalTime.NOON));
+        rule("\\b(?:(this)\\s+|in\\s+the\\s+)?(morning|afternoon|evening)\\b", (m, now) -> {
+            LocalTime time = switch (m.group(2)) {
+                case "morning" -> LocalTime.of(9, 0);
+                case "afternoon" -> LocalTime.of(14, 0);
+                default -> LocalTime.of(19, 0);
+            };
+            return Piece.partOfDay(m.group(1) != null ? now.today() : null, time);
+        });
+        rule("\\b(?:the\\s+)?(?:end\\s+of\\s+(?:the\\s+)?(?:business\\s+)?day|eod|cob|close\\s+of\\s+business)\\b",
+                (m, now) -> Piece.time(LocalTime.of(17, 0)));
+        rule("(上午|早上|早晨|中午|下午|晚上|傍晚|凌晨|夜里)?" + ZH_NUMBER + "(?:点|时)(?:(半)|钟|" + ZH_NUMBER + "分?)?",
+                (m, now) -> {
+                    int hour = number(m.group(2));
+                    int minute = m.group(3) != null ? 30 : m.group(4) != null ? number(m.group(4)) : 0;
+                    String period = m.group(1) != null ? m.group(1) : "";
+                    if ((period.equals("下午") || period.equals("晚上") || period.equals("傍晚") || period.equals("夜里"))
+                            && hour < 12) {
+                        hour += 12;
+                    } else if (period.equals("中午") && hour < 3) {
+                        hour += 12;
+                    }
+                    return hour > 23 || minute > 59 ? null : Piece.time(LocalTime.of(hour, minute));
+                });
+        rule("(上午|早上|早晨|中午|下午|晚上|傍晚)", (m, now) -> Piece.partOfDay(null, switch (m.group(1)) {
+            case "早上", "早晨" -> LocalTime.of(8, 0);
+            case "中午" -> LocalTime.NOON;
+            case "下午" -> LocalTime.of(14, 0);
+            case "傍晚" -> LocalTime.of(18, 0);
+            case "晚上" -> LocalTime.of(19, 0);
+            default -> LocalTime.of(9, 0);
+        }));
+
+        // Durations, which only count next to the date they start on
+        rule("\\bfor\\s+" + EN_NUMBER + "\\s+(days?|weeks?)\\b", (m, now) -> duration(number(m.group(1)), m.group(2)));
+        rule("\\b" + EN_NUMBER + "\\s+(days?|weeks?)\\s+off\\b", (m, now) -> duration(number(m.group(1)), m.group(2)));
+        rule("\\b(\\d{1,2})-(day|week)\\b", (m, now) -> duration(num(m, 1), m.group(2)));
+        rule("(?:请|休|休息|歇)(?:了)?" + ZH_NUMBER + "(?:个)?(天|周|星期|礼拜)",
+                (m, now) -> duration(number(m.group(1)), m.group(2)));
+        rule(ZH_NUMBER + "(?:个)?(天|周|星期|礼拜)(?:的)?(?:假|病假|年假|事假|婚假|产假|调休)",
+                (m, now) -> duration(number(m.group(1)), m.group(2)));
+    }
+
+    private TemporalResolver() {
+    }
+
+    /**
+     * The date and time expressions in {@code text}, in text order.
+     *
+     * @param now    the reference time ("today", "in 2 hours")
+     * @param locale decides the order of numeric dates; may be null
+     */
+    public static List<TemporalMention> resolve(String text, LocalDateTime now, Locale locale) {
+        Now reference = new Now(now, monthFirst(locale));
+        String lower = lowerCase(text);
+        List<Piece> pieces = combineDateAndTime(lower, match(lower, reference));
+        pieces = combineDurations(lower, combineDateAndTime(lower, combineRanges(lower, pieces)));
+
+        List<TemporalMention> mentions = new ArrayList<>();
+        for (Piece piece : pieces) {
+            if (piece.length != null) {
+                continue;
+            }
+            LocalDate date = piece.date;
+            if (date == null) {
+                // A time of day alone: today, or tomorrow once it has passed
+                date = piece.time.isBefore(now.toLocalTime()) ? reference.today().plusDays(1) : reference.today();
+            }
+            TemporalValue from = new TemporalValue(date, piece.time);
+            TemporalValue to = piece.range
+                    ? new TemporalValue(piece.endDate != null ? piece.endDate : date, piece.endTime) : null;
+            mentions.add(new TemporalMention(text.substring(piece.start, piece.end), piece.start, piece.end, from, to));
+        }
+        return mentions;
+    }
+
+    /**
+     * {@link #resolve(String, LocalDateTime, Locale)} with the reference time and locale of a request context;
+     * empty if the context has no usable {@link #NOW_KEY}.
+     */
+    public static List<TemporalMention> resolve(String text, Map<String, ?> context) {
+        ZonedDateTime now = now(context);
+        return now == null ? List.of() : resolve(text, now.toLocalDateTime(), locale(context));
+    }
+
+    /**
+     * What each expression in {@code text} resolved to, for the model: e.g. {@code "next Monday"} to
+     * {@code "2023-10-30 (Monday)"}, or {@code "tomorrow 3pm to 5pm"} to
+     * {@code "2023-10-28T15:00:00Z (Saturday) to 2023-10-28T17:00:00Z (Saturday)"}. Empty without a
+     * {@link #NOW_KEY}.
+     */
+    public static Map<String, String> hints(String text, Map<String, ?> context) {
+        ZonedDateTime now = now(context);
+        Map<String, String> hints = new LinkedHashMap<>();
+        if (now == null) {
+            return hints;
+        }
+        for (TemporalMention mention : resolve(text, now.toLocalDateTime(), locale(context))) {
+            String from = describe(mention.from(), now.getOffset());
+            hints.putIfAbsent(mention.text(),
+                    mention.isRange() ? from + " to " + describe(mention.to(), now.getOffset()) : from);
+        }
+        return hints;
+    }
+
+    /**
+     * The reference time of a request context: {@link #NOW_KEY} (an ISO date-time with or without offset or
+     * zone, or a date), converted to {@link #TIMEZONE_KEY} if given. A local value is taken as UTC.
+     *
+     * @return null if the context has no parseable {@code now}
+     */
+    public static ZonedDateTime now(Map<String, ?> context) {
+        Object value = context != null ? context.get(NOW_KEY) : null;
+        if (value == null) {
+            return null;
+        }
+        String text = value.toString().trim();
+        ZonedDateTime now;
+        try {
+            now = ZonedDateTime.parse(text);
+        } catch (DateTimeParseException notZoned) {
+            try {
+                now = LocalDateTime.parse(text).atZone(ZoneOffset.UTC);
+            } catch (DateTimeParseException notLocal) {
+                try {
+                    now = LocalDate.parse(text).atStartOfDay(ZoneOffset.UTC);
+                } catch (DateTimeParseException notDate) {
+                    return null;
+                }
+            }
+        }
+        Object zone = context.get(TIMEZONE_KEY);
+        if (zone != null) {
+            try {
+                now = now.withZoneSameInstant(ZoneId.of(zone.toString()));
+            } catch (DateTimeException e) {
+                // Unknown zone: keep the offset of now
+            }
+        }
+        return now;
+    }
+
+    /**
+     * The {@link #LOCALE_KEY} of a request context, or null.
+     */
+    public static Locale locale(Map<String, ?> context) {
+        Object value = context != null ? context.get(LOCALE_KEY) : null;
+        if (value == null) {
+            return null;
+        }
+        Locale locale = Locale.forLanguageTag(value.toString().trim().replace('_', '-'));
+        return locale.getLanguage().isEmpty() ? null : locale;
+    }
+
+    private static String describe(TemporalValue value, ZoneOffset offset) {
+        String day = value.date().getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.ENGLISH);
+        return (value.hasTime() ? value.isoDateTime(offset) : value.isoDate()) + " (" + day + ")";
+    }
+
+    private static Boolean monthFirst(Locale locale) {
+        if (locale == null) {
+            return null;
+        }
+        if (MONTH_FIRST_LANGUAGES.contains(locale.getLanguage())) {
+            return true;
+        }
+        if (locale.getCountry().isEmpty()) {
+            return null;
+        }
+        return EN_MONTH_FIRST_COUNTRIES.contains(locale.getCountry());
+    }
+
+    // Lowercase without changing offsets, so matches map back onto the original text
+    private static String lowerCase(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * All rule matches, reduced to non-overlapping pieces: leftmost first, the longest among those starting at
+     * the same place.
+     */
+    private static List<Piece> match(String lower, Now now) {
+        List<Piece> found = new ArrayList<>();
+        for (Rule rule : RULES) {
+            Matcher matcher = rule.pattern().matcher(lower);
+            while (matcher.find()) {
+                Piece piece;
+                try {
+                    piece = rule.build().apply(matcher, now);
+                } catch (DateTimeException | NumberFormatException e) {
+                    piece = null; // February 30th and the like
+                }
+                if (piece != null) {
+                    piece.start = matcher.start();
+                    piece.end = matcher.end();
+                    found.add(piece);
+                }
+            }
+        }
+        found.sort(Comparator.comparingInt((Piece p) -> p.start).thenComparingInt(p -> p.start - p.end));
+        List<Piece> pieces = new ArrayList<>();
+        int covered = 0;
+        for (Piece piece : found) {
+            if (piece.start >= covered) {
+                pieces.add(piece);
+                covered = piece.end;
+            }
+        }
+        return pieces;
+    }
+
+    /**
+     * "tomorrow at 3pm", "3pm tomorrow", "周一上午", "tonight at 8": a date next to a time of day. A part of day
+     * ("afternoon", "今晚") stands in for a time until an explicit one joins it, and moves it into the afternoon
+     * where needed.
+     */
+    private static List<Piece> combineDateAndTime(String lower, List<Piece> pieces) {
+        List<Piece> out = new ArrayList<>(pieces);
+        for (int i = 0; i + 1 < out.size(); i++) {
+            Piece a = out.get(i);
+            Piece b = out.get(i + 1);
+            if (!gap(lower, a, b, DATE_TIME_GAP)) {
+                continue;
+            }
+            Piece merged = join(a, b);
+            if (merged == null) {
+                merged = join(b, a);
+            }
+            if (merged != null) {
+                out.set(i, merged.span(a.start, b.end));
+                out.remove(i + 1);
+                i--; // "tomorrow" + "afternoon" + "at 3"
+            }
+        }
+        return out;
+    }
+
+    /**
+     * {@code day} with {@code time}, a time of day or a range of times on no day yet; null if they don't go
+     * together.
+     */
+    private static Piece join(Piece day, Piece time) {
+        if (!day.isPoint() || day.date == null || time.date != null || time.length != null) {
+            return null;
+        }
+        boolean fixed = day.time != null && !day.partOfDay;
+        if (time.range) {
+            if (fixed) {
+                return null;
+            }
+            Piece range = Piece.dateTime(day.date, day.partOfDay ? shift(time.time, day.time) : time.time);
+            range.endDate = day.date;
+            range.endTime = time.endTime != null && day.partOfDay ? shift(time.endTime, day.time) : time.endTime;
+            range.range = true;
+            return range;
+        }
+        if (fixed || (day.partOfDay && time.partOfDay)) {
+            // "at 3 tomorrow" + "afternoon": the part of day only settles am or pm
+            return fixed && time.partOfDay ? Piece.dateTime(day.date, shift(day.time, time.time)) : null;
+        }
+        Piece merged = Piece.dateTime(day.date, day.partOfDay ? shift(time.time, day.time) : time.time);
+        merged.roll = day.roll;
+        merged.partOfDay = time.partOfDay;
+        return merged;
+    }
+
+    // "tonight at 8": a morning hour said of the afternoon or evening
+    private static LocalTime shift(LocalTime clock, LocalTime partOfDay) {
+        return partOfDay.getHour() >= 12 && clock.getHour() < 12 ? clock.plusHours(12) : clock;
+    }
+
+    /**
+     * "Monday to Wednesday", "3pm-5pm", "下周一到周三", "between May 1 and May 3".
+     */
+    private static List<Piece> combineRanges(String lower, List<Piece> pieces) {
+        List<Piece> out = new ArrayList<>();
+        for (int i = 0; i < pieces.size(); i++) {
+            Piece a = pieces.get(i);
+            Piece b = i + 1 < pieces.size() ? pieces.get(i + 1) : null;
+            Piece range = b != null && a.isPoint() && b.isPoint() && rangeGap(lower, a, b) ? range(a, b) : null;
+            if (range != null) {
+                out.add(range.span(a.start, b.end));
+                i++;
+            } else {
+                out.add(a);
+            }
+        }
+        return out;
+    }
+
+    private static boolean rangeGap(String lower, Piece a, Piece b) {
+        Matcher gap = RANGE_GAP.matcher(lower.substring(a.end, b.start));
+        if (!gap.matches()) {
+            return false;
+        }
+        // "Monday and Tuesday" are two days; only "between Monday and Tuesday" is a range
+        return !gap.group(1).equals("and") || BETWEEN.matcher(lower.substring(0, a.start)).find();
+    }
+
+    private static Piece range(Piece a, Piece b) {
+        LocalDate from = a.date != null ? a.date : b.date;
+        LocalDate to = b.date != null ? b.date : from;
+        if (from != null && b.date != null) {
+            for (int i = 0; i < 3 && to.isBefore(from) && b.roll != Roll.NONE; i++) {
+                to = b.roll.next(to);
+            }
+            if (to.isBefore(from)) {
+                return null;
+            }
+        }
+        LocalTime toTime = b.time;
+        if (a.time != null && toTime != null && (from == null || from.equals(to)) && toTime.isBefore(a.time)
+                && toTime.getHour() < 12 && toTime.plusHours(12).isAfter(a.time)) {
+            toTime = toTime.plusHours(12); // "下午2点到4点", "10:00-3:00"
+        }
+        Piece range = new Piece();
+        range.date = from;
+        range.time = a.time;
+        range.endDate = to;
+        range.endTime = toTime;
+        range.range = true;
+        return range;
+    }
+
+    /**
+     * "a week off starting next Monday", "明天开始请3天假": a duration and the nearest date in the same sentence
+     * become a range of that many days.
+     */
+    private static List<Piece> combineDurations(String lower, List<Piece> pieces) {
+        List<Piece> out = new ArrayList<>(pieces);
+        for (int i = 0; i < out.size(); i++) {
+            Piece duration = out.get(i);
+            if (duration.length == null) {
+                continue;
+            }
+            int start = -1;
+            int best = Integer.MAX_VALUE;
+            for (int j : new int[]{i - 1, i + 1}) {
+                if (j < 0 || j >= out.size() || !out.get(j).isPoint() || out.get(j).date == null) {
+                    continue;
+                }
+                Piece first = j < i ? out.get(j) : duration;
+                Piece second = j < i ? duration : out.get(j);
+                String between = lower.substring(first.end, second.start);
+                if (!SENTENCE_END.matcher(between).find() && between.length() < best) {
+                    best = between.length();
+                    start = j;
+                }
+            }
+            if (start >= 0) {
+                Piece date = out.get(start);
+                Piece range = new Piece();
+                range.date = date.date;
+                range.time = date.time;
+                range.endDate = date.date.plus(duration.length).minusDays(1);
+                range.range = true;
+                range.span(Math.min(date.start, duration.start), Math.max(date.end, duration.end));
+                out.set(Math.min(i, start), range);
+                out.remove(Math.max(i, start));
+                i = Math.min(i, start);
+            }
+        }
+        return out;
+    }
+
+    private static boolean gap(String lower, Piece a, Piece b, Pattern allowed) {
+        return allowed.matcher(lower.substring(a.end, b.start)).matches();
+    }
+
+    private static Piece numericDate(Matcher m, Now now) {
+        int first = num(m, 1);
+        int second = num(m, 2);
+        int month;
+        int day;
+        if (now.monthFirst() == null) {
+            if (first > 12 && second <= 12) {
+                day = first;
+                month = second;
+            } else if (second > 12 && first <= 12) {
+                month = first;
+                day = second;
+            } else {
+                return null;
+            }
+        } else if (now.monthFirst()) {
+            month = first;
+            day = second;
+        } else {
+            day = first;
+            month = second;
+        }
+        String year = m.group(3);
+        if (year != null && year.length() == 2) {
+            year = "20" + year;
+        }
+        return monthDay(now, month, day, year);
+    }
+
+    private static Piece monthDay(Now now, int month, int day, String year) {
+        if (year != null) {
+            return Piece.date(LocalDate.of(Integer.parseInt(year), month, day));
+        }
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        LocalDate today = now.today();
+        LocalDate best = null;
+        for (int y = today.getYear() - 1; y <= today.getYear() + 1; y++) {
+            LocalDate candidate;
+            try {
+                candidate = LocalDate.of(y, month, day);
+            } catch (DateTimeException e) {
+                continue;
+            }
+            if (best == null || distance(today, candidate) < distance(today, best)) {
+                best = candidate;
+            }
+        }
+        return best == null ? null : Piece.date(best, Roll.YEAR);
+    }
+
+    private static Piece dayOfMonth(Now now, int day) {
+        if (day < 1 || day > 31) {
+            return null;
+        }
+        LocalDate today = now.today();
+        LocalDate best = null;
+        for (int offset = -1; offset <= 1; offset++) {
+            LocalDate month = today.withDayOfMonth(1).plusMonths(offset);
+            if (day <= month.lengthOfMonth()) {
+                LocalDate candidate = month.withDayOfMonth(day);
+                if (best == null || distance(today, candidate) < distance(today, best)) {
+                    best = candidate;
+                }
+            }
+        }
+        return best == null ? null : Piece.date(best, Roll.MONTH);
+    }
+
+    private static long distance(LocalDate a, LocalDate b) {
+        return Math.abs(ChronoUnit.DAYS.between(a, b));
+    }
+
+    private static Piece weekday(Now now, DayOfWeek day, String modifier) {
+        LocalDate today = now.today();
+        LocalDate thisWeek = today.with(day);
+        return switch (modifier == null ? "" : modifier) {
+            case "this", "这", "本" -> Piece.date(thisWeek);
+            case "next", "下" -> Piece.date(thisWeek.plusWeeks(1));
+            case "last", "上" -> Piece.date(thisWeek.minusWeeks(1));
+            case "下下" -> Piece.date(thisWeek.plusWeeks(2));
+            case "上上" -> Piece.date(thisWeek.minusWeeks(2));
+            default -> Piece.date(today.with(TemporalAdjusters.nextOrSame(day)), Roll.WEEK);
+        };
+    }
+
+    private static Piece week(Now now, int offset) {
+        LocalDate monday = now.today().with(DayOfWeek.MONDAY).plusWeeks(offset);
+        return Piece.range(monday, monday.plusDays(6));
+    }
+
+    private static Piece weekend(Now now, String modifier) {
+        LocalDate saturday = now.today().with(DayOfWeek.SATURDAY).plusWeeks(weekOffset(modifier));
+        return Piece.range(saturday, saturday.plusDays(1));
+    }
+
+    private static Piece month(Now now, int offset) {
+        LocalDate first = now.today().withDayOfMonth(1).plusMonths(offset);
+        return Piece.range(first, first.with(TemporalAdjusters.lastDayOfMonth()));
+    }
+
+    private static int weekOffset(String modifier) {
+        return switch (modifier == null ? "" : modifier) {
+            case "next", "下" -> 1;
+            case "last", "上" -> -1;
+            case "下下" -> 2;
+            case "上上" -> -2;
+            default -> 0;
+        };
+    }
+
+    private static int monthOffset(String modifier) {
+        return weekOffset(modifier);
+    }
+
+    private static Piece offset(Now now, int amount, String unit) {
+        LocalDateTime moment = now.dateTime();
+        if (unit.startsWith("hour") || unit.equals("小时") || unit.equals("钟头")) {
+            LocalDateTime at = moment.plusHours(amount).truncatedTo(ChronoUnit.MINUTES);
+            return Piece.dateTime(at.toLocalDate(), at.toLocalTime());
+        }
+        if (unit.startsWith("min") || unit.equals("分钟")) {
+            LocalDateTime at = moment.plusMinutes(amount).truncatedTo(ChronoUnit.MINUTES);
+            return Piece.dateTime(at.toLocalDate(), at.toLocalTime());
+        }
+        return Piece.date(now.today().plus(period(amount, unit)));
+    }
+
+    private static Piece duration(int amount, String unit) {
+        if (amount < 1) {
+            return null;
+        }
+        Piece piece = new Piece();
+        piece.length = period(amount, unit);
+        return piece;
+    }
+
+    private static Period period(int amount, String unit) {
+        if (unit.startsWith("week") || unit.equals("周") || unit.equals("星期") || unit.equals("礼拜")) {
+            return Period.ofWeeks(amount);
+        }
+        if (unit.startsWith("month") || unit.equals("月")) {
+            return Period.ofMonths(amount);
+        }
+        return Period.ofDays(amount);
+    }
+
+    // "at 3" without am/pm: office hours, so 1 to 6 are afternoon
+    private static Piece clockHour(int hour) {
+        if (hour < 1 || hour > 23) {
+            return null;
+        }
+        return Piece.time(LocalTime.of(hour <= 6 ? hour + 12 : hour, 0));
+    }
+
+    private static DayOfWeek weekday(String name) {
+        for (DayOfWeek day : DayOfWeek.values()) {
+            if (day.name().toLowerCase(Locale.ROOT).startsWith(name.substring(0, 3))) {
+                return day;
+            }
+        }
+        throw new IllegalArgumentException("Not a weekday: " + name);
+    }
+
+    private static DayOfWeek zhWeekday(String name) {
+        int index = "一二三四五六".indexOf(name);
+        if (index >= 0) {
+            return DayOfWeek.of(index + 1);
+        }
+        return name.equals("日") || name.equals("天") ? DayOfWeek.SUNDAY : DayOfWeek.of(Integer.parseInt(name));
+    }
+
+    private static int month(String name) {
+        String[] months = {"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"};
+        for (int i = 0; i < months.length; i++) {
+            if (name.startsWith(months[i])) {
+                return i + 1;
+            }
+        }
+        throw new IllegalArgumentException("Not a month: " + name);
+    }
+
+    private static int num(Matcher m, int group) {
+        return Integer.parseInt(m.group(group));
+    }
+
+    /**
+     * Digits, English number words up to twelve, or Chinese numerals up to 99.
+     */
+    static int number(String text) {
+        String word = text.replaceAll("\\s+", " ");
+        if (Character.isDigit(word.charAt(0))) {
+            return Integer.parseInt(word);
+        }
+        switch (word) {
+            case "a", "an", "one":
+                return 1;
+            case "two", "a couple of":
+                return 2;
+            case "three":
+                return 3;
+            case "four":
+                return 4;
+            case "five":
+                return 5;
+            case "six":
+                return 6;
+            case "seven":
+                return 7;
+            case "eight":
+                return 8;
+            case "nine":
+                return 9;
+            case "ten":
+                return 10;
+            case "eleven":
+                return 11;
+            case "twelve":
+                return 12;
+            default:
+                break;
+        }
+        int value = 0;
+        int digit = 0;
+        for (char c : word.toCharArray()) {
+            if (c == '十') {
+                value += (digit == 0 ? 1 : digit) * 10;
+                digit = 0;
+            } else {
+                int d = "零〇一二两三四五六七八九".indexOf(c);
+                if (d < 0) {
+                    throw new NumberFormatException(text);
+                }
+                digit = new int[]{0, 0, 1, 2, 2, 3, 4, 5, 6, 7, 8, 9}[d];
+            }
+        }
+        return value + digit;
+    }
+
+    private static void rule(String regex, BiFunction<Matcher, Now, Piece> build) {
+        RULES.add(new Rule(Pattern.compile(regex), build));
+    }
+
+    private record Rule(Pattern pattern, BiFunction<Matcher, Now, Piece> build) {}
+
+    /**
+     * @param monthFirst whether {@code 3/1} is March 1st; null if unknown
+     */
+    private record Now(LocalDateTime dateTime, Boolean monthFirst) {
+        LocalDate today() {
+            return dateTime.toLocalDate();
+        }
+    }
+
+    /**
+     * How a range end without its own week, month or year moves forward to land after the start.
+     */
+    private enum Roll {
+        NONE, WEEK, MONTH, YEAR;
+
+        LocalDate next(LocalDate date) {
+            return switch (this) {
+                case WEEK -> date.plusWeeks(1);
+                case MONTH -> date.plusMonths(1);
+                case YEAR -> date.plusYears(1);
+                case NONE -> date;
+            };
+        }
+    }
+
+    /**
+     * A matched expression before it becomes a {@link TemporalMention}.
+     */
+    private static final class Piece {
+        int start;
+        int end;
+        LocalDate date;     // null for a time of day alone or a duration
+        LocalTime time;     // null for a date alone
+        LocalDate endDate;  // ranges
+        LocalTime endTime;
+        boolean range;
+        Period length;      // durations
+        boolean partOfDay;  // time is a default for "afternoon", "今晚" and the like
+        Roll roll = Roll.NONE;
+
+        static Piece date(LocalDate date) {
+            return date(date, Roll.NONE);
+        }
+
+        static Piece date(LocalDate date, Roll roll) {
+            Piece piece = new Piece();
+            piece.date = date;
+            piece.roll = roll;
+            return piece;
+        }
+
+        static Piece time(LocalTime time) {
+            Piece piece = new Piece();
+            piece.time = time;
+            return piece;
+        }
+
+        static Piece dateTime(LocalDate date, LocalTime time) {
+            Piece piece = date(date);
+            piece.time = time;
+            return piece;
+        }
+
+        static Piece partOfDay(LocalDate date, LocalTime time) {
+            Piece piece = date != null ? dateTime(date, time) : time(time);
+            piece.partOfDay = true;
+            return piece;
+        }
+
+        static Piece range(LocalDate from, LocalDate to) {
+            Piece piece = date(from);
+            piece.endDate = to;
+            piece.range = true;
+            return piece;
+        }
+
+        Piece span(int start, int end) {
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+
+        boolean isPoint() {
+            return !range && length == null;
+        }
+    }
+}
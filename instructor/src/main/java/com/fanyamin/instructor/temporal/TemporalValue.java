@@ -0,0 +1,49 @@
+package com.fanyamin.instructor.temporal;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * A resolved point in time: a date, with a time of day if the expression had one.
+ */
+public record TemporalValue(LocalDate date, LocalTime time) {
+
+    // RFC 3339 as JSON Schema's date-time expects it: seconds are always written
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX");
+
+    public TemporalValue {
+        if (date == null) {
+            throw new IllegalArgumentException("date must not be null");
+        }
+    }
+
+    public boolean hasTime() {
+        return time != null;
+    }
+
+    /**
+     * {@code yyyy-MM-dd}, for {@code "format": "date"}.
+     */
+    public String isoDate() {
+        return date.toString();
+    }
+
+    /**
+     * {@code yyyy-MM-ddTHH:mm:ss±hh:mm} at {@code offset} (midnight without a time), for
+     * {@code "format": "date-time"}.
+     */
+    public String isoDateTime(ZoneOffset offset) {
+        return OffsetDateTime.of(date, time != null ? time : LocalTime.MIDNIGHT, offset).format(DATE_TIME);
+    }
+
+    /**
+     * {@code 2023-10-30} or {@code 2023-10-30T15:00}.
+     */
+    @Override
+    public String toString() {
+        return time == null ? date.toString() : date + "T" + time;
+    }
+}
@@ -0,0 +1,85 @@
+package com.fanyamin.instructor.tokenizer;
+
+import java.util.regex.Matcher;
+
+/**
+ * Token estimate for when no vocabulary is available.
+ *
+ * <p>Uses the encoding's real pre-tokenization, so the split into words, number groups, punctuation runs and
+ * whitespace matches the tokenizer, and then estimates each piece: common-length words and number groups are one
+ * token, long words are split into several, punctuation runs take about one token per two characters, and CJK
+ * characters one token each. It errs on the high side, which is the safe direction for budgets and rate
+ * limits.</p>
+ */
+public final class ApproximateTokenCounter implements TokenCounter {
+
+    /** Letters a single word token covers before the estimate adds another one. */
+    private static final int LETTERS_PER_TOKEN = 8;
+
+    private final TokenEncoding encoding;
+
+    public ApproximateTokenCounter(TokenEncoding encoding) {
+        this.encoding = encoding;
+    }
+
+    @Override
+    public int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int total = 0;
+        Matcher matcher = encoding.pattern().matcher(text);
+        while (matcher.find()) {
+            total += estimatePiece(matcher.group());
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isExact() {
+        return false;
+    }
+
+    static int estimatePiece(String piece) {
+        int latin = 0;
+        int wide = 0;
+        int other = 0;
+        int symbols = 0;
+        for (int i = 0; i < piece.length(); ) {
+            int cp = piece.codePointAt(i);
+            i += Character.charCount(cp);
+            if (Character.isWhitespace(cp)) {
+                continue;
+            }
+            if (isWide(cp)) {
+                wide++;
+            } else if (cp < 0x250 && Character.isLetterOrDigit(cp)) {
+                latin++;
+            } else if (Character.isLetterOrDigit(cp)) {
+                other++;
+            } else {
+                symbols++;
+            }
+        }
+        if (latin + wide + other + symbols == 0) {
+            return 1; // a whitespace run
+        }
+        int tokens = wide + (other + 1) / 2;
+        if (latin > 0) {
+            tokens += (latin + LETTERS_PER_TOKEN - 1) / LETTERS_PER_TOKEN;
+        }
+        // A leading space or punctuation mark usually merges into the word that follows it
+        if (symbols > 0 && tokens == 0) {
+            tokens = (symbols + 1) / 2;
+        } else if (symbols > 1) {
+            tokens += symbols / 2;
+        }
+        return Math.max(tokens, 1);
+    }
+
+    private static boolean isWide(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,97 @@
+package com.fanyamin.instructor.tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * Exact byte-level BPE token counting with a tiktoken vocabulary.
+ *
+ * <p>Text is split with the encoding's pre-tokenization pattern, and each piece is encoded by repeatedly merging
+ * the adjacent pair of parts with the lowest rank, as tiktoken does. Token byte sequences are kept as ISO-8859-1
+ * strings (one char per byte), which makes them cheap map keys. Thread-safe once loaded.</p>
+ */
+public final class BpeTokenizer implements TokenCounter {
+
+    private final TokenEncoding encoding;
+    private final Map<String, Integer> ranks;
+
+    BpeTokenizer(TokenEncoding encoding, Map<String, Integer> ranks) {
+        this.encoding = encoding;
+        this.ranks = ranks;
+    }
+
+    /**
+     * Read a vocabulary in tiktoken format: one {@code base64-token rank} pair per line.
+     */
+    public static BpeTokenizer load(TokenEncoding encoding, InputStream in) throws IOException {
+        Map<String, Integer> ranks = new HashMap<>(1 << 18);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int space = line.indexOf(' ');
+            if (space <= 0) {
+                continue;
+            }
+            byte[] token = Base64.getDecoder().decode(line.substring(0, space));
+            ranks.put(new String(token, StandardCharsets.ISO_8859_1), Integer.parseInt(line.substring(space + 1).trim()));
+        }
+        if (ranks.isEmpty()) {
+            throw new IOException("Empty " + encoding + " vocabulary");
+        }
+        return new BpeTokenizer(encoding, ranks);
+    }
+
+    @Override
+    public int count(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int total = 0;
+        Matcher matcher = encoding.pattern().matcher(text);
+        while (matcher.find()) {
+            String piece = new String(matcher.group().getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+            total += ranks.containsKey(piece) ? 1 : encodePiece(piece).size();
+        }
+        return total;
+    }
+
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+
+    /**
+     * The tokens of one pre-tokenized piece (bytes as ISO-8859-1 chars).
+     */
+    List<String> encodePiece(String piece) {
+        List<String> parts = new ArrayList<>(piece.length());
+        for (int i = 0; i < piece.length(); i++) {
+            parts.add(piece.substring(i, i + 1));
+        }
+        while (parts.size() > 1) {
+            int best = -1;
+            int bestRank = Integer.MAX_VALUE;
+            for (int i = 0; i + 1 < parts.size(); i++) {
+                Integer rank = ranks.get(parts.get(i) + parts.get(i + 1));
+                if (rank != null && rank < bestRank) {
+                    bestRank = rank;
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            parts.set(best, parts.get(best) + parts.remove(best + 1));
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,16 @@
+package com.fanyamin.instructor.tokenizer;
+
+/**
+ * Counts the tokens a text takes in a model's encoding, locally and without network access.
+ *
+ * @see TokenCounters#forModel(String)
+ */
+public interface TokenCounter {
+
+    int count(String text);
+
+    /**
+     * Whether counts are exact for the encoding, as opposed to an estimate.
+     */
+    boolean isExact();
+}
@@ -0,0 +1,47 @@
+package com.fanyamin.instructor.tokenizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared {@link TokenCounter} per encoding.
+ *
+ * <p>The vocabulary is read from the classpath ({@link TokenEncoding#resourcePath()}, e.g.
+ * {@code /tokenizers/cl100k_base.tiktoken} as published by the tiktoken project) on first use and never fetched
+ * over the network. If it is not on the classpath, an {@link ApproximateTokenCounter} is used instead.</p>
+ */
+public final class TokenCounters {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenCounters.class);
+    private static final Map<TokenEncoding, TokenCounter> COUNTERS = new ConcurrentHashMap<>();
+
+    private TokenCounters() {
+    }
+
+    public static TokenCounter forModel(String model) {
+        return forEncoding(TokenEncoding.forModel(model));
+    }
+
+    public static TokenCounter forEncoding(TokenEncoding encoding) {
+        return COUNTERS.computeIfAbsent(encoding, TokenCounters::load);
+    }
+
+    private static TokenCounter load(TokenEncoding encoding) {
+        try (InputStream in = TokenCounters.class.getResourceAsStream(encoding.resourcePath())) {
+            if (in != null) {
+                BpeTokenizer tokenizer = BpeTokenizer.load(encoding, in);
+                logger.info("🔤 Loaded {} vocabulary for local token counting", encoding);
+                return tokenizer;
+            }
+            logger.info("🔤 No {} vocabulary on the classpath; token counts are estimated", encoding);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("⚠️  Cannot read {} vocabulary, token counts are estimated: {}", encoding, e.getMessage());
+        }
+        return new ApproximateTokenCounter(encoding);
+    }
+}
@@ -0,0 +1,54 @@
+package com.fanyamin.instructor.tokenizer;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * The BPE encodings used by OpenAI-style models, with the pre-tokenization pattern that splits text into the
+ * pieces BPE is applied to.
+ */
+public enum TokenEncoding {
+    CL100K_BASE("cl100k_base",
+            "'(?i:[sdmt]|ll|ve|re)|[^\\r\\n\\p{L}\\p{N}]?+\\p{L}++|\\p{N}{1,3}+| ?[^\\s\\p{L}\\p{N}]++[\\r\\n]*+"
+                    + "|\\s++\\z|\\s*[\\r\\n]|\\s+(?!\\S)|\\s"),
+    O200K_BASE("o200k_base",
+            "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+                    + "|[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*(?i:'s|'t|'re|'ve|'m|'ll|'d)?"
+                    + "|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+
+    private final String fileName;
+    private final Pattern pattern;
+
+    TokenEncoding(String fileName, String pattern) {
+        this.fileName = fileName;
+        this.pattern = Pattern.compile(pattern, Pattern.UNICODE_CHARACTER_CLASS);
+    }
+
+    /**
+     * The encoding of a model: {@code o200k_base} for the GPT-4o, GPT-4.1, GPT-5 and o-series families,
+     * {@code cl100k_base} for everything else (GPT-4, GPT-3.5 and, as a reasonable proxy, most open models).
+     */
+    public static TokenEncoding forModel(String model) {
+        String name = model == null ? "" : model.toLowerCase(Locale.ROOT);
+        int slash = name.lastIndexOf('/');
+        if (slash >= 0) {
+            name = name.substring(slash + 1); // e.g. openai/gpt-4o on OpenRouter
+        }
+        if (name.startsWith("gpt-4o") || name.startsWith("gpt-4.1") || name.startsWith("gpt-5")
+                || name.startsWith("chatgpt-4o") || name.matches("o\\d.*")) {
+            return O200K_BASE;
+        }
+        return CL100K_BASE;
+    }
+
+    /**
+     * Classpath location of the vocabulary in tiktoken format ({@code base64-token rank} per line).
+     */
+    public String resourcePath() {
+        return "/tokenizers/" + fileName + ".tiktoken";
+    }
+
+    Pattern pattern() {
+        return pattern;
+    }
+}
@@ -0,0 +1,174 @@
+package com.fanyamin;
+
+import com.fanyamin.instructor.api.ParsingRequest;
+import com.fanyamin.instructor.api.ParsingResult;
+import com.fanyamin.instructor.llm.ChatMessage;
+import com.fanyamin.instructor.llm.ChatOptions;
+import com.fanyamin.instructor.llm.LlmClient;
+import com.fanyamin.instructor.tokenizer.TokenCounter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyFormInstructorLongInputTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LazyFormInstructorLongInputTest.class);
+
+    private static final String SCHEMA = "{\"type\": \"object\", \"properties\": {"
+            + "\"leave_type\": {\"enum\": [\"sick\", \"annual\"]}, \"days\": {\"type\": \"integer\"}}, "
+            + "\"required\": [\"leave_type\"]}";
+
+    private static final TokenCounter WORDS = new TokenCounter() {
+        @Override
+        public int count(String text) {
+            return text.isBlank() ? 0 : text.strip().split("\\s+").length;
+        }
+
+        @Override
+        public boolean isExact() {
+            return true;
+        }
+    };
+
+    /**
+     * Answers from what the user input mentions; takes {@code msPerKiloWord} per 1000 prompt words plus 20 ms, a
+     * crude model of prefill plus a short generation.
+     */
+    private static LlmClient fakeModel(List<String> inputs, double msPerKiloWord) {
+        return new LlmClient() {
+            @Override
+            public String chat(String prompt) {
+                throw new AssertionError("conversation API expected");
+            }
+
+            @Override
+            public String chat(List<ChatMessage> messages, ChatOptions options) {
+                String input = messages.get(1).content();
+                inputs.add(input);
+                try {
+                    Thread.sleep(20 + (long) (WORDS.count(input) * msPerKiloWord / 1000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (input.contains("Different parts of the text")) {
+                    return "{\"fields\": {\"leave_type\": {\"value\": \"annual\", \"confidence\": 0.95}}}";
+                }
+                StringBuilder fields = new StringBuilder();
+                if (input.contains("sick")) {
+                    fields.append("\"leave_type\": {\"value\": \"sick\", \"confidence\": 0.8}");
+                } else if (input.contains("annual")) {
+                    fields.append("\"leave_type\": {\"value\": \"annual\", \"confidence\": 0.8}");
+                }
+                if (input.contains("three days")) {
+                    fields.append(fields.isEmpty() ? "" : ", ").append("\"days\": {\"value\": 3, \"confidence\": 0.9}");
+                }
+                return "{\"fields\": {" + fields + "}}";
+            }
+        };
+    }
+
+    private static String filler(int sentences) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < sentences; i++) {
+            text.append("We went through item ").append(i).append(" of the project plan. ");
+        }
+        return text.toString();
+    }
+
+    @Test
+    void windowsAreMergedAndOnlyConflictsAreReconciled() {
+        List<String> inputs = Collections.synchronizedList(new ArrayList<>());
+        LazyFormInstructor instructor = LazyFormInstructor.builder(fakeModel(inputs, 0))
+                .tokenCounter(WORDS)
+                .longInput(200, 20)
+                .build();
+        String thread = "I need three days of sick leave. " + filler(60) + "Update: make it annual leave instead. ";
+
+        ParsingResult result = instructor.parse(new ParsingRequest(SCHEMA, thread, Map.of()));
+
+        long reconciliations = inputs.stream().filter(input -> input.contains("Different parts of the text")).count();
+        assertEquals(1, reconciliations);
+        assertTrue(inputs.size() > 3, "several windows: " + inputs.size());
+        assertTrue(result.errors().isEmpty(), String.valueOf(result.errors()));
+        assertEquals("annual", result.fields().get("leave_type").value());
+        assertEquals(List.of("sick"), result.fields().get("leave_type").alternatives());
+        assertEquals(3, result.fields().get("days").value());
+        assertEquals(inputs.size(), result.metadata().attempts());
+    }
+
+    @Test
+    void windowsAreExtractedAFewAtATime() {
+        LlmClient model = fakeModel(Collections.synchronizedList(new ArrayList<>()), 0);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        LlmClient counting = new LlmClient() {
+            @Override
+            public String chat(String prompt) {
+                throw new AssertionError("conversation API expected");
+            }
+
+            @Override
+            public String chat(List<ChatMessage> messages, ChatOptions options) {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    return model.chat(messages, options);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        };
+        LazyFormInstructor instructor = LazyFormInstructor.builder(counting)
+                .tokenCounter(WORDS)
+                .longInput(200, 20)
+                .maxParallelCalls(2)
+                .build();
+
+        ParsingResult result = instructor.parse(
+                new ParsingRequest(SCHEMA, "Three days of sick leave. " + filler(100), Map.of()));
+
+        assertTrue(result.metadata().attempts() > 4, "several windows: " + result.metadata().attempts());
+        assertEquals(2, maxInFlight.get());
+    }
+
+    /**
+     * Latency against input length, whole input vs. windows, with a model whose time grows with the prompt.
+     * Logs a table; only asserts that windows win on the longest input. Runs with {@code -Pbenchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkLatencyAgainstInputLength() {
+        LazyFormInstructor whole = LazyFormInstructor.builder(fakeModel(new ArrayList<>(), 10))
+                .tokenCounter(WORDS)
+                .build();
+        LazyFormInstructor windowed = LazyFormInstructor.builder(fakeModel(new ArrayList<>(), 10))
+                .tokenCounter(WORDS)
+                .longInput(1000, 100)
+                .maxParallelCalls(64)
+                .build();
+
+        logger.info(String.format("%12s %10s %12s %8s", "input words", "whole ms", "windowed ms", "calls"));
+        long lastWhole = 0;
+        long lastWindowed = 0;
+        for (int sentences : new int[]{100, 400, 1600, 6400}) {
+            ParsingRequest request = new ParsingRequest(SCHEMA, "three days of annual leave. " + filler(sentences), Map.of());
+            long start = System.nanoTime();
+            whole.parse(request);
+            lastWhole = (System.nanoTime() - start) / 1_000_000;
+            start = System.nanoTime();
+            ParsingResult result = windowed.parse(request);
+            lastWindowed = (System.nanoTime() - start) / 1_000_000;
+            logger.info(String.format("%12d %10d %12d %8d",
+                    WORDS.count(request.userInput()), lastWhole, lastWindowed, result.metadata().attempts()));
+        }
+        assertTrue(lastWindowed < lastWhole, "windowed " + lastWindowed + " ms vs whole " + lastWhole + " ms");
+    }
+}
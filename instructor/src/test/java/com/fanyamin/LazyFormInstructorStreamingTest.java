@@ -3,6 +3,7 @@ package com.fanyamin;
 import com.fanyamin.instructor.api.ParsingRequest;
 import com.fanyamin.instructor.api.ParsingResult;
 import com.fanyamin.instructor.llm.LlmClient;
+import com.fanyamin.instructor.prefill.PreExtractor;
 import com.fanyamin.instructor.streaming.StreamingParseEvent;
 import org.junit.jupiter.api.Test;
 import reactor.core.publisher.Flux;
@@ -179,6 +180,106 @@ class LazyFormInstructorStreamingTest {
         assertEquals(30, finalEvt.result().fields().get("age").value());
     }
 
+    @Test
+    void recordsAreEmittedAsSoonAsTheyClose() {
+        String schema = """
+            { "type": "object", "properties": { "title": { "type": "string" } }, "required": ["title"] }
+            """;
+        String json = """
+            { "records": [
+                { "fields": { "title": { "value": "Write report" } } },
+                { "fields": { "title": { "value": "Book room" } } }
+              ],
+              "more": false }
+            """;
+        List<String> chunks = chunk(json, 10);
+
+        LlmClient streamingClient = new LlmClient() {
+            @Override
+            public String chat(String prompt) {
+                return json;
+            }
+
+            @Override
+            public Flux<String> streamChat(String prompt) {
+                return Flux.fromIterable(chunks);
+            }
+
+            @Override
+            public boolean supportsStreaming() {
+                return true;
+            }
+        };
+
+        List<StreamingParseEvent> events = new LazyFormInstructor(streamingClient, 0)
+                .parseRecordsStreaming(new ParsingRequest(schema, "write the report, book a room", Map.of()))
+                .collectList().block();
+
+        assertNotNull(events);
+        int firstRecord = -1;
+        int lastChunk = -1;
+        for (int i = 0; i < events.size(); i++) {
+            if (events.get(i) instanceof StreamingParseEvent.RecordCompleted && firstRecord < 0) {
+                firstRecord = i;
+            }
+            if (events.get(i) instanceof StreamingParseEvent.RawChunk) {
+                lastChunk = i;
+            }
+        }
+        assertTrue(firstRecord >= 0 && firstRecord < lastChunk, "first record before the stream ends");
+
+        StreamingParseEvent.RecordsFinished finished = (StreamingParseEvent.RecordsFinished) events.get(events.size() - 1);
+        assertEquals(2, finished.result().records().size());
+        assertEquals("Book room", finished.result().records().get(1).fields().get("title").value());
+    }
+
+    @Test
+    void prefilledFieldsLeadTheStreamAndJoinTheFinalResult() {
+        String schema = """
+            { "type": "object",
+              "properties": {
+                "email": { "type": "string", "format": "email" },
+                "reason": { "type": "string" } },
+              "required": ["email", "reason"] }
+            """;
+        String json = "{\"fields\": {\"reason\": {\"value\": \"flu\", \"confidence\": 0.8}}, \"errors\": []}";
+        List<String> prompts = new ArrayList<>();
+
+        LlmClient streamingClient = new LlmClient() {
+            @Override
+            public String chat(String prompt) {
+                return json;
+            }
+
+            @Override
+            public Flux<String> streamChat(String prompt) {
+                prompts.add(prompt);
+                return Flux.fromIterable(chunk(json, 10));
+            }
+
+            @Override
+            public boolean supportsStreaming() {
+                return true;
+            }
+        };
+
+        List<StreamingParseEvent> events = LazyFormInstructor.builder(streamingClient).maxRetries(0)
+                .preExtraction(PreExtractor.defaults()).build()
+                .parseStreaming(new ParsingRequest(schema, "bob@example.com is out with the flu", Map.of()))
+                .collectList().block();
+
+        assertNotNull(events);
+        assertFalse(prompts.get(0).contains("\"format\""), "the prompt covers only the remaining field");
+        StreamingParseEvent.Snapshot first = (StreamingParseEvent.Snapshot) events.get(0);
+        assertEquals(0, first.attempt());
+        assertEquals("bob@example.com", first.partial().fields().get("email").value());
+
+        StreamingParseEvent.FinalResult finalEvt = (StreamingParseEvent.FinalResult) events.get(events.size() - 1);
+        assertTrue(finalEvt.schemaErrors().isEmpty());
+        assertEquals("bob@example.com", finalEvt.result().fields().get("email").value());
+        assertEquals("flu", finalEvt.result().fields().get("reason").value());
+    }
+
     private static List<String> chunk(String s, int size) {
         List<String> out = new ArrayList<>();
         int i = 0;
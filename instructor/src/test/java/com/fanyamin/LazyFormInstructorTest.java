@@ -2,11 +2,33 @@ package com.fanyamin;
 
 import org.junit.jupiter.api.Test;
 
+import com.fanyamin.instructor.api.Deadline;
+import com.fanyamin.instructor.api.FieldResult;
+import com.fanyamin.instructor.api.OutputProfile;
 import com.fanyamin.instructor.api.ParsingRequest;
 import com.fanyamin.instructor.api.ParsingResult;
+import com.fanyamin.instructor.api.RecordsResult;
+import com.fanyamin.instructor.api.TierStats;
+import com.fanyamin.instructor.api.ValidationError;
+import com.fanyamin.instructor.llm.ChatCompletion;
+import com.fanyamin.instructor.llm.ChatMessage;
+import com.fanyamin.instructor.llm.ChatOptions;
+import com.fanyamin.instructor.llm.LlmClient;
 import com.fanyamin.instructor.llm.MockLlmClient;
+import com.fanyamin.instructor.llm.ModelTier;
+import com.fanyamin.instructor.prefill.PreExtractor;
+import com.fanyamin.instructor.template.TemplateLearner;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -55,5 +77,518 @@ class LazyFormInstructorTest {
         assertEquals(25, result.fields().get("age").value());
         assertTrue(result.errors().isEmpty());
     }
-}
 
+    @Test
+    void testExpiredDeadlineSkipsLlmCall() {
+        MockLlmClient mockLlm = new MockLlmClient();
+        mockLlm.setMockResponse("{\"fields\": {}, \"errors\": []}");
+
+        LazyFormInstructor instructor = new LazyFormInstructor(mockLlm);
+        ParsingRequest request = new ParsingRequest("{\"type\": \"object\"}", "anything", Map.of())
+                .withDeadline(Deadline.in(Duration.ZERO));
+        ParsingResult result = instructor.parse(request);
+
+        assertNull(result.fields());
+        assertEquals(1, result.errors().size());
+        assertEquals(LazyFormInstructor.DEADLINE_ERROR_TYPE, result.errors().get(0).type());
+    }
+
+    @Test
+    void testRetriesResendOnlyTheLastFailedAnswer() {
+        List<List<ChatMessage>> calls = new ArrayList<>();
+        LlmClient llm = conversation(messages -> {
+            calls.add(List.copyOf(messages));
+            return "not json #" + calls.size();
+        });
+
+        LazyFormInstructor instructor = new LazyFormInstructor(llm, 3);
+        ParsingResult result = instructor.parse(new ParsingRequest("{\"type\": \"object\"}", "anything", Map.of()));
+
+        assertNull(result.fields());
+        assertEquals(4, calls.size());
+        List<ChatMessage> base = calls.get(0);
+        assertEquals(2, base.size());
+        for (int i = 1; i < calls.size(); i++) {
+            List<ChatMessage> retry = calls.get(i);
+            assertEquals(4, retry.size());
+            assertEquals(base, retry.subList(0, 2));
+            assertEquals(ChatMessage.assistant("not json #" + i), retry.get(2));
+            assertEquals(ChatMessage.Role.USER, retry.get(3).role());
+        }
+    }
+
+    @Test
+    void testLeanProfileMarksOmittedPartsAndExplainFillsThemIn() {
+        List<List<ChatMessage>> calls = new ArrayList<>();
+        LlmClient llm = conversation(messages -> {
+            calls.add(List.copyOf(messages));
+            if (calls.size() == 1) {
+                return "{\"fields\": {\"name\": {\"value\": \"Alice\"}, \"age\": {\"value\": 25}}, \"errors\": []}";
+            }
+            return """
+                {"fields": {"name": {"value": "Alicia", "confidence": 0.8, "reasoning": "Named in the input",
+                                      "alternatives": ["Alicia"]}}}
+                """;
+        });
+
+        LazyFormInstructor instructor = new LazyFormInstructor(llm);
+        ParsingRequest request = new ParsingRequest("{\"type\": \"object\"}", "Alice is 25", Map.of())
+                .withOutputProfile(OutputProfile.VALUES);
+        ParsingResult result = instructor.parse(request);
+
+        assertFalse(calls.get(0).get(0).content().contains("\"reasoning\""));
+        assertTrue(result.fields().get("name").isOmitted(FieldResult.REASONING));
+        assertTrue(result.fields().get("age").isOmitted(FieldResult.CONFIDENCE));
+
+        ParsingResult explained = instructor.explainFields(request, result, List.of("name"));
+
+        List<ChatMessage> followUp = calls.get(1);
+        assertEquals(calls.get(0), followUp.subList(0, 2));
+        assertEquals(ChatMessage.Role.ASSISTANT, followUp.get(2).role());
+        FieldResult name = explained.fields().get("name");
+        assertEquals("Alice", name.value());
+        assertEquals(0.8, name.confidence());
+        assertEquals("Named in the input", name.reasoning());
+        assertFalse(name.isOmitted(FieldResult.REASONING));
+        assertTrue(explained.fields().get("age").isOmitted(FieldResult.REASONING));
+    }
+
+    @Test
+    void testNearValidJsonIsRepairedWithoutRetry() {
+        List<List<ChatMessage>> calls = new ArrayList<>();
+        LlmClient llm = conversation(messages -> {
+            calls.add(messages);
+            return """
+                Sure! Here is the form:
+                ```json
+                {'fields': {'name': {'value': 'Alice', 'confidence': 0.9,},},
+                 "errors": [
+                ```""";
+        });
+
+        LazyFormInstructor instructor = new LazyFormInstructor(llm, 3);
+        ParsingResult result = instructor.parse(new ParsingRequest(
+                "{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}}}", "Alice", Map.of()));
+
+        assertEquals(1, calls.size());
+        assertEquals("Alice", result.fields().get("name").value());
+        assertTrue(result.metadata().repaired());
+        assertEquals(1, result.metadata().attempts());
+        assertEquals(1, instructor.getRepairedResponseCount());
+        assertEquals(1, instructor.getRetriesSavedByRepair());
+    }
+
+    @Test
+    void testAliasedKeysAreExpandedBeforeValidation() {
+        List<List<ChatMessage>> calls = new ArrayList<>();
+        LlmClient llm = conversation(messages -> {
+            calls.add(messages);
+            return "{\"fields\": {\"lt\": {\"v\": \"sick\", \"c\": 0.9}, \"sd\": {\"v\": 2}}, \"errors\": []}";
+        });
+
+        LazyFormInstructor instructor = LazyFormInstructor.builder(llm).aliasKeys(true).build();
+        ParsingResult result = instructor.parse(new ParsingRequest("""
+            {"type": "object",
+             "properties": {"leave_type": {"type": "string"}, "sick_days": {"type": "integer", "minimum": 1}},
+             "required": ["leave_type", "sick_days"]}
+            """, "Off sick for two days", Map.of()).withOutputProfile(OutputProfile.VALUES_AND_CONFIDENCE));
+
+        String instructions = calls.get(0).get(0).content();
+        assertTrue(instructions.contains("lt = leave_type"), instructions);
+        assertTrue(instructions.contains("\"c\": <0.0-1.0>"), instructions);
+        assertEquals(1, calls.size());
+        assertTrue(result.errors().isEmpty(), String.valueOf(result.errors()));
+        assertEquals("sick", result.fields().get("leave_type").value());
+        assertEquals(0.9, result.fields().get("leave_type").confidence());
+        assertEquals(2, result.fields().get("sick_days").value());
+    }
+
+    @Test
+    void testOutputBudgetFollowsSchemaAndOversizedInputIsRejected() {
+        List<ChatOptions> calls = new ArrayList<>();
+        LlmClient llm = conversation((messages, options) -> {
+            calls.add(options);
+            return "{\"fields\": {\"name\": {\"value\": \"Alice\"}}, \"errors\": []}";
+        });
+        String schema = "{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}}}";
+        LazyFormInstructor instructor = LazyFormInstructor.builder(llm).maxInputTokens(50).build();
+
+        instructor.parse(new ParsingRequest(schema, "Alice", Map.of()).withOutputProfile(OutputProfile.VALUES));
+        ParsingResult rejected = instructor.parse(new ParsingRequest(schema, "Alice ".repeat(100), Map.of()));
+
+        assertEquals(1, calls.size());
+        assertNotNull(calls.get(0).maxTokens());
+        assertTrue(calls.get(0).maxTokens() < 1024, "max_tokens: " + calls.get(0).maxTokens());
+        assertNull(rejected.fields());
+        assertEquals(LazyFormInstructor.INPUT_TOO_LARGE_ERROR_TYPE, rejected.errors().get(0).type());
+    }
+
+    @Test
+    void testOnlyFailingFieldsAreReasked() {
+        StringBuilder properties = new StringBuilder();
+        StringBuilder answer = new StringBuilder();
+        for (int i = 1; i < 30; i++) {
+            properties.append("\"field").append(i).append("\": {\"type\": \"string\"}, ");
+            answer.append("\"field").append(i).append("\": {\"value\": \"v").append(i).append("\"}, ");
+        }
+        String schema = "{\"type\": \"object\", \"properties\": {" + properties
+                + "\"priority\": {\"type\": \"string\", \"enum\": [\"low\", \"high\"]}}}";
+        List<List<ChatMessage>> calls = new ArrayList<>();
+        List<ChatOptions> options = new ArrayList<>();
+        LlmClient llm = conversation((messages, chatOptions) -> {
+            calls.add(List.copyOf(messages));
+            options.add(chatOptions);
+            if (calls.size() == 1) {
+                return "{\"fields\": {" + answer + "\"priority\": {\"value\": \"urgent\"}}, \"errors\": []}";
+            }
+            return "{\"fields\": {\"priority\": {\"value\": \"high\"}}, \"errors\": []}";
+        });
+
+        LazyFormInstructor instructor = new LazyFormInstructor(llm, 3);
+        ParsingResult result = instructor.parse(new ParsingRequest(schema, "all fields, urgent", Map.of()));
+
+        assertEquals(2, calls.size());
+        List<ChatMessage> retry = calls.get(1);
+        assertTrue(retry.get(0).content().contains("\"priority\""));
+        assertFalse(retry.get(0).content().contains("\"field1\""));
+        assertEquals(ChatMessage.Role.ASSISTANT, retry.get(2).role());
+        assertFalse(retry.get(2).content().contains("field1"));
+        assertTrue(retry.get(3).content().contains("$.priority"), retry.get(3).content());
+        assertTrue(options.get(1).maxTokens() < options.get(0).maxTokens());
+
+        assertTrue(result.errors().isEmpty(), String.valueOf(result.errors()));
+        assertEquals(30, result.fields().size());
+        assertEquals("high", result.fields().get("priority").value());
+        assertEquals("v7", result.fields().get("field7").value());
+        assertEquals(2, result.metadata().attempts());
+        assertEquals(1, instructor.getTargetedRetryCount());
+    }
+
+    @Test
+    void testFirstValidCandidateWinsWithoutRetry() {
+        List<Integer> requested = new ArrayList<>();
+        LlmClient llm = new LlmClient() {
+            @Override
+            public String chat(String prompt) {
+                throw new AssertionError("candidates expected");
+            }
+
+            @Override
+            public Flux<ChatCompletion> completeCandidates(List<ChatMessage> messages, ChatOptions options, int n) {
+                requested.add(n);
+                return Flux.fromIterable(List.of(
+                        ChatCompletion.of("{\"fields\": {\"priority\": {\"value\": \"urgent\", \"confidence\": 0.9}}}"),
+                        ChatCompletion.of("{\"fields\": {\"priority\": {\"value\": \"high\", \"confidence\": 0.7}}}"),
+                        ChatCompletion.of("{\"fields\": {\"priority\": {\"value\": \"low\", \"confidence\": 0.8}}}")));
+            }
+        };
+
+        LazyFormInstructor instructor = LazyFormInstructor.builder(llm).candidates(3).build();
+        ParsingResult result = instructor.parse(new ParsingRequest(
+                "{\"type\": \"object\", \"properties\": {\"priority\": {\"enum\": [\"low\", \"high\"]}}}",
+                "high priority", Map.of()));
+
+        assertEquals(List.of(3), requested);
+        assertEquals("high", result.fields().get("priority").value());
+        assertEquals(1, result.metadata().attempts());
+    }
+
+    @Test
+    void testBestCandidateWithoutValidOneIsTheMostConfident() {
+        ParsingResult unsure = new ParsingResult(Map.of("a", new FieldResult("x", 0.4, null, List.of())), List.of());
+        ParsingResult sure = new ParsingResult(Map.of("a", new FieldResult("y", 0.9, null, List.of())), List.of());
+        List<ValidationError> errors = List.of(new ValidationError("$.a", "bad", "enum"));
+        LazyFormInstructor.Evaluation broken = new LazyFormInstructor.Evaluation("{", null, false, errors, null);
+        LazyFormInstructor.Evaluation low = new LazyFormInstructor.Evaluation("low", unsure, false, errors, null);
+        LazyFormInstructor.Evaluation high = new LazyFormInstructor.Evaluation("high", sure, false, errors, null);
+        LazyFormInstructor.Evaluation valid = new LazyFormInstructor.Evaluation("valid", unsure, false, List.of(), null);
+
+        assertSame(high, LazyFormInstructor.best(List.of(broken, low, high)));
+        assertSame(valid, LazyFormInstructor.best(List.of(high, valid)));
+        assertSame(broken, LazyFormInstructor.best(List.of(broken)));
+    }
+
+    @Test
+    void testCascadeEscalatesOnInvalidOrUnsureAnswers() {
+        String schema = "{\"type\": \"object\", \"properties\": {\"priority\": {\"enum\": [\"low\", \"high\"]}}, "
+                + "\"required\": [\"priority\"]}";
+        List<String> calls = new ArrayList<>();
+
+        LazyFormInstructor instructor = LazyFormInstructor.builder(tier("large", calls, "high", 0.6))
+                .cascade(new ModelTier("small", tier("small", calls, "urgent", 0.9)),
+                        new ModelTier("medium", tier("medium", calls, "high", 0.5)))
+                .minConfidence(0.7)
+                .build();
+        ParsingResult escalated = instructor.parse(new ParsingRequest(schema, "urgent!", Map.of()));
+
+        assertEquals(List.of("small", "medium", "large"), calls);
+        assertEquals("high", escalated.fields().get("priority").value());
+        assertEquals(3, escalated.metadata().attempts());
+        assertEquals(LazyFormInstructor.DEFAULT_TIER_NAME, escalated.metadata().tier());
+
+        calls.clear();
+        LazyFormInstructor direct = LazyFormInstructor.builder(tier("large", calls, "high", 0.6))
+                .cascade(new ModelTier("small", tier("small", calls, "low", 0.95)))
+                .build();
+        ParsingResult cheap = direct.parse(new ParsingRequest(schema, "whenever", Map.of()));
+
+        assertEquals(List.of("small"), calls);
+        assertEquals("low", cheap.fields().get("priority").value());
+        assertEquals("small", cheap.metadata().tier());
+
+        List<TierStats> stats = instructor.getTierStats();
+        assertEquals(List.of("small", "medium", LazyFormInstructor.DEFAULT_TIER_NAME),
+                stats.stream().map(TierStats::tier).toList());
+        assertEquals(0.0, stats.get(0).acceptanceRate());
+        assertEquals(1, stats.get(1).requests());
+        assertEquals(1.0, stats.get(2).acceptanceRate());
+        assertEquals(1.0, direct.getTierStats().get(0).acceptanceRate());
+        assertEquals(0, direct.getTierStats().get(1).requests());
+    }
+
+    @Test
+    void testLargeFormIsExtractedInConcurrentGroups() {
+        StringBuilder properties = new StringBuilder();
+        for (int i = 1; i <= 6; i++) {
+            properties.append(i == 1 ? "" : ", ").append("\"f").append(i).append("\": {\"type\": \"string\"}");
+        }
+        String schema = "{\"type\": \"object\", \"properties\": {" + properties + "}, \"required\": [\"f1\", \"f6\"]}";
+        List<List<String>> asked = java.util.Collections.synchronizedList(new ArrayList<>());
+        LlmClient llm = conversation(messages -> {
+            List<String> fields = new ArrayList<>();
+            StringBuilder answer = new StringBuilder();
+            for (int i = 1; i <= 6; i++) {
+                if (messages.get(0).content().contains("\"f" + i + "\"")) {
+                    fields.add("f" + i);
+                    answer.append(answer.isEmpty() ? "" : ", ")
+                            .append("\"f").append(i).append("\": {\"value\": \"v").append(i).append("\"}");
+                }
+            }
+            asked.add(fields);
+            return "{\"fields\": {" + answer + "}}";
+        });
+
+        LazyFormInstructor instructor = LazyFormInstructor.builder(llm).fieldGroupSize(3).build();
+        ParsingResult result = instructor.parse(new ParsingRequest(schema, "everything", Map.of()));
+
+        assertEquals(2, asked.size());
+        assertTrue(asked.contains(List.of("f1", "f2", "f3")), String.valueOf(asked));
+        assertTrue(asked.contains(List.of("f4", "f5", "f6")), String.valueOf(asked));
+        assertTrue(result.errors().isEmpty(), String.valueOf(result.errors()));
+        assertEquals(List.of("f1", "f2", "f3", "f4", "f5", "f6"), List.copyOf(result.fields().keySet()));
+        assertEquals(1, result.metadata().attempts());
+    }
+
+    @Test
+    void testRecordsAreContinuedWhenTheOutputIsCutOff() {
+        String schema = "{\"type\": \"object\", \"properties\": {\"title\": {\"type\": \"string\"}, "
+                + "\"priority\": {\"enum\": [\"low\", \"high\"]}}, \"required\": [\"title\"]}";
+        List<List<ChatMessage>> calls = new ArrayList<>();
+        LlmClient llm = new LlmClient() {
+            @Override
+            public String chat(String prompt) {
+                throw new AssertionError("conversation API expected");
+            }
+
+            @Override
+            public ChatCompletion complete(List<ChatMessage> messages, ChatOptions options) {
+                calls.add(messages);
+                if (calls.size() == 1) {
+                    // Hit the output limit in the middle of the third record
+                    return new ChatCompletion("{\"records\": [{\"fields\": {\"title\": {\"value\": \"A\"}}}, "
+                            + "{\"fields\": {\"title\": {\"value\": \"B\"}, \"priority\": {\"value\": \"urgent\"}}}, "
+                            + "{\"fields\": {\"title\": {\"va", "length", null);
+                }
+                return ChatCompletion.of("{\"records\": [{\"fields\": {\"title\": {\"value\": \"C\"}}}], \"more\": false}");
+            }
+        };
+
+        RecordsResult result = LazyFormInstructor.builder(llm).build()
+                .parseRecords(new ParsingRequest(schema, "tasks: A, B (urgent), C", Map.of()));
+
+        assertEquals(2, calls.size());
+        assertTrue(calls.get(0).get(0).content().contains("\"records\""));
+        String continuation = calls.get(1).get(1).content();
+        assertTrue(continuation.contains("Items 1 to 2") && continuation.contains("starting with item 3"), continuation);
+        assertTrue(result.errors().isEmpty());
+        assertEquals(3, result.records().size());
+        assertEquals("A", result.records().get(0).fields().get("title").value());
+        assertNull(result.records().get(1).fields(), "invalid priority");
+        assertEquals("$.priority", result.records().get(1).errors().get(0).path());
+        assertEquals("C", result.records().get(2).fields().get("title").value());
+        assertEquals(2, result.metadata().attempts());
+    }
+
+    @Test
+    void testRepeatFormatIsExtractedLocallyOnceLearned() throws InterruptedException {
+        String schema = "{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}, "
+                + "\"days\": {\"type\": \"integer\", \"maximum\": 30}, \"type\": {\"enum\": [\"sick\", \"annual\"]}}, "
+                + "\"required\": [\"name\", \"days\", \"type\"]}";
+        Pattern notice = Pattern.compile("notice: (.+?) requested (\\w+) leave for (\\d+) days");
+        AtomicInteger parseCalls = new AtomicInteger();
+        AtomicInteger inductionCalls = new AtomicInteger();
+        LlmClient llm = conversation((messages, options) -> {
+            if (messages.get(0).content().contains("extraction programs")) {
+                assertNotNull(options.timeout(), "the background call is bounded");
+                inductionCalls.incrementAndGet();
+                return """
+                    {"fields": {"name": {"regex": "notice: (.+?) requested", "group": 1},
+                                "type": {"regex": "requested (\\\\w+) leave"},
+                                "days": {"regex": "for (\\\\d+) days"}}}""";
+            }
+            parseCalls.incrementAndGet();
+            Matcher m = notice.matcher(messages.get(1).content());
+            assertTrue(m.find());
+            return "{\"fields\": {\"name\": {\"value\": \"" + m.group(1) + "\", \"confidence\": 0.9}, "
+                    + "\"type\": {\"value\": \"" + m.group(2) + "\", \"confidence\": 0.8}, "
+                    + "\"days\": {\"value\": " + m.group(3) + ", \"confidence\": 0.9}}}";
+        });
+        TemplateLearner learner = new TemplateLearner();
+        LazyFormInstructor instructor = LazyFormInstructor.builder(llm).templateInduction(learner).build();
+
+        for (String input : List.of("HR notice: Alice requested sick leave for 3 days.",
+                "HR notice: Bob Stone requested sick leave for 12 days.",
+                "HR notice: Carol requested sick leave for 1 days.")) {
+            assertNotNull(instructor.parse(new ParsingRequest(schema, input, Map.of())).fields());
+        }
+        // The program is learned in the background
+        for (int i = 0; i < 100 && learner.getLearnedTemplateCount() == 0; i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, inductionCalls.get());
+        assertEquals(1, learner.getLearnedTemplateCount());
+
+        ParsingResult local = instructor.parse(
+                new ParsingRequest(schema, "HR notice: Dave Lee requested sick leave for 5 days.", Map.of()));
+        assertEquals(3, parseCalls.get(), "no LLM call for a learned template");
+        assertEquals("Dave Lee", local.fields().get("name").value());
+        assertEquals(5, local.fields().get("days").value());
+        assertEquals("sick", local.fields().get("type").value());
+        assertEquals(LazyFormInstructor.TEMPLATE_CONFIDENCE, local.fields().get("name").confidence());
+        assertEquals(0, local.metadata().attempts());
+
+        // 90 is above the maximum: the local result fails validation and goes to the LLM
+        ParsingResult fallback = instructor.parse(
+                new ParsingRequest(schema, "HR notice: Eve requested sick leave for 90 days.", Map.of()));
+        assertTrue(parseCalls.get() > 3);
+        assertNull(fallback.fields());
+        assertEquals(1, learner.getFallbackCount());
+        assertEquals(0, learner.getLearnedTemplateCount(), "the template is learned again");
+
+        // Once closed, a confirmed template no longer starts a background call
+        instructor.close();
+        for (String input : List.of("HR notice: Frank requested sick leave for 2 days.",
+                "HR notice: Gina requested sick leave for 4 days.",
+                "HR notice: Hal requested sick leave for 6 days.")) {
+            assertNotNull(instructor.parse(new ParsingRequest(schema, input, Map.of())).fields());
+        }
+        Thread.sleep(200);
+        assertEquals(1, inductionCalls.get());
+    }
+
+    @Test
+    void testPrefilledFieldsAreLeftOutOfThePrompt() {
+        String schema = "{\"type\": \"object\", \"properties\": {\"email\": {\"type\": \"string\", \"format\": \"email\"}, "
+                + "\"type\": {\"enum\": [\"sick\", \"annual\"]}, \"days\": {\"type\": \"integer\", \"minimum\": 1, \"maximum\": 30}, "
+                + "\"reason\": {\"type\": \"string\"}}, \"required\": [\"email\", \"type\", \"days\", \"reason\"]}";
+        List<List<ChatMessage>> calls = new ArrayList<>();
+        LlmClient llm = conversation(messages -> {
+            calls.add(messages);
+            return "{\"fields\": {\"reason\": {\"value\": \"flu\", \"confidence\": 0.8}}, \"errors\": []}";
+        });
+        LazyFormInstructor instructor = LazyFormInstructor.builder(llm).preExtraction(PreExtractor.defaults()).build();
+
+        ParsingResult result = instructor.parse(
+                new ParsingRequest(schema, "bob@example.com needs 2 days of sick leave, he has the flu", Map.of()));
+
+        assertEquals(1, calls.size());
+        String instructions = calls.get(0).get(0).content();
+        assertTrue(instructions.contains("reason") && !instructions.contains("email"), instructions);
+        assertTrue(result.errors().isEmpty());
+        assertEquals(List.of("email", "type", "days", "reason"), List.copyOf(result.fields().keySet()));
+        assertEquals("bob@example.com", result.fields().get("email").value());
+        assertEquals(0.98, result.fields().get("email").confidence());
+        assertEquals("sick", result.fields().get("type").value());
+        assertEquals(2, result.fields().get("days").value());
+        assertEquals("flu", result.fields().get("reason").value());
+
+        // Every required field found locally: no LLM call at all
+        String optionalReason = schema.replace(", \"reason\"]", "]");
+        ParsingResult local = instructor.parse(
+                new ParsingRequest(optionalReason, "bob@example.com: 2 days, annual leave", Map.of()));
+        assertEquals(1, calls.size());
+        assertEquals(0, local.metadata().attempts());
+        assertEquals("annual", local.fields().get("type").value());
+        assertNull(local.fields().get("reason"));
+    }
+
+    @Test
+    void testResolvedDatesAreHintedAndPrefilled() {
+        String schema = "{\"type\": \"object\", \"properties\": {\"start_date\": {\"type\": \"string\", \"format\": \"date\"}, "
+                + "\"end_date\": {\"type\": \"string\", \"format\": \"date\"}, \"reason\": {\"type\": \"string\"}}, "
+                + "\"required\": [\"start_date\", \"end_date\", \"reason\"]}";
+        List<List<ChatMessage>> calls = new ArrayList<>();
+        LlmClient llm = conversation(messages -> {
+            calls.add(messages);
+            String dates = messages.get(0).content().contains("start_date")
+                    ? "\"start_date\": {\"value\": \"2023-10-30\", \"confidence\": 0.9}, "
+                    + "\"end_date\": {\"value\": \"2023-11-01\", \"confidence\": 0.9}, " : "";
+            return "{\"fields\": {" + dates + "\"reason\": {\"value\": \"son is sick\", \"confidence\": 0.9}}, \"errors\": []}";
+        });
+        ParsingRequest request = new ParsingRequest(schema, "I need leave from next Monday to Wednesday, my son is sick",
+                Map.of("now", "2023-10-27T10:00:00Z"));
+
+        LazyFormInstructor.builder(llm).temporalHints(true).build().parse(request);
+        String input = calls.get(0).get(calls.get(0).size() - 1).content();
+        assertTrue(input.contains("\"" + LazyFormInstructor.RESOLVED_DATES_CONTEXT_KEY
+                + "\":{\"next Monday to Wednesday\":\"2023-10-30 (Monday) to 2023-11-01 (Wednesday)\"}"), input);
+
+        LazyFormInstructor prefilling = LazyFormInstructor.builder(llm).temporalHints(true)
+                .preExtraction(PreExtractor.defaults()).build();
+        ParsingResult result = prefilling.parse(request);
+        assertEquals(2, calls.size());
+        assertTrue(calls.get(1).get(0).content().contains("reason") && !calls.get(1).get(0).content().contains("start_date"));
+        assertTrue(result.errors().isEmpty(), String.valueOf(result.errors()));
+        assertEquals("2023-10-30", result.fields().get("start_date").value());
+        assertEquals("2023-11-01", result.fields().get("end_date").value());
+        assertEquals("son is sick", result.fields().get("reason").value());
+
+        // Explaining continues that same conversation: hinted, and without the prefilled dates
+        ParsingResult explained = prefilling.explainFields(request, result, List.of("reason", "start_date"));
+        assertEquals(3, calls.size());
+        assertEquals(calls.get(1).subList(0, 2), calls.get(2).subList(0, 2));
+        assertEquals(result.fields().get("start_date"), explained.fields().get("start_date"));
+
+        // Without the option the context is passed as given
+        LazyFormInstructor.builder(llm).build().parse(request);
+        assertFalse(calls.get(3).get(calls.get(3).size() - 1).content().contains(LazyFormInstructor.RESOLVED_DATES_CONTEXT_KEY));
+    }
+
+    /**
+     * Client that only accepts the conversation API and answers every call with {@code answer}.
+     */
+    private static LlmClient conversation(Function<List<ChatMessage>, String> answer) {
+        return conversation((messages, options) -> answer.apply(messages));
+    }
+
+    private static LlmClient conversation(BiFunction<List<ChatMessage>, ChatOptions, String> answer) {
+        return new LlmClient() {
+            @Override
+            public String chat(String prompt) {
+                throw new AssertionError("conversation API expected");
+            }
+
+            @Override
+            public String chat(List<ChatMessage> messages, ChatOptions options) {
+                return answer.apply(messages, options);
+            }
+        };
+    }
+
+    private static LlmClient tier(String name, List<String> calls, String priority, double confidence) {
+        return conversation(messages -> {
+            calls.add(name);
+            return "{\"fields\": {\"priority\": {\"value\": \"" + priority + "\", \"confidence\": " + confidence + "}}}";
+        });
+    }
+}
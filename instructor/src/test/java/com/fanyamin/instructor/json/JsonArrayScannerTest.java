@@ -0,0 +1,37 @@
+package com.fanyamin.instructor.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonArrayScannerTest {
+
+    @Test
+    void elementsAreReturnedAsSoonAsTheyClose() {
+        JsonArrayScanner scanner = new JsonArrayScanner("records");
+
+        assertEquals(List.of(), scanner.feed("{\"note\": \"records: [{ignored}]\", \"records\": [{\"fields\": {\"a\": "));
+        assertEquals(List.of("{\"fields\": {\"a\": {\"value\": \"x}\\\"\"}}}"),
+                scanner.feed("{\"value\": \"x}\\\"\"}}}, {\"fields\""));
+        assertEquals(List.of("{\"fields\": {}}"), scanner.feed(": {}}], \"more\": false, \"other\": [{\"b\": 1}]}"));
+        assertEquals(2, scanner.elementCount());
+    }
+
+    @Test
+    void anyChunkingGivesTheSameElements() {
+        String response = "{\"records\": [{\"fields\": {\"t\": {\"value\": \"[a]\"}}}, {\"fields\": {\"t\": {\"value\": 2}}}], "
+                + "\"more\": true}";
+        for (int size = 1; size <= 7; size++) {
+            JsonArrayScanner scanner = new JsonArrayScanner("records");
+            List<String> elements = new ArrayList<>();
+            for (int i = 0; i < response.length(); i += size) {
+                elements.addAll(scanner.feed(response.substring(i, Math.min(response.length(), i + size))));
+            }
+            assertEquals(List.of("{\"fields\": {\"t\": {\"value\": \"[a]\"}}}", "{\"fields\": {\"t\": {\"value\": 2}}}"),
+                    elements, "chunk size " + size);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.fanyamin.instructor.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonRepairTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static void assertRepairsTo(String expected, String broken) throws Exception {
+        String repaired = JsonRepair.repair(broken);
+        assertEquals(MAPPER.readTree(expected), MAPPER.readTree(repaired), "repaired: " + repaired);
+    }
+
+    @Test
+    void validJsonIsReturnedUnchanged() {
+        String json = "{\"a\": [1, 2.5e3, true, null], \"b\": {\"c\": \"x, y}\"}}";
+        assertSame(json, JsonRepair.repair(json));
+        assertSame("no json here", JsonRepair.repair("no json here"));
+    }
+
+    @Test
+    void surroundingTextAndFencesAreDropped() throws Exception {
+        assertRepairsTo("{\"a\": 1}", "Here is the {requested} JSON:\n```json\n{\"a\": 1}\n```\nLet me know!");
+    }
+
+    @Test
+    void trailingAndDuplicateCommasAreRemoved() throws Exception {
+        assertRepairsTo("{\"a\": [1, 2], \"b\": 3}", "{\"a\": [1, 2,], , \"b\": 3,}");
+    }
+
+    @Test
+    void quotesAreNormalized() throws Exception {
+        assertRepairsTo("{\"name\": \"O'Brien \\\"Bob\\\"\", \"city\": \"Paris\"}",
+                "{'name': 'O\\'Brien \"Bob\"', “city”: “Paris”}");
+        assertRepairsTo("{\"a\": true, \"b\": null, \"c\": false}", "{a: True, b: None, c: False}");
+    }
+
+    @Test
+    void truncatedOutputIsClosed() throws Exception {
+        assertRepairsTo("{\"fields\": {\"a\": {\"value\": \"hal\"}}}", "{\"fields\": {\"a\": {\"value\": \"hal");
+        assertRepairsTo("{\"fields\": {\"a\": null}}", "{\"fields\": {\"a\": ");
+        assertRepairsTo("{\"fields\": {\"a\": 1, \"b\": null}}", "{\"fields\": {\"a\": 1, \"b\"");
+        assertRepairsTo("{\"errors\": []}", "{\"errors\": [");
+    }
+
+    @Test
+    void controlCharactersInStringsAreEscaped() throws Exception {
+        assertRepairsTo("{\"a\": \"line1\\nline2\"}", "{\"a\": \"line1\nline2\"}");
+    }
+
+    @Test
+    void mismatchedBracketsAreBalanced() throws Exception {
+        assertRepairsTo("{\"a\": [1, {\"b\": 2}]}", "{\"a\": [1, {\"b\": 2]}");
+        assertRepairsTo("{\"a\": 1}", "{\"a\": 1}}}");
+    }
+}
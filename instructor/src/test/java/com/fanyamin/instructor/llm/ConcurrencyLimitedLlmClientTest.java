@@ -0,0 +1,51 @@
+package com.fanyamin.instructor.llm;
+
+import com.fanyamin.instructor.exception.DeadlineExceededException;
+import com.fanyamin.instructor.exception.LlmApiException;
+import com.fanyamin.instructor.resilience.AdaptiveConcurrencyLimiter;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitedLlmClientTest {
+
+    @Test
+    void streamThatFailsBeforeStartingReleasesItsSlot() {
+        LlmClient failing = new LlmClient() {
+            @Override
+            public String chat(String prompt) {
+                return "{}";
+            }
+
+            @Override
+            public Flux<String> streamChat(String prompt, ChatOptions options) {
+                throw new LlmApiException("Too many requests", 429);
+            }
+        };
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(4)
+                .backoffRatio(0.5)
+                .build();
+        ConcurrencyLimitedLlmClient client = new ConcurrencyLimitedLlmClient(failing, limiter);
+
+        assertThrows(LlmApiException.class, () -> client.streamChat("prompt").blockLast(Duration.ofSeconds(5)));
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(2, limiter.getLimit(), "a 429 before the stream starts still counts as overload");
+    }
+
+    @Test
+    void callWithNoTimeLeftIsADeadlineNotBusy() {
+        LlmClient model = prompt -> "{}";
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder().initialLimit(4).build();
+        ConcurrencyLimitedLlmClient client = new ConcurrencyLimitedLlmClient(model, limiter);
+
+        assertThrows(DeadlineExceededException.class,
+                () -> client.chat("prompt", ChatOptions.defaults().withTimeout(Duration.ZERO)));
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getRejectedCount());
+        assertEquals("{}", client.chat("prompt", ChatOptions.defaults().withTimeout(Duration.ofSeconds(1))));
+    }
+}
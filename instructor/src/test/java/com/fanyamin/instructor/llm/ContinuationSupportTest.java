@@ -0,0 +1,116 @@
+package com.fanyamin.instructor.llm;
+
+import com.fanyamin.instructor.exception.IncompleteOutputException;
+import com.fanyamin.instructor.resilience.RateLimitScheduler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContinuationSupportTest {
+
+    private static final String JSON = "{\"fields\": {\"reason\": {\"value\": \"family trip to the coast\"}}, \"errors\": []}";
+
+    @Test
+    void repeatedTailIsRemovedWhenStitching() {
+        String partial = JSON.substring(0, 40);
+        String continuation = partial.substring(30) + JSON.substring(40);
+
+        assertEquals(JSON, ContinuationSupport.stitch(partial, continuation));
+        assertEquals(JSON, ContinuationSupport.stitch(partial, JSON.substring(40)));
+    }
+
+    @Test
+    void shortOverlapIsKeptAsLegitimateRepetition() {
+        assertEquals(0, ContinuationSupport.overlap("{\"a\": {\"b\": 1}", "}}"));
+        assertEquals("{\"a\": {\"b\": 1}}}", ContinuationSupport.stitch("{\"a\": {\"b\": 1}", "}}"));
+    }
+
+    @Test
+    void stitcherMatchesStitchForEverySplit() {
+        String partial = JSON.substring(0, 50);
+        String continuation = partial.substring(35) + JSON.substring(50);
+        for (int i = 0; i <= continuation.length(); i++) {
+            ContinuationSupport.Stitcher stitcher = new ContinuationSupport.Stitcher(partial);
+            String out = stitcher.accept(continuation.substring(0, i)) + stitcher.accept(continuation.substring(i))
+                    + stitcher.finish();
+            assertEquals(JSON, partial + out, "split at " + i);
+        }
+    }
+
+    @Test
+    void completeContinuesTruncatedAnswer() throws Exception {
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        String[] pieces = {JSON.substring(0, 45), JSON.substring(30)};
+        AtomicInteger call = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            requests.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            int n = call.getAndIncrement();
+            String content = pieces[n].replace("\"", "\\\"");
+            String body = "{\"choices\": [{\"message\": {\"content\": \"" + content + "\"}, \"finish_reason\": \""
+                    + (n == 0 ? "length" : "stop") + "\"}],"
+                    + " \"usage\": {\"prompt_tokens\": 10, \"completion_tokens\": 5, \"total_tokens\": 15}}";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        try {
+            OpenAiLlmClient client = new OpenAiLlmClient("test-key", "test-model",
+                    "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions",
+                    0.0, 16, false, false, new RateLimitScheduler());
+
+            ChatCompletion completion = client.complete(List.of(ChatMessage.user("Parse this")), ChatOptions.defaults());
+
+            assertEquals(JSON, completion.content());
+            assertEquals("stop", completion.finishReason());
+            assertEquals(10, completion.usage().completionTokens());
+            assertEquals(2, requests.size());
+            assertTrue(requests.get(1).contains("cut off by the output limit"), requests.get(1));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void completeGivesUpWithPartialAnswerAfterMaxContinuations() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        AtomicInteger calls = new AtomicInteger();
+        server.createContext("/v1/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            calls.incrementAndGet();
+            byte[] bytes = "{\"choices\": [{\"message\": {\"content\": \"ab\"}, \"finish_reason\": \"length\"}]}"
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        try {
+            OpenAiLlmClient client = new OpenAiLlmClient("test-key", "test-model",
+                    "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions",
+                    0.0, 16, false, false, new RateLimitScheduler());
+
+            IncompleteOutputException e = assertThrows(IncompleteOutputException.class,
+                    () -> client.complete(List.of(ChatMessage.user("Parse this")), ChatOptions.defaults()));
+
+            assertEquals("ab".repeat(ContinuationSupport.MAX_CONTINUATIONS + 1), e.getPartialResponse());
+            assertEquals(ContinuationSupport.MAX_CONTINUATIONS + 1, calls.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.fanyamin.instructor.llm;
+
+import com.fanyamin.instructor.exception.LlmApiException;
+import com.fanyamin.instructor.resilience.HedgePolicy;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgingLlmClientTest {
+
+    private static HedgePolicy policy() {
+        return HedgePolicy.builder()
+                .initialDelay(Duration.ofSeconds(2))
+                .minDelay(Duration.ofMillis(50))
+                .windowSize(10)
+                .minSamples(5)
+                .build();
+    }
+
+    @Test
+    void fastErrorsDoNotShrinkTheHedgeDelay() {
+        LlmClient overloaded = new LlmClient() {
+            @Override
+            public String chat(String prompt) {
+                throw new LlmApiException("Too many requests", 429);
+            }
+
+            @Override
+            public Flux<String> streamChat(String prompt, ChatOptions options) {
+                return Flux.error(new LlmApiException("Too many requests", 429));
+            }
+        };
+        HedgingLlmClient client = new HedgingLlmClient(overloaded, overloaded, policy());
+
+        for (int i = 0; i < 20; i++) {
+            assertThrows(LlmApiException.class, () -> client.chat("prompt"));
+            assertThrows(LlmApiException.class, () -> client.streamChat("prompt").blockLast(Duration.ofSeconds(5)));
+        }
+
+        assertEquals(Duration.ofSeconds(2), client.getPolicy().hedgeDelay(HedgePolicy.Stage.RESPONSE));
+        assertEquals(Duration.ofSeconds(2), client.getPolicy().hedgeDelay(HedgePolicy.Stage.FIRST_TOKEN));
+        assertEquals(0, client.getPolicy().getHedgeCount());
+    }
+
+    @Test
+    void answersAreTimed() {
+        HedgingLlmClient client = new HedgingLlmClient(prompt -> "{}", prompt -> "{}", policy());
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("{}", client.chat(List.of(ChatMessage.user("prompt")), ChatOptions.defaults()));
+        }
+
+        assertEquals(Duration.ofMillis(50), client.getPolicy().hedgeDelay(HedgePolicy.Stage.RESPONSE));
+    }
+}
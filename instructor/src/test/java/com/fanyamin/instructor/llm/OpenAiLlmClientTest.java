@@ -0,0 +1,220 @@
+package com.fanyamin.instructor.llm;
+
+import com.fanyamin.instructor.exception.DeadlineExceededException;
+import com.fanyamin.instructor.exception.LlmApiException;
+import com.fanyamin.instructor.exception.PromptTooLargeException;
+import com.fanyamin.instructor.resilience.RateLimitScheduler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAiLlmClientTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<JsonNode> requests = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            JsonNode request = mapper.readTree(exchange.getRequestBody());
+            requests.add(request);
+            StringBuilder choices = new StringBuilder();
+            for (int i = 0; i < request.path("n").asInt(1); i++) {
+                choices.append(i == 0 ? "" : ", ").append("{\"index\": ").append(i)
+                        .append(", \"message\": {\"content\": \"{\\\"choice\\\": ").append(i)
+                        .append("}\"}, \"finish_reason\": \"stop\"}");
+            }
+            byte[] bytes = ("{\"choices\": [" + choices + "], \"usage\": {\"prompt_tokens\": 10, \"completion_tokens\": 6, "
+                    + "\"total_tokens\": 16}}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.createContext("/v1/stream", exchange -> {
+            requests.add(mapper.readTree(exchange.getRequestBody()));
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(("data: {\"choices\": [{\"delta\": {\"content\": \"{}\"}, \"finish_reason\": \"stop\"}]}\n\n"
+                        + "data: {\"choices\": [], \"usage\": {\"prompt_tokens\": 10, \"completion_tokens\": 6, "
+                        + "\"total_tokens\": 16}}\n\n"
+                        + "data: [DONE]\n\n").getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/v1/failing", exchange -> {
+            requests.add(mapper.readTree(exchange.getRequestBody()));
+            byte[] bytes = "{\"error\": {\"message\": \"internal error\"}}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(500, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.createContext("/v1/stalled", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("data: {\"choices\": [{\"delta\": {\"content\": \"{\\\"a\\\": \"}}]}\n\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            try {
+                Thread.sleep(5_000); // a model that stops sending without closing the connection
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.close();
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private OpenAiLlmClient client(int maxTokens, int contextWindow) {
+        return client(maxTokens, contextWindow, new RateLimitScheduler());
+    }
+
+    private OpenAiLlmClient client(int maxTokens, int contextWindow, RateLimitScheduler scheduler) {
+        return new OpenAiLlmClient("test-key", "gpt-4o-mini",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions",
+                0.0, maxTokens, false, false, scheduler, StructuredOutputMode.NONE, contextWindow);
+    }
+
+    @Test
+    void waitingForTheRateLimitCountsAgainstTheTimeout() {
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        OpenAiLlmClient client = client(4096, 0, scheduler);
+        scheduler.onRateLimited(Duration.ofMillis(300));
+
+        assertThrows(DeadlineExceededException.class, () -> client.complete(
+                List.of(ChatMessage.user("Parse this")), ChatOptions.defaults().withTimeout(Duration.ofMillis(100))));
+        assertTrue(requests.isEmpty(), "the request was not sent after its deadline");
+
+        scheduler.onRateLimited(Duration.ofMillis(50));
+        client.complete(List.of(ChatMessage.user("Parse this")), ChatOptions.defaults().withTimeout(Duration.ofSeconds(5)));
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void streamedUsageSettlesTheRateLimitReservation() {
+        RateLimitScheduler scheduler = new RateLimitScheduler(1.0).withLimits(60, 10_000);
+        OpenAiLlmClient client = new OpenAiLlmClient("test-key", "gpt-4o-mini",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/stream",
+                0.0, 4096, false, false, scheduler, StructuredOutputMode.NONE, 0);
+
+        assertEquals("{}", String.join("", client.streamChat(List.of(ChatMessage.user("Parse this")),
+                ChatOptions.defaults()).collectList().block(Duration.ofSeconds(5))));
+
+        assertTrue(requests.get(0).path("stream_options").path("include_usage").asBoolean());
+        // 4096 + prompt tokens were reserved; only the 16 reported ones stay counted
+        assertTrue(scheduler.getRemainingTokens() >= 10_000 - 16, scheduler.getRemainingTokens() + " tokens left");
+    }
+
+    @Test
+    void failedCallGivesTheRateLimitReservationBack() {
+        RateLimitScheduler scheduler = new RateLimitScheduler(1.0).withLimits(60, 10_000);
+        OpenAiLlmClient client = new OpenAiLlmClient("test-key", "gpt-4o-mini",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/failing",
+                0.0, 4096, false, false, scheduler, StructuredOutputMode.NONE, 0);
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(LlmApiException.class, () -> client.complete(
+                    List.of(ChatMessage.user("Parse this")), ChatOptions.defaults()));
+        }
+
+        assertEquals(3, requests.size());
+        // Each call reserved 4096 + prompt tokens; none of them stays counted
+        assertTrue(scheduler.getRemainingTokens() >= 10_000 - 16, scheduler.getRemainingTokens() + " tokens left");
+    }
+
+    @Test
+    void stalledStreamEndsAtTheDeadline() throws Exception {
+        OpenAiLlmClient client = new OpenAiLlmClient("test-key", "gpt-4o-mini",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/stalled",
+                0.0, 4096, false, false, new RateLimitScheduler(), StructuredOutputMode.NONE, 0);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+
+        client.streamChat(List.of(ChatMessage.user("Parse this")), ChatOptions.defaults().withTimeout(Duration.ofMillis(300)))
+                .subscribe(chunk -> { }, e -> {
+                    error.set(e);
+                    done.countDown();
+                }, done::countDown);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS), "the stream is bounded by its timeout, not by the server");
+        assertTrue(error.get() instanceof DeadlineExceededException, String.valueOf(error.get()));
+    }
+
+    @Test
+    void perCallBudgetLowersButNeverRaisesMaxTokens() {
+        OpenAiLlmClient client = client(4096, 0);
+        List<ChatMessage> messages = List.of(ChatMessage.user("Parse this"));
+
+        client.complete(messages, ChatOptions.defaults().withMaxTokens(300));
+        client.complete(messages, ChatOptions.defaults().withMaxTokens(10_000));
+        client.complete(messages, ChatOptions.defaults());
+
+        assertEquals(300, requests.get(0).path("max_tokens").asInt());
+        assertEquals(4096, requests.get(1).path("max_tokens").asInt());
+        assertEquals(4096, requests.get(2).path("max_tokens").asInt());
+    }
+
+    @Test
+    void promptIsCheckedAgainstTheContextWindowBeforeSending() {
+        OpenAiLlmClient client = client(4096, 2000);
+
+        client.complete(List.of(ChatMessage.user("word ".repeat(1000))), ChatOptions.defaults());
+        int lowered = requests.get(0).path("max_tokens").asInt();
+        assertTrue(lowered < 1000 && lowered >= OpenAiLlmClient.MIN_ANSWER_TOKENS, "max_tokens: " + lowered);
+
+        PromptTooLargeException e = assertThrows(PromptTooLargeException.class,
+                () -> client.complete(List.of(ChatMessage.user("word ".repeat(2000))), ChatOptions.defaults()));
+        assertEquals(2000, e.getLimit());
+        assertTrue(e.getPromptTokens() > 2000 - OpenAiLlmClient.MIN_ANSWER_TOKENS);
+        assertEquals(1, requests.size(), "the oversized prompt was never sent");
+    }
+
+    @Test
+    void candidatesAreRequestedAsChoicesOfOneCall() {
+        OpenAiLlmClient client = client(4096, 0);
+
+        List<ChatCompletion> choices = client.completeChoices(
+                List.of(ChatMessage.user("Parse this")), ChatOptions.defaults().withMaxTokens(300), 3);
+
+        assertEquals(1, requests.size());
+        assertEquals(3, requests.get(0).path("n").asInt());
+        assertEquals(List.of("{\"choice\": 0}", "{\"choice\": 1}", "{\"choice\": 2}"),
+                choices.stream().map(ChatCompletion::content).toList());
+        assertEquals(6, choices.get(0).usage().completionTokens());
+        assertNull(choices.get(1).usage(), "usage is reported once per request");
+
+        client.complete(List.of(ChatMessage.user("Parse this")), ChatOptions.defaults());
+        assertFalse(requests.get(1).has("n"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.fanyamin.instructor.llm;
+
+import com.fanyamin.instructor.api.ParsingRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptManagerTest {
+
+    private static final String SCHEMA = "{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}}}";
+
+    private final PromptManager promptManager = new PromptManager();
+
+    @Test
+    void systemMessageDoesNotDependOnContextOrInput() {
+        List<ChatMessage> first = promptManager.generateMessages(
+                new ParsingRequest(SCHEMA, "Alice", Map.of("now", "2024-01-01T00:00:00Z")));
+        List<ChatMessage> second = promptManager.generateMessages(
+                new ParsingRequest(SCHEMA, "Bob", Map.of("now", "2024-06-30T12:34:56Z")));
+
+        assertEquals(ChatMessage.Role.SYSTEM, first.get(0).role());
+        assertEquals(first.get(0), second.get(0));
+        assertTrue(first.get(0).content().contains(SCHEMA));
+        assertFalse(first.get(0).content().contains("2024"));
+        assertTrue(first.get(1).content().contains("2024-01-01T00:00:00Z"));
+    }
+
+    @Test
+    void contextIsSerializedAsSortedJson() {
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("role", "employee");
+        user.put("managerId", "walter");
+        Map<String, Object> context = new HashMap<>();
+        context.put("now", "2024-01-01T00:00:00Z");
+        context.put("locale", "en-US");
+        context.put("user", user);
+
+        assertEquals(
+                "{\"locale\":\"en-US\",\"now\":\"2024-01-01T00:00:00Z\",\"user\":{\"managerId\":\"walter\",\"role\":\"employee\"}}",
+                PromptManager.canonicalJson(context));
+        assertEquals("{}", PromptManager.canonicalJson(null));
+    }
+}
@@ -0,0 +1,103 @@
+package com.fanyamin.instructor.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReasoningStreamFilterTest {
+
+    private static final String JSON = "{\"fields\": {\"code\": {\"value\": \"a`b\"}}, \"errors\": []}";
+
+    /**
+     * Feed {@code chunks} through a fresh filter and return [content, reasoning].
+     */
+    private static String[] run(String... chunks) {
+        ReasoningStreamFilter filter = new ReasoningStreamFilter();
+        List<ChatDelta> deltas = new ArrayList<>();
+        for (String chunk : chunks) {
+            deltas.addAll(filter.accept(chunk));
+        }
+        deltas.addAll(filter.finish());
+        StringBuilder content = new StringBuilder();
+        StringBuilder reasoning = new StringBuilder();
+        deltas.forEach(d -> (d.isContent() ? content : reasoning).append(d.text()));
+        return new String[]{content.toString(), reasoning.toString()};
+    }
+
+    @Test
+    void everySplitOfAFencedAnswerAfterThinkingYieldsPlainJson() {
+        String response = "<think>Leave type is sick.</think>\n\n```json\n" + JSON + "\n```\nHope this helps!";
+        for (int i = 1; i < response.length(); i++) {
+            for (int j = i; j < response.length(); j++) {
+                String[] out = run(response.substring(0, i), response.substring(i, j), response.substring(j));
+                assertEquals(JSON, out[0].strip(), "split at " + i + "/" + j);
+                assertEquals("Leave type is sick.", out[1], "split at " + i + "/" + j);
+            }
+        }
+    }
+
+    @Test
+    void thinkingAndAnswerTagsKeepOnlyTheAnswerBody() {
+        String[] out = run("<thinking>dates", " are ISO</thin", "king>\n<answer>", JSON, "</answer>");
+
+        assertEquals(JSON, out[0]);
+        assertEquals("dates are ISO", out[1]);
+    }
+
+    @Test
+    void markdownSectionsAreSplit() {
+        String[] out = run("## Thinking\nshort\n## Ans", "wer\n", JSON);
+
+        assertEquals(JSON, out[0]);
+        assertEquals("\nshort\n", out[1]);
+    }
+
+    @Test
+    void unfencedAnswerPassesThroughUnchanged() {
+        assertEquals(JSON, run(JSON.substring(0, 5), JSON.substring(5))[0]);
+        assertEquals("  " + JSON, run("  ", JSON)[0]);
+    }
+
+    @Test
+    void fenceOpenedOnTheJsonLineAndTruncatedAnswerAreKept() {
+        assertEquals(JSON, run("```", JSON, "```")[0]);
+        assertEquals("{\"fields\": {", run("```json\n{\"fields\"", ": {")[0]);
+    }
+
+    @Test
+    void unfinishedReasoningIsReportedAsReasoning() {
+        String[] out = run("<think>still thinking when the stream was cut");
+
+        assertEquals("", out[0]);
+        assertEquals("still thinking when the stream was cut", out[1]);
+    }
+
+    @Test
+    void reasoningWithoutOpeningTagEndsAtTheClosingTag() {
+        String[] out = run("The user wants", " sick leave.\nThe {dates} are", " ISO.</th", "ink>\n\n", JSON);
+
+        assertEquals(JSON, out[0]);
+        assertEquals("The user wants sick leave.\nThe {dates} are ISO.", out[1]);
+    }
+
+    @Test
+    void untaggedTextIsReleasedOnceALineStartsLikeJson() {
+        ReasoningStreamFilter filter = new ReasoningStreamFilter();
+        assertTrue(filter.accept("Here is the form:").isEmpty());
+        assertTrue(filter.accept("\n  ").isEmpty());
+
+        assertEquals(List.of(ChatDelta.content("Here is the form:\n  {\"a\"")), filter.accept("{\"a\""));
+        assertEquals(List.of(ChatDelta.content(": 1}")), filter.accept(": 1}"));
+        assertEquals("Plain text answer", run("Plain text", " answer")[0]);
+    }
+
+    @Test
+    void wholeResponseExtractionStripsFences() {
+        assertEquals(JSON, ReasoningFilter.extractAnswer("<think>x</think>\n```json\n" + JSON + "\n```"));
+        assertEquals(JSON, ReasoningFilter.extractAnswer("reasoning without opener</think>" + JSON));
+        assertEquals(JSON, ReasoningFilter.extractAnswer(JSON));
+    }
+}
@@ -0,0 +1,138 @@
+package com.fanyamin.instructor.llm;
+
+import com.fanyamin.instructor.exception.DeadlineExceededException;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpringAiLlmClientStreamingTest {
+
+    /**
+     * Client whose model output is pushed by the test one delta at a time.
+     */
+    private static SpringAiLlmClient clientFor(Flux<String> deltas) {
+        return new SpringAiLlmClient(null) {
+            @Override
+            protected Flux<String> streamContent(List<ChatMessage> messages) {
+                return deltas;
+            }
+        };
+    }
+
+    @Test
+    void chunksArriveBeforeTheModelFinishes() {
+        Sinks.Many<String> model = Sinks.many().unicast().onBackpressureBuffer();
+        SpringAiLlmClient client = clientFor(model.asFlux());
+        assertTrue(client.supportsStreaming());
+
+        List<String> received = new ArrayList<>();
+        AtomicBoolean completed = new AtomicBoolean(false);
+        client.streamChat("prompt").subscribe(received::add, e -> fail("stream failed: " + e), () -> completed.set(true));
+
+        model.tryEmitNext("{\"fields\": ");
+        assertEquals(List.of("{\"fields\": "), received);
+
+        model.tryEmitNext("{\"name\": ");
+        assertEquals(2, received.size());
+        assertFalse(completed.get());
+
+        model.tryEmitNext("\"Alice\"}}");
+        model.tryEmitComplete();
+        assertTrue(completed.get());
+        assertEquals("{\"fields\": {\"name\": \"Alice\"}}", String.join("", received));
+    }
+
+    @Test
+    void thinkBlockSplitAcrossChunksIsDropped() {
+        Sinks.Many<String> model = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> received = new ArrayList<>();
+        clientFor(model.asFlux()).streamChat("prompt").subscribe(received::add);
+
+        model.tryEmitNext("<thi");
+        model.tryEmitNext("nk>The user wants");
+        model.tryEmitNext(" a name.</th");
+        assertTrue(received.isEmpty());
+
+        model.tryEmitNext("ink>\n{\"a\":");
+        assertEquals(List.of("{\"a\":"), received);
+
+        model.tryEmitNext(" 1}");
+        model.tryEmitComplete();
+        assertEquals("{\"a\": 1}", String.join("", received));
+    }
+
+    @Test
+    void answerTagIsUnwrapped() {
+        List<String> received = new ArrayList<>();
+        clientFor(Flux.just("<thinking>hmm</thinking>\n<ans", "wer>{\"a\": 1}</an", "swer>"))
+                .streamChat("prompt")
+                .subscribe(received::add);
+
+        assertEquals("{\"a\": 1}", String.join("", received));
+    }
+
+    @Test
+    void reasoningAndFencesAreSeparatedFromTheAnswer() {
+        List<ChatDelta> received = new ArrayList<>();
+        clientFor(Flux.just("<think>sick leave", "</think>\n```json\n{\"a\":", " 1}\n```"))
+                .streamChatDeltas(List.of(ChatMessage.user("prompt")), ChatOptions.defaults())
+                .subscribe(received::add);
+
+        assertEquals(ChatDelta.reasoning("sick leave"), received.get(0));
+        assertEquals("{\"a\": 1}", received.stream().filter(ChatDelta::isContent)
+                .map(ChatDelta::text).reduce("", String::concat).strip());
+    }
+
+    @Test
+    void timeoutBoundsTheWholeStreamNotTheGapBetweenChunks() {
+        // A chunk every 50ms never leaves a 300ms gap, but the stream as a whole would take 5s
+        Flux<String> trickle = Flux.interval(Duration.ofMillis(50)).take(100).map(i -> " ");
+        Flux<ChatDelta> stream = clientFor(trickle).streamChatDeltas(
+                List.of(ChatMessage.user("prompt")), ChatOptions.defaults().withTimeout(Duration.ofMillis(300)));
+
+        long start = System.nanoTime();
+        assertThrows(DeadlineExceededException.class, () -> stream.blockLast(Duration.ofSeconds(3)));
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+    }
+
+    @Test
+    void blockingCallGivesUpAtTheTimeout() {
+        SpringAiLlmClient client = new SpringAiLlmClient(null) {
+            @Override
+            protected String callContent(List<ChatMessage> messages) {
+                try {
+                    Thread.sleep(5_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "{}";
+            }
+        };
+
+        long start = System.nanoTime();
+        assertThrows(DeadlineExceededException.class, () -> client.chat(
+                List.of(ChatMessage.user("prompt")), ChatOptions.defaults().withTimeout(Duration.ofMillis(200))));
+        assertTrue(System.nanoTime() - start < 2_000_000_000L);
+    }
+
+    @Test
+    void cancellingTheResultCancelsTheModelStream() {
+        AtomicBoolean upstreamCancelled = new AtomicBoolean(false);
+        Sinks.Many<String> model = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<String> deltas = model.asFlux().doOnCancel(() -> upstreamCancelled.set(true));
+
+        Disposable subscription = clientFor(deltas).streamChat("prompt").subscribe();
+        model.tryEmitNext("{");
+        subscription.dispose();
+
+        assertTrue(upstreamCancelled.get());
+    }
+}
@@ -0,0 +1,62 @@
+package com.fanyamin.instructor.longinput;
+
+import com.fanyamin.instructor.tokenizer.TokenCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputWindowsTest {
+
+    /**
+     * One token per word, so window sizes are easy to check.
+     */
+    private static final TokenCounter WORDS = new TokenCounter() {
+        @Override
+        public int count(String text) {
+            return text.isBlank() ? 0 : text.strip().split("\\s+").length;
+        }
+
+        @Override
+        public boolean isExact() {
+            return true;
+        }
+    };
+
+    @Test
+    void sentencesEndAtPunctuationAndLineBreaks() {
+        String text = "Take Monday off. Version 1.5 ships!\nOK? 明天请假。后天回来";
+
+        List<String> sentences = InputWindows.sentences(text);
+
+        assertEquals(List.of("Take Monday off. ", "Version 1.5 ships!\n", "OK? ", "明天请假。", "后天回来"), sentences);
+        assertEquals(text, String.join("", sentences));
+    }
+
+    @Test
+    void windowsOverlapByWholeSentences() {
+        // Eight sentences of three words each
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= 8; i++) {
+            text.append("Sentence number ").append(i).append(". ");
+        }
+
+        List<String> windows = InputWindows.split(text.toString(), WORDS, 9, 3);
+
+        assertEquals(List.of(
+                "Sentence number 1. Sentence number 2. Sentence number 3.",
+                "Sentence number 3. Sentence number 4. Sentence number 5.",
+                "Sentence number 5. Sentence number 6. Sentence number 7.",
+                "Sentence number 7. Sentence number 8."), windows);
+        assertEquals(List.of(text.toString().strip()), InputWindows.split(text.toString(), WORDS, 100, 10));
+    }
+
+    @Test
+    void overLongSentenceIsAWindowOfItsOwn() {
+        List<String> windows = InputWindows.split("a b c d e f g. h i.", WORDS, 4, 2);
+
+        assertEquals(List.of("a b c d e f g.", "h i."), windows);
+        assertThrows(IllegalArgumentException.class, () -> InputWindows.split("a", WORDS, 4, 4));
+    }
+}
@@ -0,0 +1,45 @@
+package com.fanyamin.instructor.longinput;
+
+import com.fanyamin.instructor.api.FieldResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WindowMergerTest {
+
+    private static FieldResult field(Object value, double confidence) {
+        return new FieldResult(value, confidence, null, List.of());
+    }
+
+    @Test
+    void mostConfidentValueWinsAndLaterWinsNearTies() {
+        WindowMerger.Merged merged = WindowMerger.merge(List.of(
+                Map.of("start", field("2026-03-01", 0.9), "type", field("sick", 0.5)),
+                Map.of("start", field("2026-03-02", 0.4), "reason", field("flu", 0.8)),
+                Map.of("type", field("annual", 0.53))), 0.15);
+
+        assertEquals(Set.of("start", "type", "reason"), merged.fields().keySet());
+        assertEquals("2026-03-01", merged.fields().get("start").value());
+        assertEquals(List.of("2026-03-02"), merged.fields().get("start").alternatives());
+        // 0.53 vs 0.5: a near tie, so the more recent window wins, but the field is in doubt
+        assertEquals("annual", merged.fields().get("type").value());
+        assertEquals(List.of("type"), List.copyOf(merged.conflicts().keySet()));
+        assertEquals(List.of(0, 2), merged.conflicts().get("type").stream().map(WindowMerger.Candidate::window).toList());
+    }
+
+    @Test
+    void agreeingWindowsAreNoConflict() {
+        WindowMerger.Merged merged = WindowMerger.merge(List.of(
+                Map.of("days", field(3, 0.7)),
+                Map.of(),
+                Map.of("days", field(3, 0.9))), 0.15);
+
+        assertEquals(3, merged.fields().get("days").value());
+        assertEquals(0.9, merged.fields().get("days").confidence());
+        assertTrue(merged.conflicts().isEmpty());
+    }
+}
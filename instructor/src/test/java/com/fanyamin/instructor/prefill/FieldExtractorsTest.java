@@ -0,0 +1,86 @@
+package com.fanyamin.instructor.prefill;
+
+import com.fanyamin.instructor.api.FieldResult;
+import com.fanyamin.instructor.api.ParsingRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FieldExtractorsTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private Object value(FieldExtractor extractor, String property, String input) throws Exception {
+        JsonNode node = mapper.readTree(property);
+        FieldResult found = extractor.extract("field", node, new ParsingRequest("{}", input, Map.of()));
+        return found != null ? found.value() : null;
+    }
+
+    @Test
+    void formatsAreFoundOnlyWhenUnambiguous() throws Exception {
+        String email = "{\"type\": \"string\", \"format\": \"email\"}";
+        assertEquals("alice.w@corp.example.com",
+                value(FieldExtractors.email(), email, "Please cc alice.w@corp.example.com on this."));
+        assertNull(value(FieldExtractors.email(), email, "alice@example.com or bob@example.com"));
+        assertNull(value(FieldExtractors.email(), "{\"type\": \"string\"}", "alice@example.com"));
+
+        String date = "{\"type\": \"string\", \"format\": \"date\"}";
+        assertEquals("2026-03-01", value(FieldExtractors.isoDate(), date, "from 2026-03-01, back on 2026-03-01"));
+        assertNull(value(FieldExtractors.isoDate(), date, "from 2026-03-01 to 2026-03-03"));
+        assertNull(value(FieldExtractors.isoDate(), date, "on 2026-02-30"));
+        assertNull(value(FieldExtractors.isoDate(), date, "next friday"));
+
+        assertEquals("123e4567-e89b-12d3-a456-426614174000", value(FieldExtractors.uuid(),
+                "{\"format\": \"uuid\"}", "order 123E4567-E89B-12D3-A456-426614174000 failed"));
+    }
+
+    @Test
+    void datesAreResolvedAgainstNowAndRangesSplitByFieldName() throws Exception {
+        String date = "{\"type\": \"string\", \"format\": \"date\"}";
+        String dateTime = "{\"type\": \"string\", \"format\": \"date-time\"}";
+        Map<String, Object> friday = Map.of("now", "2023-10-27T10:00:00+08:00", "locale", "zh-CN");
+
+        assertEquals("2023-10-30", value("startDate", date, "下周一请假", friday));
+        assertEquals("2023-10-28T15:00:00+08:00", value("meetingAt", dateTime, "meeting tomorrow at 3pm", friday));
+        assertNull(value("meetingAt", dateTime, "meeting tomorrow", friday), "no time of day");
+        assertNull(value("startDate", date, "下周一请假", Map.of()), "no now, no guess");
+        assertNull(value("startDate", date, "Monday or Tuesday", friday));
+
+        String range = "off from next Monday to Wednesday";
+        assertEquals("2023-10-30", value("leave_from", date, range, friday));
+        assertEquals("2023-11-01", value("endDate", date, range, friday));
+        assertEquals("2023-11-01", value("returnDate", date, range, friday));
+        assertNull(value("date", date, range, friday), "which end is not said");
+    }
+
+    private Object value(String field, String property, String input, Map<String, Object> context) throws Exception {
+        FieldResult found = FieldExtractors.temporal()
+                .extract(field, mapper.readTree(property), new ParsingRequest("{}", input, context));
+        return found != null ? found.value() : null;
+    }
+
+    @Test
+    void enumsNumbersAndPatternsAreMatchedAsWholeTokens() throws Exception {
+        String type = "{\"type\": \"string\", \"enum\": [\"sick\", \"annual\", \"病假\"]}";
+        assertEquals("sick", value(FieldExtractors.enumMention(), type, "I'm Sick today"));
+        assertNull(value(FieldExtractors.enumMention(), type, "homesickness"), "not a whole word");
+        assertNull(value(FieldExtractors.enumMention(), type, "sick, or annual?"));
+        assertEquals("病假", value(FieldExtractors.enumMention(), type, "明天请病假"));
+
+        String days = "{\"type\": \"integer\", \"minimum\": 1, \"maximum\": 30}";
+        assertEquals(3, value(FieldExtractors.rangedInteger(), days, "3 days off from 2026-03-01 at 9:30."));
+        assertEquals(2, value(FieldExtractors.rangedInteger(), days, "请2天假"));
+        assertNull(value(FieldExtractors.rangedInteger(), days, "3 or 4 days"));
+        assertNull(value(FieldExtractors.rangedInteger(), days, "45 days"));
+        assertNull(value(FieldExtractors.rangedInteger(), "{\"type\": \"integer\"}", "3 days"), "no range, no guess");
+
+        String ticket = "{\"type\": \"string\", \"pattern\": \"^[A-Z]{2,5}-\\\\d+$\"}";
+        assertEquals("OPS-42", value(FieldExtractors.pattern(), ticket, "see OPS-42 for details"));
+        assertNull(value(FieldExtractors.pattern(), ticket, "see XOPS-42a"));
+        assertNull(value(FieldExtractors.pattern(), "{\"pattern\": \"^.+$\"}", "anything"));
+    }
+}
@@ -0,0 +1,58 @@
+package com.fanyamin.instructor.prefill;
+
+import com.fanyamin.instructor.api.FieldResult;
+import com.fanyamin.instructor.api.ParsingRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreExtractorTest {
+
+    private static final String SCHEMA = """
+        {"type": "object", "properties": {
+          "email": {"type": "string", "format": "email"},
+          "start": {"type": "string", "format": "date"},
+          "end": {"type": "string", "format": "date"},
+          "type": {"type": "string", "enum": ["sick", "annual"]},
+          "reason": {"type": "string"}},
+         "required": ["email", "type", "start"]}
+        """;
+
+    private static ParsingRequest request(String input) {
+        return new ParsingRequest(SCHEMA, input, Map.of());
+    }
+
+    @Test
+    void valueClaimedByTwoFieldsIsLeftToTheLlm() {
+        PreExtractor.Prefill prefill = PreExtractor.defaults()
+                .extract(request("bob@example.com: sick leave on 2026-03-02, flu"));
+
+        assertEquals(List.of("email", "type"), List.copyOf(prefill.fields().keySet()));
+        assertEquals("bob@example.com", prefill.fields().get("email").value());
+        assertEquals(List.of("start", "end", "reason"), prefill.remaining());
+        assertFalse(prefill.complete(), "start is required");
+    }
+
+    @Test
+    void customExtractorsComeFirstAndLowConfidenceIsIgnored() {
+        FieldExtractor start = (field, property, request) -> field.equals("start")
+                ? new FieldResult("2026-03-02", 0.95, "resolved", List.of()) : null;
+        FieldExtractor unsureReason = (field, property, request) -> field.equals("reason")
+                ? new FieldResult("flu", 0.5, null, List.of()) : null;
+        PreExtractor extractor = PreExtractor.builder().extractor(start).extractor(unsureReason).build();
+
+        PreExtractor.Prefill prefill = extractor.extract(request("bob@example.com: sick tomorrow, flu"));
+
+        assertEquals(List.of("email", "start", "type"), List.copyOf(prefill.fields().keySet()));
+        assertEquals(List.of("end", "reason"), prefill.remaining());
+        assertTrue(prefill.complete(), "all required fields are filled");
+
+        assertTrue(PreExtractor.builder().extractors(List.of()).build()
+                .extract(request("bob@example.com")).fields().isEmpty());
+        assertFalse(PreExtractor.builder().extractors(List.of()).build()
+                .extract(request("bob@example.com")).complete());
+    }
+}
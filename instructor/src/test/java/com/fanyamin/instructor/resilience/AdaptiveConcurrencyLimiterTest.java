@@ -0,0 +1,76 @@
+package com.fanyamin.instructor.resilience;
+
+import com.fanyamin.instructor.exception.LlmBusyException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void rejectsImmediatelyWhenQueueIsFull() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(1)
+                .maxQueueSize(0)
+                .build();
+
+        AdaptiveConcurrencyLimiter.Permit held = limiter.acquire();
+        assertThrows(LlmBusyException.class, limiter::acquire);
+        assertEquals(1, limiter.getRejectedCount());
+
+        held.onIgnore();
+        assertEquals(0, limiter.getInFlight());
+        assertDoesNotThrow(() -> limiter.acquire().onIgnore());
+    }
+
+    @Test
+    void queuedCallerTimesOut() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(1)
+                .maxQueueSize(4)
+                .build();
+
+        limiter.acquire();
+        long start = System.nanoTime();
+        assertThrows(LlmBusyException.class, () -> limiter.acquire(Duration.ofMillis(50)));
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(50).toNanos());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    void overloadShrinksAndSuccessGrowsLimit() {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(8)
+                .maxLimit(16)
+                .backoffRatio(0.5)
+                .latencyTolerance(1_000.0)  // keep timing jitter out of the test
+                .build();
+
+        limiter.acquire().onOverload();
+        assertEquals(4, limiter.getLimit());
+
+        for (int i = 0; i < 40; i++) {
+            limiter.acquire().onSuccess();
+        }
+        assertTrue(limiter.getLimit() > 4, "limit should recover after successful calls");
+    }
+
+    @Test
+    void slowSuccessesHoldTheLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = AdaptiveConcurrencyLimiter.builder()
+                .initialLimit(8)
+                .maxLimit(16)
+                .build();
+
+        limiter.acquire().onSuccess();  // a near-instant baseline
+        int limit = limiter.getLimit();
+        for (int i = 0; i < 5; i++) {
+            AdaptiveConcurrencyLimiter.Permit longAnswer = limiter.acquire();
+            Thread.sleep(20);
+            longAnswer.onSuccess();
+        }
+        assertEquals(limit, limiter.getLimit(), "long generations are not overload");
+    }
+}
@@ -0,0 +1,64 @@
+package com.fanyamin.instructor.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgePolicyTest {
+
+    @Test
+    void delayFollowsTheObservedPercentileOnceThereAreEnoughSamples() {
+        HedgePolicy policy = HedgePolicy.builder()
+                .percentile(0.9)
+                .initialDelay(Duration.ofSeconds(2))
+                .minDelay(Duration.ofMillis(50))
+                .maxDelay(Duration.ofSeconds(5))
+                .windowSize(10)
+                .minSamples(5)
+                .build();
+
+        for (int i = 1; i <= 4; i++) {
+            policy.recordLatency(HedgePolicy.Stage.RESPONSE, Duration.ofMillis(i * 100L));
+        }
+        assertEquals(Duration.ofSeconds(2), policy.hedgeDelay(HedgePolicy.Stage.RESPONSE));
+
+        for (int i = 5; i <= 10; i++) {
+            policy.recordLatency(HedgePolicy.Stage.RESPONSE, Duration.ofMillis(i * 100L));
+        }
+        assertEquals(Duration.ofMillis(900), policy.hedgeDelay(HedgePolicy.Stage.RESPONSE));
+        assertEquals(Duration.ofSeconds(2), policy.hedgeDelay(HedgePolicy.Stage.FIRST_TOKEN), "stages are separate");
+
+        // The window only keeps the most recent samples; the result is clamped to [minDelay, maxDelay]
+        for (int i = 0; i < 10; i++) {
+            policy.recordLatency(HedgePolicy.Stage.RESPONSE, Duration.ofMillis(10));
+        }
+        assertEquals(Duration.ofMillis(50), policy.hedgeDelay(HedgePolicy.Stage.RESPONSE));
+    }
+
+    @Test
+    void hedgesAreCappedAndWinsAreReported() {
+        HedgePolicy policy = HedgePolicy.builder()
+                .maxHedgeRatio(0.25)
+                .maxBurst(1)
+                .build();
+
+        policy.onRequest();
+        assertTrue(policy.tryAcquireHedge());
+        policy.onHedgeWon();
+        assertFalse(policy.tryAcquireHedge(), "burst used up");
+
+        for (int i = 0; i < 3; i++) {
+            policy.onRequest();
+            assertFalse(policy.tryAcquireHedge());
+        }
+        policy.onRequest();
+        assertTrue(policy.tryAcquireHedge(), "one hedge earned per four requests");
+
+        assertEquals(5, policy.getRequestCount());
+        assertEquals(2, policy.getHedgeCount());
+        assertEquals(0.4, policy.getHedgeRate(), 1e-9);
+        assertEquals(0.5, policy.getHedgeWinRate(), 1e-9);
+    }
+}
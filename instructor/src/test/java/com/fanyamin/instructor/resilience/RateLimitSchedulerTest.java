@@ -0,0 +1,91 @@
+package com.fanyamin.instructor.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitSchedulerTest {
+
+    @Test
+    void parsesProviderResetDurations() {
+        assertEquals(Duration.ofSeconds(1), RateLimitScheduler.parseResetDuration("1s"));
+        assertEquals(Duration.ofMinutes(6), RateLimitScheduler.parseResetDuration("6m0s"));
+        assertEquals(Duration.ofMillis(20), RateLimitScheduler.parseResetDuration("20ms"));
+        assertEquals(Duration.ofMillis(3_723_500), RateLimitScheduler.parseResetDuration("1h2m3.5s"));
+        assertNull(RateLimitScheduler.parseResetDuration("soon"));
+    }
+
+    @Test
+    void unknownLimitsNeverBlock() throws InterruptedException {
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        long start = System.nanoTime();
+        for (int i = 0; i < 1_000; i++) {
+            scheduler.acquire(10_000);
+        }
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(500).toNanos());
+        assertEquals(-1, scheduler.getRemainingTokens());
+    }
+
+    @Test
+    void learnsBudgetsFromHeaders() {
+        RateLimitScheduler scheduler = new RateLimitScheduler(1.0);
+        scheduler.updateFromHeaders(headers(Map.of(
+                "x-ratelimit-limit-requests", "500",
+                "x-ratelimit-remaining-requests", "120",
+                "x-ratelimit-limit-tokens", "30000",
+                "x-ratelimit-remaining-tokens", "25000")));
+
+        assertTrue(scheduler.getRemainingRequests() >= 120 && scheduler.getRemainingRequests() <= 121);
+        assertTrue(scheduler.getRemainingTokens() >= 25_000 && scheduler.getRemainingTokens() <= 25_010);
+    }
+
+    @Test
+    void exhaustedBudgetPausesUntilReset() throws InterruptedException {
+        RateLimitScheduler scheduler = new RateLimitScheduler(1.0);
+        scheduler.updateFromHeaders(headers(Map.of(
+                "x-ratelimit-limit-requests", "60000",
+                "x-ratelimit-remaining-requests", "0",
+                "x-ratelimit-reset-requests", "100ms")));
+
+        long start = System.nanoTime();
+        scheduler.acquire(0);
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(90).toNanos());
+    }
+
+    @Test
+    void rateLimitedResponsePausesAllCallers() throws InterruptedException {
+        RateLimitScheduler scheduler = new RateLimitScheduler();
+        scheduler.onRateLimited(Duration.ofMillis(100));
+
+        long start = System.nanoTime();
+        scheduler.acquire(100);
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(90).toNanos());
+    }
+
+    @Test
+    void schedulerIsSharedPerApiKey() {
+        assertSame(RateLimitScheduler.forApiKey("sk-test-a"), RateLimitScheduler.forApiKey("sk-test-a"));
+        assertNotSame(RateLimitScheduler.forApiKey("sk-test-a"), RateLimitScheduler.forApiKey("sk-test-b"));
+    }
+
+    @Test
+    void keylessEndpointsDoNotShareAScheduler() {
+        assertSame(RateLimitScheduler.forEndpoint("http://gpu-1:11434/v1/chat/completions", null),
+                RateLimitScheduler.forEndpoint("http://GPU-1:11434/v1/completions", ""));
+        assertNotSame(RateLimitScheduler.forEndpoint("http://gpu-1:11434/v1/chat/completions", null),
+                RateLimitScheduler.forEndpoint("http://gpu-2:11434/v1/chat/completions", null));
+        assertNotSame(RateLimitScheduler.forEndpoint("https://api.openai.com/v1/chat/completions", "sk-test-a"),
+                RateLimitScheduler.forEndpoint("https://api.deepseek.com/v1/chat/completions", "sk-test-a"));
+    }
+
+    private static HttpHeaders headers(Map<String, String> values) {
+        Map<String, List<String>> multi = new java.util.HashMap<>();
+        values.forEach((k, v) -> multi.put(k, List.of(v)));
+        return HttpHeaders.of(multi, (k, v) -> true);
+    }
+}
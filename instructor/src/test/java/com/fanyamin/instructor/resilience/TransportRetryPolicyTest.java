@@ -0,0 +1,113 @@
+package com.fanyamin.instructor.resilience;
+
+import com.fanyamin.instructor.exception.DeadlineExceededException;
+import com.fanyamin.instructor.exception.LlmApiException;
+import com.fanyamin.instructor.exception.LlmBusyException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransportRetryPolicyTest {
+
+    private final TransportRetryPolicy policy = TransportRetryPolicy.builder()
+            .maxRetries(3)
+            .baseDelay(Duration.ofMillis(1))
+            .maxDelay(Duration.ofMillis(5))
+            .build();
+
+    @Test
+    void classifiesRetryableFailures() {
+        assertTrue(policy.isRetryable(new LlmApiException("bad gateway", 502)));
+        assertTrue(policy.isRetryable(new LlmApiException("rate limited", 429)));
+        assertTrue(policy.isRetryable(new RuntimeException("wrapped", new IOException("connection reset"))));
+        assertFalse(policy.isRetryable(new LlmApiException("bad request", 400)));
+        assertFalse(policy.isRetryable(new IllegalStateException("bug")));
+    }
+
+    @Test
+    void timedOutCallsAreNotRetried() {
+        assertFalse(policy.isRetryable(new DeadlineExceededException("LLM call timed out after 60000ms",
+                new HttpTimeoutException("request timed out"))));
+        assertFalse(policy.isRetryable(new LlmBusyException("LLM backend busy")));
+
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(DeadlineExceededException.class, () -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new DeadlineExceededException("timed out", new HttpTimeoutException("request timed out"));
+        }));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void retriesTransientFailureUntilSuccess() {
+        AtomicInteger calls = new AtomicInteger();
+        String result = policy.execute(() -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new LlmApiException("unavailable", 503);
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(LlmApiException.class, () -> policy.execute(() -> {
+            calls.incrementAndGet();
+            throw new LlmApiException("bad request", 400);
+        }));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void retryBudgetStopsRetryStorms() {
+        TransportRetryPolicy budgeted = TransportRetryPolicy.builder()
+                .maxRetries(5)
+                .baseDelay(Duration.ofMillis(1))
+                .budgetRatio(0.0)
+                .minRetriesPerWindow(2)
+                .budgetWindow(Duration.ofMinutes(1))
+                .build();
+
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(LlmApiException.class, () -> budgeted.execute(() -> {
+            calls.incrementAndGet();
+            throw new LlmApiException("unavailable", 503);
+        }));
+        // one original call + the two retries the budget allows
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    void streamIsNotRetriedAfterFirstChunk() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        Flux<String> stream = policy.executeStream(() -> {
+            subscriptions.incrementAndGet();
+            return Flux.concat(Flux.just("{\"fields\":"), Flux.error(new LlmApiException("reset", 502)));
+        });
+
+        assertThrows(LlmApiException.class, () -> stream.collectList().block());
+        assertEquals(1, subscriptions.get());
+    }
+
+    @Test
+    void streamIsRetriedWhenNothingWasEmitted() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        Flux<String> stream = policy.executeStream(() -> subscriptions.incrementAndGet() == 1
+                ? Flux.error(new LlmApiException("unavailable", 503))
+                : Flux.just("a", "b"));
+
+        assertEquals(List.of("a", "b"), stream.collectList().block());
+        assertEquals(2, subscriptions.get());
+    }
+}
@@ -0,0 +1,271 @@
+package com.fanyamin.instructor.schema;
+
+import com.fanyamin.instructor.api.OutputProfile;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GbnfGrammarCompilerTest {
+
+    private static final String LEAVE_SCHEMA = """
+        {
+          "type": "object",
+          "properties": {
+            "leave_type": { "type": "string", "enum": ["annual", "sick", "unpaid"] },
+            "start_date": { "type": "string", "format": "date" },
+            "days": { "type": "integer", "minimum": 1.0, "maximum": 30.0 },
+            "approver": { "type": "string" }
+          },
+          "required": ["leave_type", "start_date"]
+        }
+        """;
+
+    private static Gbnf leaveGrammar(OutputProfile profile) {
+        return new Gbnf(GbnfGrammarCompiler.compile(ResponseEnvelopeSchema.forForm(LEAVE_SCHEMA, profile)));
+    }
+
+    @Test
+    void acceptsResponsesOfTheEnvelopeShape() {
+        Gbnf grammar = leaveGrammar(OutputProfile.VALUES_AND_CONFIDENCE);
+
+        assertTrue(grammar.matches("""
+            {"fields": {"leave_type": {"value": "sick", "confidence": 0.95}, \
+            "start_date": {"value": "2024-03-01", "confidence": 1}, \
+            "days": {"value": 3, "confidence": 0.8}}, "errors": []}"""));
+        assertTrue(grammar.matches("""
+            {"fields":{"leave_type":{"value":"annual","confidence":0.5},"start_date":{"value":"2024-12-31","confidence":0.9},\
+            "approver":{"value":"Bob \\"the boss\\"","confidence":0.7}},\
+            "errors":[{"path":"days","message":"not mentioned","type":"missing"}]}"""));
+    }
+
+    @Test
+    void rejectsWhatTheSchemaForbids() {
+        Gbnf grammar = leaveGrammar(OutputProfile.VALUES);
+        String valid = "{\"fields\": {\"leave_type\": {\"value\": \"sick\"}, \"start_date\": {\"value\": \"2024-03-01\"}}, \"errors\": []}";
+        assertTrue(grammar.matches(valid));
+
+        assertFalse(grammar.matches(valid.replace("sick", "vacation")), "out-of-enum value");
+        assertFalse(grammar.matches(valid.replace("{\"value\": \"sick\"}, ", "")), "missing required field");
+        assertFalse(grammar.matches(valid.replace("2024-03-01", "March 1st")), "not a date");
+        assertFalse(grammar.matches(valid.replace("}}, \"errors\"", "}, \"days\": {\"value\": 31}}, \"errors\"")), "out of range");
+        assertTrue(grammar.matches(valid.replace("}}, \"errors\"", "}, \"days\": {\"value\": 30}}, \"errors\"")));
+        assertFalse(grammar.matches(valid.replace("{\"value\": \"sick\"}", "{\"value\": \"sick\", \"confidence\": 1}")),
+                "confidence is not part of the VALUES profile");
+        assertFalse(grammar.matches(valid.substring(0, valid.length() - 1)), "truncated JSON");
+    }
+
+    @Test
+    void optionalPropertiesWithoutRequiredAnchor() throws Exception {
+        JsonNode schema = new ObjectMapper().readTree("""
+            { "type": "object",
+              "properties": { "a": { "type": "boolean" }, "b": { "type": "number" }, "c": { "type": "null" } } }
+            """);
+        Gbnf grammar = new Gbnf(GbnfGrammarCompiler.compile(schema));
+
+        assertTrue(grammar.matches("{}"));
+        assertTrue(grammar.matches("{\"b\": -1.5e3}"));
+        assertTrue(grammar.matches("{\"a\": true, \"c\": null}"));
+        assertFalse(grammar.matches("{, \"b\": 1}"));
+        assertFalse(grammar.matches("{\"b\": 1, \"a\": true}"), "properties follow schema order");
+    }
+
+    @Test
+    void largeRangesAndSharedRulesStayCompact() throws Exception {
+        JsonNode schema = new ObjectMapper().readTree("""
+            { "type": "object", "required": ["count", "tags"],
+              "properties": {
+                "count": { "type": "integer", "minimum": 0, "maximum": 100000 },
+                "tags": { "type": "array", "items": { "type": "string", "enum": ["x", "y"] } },
+                "more": { "type": "array", "items": { "type": "string", "enum": ["x", "y"] } } } }
+            """);
+        String compiled = GbnfGrammarCompiler.compile(schema);
+        Gbnf grammar = new Gbnf(compiled);
+
+        assertTrue(grammar.matches("{\"count\": 42, \"tags\": [\"x\", \"y\"]}"));
+        assertFalse(grammar.matches("{\"count\": -1, \"tags\": []}"));
+        assertFalse(compiled.contains("\"99999\""), "wide ranges are not enumerated");
+        assertEquals(1, compiled.lines().filter(line -> line.endsWith("\"\\\"x\\\"\" | \"\\\"y\\\"\"")).count());
+        assertSame(compiled, GbnfGrammarCompiler.compile(schema.deepCopy()), "cached per schema");
+    }
+
+    /**
+     * Minimal GBNF recognizer covering the syntax the compiler emits: literals, character classes, rule
+     * references, groups, alternation and the ?, *, + operators.
+     */
+    private static final class Gbnf {
+        private final Map<String, Node> rules = new HashMap<>();
+
+        Gbnf(String grammar) {
+            for (String line : grammar.split("\n")) {
+                int sep = line.indexOf(" ::= ");
+                Parser parser = new Parser(line.substring(sep + 5));
+                rules.put(line.substring(0, sep), parser.alternation());
+                assertEquals(parser.text.length(), parser.pos, "unparsed rest in: " + line);
+            }
+        }
+
+        boolean matches(String input) {
+            return rules.get("root").match(input, 0).contains(input.length());
+        }
+
+        private interface Node {
+            Set<Integer> match(String input, int pos);
+        }
+
+        private final class Parser {
+            private final String text;
+            private int pos;
+
+            Parser(String text) {
+                this.text = text;
+            }
+
+            Node alternation() {
+                List<Node> options = new ArrayList<>();
+                options.add(sequence());
+                while (peek() == '|') {
+                    pos++;
+                    options.add(sequence());
+                }
+                return (input, at) -> {
+                    Set<Integer> ends = new HashSet<>();
+                    options.forEach(option -> ends.addAll(option.match(input, at)));
+                    return ends;
+                };
+            }
+
+            Node sequence() {
+                List<Node> items = new ArrayList<>();
+                while (peek() != 0 && peek() != '|' && peek() != ')') {
+                    items.add(repeat(atom()));
+                }
+                return (input, at) -> {
+                    Set<Integer> ends = Set.of(at);
+                    for (Node item : items) {
+                        Set<Integer> next = new HashSet<>();
+                        ends.forEach(end -> next.addAll(item.match(input, end)));
+                        ends = next;
+                    }
+                    return ends;
+                };
+            }
+
+            Node repeat(Node atom) {
+                char op = pos < text.length() ? text.charAt(pos) : 0;
+                if (op != '?' && op != '*' && op != '+') {
+                    return atom;
+                }
+                pos++;
+                return (input, at) -> {
+                    Set<Integer> ends = new HashSet<>(op == '+' ? atom.match(input, at) : Set.of(at));
+                    if (op == '?') {
+                        ends.addAll(atom.match(input, at));
+                        return ends;
+                    }
+                    List<Integer> frontier = new ArrayList<>(ends);
+                    while (!frontier.isEmpty()) {
+                        int from = frontier.remove(frontier.size() - 1);
+                        for (int end : atom.match(input, from)) {
+                            if (ends.add(end)) {
+                                frontier.add(end);
+                            }
+                        }
+                    }
+                    return ends;
+                };
+            }
+
+            Node atom() {
+                char c = peek();
+                if (c == '"') {
+                    pos++;
+                    StringBuilder literal = new StringBuilder();
+                    while (text.charAt(pos) != '"') {
+                        literal.append(escaped());
+                    }
+                    pos++;
+                    String expected = literal.toString();
+                    return (input, at) -> input.startsWith(expected, at) ? Set.of(at + expected.length()) : Set.of();
+                }
+                if (c == '[') {
+                    pos++;
+                    boolean negated = text.charAt(pos) == '^';
+                    if (negated) {
+                        pos++;
+                    }
+                    List<char[]> ranges = new ArrayList<>();
+                    while (text.charAt(pos) != ']') {
+                        char low = escaped();
+                        char high = low;
+                        if (text.charAt(pos) == '-' && text.charAt(pos + 1) != ']') {
+                            pos++;
+                            high = escaped();
+                        }
+                        ranges.add(new char[]{low, high});
+                    }
+                    pos++;
+                    return (input, at) -> {
+                        if (at >= input.length()) {
+                            return Set.of();
+                        }
+                        char ch = input.charAt(at);
+                        boolean inClass = ranges.stream().anyMatch(r -> ch >= r[0] && ch <= r[1]);
+                        return inClass != negated ? Set.of(at + 1) : Set.of();
+                    };
+                }
+                if (c == '(') {
+                    pos++;
+                    Node group = alternation();
+                    peek();
+                    pos++;
+                    return group;
+                }
+                int start = pos;
+                while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '-')) {
+                    pos++;
+                }
+                String name = text.substring(start, pos);
+                assertFalse(name.isEmpty(), "unexpected character at " + start + " in: " + text);
+                return (input, at) -> {
+                    Node rule = rules.get(name);
+                    assertNotNull(rule, "undefined rule " + name);
+                    return rule.match(input, at);
+                };
+            }
+
+            private char escaped() {
+                char c = text.charAt(pos++);
+                if (c != '\\') {
+                    return c;
+                }
+                char e = text.charAt(pos++);
+                return switch (e) {
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    case 't' -> '\t';
+                    case 'x' -> {
+                        pos += 2;
+                        yield (char) Integer.parseInt(text.substring(pos - 2, pos), 16);
+                    }
+                    default -> e;
+                };
+            }
+
+            private char peek() {
+                while (pos < text.length() && text.charAt(pos) == ' ') {
+                    pos++;
+                }
+                return pos < text.length() ? text.charAt(pos) : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.fanyamin.instructor.schema;
+
+import com.fanyamin.instructor.api.OutputProfile;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyAliasesTest {
+
+    private static final String SCHEMA = """
+        {
+          "type": "object",
+          "properties": {
+            "schedule_time": { "type": "string" },
+            "start_time": { "type": "string" },
+            "realm_id": { "type": "integer" },
+            "leaveType": { "type": "string" },
+            "ri": { "type": "string" },
+            "x": { "type": "string" }
+          },
+          "required": ["schedule_time", "realm_id"]
+        }
+        """;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void aliasesAreInitialsNumberedOnCollision() {
+        KeyAliases aliases = KeyAliases.build(SCHEMA);
+
+        assertEquals(Map.of(
+                "schedule_time", "st",
+                "start_time", "st2",
+                "realm_id", "ri2",   // "ri" is a real property
+                "leaveType", "lt",
+                "ri", "r"), aliases.fieldAliases());
+        assertEquals("x", aliases.alias("x"));
+        assertSame(KeyAliases.forSchema(SCHEMA), KeyAliases.forSchema(SCHEMA));
+    }
+
+    @Test
+    void expandRestoresRealNamesAndKeepsUnknownKeys() throws Exception {
+        JsonNode response = mapper.readTree("""
+            {"fields": {"st": {"v": "09:00", "c": 0.9},
+                        "ri2": {"v": 7, "r": "stated"},
+                        "leaveType": {"value": "sick"},
+                        "r": {"v": "x", "a": ["y"]}},
+             "errors": [{"path": "st2", "message": "missing", "type": "required"}]}
+            """);
+
+        KeyAliases.build(SCHEMA).expand(response);
+
+        assertEquals(mapper.readTree("""
+            {"fields": {"schedule_time": {"value": "09:00", "confidence": 0.9},
+                        "realm_id": {"value": 7, "reasoning": "stated"},
+                        "leaveType": {"value": "sick"},
+                        "ri": {"value": "x", "alternatives": ["y"]}},
+             "errors": [{"path": "start_time", "message": "missing", "type": "required"}]}
+            """), response);
+    }
+
+    @Test
+    void aliasedEnvelopeUsesShortKeys() {
+        JsonNode envelope = ResponseEnvelopeSchema.forForm(SCHEMA, OutputProfile.VALUES_AND_CONFIDENCE, true);
+        JsonNode fields = envelope.path("properties").path("fields");
+
+        assertTrue(fields.path("properties").has("st"));
+        assertFalse(fields.path("properties").has("schedule_time"));
+        assertEquals("[\"st\",\"ri2\"]", fields.path("required").toString());
+        assertEquals("[\"v\",\"c\"]", fields.path("properties").path("st").path("required").toString());
+        assertNotSame(envelope, ResponseEnvelopeSchema.forForm(SCHEMA, OutputProfile.VALUES_AND_CONFIDENCE));
+    }
+}
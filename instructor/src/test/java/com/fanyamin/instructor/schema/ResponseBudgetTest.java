@@ -0,0 +1,54 @@
+package com.fanyamin.instructor.schema;
+
+import com.fanyamin.instructor.api.OutputProfile;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseBudgetTest {
+
+    private static final String LEAVE_SCHEMA = """
+        {
+          "type": "object",
+          "properties": {
+            "leave_type": { "type": "string", "enum": ["annual", "sick", "personal"] },
+            "start_date": { "type": "string", "format": "date" },
+            "end_date": { "type": "string", "format": "date" },
+            "days": { "type": "integer" },
+            "reason": { "type": "string", "maxLength": 600 }
+          }
+        }
+        """;
+
+    @Test
+    void budgetGrowsWithRequestedParts() {
+        int values = ResponseBudget.estimate(LEAVE_SCHEMA, OutputProfile.VALUES, false);
+        int confidence = ResponseBudget.estimate(LEAVE_SCHEMA, OutputProfile.VALUES_AND_CONFIDENCE, false);
+        int full = ResponseBudget.estimate(LEAVE_SCHEMA, OutputProfile.FULL, false);
+
+        assertTrue(values < confidence && confidence < full, values + " < " + confidence + " < " + full);
+        assertTrue(ResponseBudget.estimate(LEAVE_SCHEMA, OutputProfile.FULL, true) <= full);
+        assertTrue(full < 4096, "well under the old fixed cap: " + full);
+    }
+
+    @Test
+    void largeFieldsAndManyFieldsRaiseTheBudget() {
+        StringBuilder wide = new StringBuilder("{\"type\": \"object\", \"properties\": {");
+        for (int i = 0; i < 60; i++) {
+            wide.append(i > 0 ? "," : "").append("\"field_").append(i).append("\": {\"type\": \"string\"}");
+        }
+        wide.append("}}");
+
+        int leave = ResponseBudget.estimate(LEAVE_SCHEMA, OutputProfile.VALUES, false);
+        assertTrue(ResponseBudget.estimate(wide.toString(), OutputProfile.VALUES, false) > leave);
+        assertTrue(leave > ResponseBudget.estimate(LEAVE_SCHEMA.replace("\"maxLength\": 600", "\"maxLength\": 30"),
+                OutputProfile.VALUES, false));
+    }
+
+    @Test
+    void schemaWithoutPropertiesHasNoBudget() {
+        assertEquals(0, ResponseBudget.forForm("{\"type\": \"object\"}", OutputProfile.FULL, false));
+        assertEquals(ResponseBudget.MIN_TOKENS,
+                ResponseBudget.forForm("{\"properties\": {\"ok\": {\"type\": \"boolean\"}}}", OutputProfile.VALUES, false));
+    }
+}
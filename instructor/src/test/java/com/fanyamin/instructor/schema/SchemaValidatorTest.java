@@ -56,5 +56,24 @@ class SchemaValidatorTest {
         assertFalse(errors.isEmpty());
         assertEquals("type", errors.get(0).type());
     }
-}
 
+    @Test
+    void testErrorsPointAtTheFailingField() {
+        String schema = """
+            {
+              "type": "object",
+              "properties": {
+                "name": { "type": "string" },
+                "priority": { "enum": ["low", "high"] }
+              },
+              "required": ["name"]
+            }
+            """;
+
+        List<ValidationError> errors = validator.validate(schema, "{\"priority\": \"urgent\"}");
+
+        assertEquals(2, errors.size());
+        assertTrue(errors.stream().anyMatch(e -> e.path().equals("$.name") && e.type().equals("required")));
+        assertTrue(errors.stream().anyMatch(e -> e.path().equals("$.priority") && e.type().equals("enum")));
+    }
+}
@@ -0,0 +1,84 @@
+package com.fanyamin.instructor.schema;
+
+import com.fanyamin.instructor.api.OutputProfile;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StrictSchemaTransformerTest {
+
+    private static final String LEAVE_SCHEMA = """
+        {
+          "$schema": "https://json-schema.org/draft/2020-12/schema",
+          "type": "object",
+          "properties": {
+            "leave_type": { "type": "string", "enum": ["annual", "sick"] },
+            "days": { "type": "integer", "minimum": 1.0, "maximum": 30.0 },
+            "reason": { "type": "string", "maxLength": 200 }
+          },
+          "required": ["leave_type"]
+        }
+        """;
+
+    @Test
+    void envelopeFollowsOutputProfile() {
+        JsonNode full = ResponseEnvelopeSchema.forForm(LEAVE_SCHEMA, OutputProfile.FULL);
+        JsonNode lean = ResponseEnvelopeSchema.forForm(LEAVE_SCHEMA, OutputProfile.VALUES);
+
+        JsonNode fullField = full.at("/properties/fields/properties/days/properties");
+        assertTrue(fullField.has("reasoning"));
+        assertEquals(30.0, fullField.at("/value/maximum").asDouble());
+
+        JsonNode leanField = lean.at("/properties/fields/properties/days/properties");
+        assertTrue(leanField.has("value"));
+        assertFalse(leanField.has("confidence"));
+        assertEquals("[\"leave_type\"]", lean.at("/properties/fields/required").toString());
+        assertSame(lean, ResponseEnvelopeSchema.forForm(LEAVE_SCHEMA, OutputProfile.VALUES));
+    }
+
+    @Test
+    void strictModeRequiresEverythingAndMakesOptionalFieldsNullable() {
+        JsonNode strict = StrictSchemaTransformer.transform(
+                ResponseEnvelopeSchema.forForm(LEAVE_SCHEMA, OutputProfile.VALUES_AND_CONFIDENCE));
+
+        JsonNode fields = strict.at("/properties/fields");
+        assertEquals("[\"leave_type\",\"days\",\"reason\"]", fields.get("required").toString());
+        assertFalse(fields.get("additionalProperties").asBoolean());
+
+        assertEquals("object", fields.at("/properties/leave_type/type").asText());
+        assertEquals("[\"object\",\"null\"]", fields.at("/properties/days/type").toString());
+
+        JsonNode days = fields.at("/properties/days/anyOf");
+        assertTrue(days.isMissingNode());
+        JsonNode daysValue = fields.at("/properties/days/properties/value");
+        assertFalse(daysValue.has("minimum"));
+        assertFalse(daysValue.has("maximum"));
+        assertFalse(fields.at("/properties/reason/properties/value").has("maxLength"));
+        assertFalse(fields.at("/properties/days/properties/confidence").has("minimum"));
+        assertFalse(strict.toString().contains("$schema"));
+    }
+
+    @Test
+    void optionalEnumAcceptsNull() throws Exception {
+        JsonNode schema = new ObjectMapper().readTree("""
+            { "type": "object",
+              "properties": { "priority": { "type": "string", "enum": ["low", "high"] } } }
+            """);
+
+        JsonNode priority = StrictSchemaTransformer.transform(schema).at("/properties/priority");
+
+        assertEquals("[\"string\",\"null\"]", priority.get("type").toString());
+        assertEquals("[\"low\",\"high\",null]", priority.get("enum").toString());
+    }
+
+    @Test
+    void freeFormObjectsAreNotRepresentable() throws Exception {
+        JsonNode schema = new ObjectMapper().readTree("""
+            { "type": "object", "properties": { "extra": { "type": "object" } } }
+            """);
+
+        assertNull(StrictSchemaTransformer.transform(schema));
+    }
+}
@@ -0,0 +1,68 @@
+package com.fanyamin.instructor.schema;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubSchemaTest {
+
+    private static final String SCHEMA = """
+        {
+          "$defs": { "level": { "enum": ["low", "high"] } },
+          "type": "object",
+          "properties": {
+            "title": { "type": "string" },
+            "priority": { "$ref": "#/$defs/level" },
+            "priority.note": { "type": "string" }
+          },
+          "required": ["title", "priority"],
+          "dependentRequired": { "priority": ["title"] }
+        }
+        """;
+
+    @Test
+    void testErrorPathsMapToTopLevelFields() {
+        List<String> names = SubSchema.propertyNames(SCHEMA);
+        assertEquals(List.of("title", "priority", "priority.note"), names);
+
+        assertEquals("priority", SubSchema.fieldOf("$.priority", names));
+        assertEquals("title", SubSchema.fieldOf("$.title[0].x", names));
+        assertEquals("priority.note", SubSchema.fieldOf("$.priority.note", names));
+        assertEquals("priority", SubSchema.fieldOf("$['priority']", names));
+        assertNull(SubSchema.fieldOf("$", names));
+        assertNull(SubSchema.fieldOf("$.titles", names));
+        assertNull(SubSchema.fieldOf("root", names));
+    }
+
+    @Test
+    void testSubSchemaKeepsOnlyTheRequestedFields() throws Exception {
+        JsonNode subset = new ObjectMapper().readTree(SubSchema.forFields(SCHEMA, Set.of("priority")));
+
+        assertEquals(List.of("priority"), SubSchema.propertyNames(subset.toString()));
+        assertEquals("[\"priority\"]", subset.get("required").toString());
+        assertTrue(subset.has("$defs"));
+        assertFalse(subset.has("dependentRequired"));
+    }
+
+    @Test
+    void testPartitionBalancesGroupsAndKeepsDependentFieldsTogether() {
+        StringBuilder properties = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            properties.append(i == 1 ? "" : ", ").append("\"f").append(i).append("\": {\"type\": \"string\"}");
+        }
+        String schema = "{\"properties\": {" + properties + "}, \"dependentRequired\": {\"f1\": [\"f9\"]}}";
+
+        assertEquals(List.of(List.of("f1", "f2", "f3", "f4", "f5", "f6", "f7", "f8", "f9", "f10")),
+                SubSchema.partition(schema, List.of(), 0));
+        // 10 fields, at most 4 each: three groups of ~4 rather than 4 + 4 + 2
+        List<List<String>> groups = SubSchema.partition(schema, List.of(List.of("f10", "missing")), 4);
+        assertEquals(List.of("f10"), groups.get(0));
+        assertEquals(List.of("f1", "f2", "f9"), groups.get(1));
+        assertEquals(List.of(List.of("f3", "f4", "f5"), List.of("f6", "f7", "f8")), groups.subList(2, 4));
+    }
+}
@@ -0,0 +1,51 @@
+package com.fanyamin.instructor.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExtractionProgramTest {
+
+    private static final String SCHEMA = """
+        {"type": "object", "properties": {
+          "name": {"type": "string"}, "days": {"type": "integer"}, "paid": {"type": "boolean"},
+          "type": {"type": "string", "enum": ["sick", "annual"]}}}
+        """;
+
+    @Test
+    void capturesAreConvertedToThePropertyTypes() {
+        ExtractionProgram program = ExtractionProgram.parse("""
+            {"fields": {
+              "name": {"regex": "notice: (.+?) requested", "group": 1},
+              "days": {"regex": "\\\\((\\\\d+) days\\\\)"},
+              "paid": {"regex": "paid: (\\\\w+)"},
+              "type": {"constant": "sick"}}}
+            """);
+
+        Map<String, Object> values = program.extract(
+                "HR notice: Alice Smith requested sick leave (3 days), paid: yes", ExtractionProgram.propertyTypes(SCHEMA));
+        assertNull(values, "yes is not a boolean");
+
+        values = program.extract(
+                "HR notice: Alice Smith requested sick leave (3 days), paid: true", ExtractionProgram.propertyTypes(SCHEMA));
+        assertEquals(Map.of("name", "Alice Smith", "days", 3, "paid", true, "type", "sick"), values);
+
+        assertNull(program.extract("Alice wants a day off", ExtractionProgram.propertyTypes(SCHEMA)));
+    }
+
+    @Test
+    void invalidProgramsAreRejectedAndRunawayPatternsStop() {
+        assertThrows(IllegalArgumentException.class, () -> ExtractionProgram.parse("no program here"));
+        assertThrows(IllegalArgumentException.class, () -> ExtractionProgram.parse("{\"fields\": {}}"));
+        assertThrows(IllegalArgumentException.class,
+                () -> ExtractionProgram.parse("{\"fields\": {\"name\": {\"regex\": \"(unclosed\"}}}"));
+        assertThrows(IllegalArgumentException.class, () -> ExtractionProgram.parse("{\"fields\": {\"name\": {}}}"));
+
+        ExtractionProgram backtracking = ExtractionProgram.parse("{\"fields\": {\"name\": {\"regex\": \"^((a+)+)$\"}}}");
+        long started = System.nanoTime();
+        assertNull(backtracking.extract("a".repeat(40) + "!", Map.of()));
+        assertTrue(System.nanoTime() - started < 2_000_000_000L, "the step limit cut the match off");
+    }
+}
@@ -0,0 +1,29 @@
+package com.fanyamin.instructor.template;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InputFingerprintTest {
+
+    @Test
+    void sameTemplateWithDifferentValuesHasTheSameFingerprint() {
+        String a = "HR notice: Alice Smith requested sick leave from 2026-03-01 to 2026-03-03 (3 days).";
+        String b = "HR notice: Bob requested sick leave from 2026-11-20 to 2026-12-01 (12 days).";
+
+        assertEquals(InputFingerprint.shape(a), InputFingerprint.shape(b));
+        assertEquals(InputFingerprint.of(a), InputFingerprint.of(b));
+        assertEquals(32, InputFingerprint.of(a).length());
+    }
+
+    @Test
+    void differentWordingOrStructureChangesTheFingerprint() {
+        String notice = "HR notice: Alice requested sick leave from 2026-03-01 to 2026-03-03 (3 days).";
+
+        assertNotEquals(InputFingerprint.of(notice),
+                InputFingerprint.of("HR notice: Alice cancelled sick leave from 2026-03-01 to 2026-03-03 (3 days)."));
+        assertNotEquals(InputFingerprint.of(notice),
+                InputFingerprint.of("HR notice: Alice requested sick leave from 2026-03-01 to 2026-03-03."));
+        assertNotEquals(InputFingerprint.of(notice), InputFingerprint.of("i need friday off, feeling sick"));
+    }
+}
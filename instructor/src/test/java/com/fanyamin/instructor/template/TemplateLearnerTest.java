@@ -0,0 +1,89 @@
+package com.fanyamin.instructor.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateLearnerTest {
+
+    private static final String SCHEMA = """
+        {"type": "object", "properties": {"name": {"type": "string"}, "days": {"type": "integer"}}}
+        """;
+
+    private static final ExtractionProgram PROGRAM = ExtractionProgram.parse("""
+        {"fields": {"name": {"regex": "notice: (.+?) requested"}, "days": {"regex": "for (\\\\d+) days"}}}
+        """);
+
+    private static String notice(String name, int days) {
+        return "HR notice: " + name + " requested leave for " + days + " days.";
+    }
+
+    private static List<TemplateLearner.Sample> observe(TemplateLearner learner, String name, int days) {
+        return learner.observe(SCHEMA, notice(name, days), Map.of("name", name, "days", days));
+    }
+
+    @Test
+    void templateIsLearnedOnceConfirmedAndVerifiedAgainstTheSamples() {
+        TemplateLearner learner = new TemplateLearner(3, 5, 3);
+
+        assertNull(observe(learner, "Alice", 3));
+        assertNull(observe(learner, "Bob", 12));
+        List<TemplateLearner.Sample> samples = observe(learner, "Carol", 1);
+        assertEquals(3, samples.size());
+        assertNull(observe(learner, "Dave", 2), "already being learned");
+        assertNull(learner.extract(SCHEMA, notice("Eve", 5)));
+
+        // A program that gets one sample wrong is not installed
+        ExtractionProgram wrong = ExtractionProgram.parse(
+                "{\"fields\": {\"name\": {\"regex\": \"notice: (\\\\w)\"}, \"days\": {\"regex\": \"for (\\\\d+) days\"}}}");
+        assertFalse(learner.learn(SCHEMA, notice("Carol", 1), wrong));
+        assertFalse(learner.learn(SCHEMA, notice("Carol", 1), null));
+        assertNull(observe(learner, "Frank", 4), "retried only after enough new samples");
+        assertNull(observe(learner, "Grace", 6));
+        assertNotNull(observe(learner, "Heidi", 7));
+
+        assertTrue(learner.learn(SCHEMA, notice("Heidi", 7), PROGRAM));
+        assertEquals(1, learner.getLearnedTemplateCount());
+        assertEquals(Map.of("name", "Eve Adams", "days", 5), learner.extract(SCHEMA, notice("Eve Adams", 5)));
+        assertNull(learner.extract(SCHEMA, "Eve wants five days off"));
+        assertNull(learner.extract("{\"type\": \"object\"}", notice("Eve", 5)), "templates are per schema");
+        assertEquals(1, learner.getLocalExtractionCount());
+        assertEquals(2, learner.getLearnAttemptCount());
+    }
+
+    @Test
+    void invalidatedTemplateIsLearnedAgainFromNewSamples() {
+        TemplateLearner learner = new TemplateLearner(2, 4, 1);
+        assertNull(observe(learner, "Alice", 3));
+        assertFalse(learner.learn(SCHEMA, notice("Alice", 3), PROGRAM), "no program was asked for");
+        assertNotNull(observe(learner, "Bob", 12));
+        assertTrue(learner.learn(SCHEMA, notice("Bob", 12), PROGRAM));
+
+        learner.invalidate(SCHEMA, notice("Carol", 1));
+        assertEquals(1, learner.getFallbackCount());
+        assertEquals(0, learner.getLearnedTemplateCount());
+        assertNull(learner.extract(SCHEMA, notice("Carol", 1)));
+
+        assertNull(observe(learner, "Dave", 2));
+        assertEquals(2, observe(learner, "Eve", 5).size(), "only samples taken after the failure");
+    }
+
+    @Test
+    void oneOffFingerprintsAreDroppedBeforeLearnedTemplates() {
+        TemplateLearner learner = new TemplateLearner(2, 4, 1, 3);
+        assertNull(observe(learner, "Alice", 3));
+        assertNotNull(observe(learner, "Bob", 12));
+        assertTrue(learner.learn(SCHEMA, notice("Bob", 12), PROGRAM));
+
+        for (int i = 1; i <= 10; i++) {
+            assertNull(learner.observe(SCHEMA, "see note " + "x".repeat(i), Map.of("name", "x")));
+        }
+
+        assertEquals(3, learner.getTrackedFingerprintCount());
+        assertEquals(1, learner.getLearnedTemplateCount());
+        assertEquals(Map.of("name", "Carol", "days", 4), learner.extract(SCHEMA, notice("Carol", 4)));
+    }
+}
@@ -0,0 +1,155 @@
+package com.fanyamin.instructor.temporal;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemporalResolverTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemporalResolverTest.class);
+
+    /**
+     * One line per case in {@code temporal/corpus.tsv}: reference time, locale, input, expected mentions.
+     */
+    private record Case(int line, Map<String, String> context, String input, String expected) {}
+
+    private static List<Case> corpus() throws IOException {
+        List<Case> cases = new ArrayList<>();
+        try (InputStream in = TemporalResolverTest.class.getResourceAsStream("/temporal/corpus.tsv")) {
+            assertNotNull(in, "temporal/corpus.tsv");
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String text;
+            int line = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank() || text.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = text.split("\t");
+                assertEquals(4, columns.length, "corpus.tsv:" + line);
+                Map<String, String> context = columns[1].equals("-")
+                        ? Map.of("now", columns[0]) : Map.of("now", columns[0], "locale", columns[1]);
+                cases.add(new Case(line, context, columns[2], columns[3]));
+            }
+        }
+        return cases;
+    }
+
+    private static String render(List<TemporalMention> mentions) {
+        return mentions.isEmpty() ? "-"
+                : mentions.stream().map(TemporalMention::toString).collect(Collectors.joining(" | "));
+    }
+
+    @Test
+    void resolvesTheCorpus() throws IOException {
+        List<Case> cases = corpus();
+        List<String> failures = new ArrayList<>();
+        for (Case c : cases) {
+            String actual = render(TemporalResolver.resolve(c.input(), c.context()));
+            if (!actual.equals(c.expected())) {
+                failures.add("corpus.tsv:" + c.line() + " \"" + c.input() + "\" expected " + c.expected() + " but got " + actual);
+            }
+        }
+        assertTrue(cases.size() >= 250, "corpus has " + cases.size() + " cases");
+        assertTrue(failures.isEmpty(), failures.size() + " of " + cases.size() + " failed:\n" + String.join("\n", failures));
+    }
+
+    @Test
+    void mentionsKeepTheirPlaceInTheOriginalText() {
+        String text = "Off Next MONDAY to Wednesday, back Thursday at 9AM.";
+        List<TemporalMention> mentions = TemporalResolver.resolve(text, LocalDateTime.parse("2023-10-27T10:00"), Locale.US);
+
+        assertEquals(2, mentions.size());
+        assertEquals("Next MONDAY to Wednesday", mentions.get(0).text());
+        assertEquals(text.indexOf("Next"), mentions.get(0).start());
+        assertEquals(LocalDate.parse("2023-10-30"), mentions.get(0).from().date());
+        assertEquals(LocalDate.parse("2023-11-01"), mentions.get(0).to().date());
+        assertEquals("Thursday at 9AM", mentions.get(1).text());
+        assertEquals("2023-11-02T09:00:00Z", mentions.get(1).from().isoDateTime(ZoneOffset.UTC));
+        assertFalse(mentions.get(1).isRange());
+    }
+
+    @Test
+    void referenceTimeComesFromTheContext() {
+        // 23:30 UTC is already tomorrow in Shanghai
+        Map<String, String> context = Map.of("now", "2023-10-27T23:30:00Z", "timezone", "Asia/Shanghai");
+        assertEquals("2023-10-28T07:30+08:00", TemporalResolver.now(context).toOffsetDateTime().toString());
+        assertEquals("2023-10-29", render(TemporalResolver.resolve("tomorrow", context)));
+
+        assertEquals("2023-10-28", render(TemporalResolver.resolve("tomorrow", Map.of("now", "2023-10-27T10:00:00+08:00"))));
+        assertEquals("2023-10-28", render(TemporalResolver.resolve("tomorrow", Map.of("now", "2023-10-27"))));
+        assertTrue(TemporalResolver.resolve("tomorrow", Map.of()).isEmpty());
+        assertTrue(TemporalResolver.resolve("tomorrow", Map.of("now", "soon")).isEmpty());
+        assertEquals(Locale.UK, TemporalResolver.locale(Map.of("locale", "en_GB")));
+        assertNull(TemporalResolver.locale(Map.of()));
+    }
+
+    @Test
+    void hintsDescribeEachMentionForTheModel() {
+        Map<String, String> hints = TemporalResolver.hints(
+                "Leave from next Monday to Wednesday, call me tomorrow at 3pm",
+                Map.of("now", "2023-10-27T10:00:00+02:00"));
+
+        assertEquals(Map.of(
+                "next Monday to Wednesday", "2023-10-30 (Monday) to 2023-11-01 (Wednesday)",
+                "tomorrow at 3pm", "2023-10-28T15:00:00+02:00 (Saturday)"), hints);
+        assertTrue(TemporalResolver.hints("tomorrow", Map.of()).isEmpty());
+    }
+
+    @Test
+    void chineseNumerals() {
+        assertEquals(3, TemporalResolver.number("三"));
+        assertEquals(2, TemporalResolver.number("两"));
+        assertEquals(10, TemporalResolver.number("十"));
+        assertEquals(15, TemporalResolver.number("十五"));
+        assertEquals(30, TemporalResolver.number("三十"));
+        assertEquals(31, TemporalResolver.number("三十一"));
+        assertEquals(2, TemporalResolver.number("a couple  of"));
+    }
+
+    /**
+     * Throughput over the corpus inputs, repeated. Logs the rate; only asserts a floor far below it, so the
+     * resolver stays cheap enough to run on every request. Runs with {@code -Pbenchmark}.
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkThroughput() throws IOException {
+        List<Case> cases = corpus();
+        LocalDateTime now = LocalDateTime.parse("2023-10-27T10:00");
+        int found = 0;
+        for (int i = 0; i < 2; i++) {
+            for (Case c : cases) {
+                found += TemporalResolver.resolve(c.input(), now, Locale.US).size(); // warm up
+            }
+        }
+        int rounds = 20;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            for (Case c : cases) {
+                found += TemporalResolver.resolve(c.input(), now, Locale.US).size();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double perSecond = rounds * cases.size() / seconds;
+        logger.info(String.format("%d inputs in %.3f s: %.0f inputs/s (%d mentions)",
+                rounds * cases.size(), seconds, perSecond, found));
+        assertTrue(perSecond > 500, perSecond + " inputs/s");
+    }
+}
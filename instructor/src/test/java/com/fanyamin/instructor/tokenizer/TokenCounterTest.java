@@ -0,0 +1,75 @@
+package com.fanyamin.instructor.tokenizer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCounterTest {
+
+    /**
+     * A tiny vocabulary in tiktoken format: every single byte, then a few merges in rank order.
+     */
+    private static BpeTokenizer tinyTokenizer(String... merges) throws Exception {
+        StringBuilder file = new StringBuilder();
+        int rank = 0;
+        for (int b = 0; b < 256; b++) {
+            file.append(Base64.getEncoder().encodeToString(new byte[]{(byte) b})).append(' ').append(rank++).append('\n');
+        }
+        for (String merge : merges) {
+            file.append(Base64.getEncoder().encodeToString(merge.getBytes(StandardCharsets.UTF_8)))
+                    .append(' ').append(rank++).append('\n');
+        }
+        return BpeTokenizer.load(TokenEncoding.CL100K_BASE,
+                new ByteArrayInputStream(file.toString().getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void bpeMergesLowestRankFirst() throws Exception {
+        BpeTokenizer tokenizer = tinyTokenizer("ll", "he", "hell", " w", "or", " wor", "ld");
+
+        assertEquals(List.of("hell", "o"), tokenizer.encodePiece("hello"));
+        // pre-tokenized as "hello" + " world" (a word keeps its leading space)
+        assertEquals(4, tokenizer.count("hello world"));
+        assertEquals(List.of(" wor", "ld"), tokenizer.encodePiece(" world"));
+        assertEquals(0, tokenizer.count(""));
+        assertTrue(tokenizer.isExact());
+    }
+
+    @Test
+    void multiByteCharactersAreCountedPerByteWithoutMerges() throws Exception {
+        BpeTokenizer tokenizer = tinyTokenizer("请");
+
+        assertEquals(1, tokenizer.count("请"));  // whole piece in the vocabulary
+        assertEquals(3, tokenizer.count("假"));  // three UTF-8 bytes, no merges
+    }
+
+    @Test
+    void encodingFollowsModelFamily() {
+        assertEquals(TokenEncoding.O200K_BASE, TokenEncoding.forModel("gpt-4o-mini"));
+        assertEquals(TokenEncoding.O200K_BASE, TokenEncoding.forModel("openai/o3-mini"));
+        assertEquals(TokenEncoding.CL100K_BASE, TokenEncoding.forModel("gpt-4-turbo-preview"));
+        assertEquals(TokenEncoding.CL100K_BASE, TokenEncoding.forModel("qwen2.5:14b"));
+        assertEquals(TokenEncoding.CL100K_BASE, TokenEncoding.forModel(null));
+    }
+
+    @Test
+    void approximationIsInTheRightRange() {
+        TokenCounter counter = new ApproximateTokenCounter(TokenEncoding.CL100K_BASE);
+
+        // cl100k: 10 tokens
+        int english = counter.count("I need to take sick leave from Monday to Wednesday.");
+        assertTrue(english >= 10 && english <= 14, "english: " + english);
+        // one token per Han character
+        assertEquals(6, counter.count("下周一请病假"));
+        // 2024 / - / 03 / - / 15 in cl100k: 5 tokens
+        int date = counter.count("2024-03-15");
+        assertTrue(date >= 5 && date <= 7, "date: " + date);
+        assertFalse(counter.isExact());
+        assertFalse(TokenCounters.forEncoding(TokenEncoding.CL100K_BASE).isExact(), "no vocabulary is bundled");
+    }
+}